@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Future;
 
 import android.annotation.TargetApi;
 import android.bluetooth.BluetoothAdapter;
@@ -15,6 +17,17 @@ import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.ParcelUuid;
 
+import net.kokohadoko.instil.android.bluetooth.backend.AndroidBluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.BluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.DeviceRecord;
+import net.kokohadoko.instil.android.bluetooth.discovery.BluetoothDiscoveryEngine;
+import net.kokohadoko.instil.android.bluetooth.discovery.DiscoveryCoordinator;
+import net.kokohadoko.instil.android.bluetooth.discovery.DiscoveryListener;
+import net.kokohadoko.instil.android.bluetooth.discovery.DiscoverySession;
+import net.kokohadoko.instil.android.bluetooth.exception.BluetoothUnsupportedException;
+import net.kokohadoko.instil.android.bluetooth.exception.BluetoothWrapperException;
+import net.kokohadoko.instil.android.bluetooth.le.LeScanner;
+
 /**
  * BluetoothAdapterラッパークラス
  * 
@@ -29,6 +42,15 @@ public class BluetoothAdapterWrapper {
 	/** 他のBluetooth端末から検出可能にする秒数を表す */
 	public static final long DISCOVERABLE_DURATION = 120;
 
+	/** 結果が真であることを表す */
+	public static final int RESULT_TRUE = 1;
+	/** 結果が偽であることを表す */
+	public static final int RESULT_FALSE = 0;
+	/** 端末がBluetoothをサポートしていないことを表す */
+	public static final int RESULT_UNSUPPORTED = -1;
+	/** Bluetoothが無効であることを表す */
+	public static final int RESULT_DISABLED = -2;
+
 	/**
 	 * デフォルトコンストラクタ
 	 * 
@@ -62,36 +84,151 @@ public class BluetoothAdapterWrapper {
 		return pm.hasSystemFeature(PackageManager.FEATURE_BLUETOOTH_LE);
 	}
 
+	/**
+	 * BLEデバイスのスキャンを行うLeScannerを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param capacity 保持するデバイス数の上限
+	 * @return LeScanner
+	 * @throws BluetoothWrapperException 端末がBluetoothLEをサポートしていない場合に例外を生成する
+	 */
+	public static LeScanner createLeScanner(Context context, int capacity) throws BluetoothWrapperException {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2
+		 || !hasSystemFeatureBluetoothLE(context)) {
+			throw new BluetoothUnsupportedException("端末がBluetoothLEをサポートしていません．");
+		}
+
+		BluetoothAdapter adapter = getBluetoothAdapter(context);
+		return new LeScanner(adapter, capacity);
+	}
+
 	/**
 	 * BluetoothAdapterを取得する
 	 * 
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return BluetoothAdapter
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static BluetoothAdapter getBluetoothAdapter(Context context) throws Exception {
+	public static BluetoothAdapter getBluetoothAdapter(Context context) throws BluetoothWrapperException {
 		if (hasSystemFeatureBluetooth(context)) {
 			BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
 			if (adapter != null) {
 				return adapter;
 			} else {
-				throw new Exception("");
+				throw BluetoothUnsupportedException.INSTANCE;
 			}
 		} else {
-			throw new Exception("");
+			throw BluetoothUnsupportedException.INSTANCE;
 		}
 	}
 
+	/**
+	 * BluetoothAdapterを使用するBluetoothBackendを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return BluetoothBackend
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static BluetoothBackend getBluetoothBackend(Context context) throws BluetoothWrapperException {
+		return new AndroidBluetoothBackend(context, getBluetoothAdapter(context));
+	}
+
+	/**
+	 * 例外を生成せずにBluetoothAdapterを取得する
+	 * 
+	 * <p>
+	 * PackageManagerへの問い合わせを行わないため，繰り返し呼び出す箇所で使用する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @return BluetoothAdapter, 端末がBluetoothをサポートしていない場合は nullを返す
+	 */
+	public static BluetoothAdapter peekBluetoothAdapter() {
+		return BluetoothAdapter.getDefaultAdapter();
+	}
+
+	/**
+	 * 例外を生成せずにBluetoothが有効かどうかを調べる
+	 * 
+	 * @since 0.0.1
+	 * @param adapter BluetoothAdapter
+	 * @return 有効な場合に {@link #RESULT_TRUE}, 無効な場合に {@link #RESULT_FALSE},
+	 *         adapterが nullの場合に {@link #RESULT_UNSUPPORTED}を返す
+	 */
+	public static int tryIsEnabled(BluetoothAdapter adapter) {
+		if (adapter == null) {
+			return RESULT_UNSUPPORTED;
+		}
+
+		return adapter.isEnabled() ? RESULT_TRUE : RESULT_FALSE;
+	}
+
+	/**
+	 * 例外を生成せずに周辺デバイスの検索中かどうかを調べる
+	 * 
+	 * @since 0.0.1
+	 * @param adapter BluetoothAdapter
+	 * @return 検索中の場合に {@link #RESULT_TRUE}, そうでない場合に {@link #RESULT_FALSE},
+	 *         adapterが nullの場合に {@link #RESULT_UNSUPPORTED}を返す
+	 */
+	public static int tryIsDiscovering(BluetoothAdapter adapter) {
+		if (adapter == null) {
+			return RESULT_UNSUPPORTED;
+		}
+
+		return adapter.isDiscovering() ? RESULT_TRUE : RESULT_FALSE;
+	}
+
+	/**
+	 * 例外を生成せずに周辺デバイスの検索を開始する
+	 * 
+	 * @since 0.0.1
+	 * @param adapter BluetoothAdapter
+	 * @return 開始した場合に {@link #RESULT_TRUE}, 失敗した場合に {@link #RESULT_FALSE},
+	 *         Bluetoothが無効な場合に {@link #RESULT_DISABLED}, adapterが nullの場合に {@link #RESULT_UNSUPPORTED}を返す
+	 */
+	public static int tryStartDiscovery(BluetoothAdapter adapter) {
+		if (adapter == null) {
+			return RESULT_UNSUPPORTED;
+		}
+		if (!adapter.isEnabled()) {
+			return RESULT_DISABLED;
+		}
+
+		return adapter.startDiscovery() ? RESULT_TRUE : RESULT_FALSE;
+	}
+
+	/**
+	 * 例外を生成せずに周辺デバイスの検索を中止する
+	 * 
+	 * @since 0.0.1
+	 * @param adapter BluetoothAdapter
+	 * @return 中止した場合に {@link #RESULT_TRUE}, 検索中でない場合や失敗した場合に {@link #RESULT_FALSE},
+	 *         adapterが nullの場合に {@link #RESULT_UNSUPPORTED}を返す
+	 */
+	public static int tryCancelDiscovery(BluetoothAdapter adapter) {
+		if (adapter == null) {
+			return RESULT_UNSUPPORTED;
+		}
+		if (!adapter.isDiscovering()) {
+			return RESULT_FALSE;
+		}
+
+		return adapter.cancelDiscovery() ? RESULT_TRUE : RESULT_FALSE;
+	}
+
 	/**
 	 * Bluetoothが有効かどうか
 	 * 
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return 有効な場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static boolean isEnabled(Context context) throws Exception {
+	public static boolean isEnabled(Context context) throws BluetoothWrapperException {
 		BluetoothAdapter adapter = getBluetoothAdapter(context);
 		return isEnabled(adapter);
 	}
@@ -102,11 +239,11 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return 有効な場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static boolean isEnabled(BluetoothAdapter adapter) throws Exception {
+	public static boolean isEnabled(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		if (adapter == null) {
-			throw new Exception("");
+			throw BluetoothUnsupportedException.INSTANCE;
 		}
 
 		return adapter.isEnabled();
@@ -118,9 +255,9 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return 成功した場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static boolean enabled(Context context) throws Exception {
+	public static boolean enabled(Context context) throws BluetoothWrapperException {
 		BluetoothAdapter adapter = getBluetoothAdapter(context);
 		return enabled(adapter);
 	}
@@ -131,11 +268,11 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return 成功した場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static boolean enabled(BluetoothAdapter adapter) throws Exception {
+	public static boolean enabled(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		if (adapter == null) {
-			throw new Exception("");
+			throw BluetoothUnsupportedException.INSTANCE;
 		}
 
 		return adapter.enable();
@@ -147,9 +284,9 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return 成功した場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static boolean disabled(Context context) throws Exception {
+	public static boolean disabled(Context context) throws BluetoothWrapperException {
 		BluetoothAdapter adapter = getBluetoothAdapter(context);
 		return disabled(adapter);
 	}
@@ -160,25 +297,55 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return 成功した場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static boolean disabled(BluetoothAdapter adapter) throws Exception {
+	public static boolean disabled(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		if (adapter == null) {
-			throw new Exception("");
+			throw BluetoothUnsupportedException.INSTANCE;
 		}
 
 		return adapter.disable();
 	}
 
+	/**
+	 * Bluetoothを有効にし，有効になるまで待機するFutureを取得する
+	 * 
+	 * <p>
+	 * 複数の箇所から同時に呼び出された場合は1回だけ有効化を要求し，同じFutureを返す．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param timeoutMillis タイムアウトまでのミリ秒
+	 * @return 有効になった場合に true, 要求が拒否された場合に false で完了するFuture
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static Future<Boolean> enabled(Context context, long timeoutMillis) throws BluetoothWrapperException {
+		return BluetoothStateTracker.getInstance(context).enable(timeoutMillis);
+	}
+
+	/**
+	 * Bluetoothを無効にし，無効になるまで待機するFutureを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param timeoutMillis タイムアウトまでのミリ秒
+	 * @return 無効になった場合に true, 要求が拒否された場合に false で完了するFuture
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static Future<Boolean> disabled(Context context, long timeoutMillis) throws BluetoothWrapperException {
+		return BluetoothStateTracker.getInstance(context).disable(timeoutMillis);
+	}
+
 	/**
 	 * 周辺デバイスの検索を開始する
 	 * 
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return 成功した場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static boolean startDiscovery(Context context) throws Exception {
+	public static boolean startDiscovery(Context context) throws BluetoothWrapperException {
 		BluetoothAdapter adapter = getBluetoothAdapter(context);
 		return startDiscovery(adapter);
 	}
@@ -189,24 +356,63 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return 成功した場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static boolean startDiscovery(BluetoothAdapter adapter) throws Exception {
+	public static boolean startDiscovery(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		if (adapter == null) {
-			throw new Exception("");
+			throw BluetoothUnsupportedException.INSTANCE;
 		}
 
 		return adapter.startDiscovery();
 	}
 
+	/**
+	 * 周辺デバイスの検索を開始し，検出結果を逐次通知する
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param listener リスナー
+	 * @param timeoutMillis タイムアウトまでのミリ秒, 0以下の場合は1回の検索で終了する
+	 * @return 検索を行うBluetoothDiscoveryEngine, 開始に失敗した場合は nullを返す
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static BluetoothDiscoveryEngine startDiscovery(Context context, DiscoveryListener listener, long timeoutMillis) throws BluetoothWrapperException {
+		BluetoothAdapter adapter = getBluetoothAdapter(context);
+		BluetoothDiscoveryEngine engine = new BluetoothDiscoveryEngine(context, adapter);
+		if (engine.start(listener, timeoutMillis)) {
+			return engine;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * 他の呼び出し元と共有する周辺デバイスの検索に参加する
+	 * 
+	 * <p>
+	 * 検索の開始・中止を直接行う {@link #startDiscovery(Context)} と異なり，
+	 * 他の呼び出し元の検索を中止することがない．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param listener リスナー
+	 * @param timeoutMillis 自動的に離脱するまでのミリ秒, 0以下の場合は離脱するまで参加する
+	 * @return 参加を表すセッション
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合またはBluetoothが無効な場合に例外を生成する
+	 */
+	public static DiscoverySession acquireDiscovery(Context context, DiscoveryListener listener, long timeoutMillis) throws BluetoothWrapperException {
+		return DiscoveryCoordinator.getInstance(context).acquire(listener, timeoutMillis);
+	}
+
 	/**
 	 * 周辺デバイスの検索中かどうかを調べる
 	 * 
 	 * @param context コンテキスト
 	 * @return 成功した場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static boolean isDiscoverying(Context context) throws Exception {
+	public static boolean isDiscoverying(Context context) throws BluetoothWrapperException {
 		BluetoothAdapter adapter = getBluetoothAdapter(context);
 		return adapter.isDiscovering();
 	}
@@ -217,11 +423,11 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return 成功した場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static boolean isDiscoverying(BluetoothAdapter adapter) throws Exception {
+	public static boolean isDiscoverying(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		if (adapter == null) {
-			throw new Exception("");
+			throw BluetoothUnsupportedException.INSTANCE;
 		}
 
 		return adapter.isDiscovering();
@@ -233,9 +439,9 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return 成功した場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static boolean cancelDiscovery(Context context) throws Exception {
+	public static boolean cancelDiscovery(Context context) throws BluetoothWrapperException {
 		BluetoothAdapter adapter = getBluetoothAdapter(context);
 		return adapter.cancelDiscovery();
 	}
@@ -246,11 +452,11 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return 成功した場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static boolean cancelDiscovery(BluetoothAdapter adapter) throws Exception {
+	public static boolean cancelDiscovery(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		if (adapter == null) {
-			throw new Exception("");
+			throw BluetoothUnsupportedException.INSTANCE;
 		}
 
 		if (isDiscoverying(adapter)) {
@@ -276,9 +482,9 @@ public class BluetoothAdapterWrapper {
 	 * 
 	 * @since 0.0.1
 	 * @param context コンテキスト
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static void discoverable(Context context) throws Exception {
+	public static void discoverable(Context context) throws BluetoothWrapperException {
 		discoverable(context, DISCOVERABLE_DURATION);
 	}
 
@@ -288,15 +494,15 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @param duration 秒数
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static void discoverable(Context context, long duration) throws Exception {
+	public static void discoverable(Context context, long duration) throws BluetoothWrapperException {
 		if (hasSystemFeatureBluetooth(context)) {
 			Intent intent = new Intent(BluetoothAdapter.ACTION_REQUEST_DISCOVERABLE);
 			intent.putExtra(BluetoothAdapter.EXTRA_DISCOVERABLE_DURATION, duration);
 			context.startActivity(intent);
 		} else {
-			throw new Exception("");
+			throw BluetoothUnsupportedException.INSTANCE;
 		}
 	}
 
@@ -306,9 +512,9 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return ペアリング済みのデバイス一覧を取得する
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static Set<BluetoothDevice> getBoundedDevices(Context context) throws Exception {
+	public static Set<BluetoothDevice> getBoundedDevices(Context context) throws BluetoothWrapperException {
 		BluetoothAdapter adapter = getBluetoothAdapter(context);
 		return adapter.getBondedDevices();
 	}
@@ -319,27 +525,131 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return ペアリング済みのデバイス一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static Set<BluetoothDevice> getBoundedDevices(BluetoothAdapter adapter) throws Exception {
+	public static Set<BluetoothDevice> getBoundedDevices(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		if (adapter == null) {
-			throw new Exception("");
+			throw BluetoothUnsupportedException.INSTANCE;
 		}
 
 		return adapter.getBondedDevices();
 	}
 
+	/**
+	 * ペアリング済みのデバイスのスナップショットを取得する
+	 * 
+	 * <p>
+	 * ペアリング状態などが変化するまでキャッシュしたスナップショットを返す．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return ペアリング済みのデバイスのスナップショット
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static BondedDeviceSnapshot getBondedDeviceSnapshot(Context context) throws BluetoothWrapperException {
+		return BondedDeviceSnapshotCache.getInstance(context).get();
+	}
+
+	/**
+	 * ペアリング済みのデバイスのスナップショットを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param adapter BluetoothAdapter
+	 * @return ペアリング済みのデバイスのスナップショット
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static BondedDeviceSnapshot getBondedDeviceSnapshot(BluetoothAdapter adapter) throws BluetoothWrapperException {
+		return BondedDeviceSnapshot.create(adapter);
+	}
+
+	/**
+	 * ファイルに保存したペアリング済みのデバイス一覧を取得する
+	 * 
+	 * <p>
+	 * 起動直後の表示など，最新の状態でなくてもよい場合に使用する．
+	 * 最新の状態との照合はバックグラウンドで行われる．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return ペアリング済みのデバイス一覧
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static List<BondedDeviceMetadata> getCachedBoundedDevices(Context context) throws BluetoothWrapperException {
+		return BondedDeviceStore.getInstance(context).getDevices();
+	}
+
+	/**
+	 * ファイルに保存したペアリング済みのデバイス名一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return ペアリング済みのデバイス名一覧
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static List<String> getCachedBoundedDevicesName(Context context) throws BluetoothWrapperException {
+		return BondedDeviceStore.getInstance(context).getNames();
+	}
+
+	/**
+	 * ファイルに保存したペアリング済みのデバイスクラス一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return ペアリング済みのデバイスクラス一覧
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static List<Integer> getCachedBoundedDevicesClass(Context context) throws BluetoothWrapperException {
+		return BondedDeviceStore.getInstance(context).getDeviceClasses();
+	}
+
+	/**
+	 * ファイルに保存したペアリング済みのデバイスのUUID一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return ペアリング済みのデバイスのUUID一覧
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static List<UUID[]> getCachedBoundedDevicesUuid(Context context) throws BluetoothWrapperException {
+		return BondedDeviceStore.getInstance(context).getUuids();
+	}
+
+	/**
+	 * アドレスに一致するペアリング済みのデバイスを取得する
+	 * 
+	 * <p>
+	 * 繰り返し検索する場合は {@link BluetoothDeviceRegistry} を使用すること．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param address "00:11:22:AA:BB:CC" 形式のアドレス
+	 * @return ペアリング済みのデバイス, 存在しない場合は nullを返す
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static BluetoothDevice getBoundedDevice(Context context, String address) throws BluetoothWrapperException {
+		long value = BluetoothAddress.parse(address);
+		if (value == BluetoothAddress.INVALID) {
+			return null;
+		}
+
+		BondedDeviceSnapshot snapshot = getBondedDeviceSnapshot(context);
+		int index = snapshot.indexOf(value);
+		return index >= 0 ? snapshot.getDevice(index) : null;
+	}
+
 	/**
 	 * ペアリング済みのデバイス名一覧を取得する
 	 * 
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return ペアリング済みのデバイス名一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static List<String> getBoundedDevicesName(Context context) throws Exception {
-		BluetoothAdapter adapter = getBluetoothAdapter(context);
-		return getBoundedDevicesName(adapter);
+	public static List<String> getBoundedDevicesName(Context context) throws BluetoothWrapperException {
+		return new ArrayList<String>(getBondedDeviceSnapshot(context).getNames());
 	}
 
 	/**
@@ -348,9 +658,9 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return ペアリング済みのデバイス名一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static List<String> getBoundedDevicesName(BluetoothAdapter adapter) throws Exception {
+	public static List<String> getBoundedDevicesName(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		Set<BluetoothDevice> devices = getBoundedDevices(adapter);
 		List<String> names = new ArrayList<String>();
 		Iterator<BluetoothDevice> itr = devices.iterator();
@@ -368,11 +678,10 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return ペアリング済みのデバイスのアドレス一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static List<String> getBoundedDevicesAddress(Context context) throws Exception {
-		BluetoothAdapter adapter = getBluetoothAdapter(context);
-		return getBoundedDevicesAddress(adapter);
+	public static List<String> getBoundedDevicesAddress(Context context) throws BluetoothWrapperException {
+		return new ArrayList<String>(getBondedDeviceSnapshot(context).getAddresses());
 	}
 
 	/**
@@ -381,9 +690,9 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return ペアリング済みのデバイスのアドレス一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static List<String> getBoundedDevicesAddress(BluetoothAdapter adapter) throws Exception {
+	public static List<String> getBoundedDevicesAddress(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		Set<BluetoothDevice> devices = getBoundedDevices(adapter);
 		List<String> addresses = new ArrayList<String>();
 		Iterator<BluetoothDevice> itr = devices.iterator();
@@ -401,11 +710,10 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return ペアリング済みのデバイス種別一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static List<Integer> getBoundedDevicesType(Context context) throws Exception {
-		BluetoothAdapter adapter = getBluetoothAdapter(context);
-		return getBoundedDevicesType(adapter);
+	public static List<Integer> getBoundedDevicesType(Context context) throws BluetoothWrapperException {
+		return new ArrayList<Integer>(getBondedDeviceSnapshot(context).getTypes());
 	}
 
 	/**
@@ -414,9 +722,9 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return ペアリング済みのデバイス種別一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static List<Integer> getBoundedDevicesType(BluetoothAdapter adapter) throws Exception {
+	public static List<Integer> getBoundedDevicesType(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		Set<BluetoothDevice> devices = getBoundedDevices(adapter);
 		List<Integer> types = new ArrayList<Integer>();
 		Iterator<BluetoothDevice> itr = devices.iterator();
@@ -434,11 +742,10 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return ペアリング済みのデバイスのクラス一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static List<BluetoothClass> getBoundedDevicesClass(Context context) throws Exception {
-		BluetoothAdapter adapter = getBluetoothAdapter(context);
-		return getBoundedDevicesClass(adapter);
+	public static List<BluetoothClass> getBoundedDevicesClass(Context context) throws BluetoothWrapperException {
+		return new ArrayList<BluetoothClass>(getBondedDeviceSnapshot(context).getBluetoothClasses());
 	}
 
 	/**
@@ -447,9 +754,9 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return ペアリング済みのデバイスのクラス一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static List<BluetoothClass> getBoundedDevicesClass(BluetoothAdapter adapter) throws Exception {
+	public static List<BluetoothClass> getBoundedDevicesClass(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		Set<BluetoothDevice> devices = getBoundedDevices(adapter);
 		List<BluetoothClass> classes = new ArrayList<BluetoothClass>();
 		Iterator<BluetoothDevice> itr = devices.iterator();
@@ -467,11 +774,10 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return ペアリング済みのデバイスのUUID一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static List<ParcelUuid[]> getBoundedDevicesUuid(Context context) throws Exception {
-		BluetoothAdapter adapter = getBluetoothAdapter(context);
-		return getBoundedDevicesUuid(adapter);
+	public static List<ParcelUuid[]> getBoundedDevicesUuid(Context context) throws BluetoothWrapperException {
+		return new ArrayList<ParcelUuid[]>(getBondedDeviceSnapshot(context).getUuids());
 	}
 
 	/**
@@ -480,9 +786,9 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return ペアリング済みのデバイスのUUID一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static List<ParcelUuid[]> getBoundedDevicesUuid(BluetoothAdapter adapter) throws Exception {
+	public static List<ParcelUuid[]> getBoundedDevicesUuid(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		Set<BluetoothDevice> devices = getBoundedDevices(adapter);
 		List<ParcelUuid[]> uuids = new ArrayList<ParcelUuid[]>();
 		Iterator<BluetoothDevice> itr = devices.iterator();
@@ -500,11 +806,10 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return ペアリング済みのデバイスの状態一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static List<Integer> getBoundedDevicesBondState(Context context) throws Exception {
-		BluetoothAdapter adapter = getBluetoothAdapter(context);
-		return getBoundedDevicesBondState(adapter);
+	public static List<Integer> getBoundedDevicesBondState(Context context) throws BluetoothWrapperException {
+		return new ArrayList<Integer>(getBondedDeviceSnapshot(context).getBondStates());
 	}
 
 	/**
@@ -513,9 +818,9 @@ public class BluetoothAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter BluetoothAdapter
 	 * @return ペアリング済みのデバイスの状態一覧
-	 * @throws Exception 端末がBluetoothをサポートしていない場合に例外を生成する
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
 	 */
-	public static List<Integer> getBoundedDevicesBondState(BluetoothAdapter adapter) throws Exception {
+	public static List<Integer> getBoundedDevicesBondState(BluetoothAdapter adapter) throws BluetoothWrapperException {
 		Set<BluetoothDevice> devices = getBoundedDevices(adapter);
 		List<Integer> bondStates = new ArrayList<Integer>();
 		Iterator<BluetoothDevice> itr = devices.iterator();
@@ -526,4 +831,246 @@ public class BluetoothAdapterWrapper {
 
 		return bondStates;
 	}
+
+	/**
+	 * Bluetoothが有効かどうか
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return 有効な場合に true, そうでない場合に falseを返す
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static boolean isEnabled(BluetoothBackend backend) throws BluetoothWrapperException {
+		if (backend == null) {
+			throw BluetoothUnsupportedException.INSTANCE;
+		}
+
+		return backend.isEnabled();
+	}
+
+	/**
+	 * Bluetoothを有効にする
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return 成功した場合に true, そうでない場合に falseを返す
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static boolean enabled(BluetoothBackend backend) throws BluetoothWrapperException {
+		if (backend == null) {
+			throw BluetoothUnsupportedException.INSTANCE;
+		}
+
+		return backend.enable();
+	}
+
+	/**
+	 * Bluetoothを無効にする
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return 成功した場合に true, そうでない場合に falseを返す
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static boolean disabled(BluetoothBackend backend) throws BluetoothWrapperException {
+		if (backend == null) {
+			throw BluetoothUnsupportedException.INSTANCE;
+		}
+
+		return backend.disable();
+	}
+
+	/**
+	 * 周辺デバイスの検索を開始する
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return 成功した場合に true, そうでない場合に falseを返す
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static boolean startDiscovery(BluetoothBackend backend) throws BluetoothWrapperException {
+		if (backend == null) {
+			throw BluetoothUnsupportedException.INSTANCE;
+		}
+
+		return backend.startDiscovery();
+	}
+
+	/**
+	 * 周辺デバイスの検索中かどうか
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return 検索中の場合に true, そうでない場合に falseを返す
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static boolean isDiscoverying(BluetoothBackend backend) throws BluetoothWrapperException {
+		if (backend == null) {
+			throw BluetoothUnsupportedException.INSTANCE;
+		}
+
+		return backend.isDiscovering();
+	}
+
+	/**
+	 * 周辺デバイスの検索を中止する
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return 成功した場合に true, そうでない場合に falseを返す
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static boolean cancelDiscovery(BluetoothBackend backend) throws BluetoothWrapperException {
+		if (backend == null) {
+			throw BluetoothUnsupportedException.INSTANCE;
+		}
+
+		if (backend.isDiscovering()) {
+			return backend.cancelDiscovery();
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * 例外を生成せずに周辺デバイスの検索中かどうかを調べる
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return 検索中の場合に {@link #RESULT_TRUE}, そうでない場合に {@link #RESULT_FALSE},
+	 *         backendが nullの場合に {@link #RESULT_UNSUPPORTED}を返す
+	 */
+	public static int tryIsDiscovering(BluetoothBackend backend) {
+		if (backend == null) {
+			return RESULT_UNSUPPORTED;
+		}
+
+		return backend.isDiscovering() ? RESULT_TRUE : RESULT_FALSE;
+	}
+
+	/**
+	 * 例外を生成せずに周辺デバイスの検索を開始する
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return 開始した場合に {@link #RESULT_TRUE}, 失敗した場合に {@link #RESULT_FALSE},
+	 *         Bluetoothが無効な場合に {@link #RESULT_DISABLED}, backendが nullの場合に {@link #RESULT_UNSUPPORTED}を返す
+	 */
+	public static int tryStartDiscovery(BluetoothBackend backend) {
+		if (backend == null) {
+			return RESULT_UNSUPPORTED;
+		}
+		if (!backend.isEnabled()) {
+			return RESULT_DISABLED;
+		}
+
+		return backend.startDiscovery() ? RESULT_TRUE : RESULT_FALSE;
+	}
+
+	/**
+	 * 例外を生成せずに周辺デバイスの検索を中止する
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return 中止した場合に {@link #RESULT_TRUE}, 検索中でない場合や失敗した場合に {@link #RESULT_FALSE},
+	 *         backendが nullの場合に {@link #RESULT_UNSUPPORTED}を返す
+	 */
+	public static int tryCancelDiscovery(BluetoothBackend backend) {
+		if (backend == null) {
+			return RESULT_UNSUPPORTED;
+		}
+		if (!backend.isDiscovering()) {
+			return RESULT_FALSE;
+		}
+
+		return backend.cancelDiscovery() ? RESULT_TRUE : RESULT_FALSE;
+	}
+
+	/**
+	 * ペアリング済みのデバイス一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return ペアリング済みのデバイス一覧
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static List<DeviceRecord> getBoundedDevices(BluetoothBackend backend) throws BluetoothWrapperException {
+		if (backend == null) {
+			throw BluetoothUnsupportedException.INSTANCE;
+		}
+
+		return backend.getBondedDevices();
+	}
+
+	/**
+	 * ペアリング済みのデバイス名一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return ペアリング済みのデバイス名一覧
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static List<String> getBoundedDevicesName(BluetoothBackend backend) throws BluetoothWrapperException {
+		List<DeviceRecord> devices = getBoundedDevices(backend);
+		List<String> names = new ArrayList<String>(devices.size());
+		for (DeviceRecord device : devices) {
+			names.add(device.getName());
+		}
+
+		return names;
+	}
+
+	/**
+	 * ペアリング済みのデバイスのアドレス一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return ペアリング済みのデバイスのアドレス一覧
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static List<String> getBoundedDevicesAddress(BluetoothBackend backend) throws BluetoothWrapperException {
+		List<DeviceRecord> devices = getBoundedDevices(backend);
+		List<String> addresses = new ArrayList<String>(devices.size());
+		for (DeviceRecord device : devices) {
+			addresses.add(device.getAddress());
+		}
+
+		return addresses;
+	}
+
+	/**
+	 * ペアリング済みのデバイス種別を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return ペアリング済みのデバイス種別
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static List<Integer> getBoundedDevicesType(BluetoothBackend backend) throws BluetoothWrapperException {
+		List<DeviceRecord> devices = getBoundedDevices(backend);
+		List<Integer> types = new ArrayList<Integer>(devices.size());
+		for (DeviceRecord device : devices) {
+			types.add(device.getType());
+		}
+
+		return types;
+	}
+
+	/**
+	 * ペアリング済みのデバイスの状態一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return ペアリング済みのデバイスの状態一覧
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static List<Integer> getBoundedDevicesBondState(BluetoothBackend backend) throws BluetoothWrapperException {
+		List<DeviceRecord> devices = getBoundedDevices(backend);
+		List<Integer> bondStates = new ArrayList<Integer>(devices.size());
+		for (DeviceRecord device : devices) {
+			bondStates.add(device.getBondState());
+		}
+
+		return bondStates;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package net.kokohadoko.instil.android.bluetooth;
+
+/**
+ * Bluetoothアドレスとlongとの相互変換を行うユーティリティクラス
+ * 
+ * <p>
+ * "00:11:22:AA:BB:CC" 形式のアドレスを48bitの数値として扱うことで，
+ * 文字列を保持・比較することなくデバイスを識別できるようにする．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public final class BluetoothAddress {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = BluetoothAddress.class.getSimpleName();
+
+	/** 不正なアドレスを表す */
+	public static final long INVALID = -1L;
+
+	/** アドレス文字列の長さ */
+	public static final int ADDRESS_LENGTH = 17;
+
+	/** 16進数の文字 */
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * デフォルトコンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	private BluetoothAddress() {
+	}
+
+	/**
+	 * アドレス文字列を数値に変換する
+	 * 
+	 * @since 0.0.1
+	 * @param address "00:11:22:AA:BB:CC" 形式のアドレス
+	 * @return 変換した数値, 不正なアドレスの場合は {@link #INVALID} を返す
+	 */
+	public static long parse(String address) {
+		if (address == null || address.length() != ADDRESS_LENGTH) {
+			return INVALID;
+		}
+
+		long value = 0;
+		for (int i = 0; i < ADDRESS_LENGTH; i++) {
+			char c = address.charAt(i);
+			if (i % 3 == 2) {
+				if (c != ':') {
+					return INVALID;
+				}
+				continue;
+			}
+
+			int digit = Character.digit(c, 16);
+			if (digit < 0) {
+				return INVALID;
+			}
+			value = (value << 4) | digit;
+		}
+
+		return value;
+	}
+
+	/**
+	 * 数値をアドレス文字列に変換する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return "00:11:22:AA:BB:CC" 形式のアドレス
+	 * @throws IllegalArgumentException 48bitに収まらない値の場合に例外を生成する
+	 */
+	public static String format(long address) {
+		if (!isValid(address)) {
+			throw new IllegalArgumentException("addressが不正な値です．");
+		}
+
+		char[] chars = new char[ADDRESS_LENGTH];
+		for (int i = 0; i < 6; i++) {
+			int octet = (int) (address >>> (40 - i * 8)) & 0xFF;
+			int pos = i * 3;
+			chars[pos] = HEX[octet >>> 4];
+			chars[pos + 1] = HEX[octet & 0x0F];
+			if (i < 5) {
+				chars[pos + 2] = ':';
+			}
+		}
+
+		return new String(chars);
+	}
+
+	/**
+	 * 数値が有効なアドレスかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return 有効な場合に true, そうでない場合に falseを返す
+	 */
+	public static boolean isValid(long address) {
+		return (address & 0xFFFF000000000000L) == 0;
+	}
+}
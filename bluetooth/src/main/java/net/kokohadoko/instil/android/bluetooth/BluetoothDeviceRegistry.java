@@ -0,0 +1,348 @@
+package net.kokohadoko.instil.android.bluetooth;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.kokohadoko.instil.android.bluetooth.backend.AndroidBluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.BackendListener;
+import net.kokohadoko.instil.android.bluetooth.backend.BluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.DeviceRecord;
+import net.kokohadoko.instil.android.bluetooth.exception.BluetoothWrapperException;
+import net.kokohadoko.instil.android.bluetooth.util.Clock;
+import net.kokohadoko.instil.android.bluetooth.util.LongObjectHashMap;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.content.Context;
+
+/**
+ * ペアリング済みのデバイスと最近検出されたデバイスをアドレスで検索するレジストリ
+ * 
+ * <p>
+ * アドレスを数値に変換してハッシュマップに格納するため，検索は定数時間で行える．
+ * {@link BluetoothBackend} が通知するペアリング状態の変化と検出結果で登録内容を更新する．
+ * 各メソッドは任意のスレッドから呼び出せる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BluetoothDeviceRegistry {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = BluetoothDeviceRegistry.class.getSimpleName();
+
+	/** 検出されたデバイスを保持するデフォルトのミリ秒 */
+	public static final long DEFAULT_RETENTION = 5 * 60 * 1000;
+
+	/** BluetoothBackend */
+	private final BluetoothBackend backend;
+	/** 検出時刻と保持期間の計算に使用する時計 */
+	private final Clock clock;
+	/** 登録されたデバイス */
+	private final LongObjectHashMap<RegisteredDevice> devices;
+	/** 検出されたデバイスを保持するミリ秒 */
+	private volatile long retention = DEFAULT_RETENTION;
+	/** 受信処理を登録しているかどうか */
+	private boolean started;
+
+	/** 登録内容の更新処理 */
+	private final BackendListener receiver = new BackendListener() {
+		@Override
+		public void onStateChanged(int previous, int state) {
+		}
+
+		@Override
+		public void onDiscoveryStarted() {
+		}
+
+		@Override
+		public void onDeviceFound(DeviceRecord device, int rssi) {
+			onFound(device, rssi);
+		}
+
+		@Override
+		public void onDiscoveryFinished() {
+			evictExpired();
+		}
+
+		@Override
+		public void onBondStateChanged(DeviceRecord device, int state) {
+			BluetoothDeviceRegistry.this.onBondStateChanged(device, state);
+		}
+
+		@Override
+		public void onDeviceChanged(DeviceRecord device) {
+		}
+	};
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param adapter BluetoothAdapter
+	 */
+	public BluetoothDeviceRegistry(Context context, BluetoothAdapter adapter) {
+		this(new AndroidBluetoothBackend(context, adapter));
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 */
+	public BluetoothDeviceRegistry(BluetoothBackend backend) {
+		this(backend, Clock.SYSTEM);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @param clock 検出時刻と保持期間の計算に使用する時計
+	 */
+	public BluetoothDeviceRegistry(BluetoothBackend backend, Clock clock) {
+		if (backend == null) {
+			throw new IllegalArgumentException("backendがnullです．");
+		}
+		if (clock == null) {
+			throw new IllegalArgumentException("clockがnullです．");
+		}
+
+		this.backend = backend;
+		this.clock = clock;
+		this.devices = new LongObjectHashMap<RegisteredDevice>(256);
+	}
+
+	/**
+	 * ペアリング済みのデバイスを登録し，更新処理を開始する
+	 * 
+	 * @since 0.0.1
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public void start() throws BluetoothWrapperException {
+		synchronized (this) {
+			if (started) {
+				return;
+			}
+			started = true;
+		}
+
+		backend.addListener(receiver);
+
+		refreshBonded();
+	}
+
+	/**
+	 * 更新処理を終了する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void stop() {
+		synchronized (this) {
+			if (!started) {
+				return;
+			}
+			started = false;
+		}
+
+		backend.removeListener(receiver);
+	}
+
+	/**
+	 * ペアリング済みのデバイスを登録し直す
+	 * 
+	 * @since 0.0.1
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public void refreshBonded() throws BluetoothWrapperException {
+		BondedDeviceSnapshot snapshot = BondedDeviceSnapshot.create(backend);
+		synchronized (devices) {
+			long[] keys = devices.keys();
+			for (long key : keys) {
+				devices.get(key).setBonded(false);
+			}
+			for (int i = 0; i < snapshot.size(); i++) {
+				long address = snapshot.getAddressLong(i);
+				if (address == BluetoothAddress.INVALID) {
+					continue;
+				}
+				RegisteredDevice registered = obtain(address, snapshot.getDevice(i));
+				registered.setDevice(snapshot.getDevice(i), snapshot.getName(i));
+				registered.setBonded(true);
+			}
+		}
+	}
+
+	/**
+	 * 検出されたデバイスを保持するミリ秒を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param retention ミリ秒
+	 */
+	public void setRetention(long retention) {
+		this.retention = retention;
+	}
+
+	/**
+	 * デバイスを検索する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return 登録されたデバイス, 存在しない場合は nullを返す
+	 */
+	public RegisteredDevice lookup(long address) {
+		synchronized (devices) {
+			return devices.get(address);
+		}
+	}
+
+	/**
+	 * デバイスを検索する
+	 * 
+	 * @since 0.0.1
+	 * @param address "00:11:22:AA:BB:CC" 形式のアドレス
+	 * @return 登録されたデバイス, 存在しない場合は nullを返す
+	 */
+	public RegisteredDevice lookup(String address) {
+		long value = BluetoothAddress.parse(address);
+		if (value == BluetoothAddress.INVALID) {
+			return null;
+		}
+
+		return lookup(value);
+	}
+
+	/**
+	 * BluetoothDeviceを検索する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return BluetoothDevice, 存在しない場合や {@link AndroidBluetoothBackend} 以外で登録された場合は nullを返す
+	 */
+	public BluetoothDevice getDevice(long address) {
+		RegisteredDevice registered = lookup(address);
+		return registered != null ? registered.getDevice() : null;
+	}
+
+	/**
+	 * ペアリング済みかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return ペアリング済みの場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isBonded(long address) {
+		RegisteredDevice registered = lookup(address);
+		return registered != null && registered.isBonded();
+	}
+
+	/**
+	 * 登録されたデバイス数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 登録されたデバイス数
+	 */
+	public int size() {
+		synchronized (devices) {
+			return devices.size();
+		}
+	}
+
+	/**
+	 * 登録されたデバイスの一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 登録されたデバイスの一覧
+	 */
+	public List<RegisteredDevice> getDevices() {
+		synchronized (devices) {
+			List<RegisteredDevice> result = new ArrayList<RegisteredDevice>(devices.size());
+			devices.collectValues(result);
+			return result;
+		}
+	}
+
+	/**
+	 * 保持期間を過ぎた未ペアリングのデバイスを削除する
+	 * 
+	 * @since 0.0.1
+	 * @return 削除したデバイス数
+	 */
+	public int evictExpired() {
+		long limit = clock.elapsedRealtime() - retention;
+		int count = 0;
+		synchronized (devices) {
+			long[] keys = devices.keys();
+			for (long key : keys) {
+				RegisteredDevice registered = devices.get(key);
+				if (!registered.isBonded() && registered.getLastSeen() < limit) {
+					devices.remove(key);
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * デバイスが検出された場合の処理
+	 * 
+	 * @since 0.0.1
+	 * @param record 検出されたデバイス
+	 * @param rssi RSSI
+	 */
+	private void onFound(DeviceRecord record, int rssi) {
+		long address = record.getAddressLong();
+		BluetoothDevice device = AndroidBluetoothBackend.getDevice(record);
+		synchronized (devices) {
+			RegisteredDevice registered = obtain(address, device);
+			registered.setDevice(device, record.getName());
+			registered.seen(rssi, clock.elapsedRealtime());
+		}
+	}
+
+	/**
+	 * ペアリング状態が変化した場合の処理
+	 * 
+	 * @since 0.0.1
+	 * @param record デバイス
+	 * @param state ペアリング状態
+	 */
+	private void onBondStateChanged(DeviceRecord record, int state) {
+		long address = record.getAddressLong();
+		BluetoothDevice device = AndroidBluetoothBackend.getDevice(record);
+		synchronized (devices) {
+			RegisteredDevice registered = obtain(address, device);
+			registered.setDevice(device, null);
+			if (state == BluetoothDevice.BOND_BONDED) {
+				registered.setBonded(true);
+			} else if (state == BluetoothDevice.BOND_NONE) {
+				// ペアリングが解除されたデバイスは保持期間の経過後に削除する
+				registered.setBonded(false);
+				registered.seen(RegisteredDevice.RSSI_UNKNOWN, clock.elapsedRealtime());
+			}
+		}
+	}
+
+	/**
+	 * 登録されたデバイスを取得し，存在しない場合は登録する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param device BluetoothDevice
+	 * @return 登録されたデバイス
+	 */
+	private RegisteredDevice obtain(long address, BluetoothDevice device) {
+		RegisteredDevice registered = devices.get(address);
+		if (registered == null) {
+			registered = new RegisteredDevice(address, device);
+			devices.put(address, registered);
+		}
+
+		return registered;
+	}
+}
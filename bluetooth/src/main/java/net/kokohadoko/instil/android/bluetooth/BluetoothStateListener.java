@@ -0,0 +1,19 @@
+package net.kokohadoko.instil.android.bluetooth;
+
+/**
+ * Bluetoothの状態の変化を受け取るリスナー
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface BluetoothStateListener {
+
+	/**
+	 * Bluetoothの状態が変化した場合に呼び出される．メインスレッドで呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param previous 変化前の状態
+	 * @param state 変化後の状態
+	 */
+	void onStateChanged(int previous, int state);
+}
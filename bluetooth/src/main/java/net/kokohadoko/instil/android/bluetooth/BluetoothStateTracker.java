@@ -0,0 +1,380 @@
+package net.kokohadoko.instil.android.bluetooth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import net.kokohadoko.instil.android.bluetooth.backend.AndroidBluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.BackendListener;
+import net.kokohadoko.instil.android.bluetooth.backend.BluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.DeviceRecord;
+import net.kokohadoko.instil.android.bluetooth.exception.BluetoothWrapperException;
+import net.kokohadoko.instil.android.bluetooth.util.SettableFuture;
+import android.bluetooth.BluetoothAdapter;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Bluetoothの状態を追跡し，有効化・無効化の完了を待機できるようにするクラス
+ * 
+ * <p>
+ * {@link BluetoothBackend} が通知する状態の変化で状態を更新し，目的の状態に達した時点でFutureを完了させる．
+ * 有効化の途中に別の箇所から有効化が要求された場合は，新たに要求せず同じFutureを返す．
+ * 通常は {@link #getInstance(Context)} でプロセスにつき1つのインスタンスを使用する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BluetoothStateTracker {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = BluetoothStateTracker.class.getSimpleName();
+
+	/** デフォルトのタイムアウトミリ秒 */
+	public static final long DEFAULT_TIMEOUT = 10 * 1000;
+
+	/** インスタンス */
+	private static BluetoothStateTracker instance;
+
+	/** BluetoothBackend */
+	private final BluetoothBackend backend;
+	/** タイムアウトを処理するHandler */
+	private final Handler handler;
+	/** リスナー */
+	private final List<BluetoothStateListener> listeners = new CopyOnWriteArrayList<BluetoothStateListener>();
+	/** 状態を待機しているFuture．thisで同期する */
+	private final List<StateFuture> waiters = new ArrayList<StateFuture>();
+	/** 現在の状態 */
+	private volatile int state;
+	/** 実行中の有効化 */
+	private StateFuture enabling;
+	/** 実行中の無効化 */
+	private StateFuture disabling;
+
+	/** 状態の受信処理 */
+	private final BackendListener receiver = new BackendListener() {
+		@Override
+		public void onStateChanged(int previous, int state) {
+			BluetoothStateTracker.this.onStateChanged(previous, state);
+		}
+
+		@Override
+		public void onDiscoveryStarted() {
+		}
+
+		@Override
+		public void onDeviceFound(DeviceRecord device, int rssi) {
+		}
+
+		@Override
+		public void onDiscoveryFinished() {
+		}
+
+		@Override
+		public void onBondStateChanged(DeviceRecord device, int state) {
+		}
+
+		@Override
+		public void onDeviceChanged(DeviceRecord device) {
+		}
+	};
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * <p>
+	 * 使用を終えた場合は {@link #close()} を呼び出すこと．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @param handler タイムアウトを処理するHandler
+	 */
+	public BluetoothStateTracker(BluetoothBackend backend, Handler handler) {
+		if (backend == null) {
+			throw new IllegalArgumentException("backendがnullです．");
+		}
+		if (handler == null) {
+			throw new IllegalArgumentException("handlerがnullです．");
+		}
+
+		this.backend = backend;
+		this.handler = handler;
+		this.state = backend.getState();
+
+		backend.addListener(receiver);
+	}
+
+	/**
+	 * インスタンスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return BluetoothStateTracker
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static synchronized BluetoothStateTracker getInstance(Context context) throws BluetoothWrapperException {
+		if (instance == null) {
+			BluetoothAdapter adapter = BluetoothAdapterWrapper.getBluetoothAdapter(context);
+			instance = new BluetoothStateTracker(new AndroidBluetoothBackend(context, adapter),
+					new Handler(Looper.getMainLooper()));
+		}
+
+		return instance;
+	}
+
+	/**
+	 * 現在の状態を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link BluetoothAdapter#STATE_OFF} などの状態
+	 */
+	public int getState() {
+		return state;
+	}
+
+	/**
+	 * リスナーを追加する
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー
+	 */
+	public void addListener(BluetoothStateListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("listenerがnullです．");
+		}
+
+		listeners.add(listener);
+	}
+
+	/**
+	 * リスナーを削除する
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー
+	 */
+	public void removeListener(BluetoothStateListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Bluetoothを有効にし，有効になるまで待機するFutureを取得する
+	 * 
+	 * <p>
+	 * 既に有効化が実行中の場合は，そのFutureを返す．この場合のタイムアウトは最初の要求のものとなる．
+	 * 有効になった場合に true, 要求が拒否された場合や無効化に切り替えられた場合に false で完了し，
+	 * タイムアウトした場合は {@link TimeoutException} で完了する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param timeoutMillis タイムアウトまでのミリ秒
+	 * @return 完了を待機するFuture
+	 */
+	public Future<Boolean> enable(long timeoutMillis) {
+		return request(true, timeoutMillis);
+	}
+
+	/**
+	 * Bluetoothを無効にし，無効になるまで待機するFutureを取得する
+	 * 
+	 * <p>
+	 * 既に無効化が実行中の場合は，そのFutureを返す．結果は {@link #enable(long)} と同様となる．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param timeoutMillis タイムアウトまでのミリ秒
+	 * @return 完了を待機するFuture
+	 */
+	public Future<Boolean> disable(long timeoutMillis) {
+		return request(false, timeoutMillis);
+	}
+
+	/**
+	 * 指定した状態になるまで待機するFutureを取得する．状態の変更は要求しない
+	 * 
+	 * @since 0.0.1
+	 * @param target 待機する状態
+	 * @param timeoutMillis タイムアウトまでのミリ秒
+	 * @return 完了を待機するFuture
+	 */
+	public synchronized Future<Boolean> awaitState(int target, long timeoutMillis) {
+		StateFuture future = new StateFuture(target, BluetoothAdapter.ERROR, BluetoothAdapter.ERROR);
+		if (state == target) {
+			future.set(true);
+			return future;
+		}
+
+		register(future, timeoutMillis);
+		return future;
+	}
+
+	/**
+	 * 有効化または無効化を要求する
+	 * 
+	 * @since 0.0.1
+	 * @param enable 有効化の場合に true, 無効化の場合に false
+	 * @param timeoutMillis タイムアウトまでのミリ秒
+	 * @return 完了を待機するFuture
+	 */
+	private synchronized Future<Boolean> request(boolean enable, long timeoutMillis) {
+		StateFuture running = enable ? enabling : disabling;
+		if (running != null && !running.isDone()) {
+			return running;
+		}
+
+		// ブロードキャストを受信する前の状態の変化を取りこぼさないように取得し直す
+		state = backend.getState();
+
+		StateFuture future;
+		if (enable) {
+			future = new StateFuture(BluetoothAdapter.STATE_ON,
+					BluetoothAdapter.STATE_TURNING_ON, BluetoothAdapter.STATE_OFF);
+		} else {
+			future = new StateFuture(BluetoothAdapter.STATE_OFF,
+					BluetoothAdapter.STATE_TURNING_OFF, BluetoothAdapter.STATE_ON);
+		}
+		if (state == future.target) {
+			future.set(true);
+			return future;
+		}
+
+		// 逆方向の要求は後から要求された方で置き換える
+		StateFuture opposite = enable ? disabling : enabling;
+		if (opposite != null) {
+			opposite.set(false);
+		}
+
+		if (enable) {
+			enabling = future;
+		} else {
+			disabling = future;
+		}
+		register(future, timeoutMillis);
+
+		if (state != future.transition) {
+			boolean accepted = enable ? backend.enable() : backend.disable();
+			if (!accepted) {
+				future.set(false);
+			}
+		}
+
+		return future;
+	}
+
+	/**
+	 * 状態の変化の受信を終了する
+	 * 
+	 * <p>
+	 * 待機中のFutureは false で完了させる．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 */
+	public void close() {
+		backend.removeListener(receiver);
+
+		List<StateFuture> current;
+		synchronized (this) {
+			current = new ArrayList<StateFuture>(waiters);
+		}
+		for (StateFuture future : current) {
+			future.set(false);
+		}
+	}
+
+	/**
+	 * Futureを待機中に登録し，タイムアウトを設定する．thisで同期して呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @param future Future
+	 * @param timeoutMillis タイムアウトまでのミリ秒
+	 */
+	private void register(StateFuture future, long timeoutMillis) {
+		waiters.add(future);
+		handler.postDelayed(future, timeoutMillis);
+	}
+
+	/**
+	 * 状態が変化した場合の処理
+	 * 
+	 * @since 0.0.1
+	 * @param previous 変化前の状態
+	 * @param current 変化後の状態
+	 */
+	private void onStateChanged(int previous, int current) {
+		List<StateFuture> reached = new ArrayList<StateFuture>();
+		List<StateFuture> failed = new ArrayList<StateFuture>();
+		synchronized (this) {
+			state = current;
+			for (StateFuture future : waiters) {
+				if (current == future.target) {
+					reached.add(future);
+				} else if (current == future.failure && previous == future.transition) {
+					// 遷移中から元の状態に戻った場合は失敗とする
+					failed.add(future);
+				}
+			}
+		}
+
+		// 完了時に待機中から削除されるため，同期の外で完了させる
+		for (StateFuture future : reached) {
+			future.set(true);
+		}
+		for (StateFuture future : failed) {
+			future.set(false);
+		}
+		for (BluetoothStateListener listener : listeners) {
+			listener.onStateChanged(previous, current);
+		}
+	}
+
+	/**
+	 * 状態になるまで待機するFuture
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private class StateFuture extends SettableFuture<Boolean> implements Runnable {
+
+		/** 待機する状態 */
+		final int target;
+		/** 遷移中の状態 */
+		final int transition;
+		/** 遷移中から戻った場合に失敗とする状態 */
+		final int failure;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param target 待機する状態
+		 * @param transition 遷移中の状態
+		 * @param failure 遷移中から戻った場合に失敗とする状態
+		 */
+		StateFuture(int target, int transition, int failure) {
+			this.target = target;
+			this.transition = transition;
+			this.failure = failure;
+		}
+
+		/**
+		 * タイムアウトの処理
+		 */
+		@Override
+		public void run() {
+			setException(new TimeoutException("状態が変化しませんでした．"));
+		}
+
+		@Override
+		protected void done() {
+			handler.removeCallbacks(this);
+			synchronized (BluetoothStateTracker.this) {
+				waiters.remove(this);
+			}
+		}
+	}
+}
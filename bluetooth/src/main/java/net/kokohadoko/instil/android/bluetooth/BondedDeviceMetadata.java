@@ -0,0 +1,178 @@
+package net.kokohadoko.instil.android.bluetooth;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * {@link BondedDeviceStore} に保存するペアリング済みデバイスの属性
+ * 
+ * <p>
+ * 生成後は変更されない．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BondedDeviceMetadata {
+
+	/** RSSIが取得できなかったことを表す */
+	public static final int RSSI_UNKNOWN = RegisteredDevice.RSSI_UNKNOWN;
+
+	/** UUIDがないことを表す */
+	static final UUID[] NO_UUIDS = new UUID[0];
+
+	/** 数値のアドレス */
+	private final long address;
+	/** デバイス名 */
+	private final String name;
+	/** デバイス種別 */
+	private final int type;
+	/** デバイスクラス */
+	private final int deviceClass;
+	/** サービスUUID */
+	private final UUID[] uuids;
+	/** 最後に検出された時刻 */
+	private final long lastSeen;
+	/** 最後に取得したRSSI */
+	private final int rssi;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param name デバイス名, 取得できなかった場合は null
+	 * @param type デバイス種別
+	 * @param deviceClass デバイスクラス
+	 * @param uuids サービスUUID
+	 * @param lastSeen 最後に検出された時刻
+	 * @param rssi 最後に取得したRSSI
+	 */
+	BondedDeviceMetadata(long address, String name, int type, int deviceClass, UUID[] uuids, long lastSeen, int rssi) {
+		this.address = address;
+		this.name = name;
+		this.type = type;
+		this.deviceClass = deviceClass;
+		this.uuids = uuids != null ? uuids : NO_UUIDS;
+		this.lastSeen = lastSeen;
+		this.rssi = rssi;
+	}
+
+	/**
+	 * 検出結果を反映した複製を生成する
+	 * 
+	 * @since 0.0.1
+	 * @param lastSeen 検出された時刻
+	 * @param rssi RSSI
+	 * @return BondedDeviceMetadata
+	 */
+	BondedDeviceMetadata withSeen(long lastSeen, int rssi) {
+		return new BondedDeviceMetadata(address, name, type, deviceClass, uuids, lastSeen,
+				rssi != RSSI_UNKNOWN ? rssi : this.rssi);
+	}
+
+	/**
+	 * 属性が等しいかどうか．検出結果は比較しない
+	 * 
+	 * @since 0.0.1
+	 * @param other 比較対象
+	 * @return 等しい場合に true, そうでない場合に falseを返す
+	 */
+	boolean sameAttributes(BondedDeviceMetadata other) {
+		return address == other.address
+				&& (name == null ? other.name == null : name.equals(other.name))
+				&& type == other.type
+				&& deviceClass == other.deviceClass
+				&& Arrays.equals(uuids, other.uuids);
+	}
+
+	/**
+	 * 数値のアドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 数値のアドレス
+	 */
+	public long getAddressLong() {
+		return address;
+	}
+
+	/**
+	 * アドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return "00:11:22:AA:BB:CC" 形式のアドレス
+	 */
+	public String getAddress() {
+		return BluetoothAddress.format(address);
+	}
+
+	/**
+	 * デバイス名を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイス名, 取得できなかった場合は null
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * デバイス種別を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link android.bluetooth.BluetoothDevice#DEVICE_TYPE_CLASSIC} などの値
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * デバイスクラスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link android.bluetooth.BluetoothClass#getDeviceClass()} の値
+	 */
+	public int getDeviceClass() {
+		return deviceClass;
+	}
+
+	/**
+	 * サービスUUIDを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return サービスUUIDの複製
+	 */
+	public UUID[] getUuids() {
+		return uuids.clone();
+	}
+
+	/**
+	 * 最後に検出された時刻を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link System#currentTimeMillis()} の時刻, 検出されていない場合は 0
+	 */
+	public long getLastSeen() {
+		return lastSeen;
+	}
+
+	/**
+	 * 最後に取得したRSSIを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return RSSI, 取得できていない場合は {@link #RSSI_UNKNOWN}
+	 */
+	public int getRssi() {
+		return rssi;
+	}
+
+	/**
+	 * UUIDの配列を参照する
+	 * 
+	 * @since 0.0.1
+	 * @return 内部の配列
+	 */
+	UUID[] uuids() {
+		return uuids;
+	}
+}
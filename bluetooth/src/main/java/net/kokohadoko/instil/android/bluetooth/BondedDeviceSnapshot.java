@@ -0,0 +1,349 @@
+package net.kokohadoko.instil.android.bluetooth;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import net.kokohadoko.instil.android.bluetooth.backend.AndroidBluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.BluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.DeviceRecord;
+import net.kokohadoko.instil.android.bluetooth.exception.BluetoothWrapperException;
+import net.kokohadoko.instil.android.bluetooth.util.LongIntHashMap;
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+import android.os.Build;
+import android.os.ParcelUuid;
+
+/**
+ * ペアリング済みデバイスの属性を一度に取得したスナップショット
+ * 
+ * <p>
+ * getBondedDevices() を1回だけ呼び出し，名前・アドレス・種別・クラス・UUID・状態を
+ * 同じ添字で参照できる配列に格納する．生成後は変更されない．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BondedDeviceSnapshot {
+
+	/** 空のスナップショット */
+	public static final BondedDeviceSnapshot EMPTY = new BondedDeviceSnapshot(0, 0);
+
+	/** BluetoothDevice */
+	private final BluetoothDevice[] devices;
+	/** デバイス名 */
+	private final String[] names;
+	/** アドレス */
+	private final String[] addresses;
+	/** 数値のアドレス */
+	private final long[] addressValues;
+	/** デバイス種別 */
+	private final Integer[] types;
+	/** デバイスのクラス */
+	private final BluetoothClass[] classes;
+	/** UUID */
+	private final ParcelUuid[][] uuids;
+	/** 状態 */
+	private final Integer[] bondStates;
+	/** 数値のアドレスから添字への索引 */
+	private final LongIntHashMap index;
+	/** 生成した時刻 */
+	private final long createdAt;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param size デバイス数
+	 * @param createdAt 生成した時刻
+	 */
+	private BondedDeviceSnapshot(int size, long createdAt) {
+		this.devices = new BluetoothDevice[size];
+		this.names = new String[size];
+		this.addresses = new String[size];
+		this.addressValues = new long[size];
+		this.types = new Integer[size];
+		this.classes = new BluetoothClass[size];
+		this.uuids = new ParcelUuid[size][];
+		this.bondStates = new Integer[size];
+		this.index = new LongIntHashMap(size);
+		this.createdAt = createdAt;
+	}
+
+	/**
+	 * ペアリング済みデバイスのスナップショットを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param adapter BluetoothAdapter
+	 * @return スナップショット
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	public static BondedDeviceSnapshot create(BluetoothAdapter adapter) throws BluetoothWrapperException {
+		Set<BluetoothDevice> bonded = BluetoothAdapterWrapper.getBoundedDevices(adapter);
+		if (bonded == null || bonded.isEmpty()) {
+			return EMPTY;
+		}
+
+		boolean hasType = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+		BondedDeviceSnapshot snapshot = new BondedDeviceSnapshot(bonded.size(), System.currentTimeMillis());
+		int i = 0;
+		for (BluetoothDevice device : bonded) {
+			String address = device.getAddress();
+			snapshot.devices[i] = device;
+			snapshot.names[i] = device.getName();
+			snapshot.addresses[i] = address;
+			snapshot.addressValues[i] = BluetoothAddress.parse(address);
+			snapshot.types[i] = hasType ? device.getType() : BluetoothDevice.DEVICE_TYPE_UNKNOWN;
+			snapshot.classes[i] = device.getBluetoothClass();
+			snapshot.uuids[i] = device.getUuids();
+			snapshot.bondStates[i] = device.getBondState();
+			// 同じアドレスが複数ある場合は先頭の添字を使用する
+			long value = snapshot.addressValues[i];
+			if (value != BluetoothAddress.INVALID && !snapshot.index.containsKey(value)) {
+				snapshot.index.put(value, i);
+			}
+			i++;
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * ペアリング済みデバイスのスナップショットを生成する
+	 * 
+	 * <p>
+	 * {@link AndroidBluetoothBackend} 以外の場合は，BluetoothDevice・デバイスのクラス・UUIDなど
+	 * Androidのクラスで表す属性は null となる．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @return スナップショット
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static BondedDeviceSnapshot create(BluetoothBackend backend) throws BluetoothWrapperException {
+		if (backend instanceof AndroidBluetoothBackend) {
+			// BluetoothDeviceなどの属性も保持するため，BluetoothAdapterから生成する
+			return create(((AndroidBluetoothBackend) backend).getAdapter());
+		}
+
+		List<DeviceRecord> bonded = BluetoothAdapterWrapper.getBoundedDevices(backend);
+		if (bonded.isEmpty()) {
+			return EMPTY;
+		}
+
+		BondedDeviceSnapshot snapshot = new BondedDeviceSnapshot(bonded.size(), System.currentTimeMillis());
+		for (int i = 0; i < bonded.size(); i++) {
+			DeviceRecord record = bonded.get(i);
+			long value = record.getAddressLong();
+			snapshot.names[i] = record.getName();
+			snapshot.addresses[i] = record.getAddress();
+			snapshot.addressValues[i] = value;
+			snapshot.types[i] = record.getType();
+			snapshot.bondStates[i] = record.getBondState();
+			if (!snapshot.index.containsKey(value)) {
+				snapshot.index.put(value, i);
+			}
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * デバイス数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイス数
+	 */
+	public int size() {
+		return devices.length;
+	}
+
+	/**
+	 * 生成した時刻を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link System#currentTimeMillis()} の時刻
+	 */
+	public long getCreatedAt() {
+		return createdAt;
+	}
+
+	/**
+	 * アドレスに一致するデバイスの添字を取得する
+	 * 
+	 * <p>
+	 * 生成時に作成した索引を使用するため，デバイス数によらず定数時間で検索できる．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return 添字, 存在しない場合は -1を返す
+	 */
+	public int indexOf(long address) {
+		return index.get(address);
+	}
+
+	/**
+	 * BluetoothDeviceを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 添字
+	 * @return BluetoothDevice
+	 */
+	public BluetoothDevice getDevice(int index) {
+		return devices[index];
+	}
+
+	/**
+	 * デバイス名を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 添字
+	 * @return デバイス名
+	 */
+	public String getName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * アドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 添字
+	 * @return アドレス
+	 */
+	public String getAddress(int index) {
+		return addresses[index];
+	}
+
+	/**
+	 * 数値のアドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 添字
+	 * @return 数値のアドレス
+	 */
+	public long getAddressLong(int index) {
+		return addressValues[index];
+	}
+
+	/**
+	 * デバイス種別を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 添字
+	 * @return デバイス種別
+	 */
+	public int getType(int index) {
+		return types[index];
+	}
+
+	/**
+	 * デバイスのクラスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 添字
+	 * @return デバイスのクラス
+	 */
+	public BluetoothClass getBluetoothClass(int index) {
+		return classes[index];
+	}
+
+	/**
+	 * UUIDを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 添字
+	 * @return UUID
+	 */
+	public ParcelUuid[] getUuids(int index) {
+		return uuids[index];
+	}
+
+	/**
+	 * 状態を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 添字
+	 * @return 状態
+	 */
+	public int getBondState(int index) {
+		return bondStates[index];
+	}
+
+	/**
+	 * BluetoothDevice一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 変更不可のBluetoothDevice一覧
+	 */
+	public List<BluetoothDevice> getDevices() {
+		return Collections.unmodifiableList(Arrays.asList(devices));
+	}
+
+	/**
+	 * デバイス名一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 変更不可のデバイス名一覧
+	 */
+	public List<String> getNames() {
+		return Collections.unmodifiableList(Arrays.asList(names));
+	}
+
+	/**
+	 * アドレス一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 変更不可のアドレス一覧
+	 */
+	public List<String> getAddresses() {
+		return Collections.unmodifiableList(Arrays.asList(addresses));
+	}
+
+	/**
+	 * デバイス種別一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 変更不可のデバイス種別一覧
+	 */
+	public List<Integer> getTypes() {
+		return Collections.unmodifiableList(Arrays.asList(types));
+	}
+
+	/**
+	 * デバイスのクラス一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 変更不可のデバイスのクラス一覧
+	 */
+	public List<BluetoothClass> getBluetoothClasses() {
+		return Collections.unmodifiableList(Arrays.asList(classes));
+	}
+
+	/**
+	 * UUID一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 変更不可のUUID一覧
+	 */
+	public List<ParcelUuid[]> getUuids() {
+		return Collections.unmodifiableList(Arrays.asList(uuids));
+	}
+
+	/**
+	 * 状態一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 変更不可の状態一覧
+	 */
+	public List<Integer> getBondStates() {
+		return Collections.unmodifiableList(Arrays.asList(bondStates));
+	}
+}
@@ -0,0 +1,156 @@
+package net.kokohadoko.instil.android.bluetooth;
+
+import net.kokohadoko.instil.android.bluetooth.backend.AndroidBluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.BackendListener;
+import net.kokohadoko.instil.android.bluetooth.backend.BluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.DeviceRecord;
+import net.kokohadoko.instil.android.bluetooth.exception.BluetoothWrapperException;
+import android.bluetooth.BluetoothAdapter;
+import android.content.Context;
+
+/**
+ * ペアリング済みデバイスのスナップショットを保持するキャッシュ
+ * 
+ * <p>
+ * ペアリング状態・デバイス名・UUID・Bluetoothの状態が変化したことを {@link BluetoothBackend} から
+ * 通知されるまで，同じスナップショットを返す．通常は {@link #getInstance(Context)} でプロセスにつき
+ * 1つのインスタンスを使用する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BondedDeviceSnapshotCache {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = BondedDeviceSnapshotCache.class.getSimpleName();
+
+	/** インスタンス */
+	private static BondedDeviceSnapshotCache instance;
+
+	/** BluetoothBackend */
+	private final BluetoothBackend backend;
+	/** スナップショット */
+	private volatile BondedDeviceSnapshot snapshot;
+	/** 無効化された回数 */
+	private volatile int generation;
+
+	/** 無効化の受信処理 */
+	private final BackendListener receiver = new BackendListener() {
+		@Override
+		public void onStateChanged(int previous, int state) {
+			invalidate();
+		}
+
+		@Override
+		public void onDiscoveryStarted() {
+		}
+
+		@Override
+		public void onDeviceFound(DeviceRecord device, int rssi) {
+		}
+
+		@Override
+		public void onDiscoveryFinished() {
+		}
+
+		@Override
+		public void onBondStateChanged(DeviceRecord device, int state) {
+			invalidate();
+		}
+
+		@Override
+		public void onDeviceChanged(DeviceRecord device) {
+			invalidate();
+		}
+	};
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * <p>
+	 * 使用を終えた場合は {@link #close()} を呼び出すこと．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 */
+	public BondedDeviceSnapshotCache(BluetoothBackend backend) {
+		if (backend == null) {
+			throw new IllegalArgumentException("backendがnullです．");
+		}
+
+		this.backend = backend;
+		backend.addListener(receiver);
+	}
+
+	/**
+	 * インスタンスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return BondedDeviceSnapshotCache
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static synchronized BondedDeviceSnapshotCache getInstance(Context context) throws BluetoothWrapperException {
+		if (instance == null) {
+			BluetoothAdapter adapter = BluetoothAdapterWrapper.getBluetoothAdapter(context);
+			instance = new BondedDeviceSnapshotCache(new AndroidBluetoothBackend(context, adapter));
+		}
+
+		return instance;
+	}
+
+	/**
+	 * スナップショットを取得する
+	 * 
+	 * <p>
+	 * キャッシュが無効な場合はスナップショットを生成する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @return スナップショット
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public BondedDeviceSnapshot get() throws BluetoothWrapperException {
+		BondedDeviceSnapshot current = snapshot;
+		if (current != null) {
+			return current;
+		}
+
+		int expected = generation;
+		current = BondedDeviceSnapshot.create(backend);
+		synchronized (this) {
+			// 生成中に無効化された場合は保持しない
+			if (expected == generation) {
+				snapshot = current;
+			}
+		}
+
+		return current;
+	}
+
+	/**
+	 * キャッシュを無効にする
+	 * 
+	 * @since 0.0.1
+	 */
+	public synchronized void invalidate() {
+		generation++;
+		snapshot = null;
+	}
+
+	/**
+	 * 変化の通知の受信を終了し，キャッシュを破棄する
+	 * 
+	 * <p>
+	 * 終了後は変化を検知できないため，このインスタンスを使用しないこと．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 */
+	public void close() {
+		backend.removeListener(receiver);
+		invalidate();
+	}
+}
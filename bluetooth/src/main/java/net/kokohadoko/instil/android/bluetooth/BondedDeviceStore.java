@@ -0,0 +1,548 @@
+package net.kokohadoko.instil.android.bluetooth;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.kokohadoko.instil.android.bluetooth.exception.BluetoothWrapperException;
+import net.kokohadoko.instil.android.bluetooth.util.LongObjectHashMap;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelUuid;
+import android.util.Log;
+
+/**
+ * ペアリング済みデバイスの属性をファイルに保存するストア
+ * 
+ * <p>
+ * 名前・クラス・UUID・最後に検出された時刻とRSSIを独自のバイナリ形式で保存し，
+ * 起動時は最初の参照でファイルを読み込むだけで一覧を返す．その後バックグラウンドで
+ * getBondedDevices() と照合し，差分があればファイルを更新してリスナーに通知する．
+ * UUIDはBluetoothスタックが保持している値を参照するだけで，SDPの問い合わせは行わない．
+ * プロセスにつき1つのインスタンスを使用する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BondedDeviceStore {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = BondedDeviceStore.class.getSimpleName();
+
+	/** ファイル名 */
+	public static final String FILE_NAME = "bonded_devices.bin";
+	/** 検出結果を保存するまでの遅延のミリ秒 */
+	public static final long SAVE_DELAY = 5 * 1000;
+
+	/** ファイルの識別子 */
+	private static final int MAGIC = 0x42445331;
+	/** ファイルのバージョン */
+	private static final int VERSION = 1;
+	/** 1台あたりの最大のUUID数 */
+	private static final int MAX_UUIDS = 255;
+
+	/** インスタンス */
+	private static BondedDeviceStore instance;
+
+	/** 保存先のファイル */
+	private final File file;
+	/** BluetoothAdapter */
+	private final BluetoothAdapter adapter;
+	/** 照合と保存を行うスレッド */
+	private final ScheduledExecutorService executor;
+	/** リスナーを呼び出すHandler */
+	private final Handler handler = new Handler(Looper.getMainLooper());
+	/** リスナー */
+	private final List<BondedDeviceStoreListener> listeners = new CopyOnWriteArrayList<BondedDeviceStoreListener>();
+
+	/** デバイス一覧．変更時は新しいリストに置き換える */
+	private volatile List<BondedDeviceMetadata> devices;
+	/** アドレスで検索するための索引．devicesと同時に置き換える */
+	private volatile LongObjectHashMap<BondedDeviceMetadata> index;
+	/** 照合を行ったかどうか */
+	private boolean reconciled;
+	/** 保存を予約しているかどうか */
+	private boolean saveScheduled;
+
+	/** 照合と検出結果の受信処理 */
+	private final BroadcastReceiver receiver = new BroadcastReceiver() {
+		@Override
+		public void onReceive(Context context, Intent intent) {
+			String action = intent.getAction();
+			if (BluetoothDevice.ACTION_FOUND.equals(action)) {
+				BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+				if (device != null) {
+					updateSeen(BluetoothAddress.parse(device.getAddress()),
+							intent.getShortExtra(BluetoothDevice.EXTRA_RSSI, Short.MIN_VALUE));
+				}
+			} else if (BluetoothAdapter.ACTION_STATE_CHANGED.equals(action)) {
+				if (intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, BluetoothAdapter.ERROR) == BluetoothAdapter.STATE_ON) {
+					reconcile();
+				}
+			} else {
+				reconcile();
+			}
+		}
+	};
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param adapter BluetoothAdapter
+	 */
+	private BondedDeviceStore(Context context, BluetoothAdapter adapter) {
+		this.file = new File(context.getFilesDir(), FILE_NAME);
+		this.adapter = adapter;
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, LOG_TAG);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		IntentFilter filter = new IntentFilter();
+		filter.addAction(BluetoothDevice.ACTION_FOUND);
+		filter.addAction(BluetoothDevice.ACTION_BOND_STATE_CHANGED);
+		filter.addAction(BluetoothDevice.ACTION_NAME_CHANGED);
+		filter.addAction(BluetoothDevice.ACTION_UUID);
+		filter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
+		context.registerReceiver(receiver, filter);
+	}
+
+	/**
+	 * インスタンスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return BondedDeviceStore
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static synchronized BondedDeviceStore getInstance(Context context) throws BluetoothWrapperException {
+		if (instance == null) {
+			BluetoothAdapter adapter = BluetoothAdapterWrapper.getBluetoothAdapter(context);
+			instance = new BondedDeviceStore(context.getApplicationContext(), adapter);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * リスナーを追加する
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー
+	 */
+	public void addListener(BondedDeviceStoreListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("listenerがnullです．");
+		}
+
+		listeners.add(listener);
+	}
+
+	/**
+	 * リスナーを削除する
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー
+	 */
+	public void removeListener(BondedDeviceStoreListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * デバイス一覧を取得する
+	 * 
+	 * <p>
+	 * 最初の呼び出しでファイルを読み込み，バックグラウンドでの照合を開始する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @return 変更できないデバイス一覧
+	 */
+	public List<BondedDeviceMetadata> getDevices() {
+		ensureLoaded();
+		return devices;
+	}
+
+	/**
+	 * デバイスを検索する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return デバイス, 存在しない場合は nullを返す
+	 */
+	public BondedDeviceMetadata get(long address) {
+		ensureLoaded();
+		return index.get(address);
+	}
+
+	/**
+	 * デバイス名一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイス名一覧
+	 */
+	public List<String> getNames() {
+		List<BondedDeviceMetadata> current = getDevices();
+		List<String> names = new ArrayList<String>(current.size());
+		for (BondedDeviceMetadata device : current) {
+			names.add(device.getName());
+		}
+
+		return names;
+	}
+
+	/**
+	 * デバイスクラス一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイスクラス一覧
+	 */
+	public List<Integer> getDeviceClasses() {
+		List<BondedDeviceMetadata> current = getDevices();
+		List<Integer> classes = new ArrayList<Integer>(current.size());
+		for (BondedDeviceMetadata device : current) {
+			classes.add(device.getDeviceClass());
+		}
+
+		return classes;
+	}
+
+	/**
+	 * サービスUUID一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return サービスUUID一覧
+	 */
+	public List<UUID[]> getUuids() {
+		List<BondedDeviceMetadata> current = getDevices();
+		List<UUID[]> uuids = new ArrayList<UUID[]>(current.size());
+		for (BondedDeviceMetadata device : current) {
+			uuids.add(device.getUuids());
+		}
+
+		return uuids;
+	}
+
+	/**
+	 * 検出結果を反映する．ペアリング済みでないデバイスは無視する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param rssi RSSI
+	 */
+	public void updateSeen(long address, int rssi) {
+		ensureLoaded();
+		synchronized (this) {
+			BondedDeviceMetadata current = index.get(address);
+			if (current == null) {
+				return;
+			}
+
+			List<BondedDeviceMetadata> updated = new ArrayList<BondedDeviceMetadata>(devices);
+			updated.set(updated.indexOf(current), current.withSeen(System.currentTimeMillis(), rssi));
+			replace(updated);
+			scheduleSave();
+		}
+	}
+
+	/**
+	 * getBondedDevices() と照合する
+	 * 
+	 * <p>
+	 * Bluetoothが無効な場合はペアリング済みのデバイスを取得できないため，照合を行わない．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @return 内容が変化した場合に true, そうでない場合に falseを返すFuture
+	 */
+	public Future<Boolean> reconcile() {
+		return executor.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return reconcileNow();
+			}
+		});
+	}
+
+	/**
+	 * ファイルを読み込んでいなければ読み込む
+	 * 
+	 * @since 0.0.1
+	 */
+	private void ensureLoaded() {
+		if (devices != null) {
+			return;
+		}
+
+		synchronized (this) {
+			if (devices != null) {
+				return;
+			}
+
+			List<BondedDeviceMetadata> loaded;
+			try {
+				loaded = read(file);
+			} catch (FileNotFoundException e) {
+				loaded = new ArrayList<BondedDeviceMetadata>(0);
+			} catch (IOException e) {
+				Log.w(LOG_TAG, "ファイルの読み込みに失敗しました．", e);
+				loaded = new ArrayList<BondedDeviceMetadata>(0);
+			}
+			replace(loaded);
+
+			if (!reconciled) {
+				reconciled = true;
+				reconcile();
+			}
+		}
+	}
+
+	/**
+	 * getBondedDevices() と照合する．executorのスレッドから呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @return 内容が変化した場合に true, そうでない場合に falseを返す
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	private boolean reconcileNow() throws BluetoothWrapperException {
+		ensureLoaded();
+		if (!adapter.isEnabled()) {
+			return false;
+		}
+
+		BondedDeviceSnapshot snapshot = BondedDeviceSnapshot.create(adapter);
+		final List<BondedDeviceMetadata> result;
+		synchronized (this) {
+			LongObjectHashMap<BondedDeviceMetadata> previous = index;
+			List<BondedDeviceMetadata> updated = new ArrayList<BondedDeviceMetadata>(snapshot.size());
+			boolean changed = snapshot.size() != previous.size();
+			for (int i = 0; i < snapshot.size(); i++) {
+				long address = snapshot.getAddressLong(i);
+				if (address == BluetoothAddress.INVALID) {
+					continue;
+				}
+
+				BondedDeviceMetadata old = previous.get(address);
+				BluetoothClass bluetoothClass = snapshot.getBluetoothClass(i);
+				BondedDeviceMetadata fresh = new BondedDeviceMetadata(address, snapshot.getName(i), snapshot.getType(i),
+						bluetoothClass != null ? bluetoothClass.getDeviceClass() : 0,
+						toUuids(snapshot.getUuids(i)),
+						old != null ? old.getLastSeen() : 0,
+						old != null ? old.getRssi() : BondedDeviceMetadata.RSSI_UNKNOWN);
+				if (old == null || !old.sameAttributes(fresh)) {
+					changed = true;
+				}
+				updated.add(fresh);
+			}
+
+			if (!changed) {
+				return false;
+			}
+			replace(updated);
+			result = devices;
+		}
+
+		save();
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				for (BondedDeviceStoreListener listener : listeners) {
+					listener.onBondedDevicesChanged(result);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * デバイス一覧を置き換える．thisで同期して呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @param updated 新しいデバイス一覧
+	 */
+	private void replace(List<BondedDeviceMetadata> updated) {
+		LongObjectHashMap<BondedDeviceMetadata> map = new LongObjectHashMap<BondedDeviceMetadata>(updated.size());
+		for (BondedDeviceMetadata device : updated) {
+			map.put(device.getAddressLong(), device);
+		}
+
+		index = map;
+		devices = Collections.unmodifiableList(updated);
+	}
+
+	/**
+	 * 保存を予約する．thisで同期して呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 */
+	private void scheduleSave() {
+		if (saveScheduled) {
+			return;
+		}
+
+		saveScheduled = true;
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				save();
+			}
+		}, SAVE_DELAY, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * ファイルに保存する．executorのスレッドから呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 */
+	private void save() {
+		List<BondedDeviceMetadata> current;
+		synchronized (this) {
+			saveScheduled = false;
+			current = devices;
+		}
+
+		try {
+			write(file, current);
+		} catch (IOException e) {
+			Log.w(LOG_TAG, "ファイルの保存に失敗しました．", e);
+		}
+	}
+
+	/**
+	 * ParcelUuidの配列をUUIDの配列に変換する
+	 * 
+	 * @since 0.0.1
+	 * @param parcelUuids ParcelUuidの配列
+	 * @return UUIDの配列
+	 */
+	private static UUID[] toUuids(ParcelUuid[] parcelUuids) {
+		if (parcelUuids == null || parcelUuids.length == 0) {
+			return BondedDeviceMetadata.NO_UUIDS;
+		}
+
+		int count = Math.min(parcelUuids.length, MAX_UUIDS);
+		UUID[] uuids = new UUID[count];
+		for (int i = 0; i < count; i++) {
+			uuids[i] = parcelUuids[i].getUuid();
+		}
+
+		return uuids;
+	}
+
+	/**
+	 * ファイルを読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param file ファイル
+	 * @return デバイス一覧
+	 * @throws IOException 読み込みに失敗した場合または形式が不正な場合に例外を生成する
+	 */
+	static List<BondedDeviceMetadata> read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 4096));
+		try {
+			if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+				throw new IOException("ファイルの形式が不正です．");
+			}
+
+			int count = in.readUnsignedShort();
+			List<BondedDeviceMetadata> result = new ArrayList<BondedDeviceMetadata>(count);
+			for (int i = 0; i < count; i++) {
+				long address = in.readLong();
+				String name = in.readBoolean() ? in.readUTF() : null;
+				int type = in.readUnsignedByte();
+				int deviceClass = in.readInt();
+				int uuidCount = in.readUnsignedByte();
+				UUID[] uuids = uuidCount > 0 ? new UUID[uuidCount] : BondedDeviceMetadata.NO_UUIDS;
+				for (int j = 0; j < uuidCount; j++) {
+					uuids[j] = new UUID(in.readLong(), in.readLong());
+				}
+				long lastSeen = in.readLong();
+				int rssi = in.readShort();
+				result.add(new BondedDeviceMetadata(address, name, type, deviceClass, uuids, lastSeen, rssi));
+			}
+
+			return result;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * ファイルに書き込む．一時ファイルに書き込んでから置き換える
+	 * 
+	 * @since 0.0.1
+	 * @param file ファイル
+	 * @param devices デバイス一覧
+	 * @throws IOException 書き込みに失敗した場合に例外を生成する
+	 */
+	static void write(File file, List<BondedDeviceMetadata> devices) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		FileOutputStream fos = new FileOutputStream(temp);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 4096));
+		try {
+			int count = Math.min(devices.size(), 0xFFFF);
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeShort(count);
+			for (int i = 0; i < count; i++) {
+				BondedDeviceMetadata device = devices.get(i);
+				out.writeLong(device.getAddressLong());
+				String name = device.getName();
+				out.writeBoolean(name != null);
+				if (name != null) {
+					out.writeUTF(name);
+				}
+				out.writeByte(device.getType());
+				out.writeInt(device.getDeviceClass());
+				UUID[] uuids = device.uuids();
+				out.writeByte(uuids.length);
+				for (UUID uuid : uuids) {
+					out.writeLong(uuid.getMostSignificantBits());
+					out.writeLong(uuid.getLeastSignificantBits());
+				}
+				out.writeLong(device.getLastSeen());
+				out.writeShort(device.getRssi());
+			}
+			out.flush();
+			fos.getFD().sync();
+		} finally {
+			out.close();
+		}
+
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			throw new IOException("ファイルを置き換えられません．" + file);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package net.kokohadoko.instil.android.bluetooth;
+
+import java.util.List;
+
+/**
+ * {@link BondedDeviceStore} の内容の変化を受け取るリスナー
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface BondedDeviceStoreListener {
+
+	/**
+	 * 照合によりペアリング済みのデバイスまたはその属性が変化した場合にメインスレッドから呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param devices 変化後のデバイス一覧
+	 */
+	void onBondedDevicesChanged(List<BondedDeviceMetadata> devices);
+}
@@ -0,0 +1,150 @@
+package net.kokohadoko.instil.android.bluetooth;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * {@link BluetoothDeviceRegistry} に登録されたデバイス
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class RegisteredDevice {
+
+	/** RSSIが取得できなかったことを表す */
+	public static final int RSSI_UNKNOWN = Short.MIN_VALUE;
+
+	/** 数値のアドレス */
+	private final long address;
+	/** BluetoothDevice */
+	private volatile BluetoothDevice device;
+	/** デバイス名 */
+	private volatile String name;
+	/** ペアリング済みかどうか */
+	private volatile boolean bonded;
+	/** 最後に取得したRSSI */
+	private volatile int rssi = RSSI_UNKNOWN;
+	/** 最後に検出された時刻 */
+	private volatile long lastSeen;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param device BluetoothDevice, 取得できなかった場合は null
+	 */
+	RegisteredDevice(long address, BluetoothDevice device) {
+		this.address = address;
+		this.device = device;
+	}
+
+	/**
+	 * BluetoothDeviceを更新する
+	 * 
+	 * @since 0.0.1
+	 * @param device BluetoothDevice
+	 * @param name デバイス名, 取得できなかった場合は null
+	 */
+	void setDevice(BluetoothDevice device, String name) {
+		if (device != null) {
+			this.device = device;
+		}
+		if (name != null) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * ペアリング済みかどうかを更新する
+	 * 
+	 * @since 0.0.1
+	 * @param bonded ペアリング済みの場合に true
+	 */
+	void setBonded(boolean bonded) {
+		this.bonded = bonded;
+	}
+
+	/**
+	 * 検出結果を更新する
+	 * 
+	 * @since 0.0.1
+	 * @param rssi RSSI
+	 * @param now 検出された時刻
+	 */
+	void seen(int rssi, long now) {
+		if (rssi != RSSI_UNKNOWN) {
+			this.rssi = rssi;
+		}
+		this.lastSeen = now;
+	}
+
+	/**
+	 * 数値のアドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 数値のアドレス
+	 */
+	public long getAddressLong() {
+		return address;
+	}
+
+	/**
+	 * アドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return "00:11:22:AA:BB:CC" 形式のアドレス
+	 */
+	public String getAddress() {
+		return BluetoothAddress.format(address);
+	}
+
+	/**
+	 * BluetoothDeviceを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return BluetoothDevice, {@link net.kokohadoko.instil.android.bluetooth.backend.AndroidBluetoothBackend} 以外で登録された場合は null
+	 */
+	public BluetoothDevice getDevice() {
+		return device;
+	}
+
+	/**
+	 * デバイス名を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイス名, 取得できていない場合は null
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * ペアリング済みかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return ペアリング済みの場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isBonded() {
+		return bonded;
+	}
+
+	/**
+	 * 最後に取得したRSSIを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return RSSI, 取得できていない場合は {@link #RSSI_UNKNOWN}
+	 */
+	public int getRssi() {
+		return rssi;
+	}
+
+	/**
+	 * 最後に検出された時刻を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link net.kokohadoko.instil.android.bluetooth.util.Clock#elapsedRealtime()} の時刻, 検出されていない場合は 0
+	 */
+	public long getLastSeen() {
+		return lastSeen;
+	}
+}
@@ -0,0 +1,310 @@
+package net.kokohadoko.instil.android.bluetooth.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.kokohadoko.instil.android.bluetooth.BluetoothAddress;
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.ParcelUuid;
+
+/**
+ * BluetoothAdapterを使用する {@link BluetoothBackend}
+ * 
+ * <p>
+ * リスナーを追加している間だけブロードキャストを受信し，メインスレッドから通知する．
+ * 通知するDeviceRecordはBluetoothDeviceを保持しており，{@link #getDevice(DeviceRecord)} で取得できる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class AndroidBluetoothBackend implements BluetoothBackend {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = AndroidBluetoothBackend.class.getSimpleName();
+
+	/** コンテキスト */
+	private final Context context;
+	/** BluetoothAdapter */
+	private final BluetoothAdapter adapter;
+	/** リスナー */
+	private final List<BackendListener> listeners = new CopyOnWriteArrayList<BackendListener>();
+	/** 受信処理を登録しているかどうか．thisで同期して更新する */
+	private boolean registered;
+
+	/** イベントの受信処理 */
+	private final BroadcastReceiver receiver = new BroadcastReceiver() {
+		@Override
+		public void onReceive(Context context, Intent intent) {
+			String action = intent.getAction();
+			if (BluetoothAdapter.ACTION_STATE_CHANGED.equals(action)) {
+				int previous = intent.getIntExtra(BluetoothAdapter.EXTRA_PREVIOUS_STATE, BluetoothAdapter.ERROR);
+				int state = intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, BluetoothAdapter.ERROR);
+				for (BackendListener listener : listeners) {
+					listener.onStateChanged(previous, state);
+				}
+			} else if (BluetoothAdapter.ACTION_DISCOVERY_STARTED.equals(action)) {
+				for (BackendListener listener : listeners) {
+					listener.onDiscoveryStarted();
+				}
+			} else if (BluetoothAdapter.ACTION_DISCOVERY_FINISHED.equals(action)) {
+				for (BackendListener listener : listeners) {
+					listener.onDiscoveryFinished();
+				}
+			} else if (BluetoothDevice.ACTION_FOUND.equals(action)) {
+				// 検索中はBluetoothDeviceの名前とクラスが更新されていないことがあるため，インテントの値を優先する
+				DeviceRecord record = toRecord((BluetoothDevice) intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE),
+						intent.getStringExtra(BluetoothDevice.EXTRA_NAME),
+						(BluetoothClass) intent.getParcelableExtra(BluetoothDevice.EXTRA_CLASS));
+				if (record == null) {
+					return;
+				}
+				int rssi = intent.getShortExtra(BluetoothDevice.EXTRA_RSSI, Short.MIN_VALUE);
+				for (BackendListener listener : listeners) {
+					listener.onDeviceFound(record, rssi);
+				}
+			} else if (BluetoothDevice.ACTION_BOND_STATE_CHANGED.equals(action)) {
+				DeviceRecord record = toRecord((BluetoothDevice) intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE));
+				if (record == null) {
+					return;
+				}
+				int bondState = intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.BOND_NONE);
+				for (BackendListener listener : listeners) {
+					listener.onBondStateChanged(record, bondState);
+				}
+			} else if (BluetoothDevice.ACTION_NAME_CHANGED.equals(action) || BluetoothDevice.ACTION_UUID.equals(action)) {
+				DeviceRecord record = toRecord((BluetoothDevice) intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE));
+				if (record == null) {
+					return;
+				}
+				for (BackendListener listener : listeners) {
+					listener.onDeviceChanged(record);
+				}
+			}
+		}
+	};
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param adapter BluetoothAdapter
+	 */
+	public AndroidBluetoothBackend(Context context, BluetoothAdapter adapter) {
+		if (context == null) {
+			throw new IllegalArgumentException("contextがnullです．");
+		}
+		if (adapter == null) {
+			throw new IllegalArgumentException("adapterがnullです．");
+		}
+
+		this.context = context.getApplicationContext();
+		this.adapter = adapter;
+	}
+
+	/**
+	 * BluetoothAdapterを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return BluetoothAdapter
+	 */
+	public BluetoothAdapter getAdapter() {
+		return adapter;
+	}
+
+	@Override
+	public int getState() {
+		return adapter.getState();
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return adapter.isEnabled();
+	}
+
+	@Override
+	public boolean enable() {
+		return adapter.enable();
+	}
+
+	@Override
+	public boolean disable() {
+		return adapter.disable();
+	}
+
+	@Override
+	public boolean isDiscovering() {
+		return adapter.isDiscovering();
+	}
+
+	@Override
+	public boolean startDiscovery() {
+		return adapter.startDiscovery();
+	}
+
+	@Override
+	public boolean cancelDiscovery() {
+		return adapter.cancelDiscovery();
+	}
+
+	@Override
+	public List<DeviceRecord> getBondedDevices() {
+		Set<BluetoothDevice> bonded = adapter.getBondedDevices();
+		if (bonded == null) {
+			return new ArrayList<DeviceRecord>(0);
+		}
+
+		List<DeviceRecord> records = new ArrayList<DeviceRecord>(bonded.size());
+		for (BluetoothDevice device : bonded) {
+			DeviceRecord record = toRecord(device);
+			if (record != null) {
+				records.add(record);
+			}
+		}
+
+		return records;
+	}
+
+	@Override
+	public synchronized void addListener(BackendListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("listenerがnullです．");
+		}
+
+		listeners.add(listener);
+		if (!registered) {
+			IntentFilter filter = new IntentFilter();
+			filter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
+			filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_STARTED);
+			filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
+			filter.addAction(BluetoothDevice.ACTION_FOUND);
+			filter.addAction(BluetoothDevice.ACTION_BOND_STATE_CHANGED);
+			filter.addAction(BluetoothDevice.ACTION_NAME_CHANGED);
+			filter.addAction(BluetoothDevice.ACTION_UUID);
+			context.registerReceiver(receiver, filter);
+			registered = true;
+		}
+	}
+
+	@Override
+	public synchronized void removeListener(BackendListener listener) {
+		listeners.remove(listener);
+		if (listeners.isEmpty() && registered) {
+			context.unregisterReceiver(receiver);
+			registered = false;
+		}
+	}
+
+	/**
+	 * このクラスが生成したDeviceRecordからBluetoothDeviceを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param record DeviceRecord
+	 * @return BluetoothDevice, 他のBluetoothBackendが生成したDeviceRecordの場合は nullを返す
+	 */
+	public static BluetoothDevice getDevice(DeviceRecord record) {
+		return record instanceof AndroidDeviceRecord ? ((AndroidDeviceRecord) record).getDevice() : null;
+	}
+
+	/**
+	 * このクラスが生成したDeviceRecordからデバイスのクラスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param record DeviceRecord
+	 * @return デバイスのクラス, 取得できなかった場合や他のBluetoothBackendが生成したDeviceRecordの場合は nullを返す
+	 */
+	public static BluetoothClass getBluetoothClass(DeviceRecord record) {
+		return record instanceof AndroidDeviceRecord ? ((AndroidDeviceRecord) record).getBluetoothClass() : null;
+	}
+
+	/**
+	 * BluetoothDeviceをDeviceRecordに変換する
+	 * 
+	 * @since 0.0.1
+	 * @param device BluetoothDevice
+	 * @return DeviceRecord, アドレスが不正な場合は nullを返す
+	 */
+	public static DeviceRecord toRecord(BluetoothDevice device) {
+		return toRecord(device, null, null);
+	}
+
+	/**
+	 * BluetoothDeviceをDeviceRecordに変換する
+	 * 
+	 * @since 0.0.1
+	 * @param device BluetoothDevice
+	 * @param name デバイス名, BluetoothDeviceから取得する場合は null
+	 * @param bluetoothClass デバイスのクラス, BluetoothDeviceから取得する場合は null
+	 * @return DeviceRecord, アドレスが不正な場合は nullを返す
+	 */
+	private static DeviceRecord toRecord(BluetoothDevice device, String name, BluetoothClass bluetoothClass) {
+		if (device == null) {
+			return null;
+		}
+
+		long address = BluetoothAddress.parse(device.getAddress());
+		if (address == BluetoothAddress.INVALID) {
+			return null;
+		}
+
+		if (name == null) {
+			name = device.getName();
+		}
+		if (bluetoothClass == null) {
+			bluetoothClass = device.getBluetoothClass();
+		}
+		// デバイス種別はAPI 18, サービスUUIDはAPI 15以降でのみ取得できる
+		int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+				? getType(device) : BluetoothDevice.DEVICE_TYPE_UNKNOWN;
+		UUID[] uuids = Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1
+				? getUuids(device) : null;
+
+		return new AndroidDeviceRecord(address, name, type, device.getBondState(), uuids,
+				device, bluetoothClass);
+	}
+
+	/**
+	 * デバイス種別を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param device BluetoothDevice
+	 * @return {@link BluetoothDevice#DEVICE_TYPE_CLASSIC} などの値
+	 */
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	private static int getType(BluetoothDevice device) {
+		return device.getType();
+	}
+
+	/**
+	 * キャッシュされたサービスUUIDを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param device BluetoothDevice
+	 * @return サービスUUID, 取得できなかった場合は null
+	 */
+	@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
+	private static UUID[] getUuids(BluetoothDevice device) {
+		ParcelUuid[] parcelUuids = device.getUuids();
+		if (parcelUuids == null) {
+			return null;
+		}
+
+		UUID[] uuids = new UUID[parcelUuids.length];
+		for (int i = 0; i < parcelUuids.length; i++) {
+			uuids[i] = parcelUuids[i].getUuid();
+		}
+		return uuids;
+	}
+}
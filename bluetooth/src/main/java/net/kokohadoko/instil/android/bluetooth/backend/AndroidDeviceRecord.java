@@ -0,0 +1,65 @@
+package net.kokohadoko.instil.android.bluetooth.backend;
+
+import java.util.UUID;
+
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * {@link AndroidBluetoothBackend} が生成する，BluetoothDeviceを保持したDeviceRecord
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+class AndroidDeviceRecord extends DeviceRecord {
+
+	/** BluetoothDevice */
+	private final BluetoothDevice device;
+	/** デバイスのクラス */
+	private final BluetoothClass bluetoothClass;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param name デバイス名, 取得できなかった場合は null
+	 * @param type デバイス種別
+	 * @param bondState ペアリング状態
+	 * @param uuids サービスUUID, 取得できなかった場合は null
+	 * @param device BluetoothDevice
+	 * @param bluetoothClass デバイスのクラス, 取得できなかった場合は null
+	 */
+	AndroidDeviceRecord(long address, String name, int type, int bondState, UUID[] uuids,
+			BluetoothDevice device, BluetoothClass bluetoothClass) {
+		super(address, name, type, bluetoothClass != null ? bluetoothClass.getDeviceClass() : 0, bondState, uuids);
+		this.device = device;
+		this.bluetoothClass = bluetoothClass;
+	}
+
+	/**
+	 * BluetoothDeviceを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return BluetoothDevice
+	 */
+	BluetoothDevice getDevice() {
+		return device;
+	}
+
+	/**
+	 * デバイスのクラスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイスのクラス, 取得できなかった場合は null
+	 */
+	BluetoothClass getBluetoothClass() {
+		return bluetoothClass;
+	}
+
+	@Override
+	public DeviceRecord withBondState(int bondState) {
+		return new AndroidDeviceRecord(getAddressLong(), getName(), getType(), bondState, getUuids(),
+				device, bluetoothClass);
+	}
+}
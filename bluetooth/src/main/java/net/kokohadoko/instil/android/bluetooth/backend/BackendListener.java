@@ -0,0 +1,59 @@
+package net.kokohadoko.instil.android.bluetooth.backend;
+
+/**
+ * {@link BluetoothBackend} のイベントを受け取るリスナー
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface BackendListener {
+
+	/**
+	 * Bluetoothの状態が変化した場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param previous 変化前の状態
+	 * @param state 変化後の状態
+	 */
+	void onStateChanged(int previous, int state);
+
+	/**
+	 * 周辺デバイスの検索が開始された場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 */
+	void onDiscoveryStarted();
+
+	/**
+	 * デバイスが検出された場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param device 検出されたデバイス
+	 * @param rssi RSSI
+	 */
+	void onDeviceFound(DeviceRecord device, int rssi);
+
+	/**
+	 * 周辺デバイスの検索が終了した場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 */
+	void onDiscoveryFinished();
+
+	/**
+	 * ペアリング状態が変化した場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param device デバイス
+	 * @param state {@link android.bluetooth.BluetoothDevice#BOND_BONDED} などの値
+	 */
+	void onBondStateChanged(DeviceRecord device, int state);
+
+	/**
+	 * デバイス名またはサービスUUIDが変化した場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param device 変化後のデバイス
+	 */
+	void onDeviceChanged(DeviceRecord device);
+}
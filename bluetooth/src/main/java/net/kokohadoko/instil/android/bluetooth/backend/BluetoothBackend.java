@@ -0,0 +1,102 @@
+package net.kokohadoko.instil.android.bluetooth.backend;
+
+import java.util.List;
+
+/**
+ * BluetoothAdapterの操作を抽象化したインターフェース
+ * 
+ * <p>
+ * 実機では {@link AndroidBluetoothBackend}，JVM上での検証や負荷試験では
+ * {@link SimulatedBluetoothBackend} を使用する．状態の値は
+ * {@link android.bluetooth.BluetoothAdapter#STATE_ON} などと同じ値を使用する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface BluetoothBackend {
+
+	/**
+	 * Bluetoothの状態を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link android.bluetooth.BluetoothAdapter#STATE_ON} などの値
+	 */
+	int getState();
+
+	/**
+	 * Bluetoothが有効かどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 有効な場合に true, そうでない場合に falseを返す
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Bluetoothを有効にする
+	 * 
+	 * @since 0.0.1
+	 * @return 要求を受け付けた場合に true, そうでない場合に falseを返す
+	 */
+	boolean enable();
+
+	/**
+	 * Bluetoothを無効にする
+	 * 
+	 * @since 0.0.1
+	 * @return 要求を受け付けた場合に true, そうでない場合に falseを返す
+	 */
+	boolean disable();
+
+	/**
+	 * 周辺デバイスの検索中かどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 検索中の場合に true, そうでない場合に falseを返す
+	 */
+	boolean isDiscovering();
+
+	/**
+	 * 周辺デバイスの検索を開始する
+	 * 
+	 * @since 0.0.1
+	 * @return 開始した場合に true, そうでない場合に falseを返す
+	 */
+	boolean startDiscovery();
+
+	/**
+	 * 周辺デバイスの検索を中止する
+	 * 
+	 * @since 0.0.1
+	 * @return 中止した場合に true, そうでない場合に falseを返す
+	 */
+	boolean cancelDiscovery();
+
+	/**
+	 * ペアリング済みのデバイス一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return ペアリング済みのデバイス一覧
+	 */
+	List<DeviceRecord> getBondedDevices();
+
+	/**
+	 * リスナーを追加する
+	 * 
+	 * <p>
+	 * 複数のリスナーを追加でき，イベントは追加した順に通知される．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー
+	 */
+	void addListener(BackendListener listener);
+
+	/**
+	 * リスナーを削除する
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー
+	 */
+	void removeListener(BackendListener listener);
+}
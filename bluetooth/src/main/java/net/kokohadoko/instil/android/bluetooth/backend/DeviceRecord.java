@@ -0,0 +1,140 @@
+package net.kokohadoko.instil.android.bluetooth.backend;
+
+import java.util.UUID;
+
+import net.kokohadoko.instil.android.bluetooth.BluetoothAddress;
+
+/**
+ * {@link BluetoothBackend} が返すデバイスの属性
+ * 
+ * <p>
+ * Androidのクラスに依存しない値のみを保持する不変のクラス．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class DeviceRecord {
+
+	/** UUIDがないことを表す */
+	private static final UUID[] NO_UUIDS = new UUID[0];
+
+	/** 数値のアドレス */
+	private final long address;
+	/** デバイス名 */
+	private final String name;
+	/** デバイス種別 */
+	private final int type;
+	/** デバイスクラス */
+	private final int deviceClass;
+	/** ペアリング状態 */
+	private final int bondState;
+	/** サービスUUID */
+	private final UUID[] uuids;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param name デバイス名, 取得できなかった場合は null
+	 * @param type {@link android.bluetooth.BluetoothDevice#DEVICE_TYPE_CLASSIC} などの値
+	 * @param deviceClass {@link android.bluetooth.BluetoothClass#getDeviceClass()} の値
+	 * @param bondState {@link android.bluetooth.BluetoothDevice#BOND_BONDED} などの値
+	 * @param uuids サービスUUID, 取得できなかった場合は null
+	 */
+	public DeviceRecord(long address, String name, int type, int deviceClass, int bondState, UUID[] uuids) {
+		this.address = address;
+		this.name = name;
+		this.type = type;
+		this.deviceClass = deviceClass;
+		this.bondState = bondState;
+		this.uuids = uuids != null ? uuids.clone() : NO_UUIDS;
+	}
+
+	/**
+	 * ペアリング状態を変更した複製を生成する
+	 * 
+	 * @since 0.0.1
+	 * @param bondState ペアリング状態
+	 * @return DeviceRecord
+	 */
+	public DeviceRecord withBondState(int bondState) {
+		return new DeviceRecord(address, name, type, deviceClass, bondState, uuids);
+	}
+
+	/**
+	 * 数値のアドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 数値のアドレス
+	 */
+	public long getAddressLong() {
+		return address;
+	}
+
+	/**
+	 * アドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return "00:11:22:AA:BB:CC" 形式のアドレス
+	 */
+	public String getAddress() {
+		return BluetoothAddress.format(address);
+	}
+
+	/**
+	 * デバイス名を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイス名, 取得できなかった場合は null
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * デバイス種別を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイス種別
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * デバイスクラスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイスクラス
+	 */
+	public int getDeviceClass() {
+		return deviceClass;
+	}
+
+	/**
+	 * ペアリング状態を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return ペアリング状態
+	 */
+	public int getBondState() {
+		return bondState;
+	}
+
+	/**
+	 * サービスUUIDを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return サービスUUIDの複製
+	 */
+	public UUID[] getUuids() {
+		return uuids.clone();
+	}
+
+	@Override
+	public String toString() {
+		return getAddress() + " " + name;
+	}
+}
@@ -0,0 +1,129 @@
+package net.kokohadoko.instil.android.bluetooth.backend;
+
+import net.kokohadoko.instil.android.bluetooth.util.HandlerScheduler;
+import net.kokohadoko.instil.android.bluetooth.util.Scheduler;
+import android.os.Handler;
+
+/**
+ * {@link BluetoothBackend} のイベントを指定したHandlerまたは {@link Scheduler} のスレッドで通知するリスナー
+ * 
+ * <p>
+ * {@link AndroidBluetoothBackend} はメインスレッド，{@link SimulatedBluetoothBackend} は内部のスレッドから
+ * 通知するため，特定のスレッドで処理を行うクラスはこのクラスで包んで追加する．
+ * Handlerまたは {@link Scheduler} のスレッドから通知された場合は，遅延させずにそのまま呼び出す．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class HandlerBackendListener implements BackendListener {
+
+	/** 通知先のリスナー */
+	private final BackendListener listener;
+	/** 通知を行うスレッド */
+	private final Scheduler scheduler;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param listener 通知先のリスナー
+	 * @param handler 通知を行うHandler
+	 */
+	public HandlerBackendListener(BackendListener listener, Handler handler) {
+		this(listener, new HandlerScheduler(handler));
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param listener 通知先のリスナー
+	 * @param scheduler 通知を行うスレッド
+	 */
+	public HandlerBackendListener(BackendListener listener, Scheduler scheduler) {
+		if (listener == null) {
+			throw new IllegalArgumentException("listenerがnullです．");
+		}
+		if (scheduler == null) {
+			throw new IllegalArgumentException("schedulerがnullです．");
+		}
+
+		this.listener = listener;
+		this.scheduler = scheduler;
+	}
+
+	@Override
+	public void onStateChanged(final int previous, final int state) {
+		dispatch(new Runnable() {
+			@Override
+			public void run() {
+				listener.onStateChanged(previous, state);
+			}
+		});
+	}
+
+	@Override
+	public void onDiscoveryStarted() {
+		dispatch(new Runnable() {
+			@Override
+			public void run() {
+				listener.onDiscoveryStarted();
+			}
+		});
+	}
+
+	@Override
+	public void onDeviceFound(final DeviceRecord device, final int rssi) {
+		dispatch(new Runnable() {
+			@Override
+			public void run() {
+				listener.onDeviceFound(device, rssi);
+			}
+		});
+	}
+
+	@Override
+	public void onDiscoveryFinished() {
+		dispatch(new Runnable() {
+			@Override
+			public void run() {
+				listener.onDiscoveryFinished();
+			}
+		});
+	}
+
+	@Override
+	public void onBondStateChanged(final DeviceRecord device, final int state) {
+		dispatch(new Runnable() {
+			@Override
+			public void run() {
+				listener.onBondStateChanged(device, state);
+			}
+		});
+	}
+
+	@Override
+	public void onDeviceChanged(final DeviceRecord device) {
+		dispatch(new Runnable() {
+			@Override
+			public void run() {
+				listener.onDeviceChanged(device);
+			}
+		});
+	}
+
+	/**
+	 * 通知を行うスレッドで処理を実行する
+	 * 
+	 * @since 0.0.1
+	 * @param task 処理
+	 */
+	private void dispatch(Runnable task) {
+		if (scheduler.isCurrentThread()) {
+			task.run();
+		} else {
+			scheduler.post(task);
+		}
+	}
+}
@@ -0,0 +1,662 @@
+package net.kokohadoko.instil.android.bluetooth.backend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.kokohadoko.instil.android.bluetooth.util.LongObjectHashMap;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * 無線を使用せずにBluetoothAdapterの動作を模擬する {@link BluetoothBackend}
+ * 
+ * <p>
+ * 任意の数のデバイスを生成し，状態の遷移・検索結果・ペアリング状態の変化を
+ * 設定した時間で通知する．イベントは内部の1つのスレッドから順に通知するため，
+ * 実機と同様にリスナーの処理が遅い場合は後続のイベントが遅延する．
+ * Androidのクラスを読み込まないため，JVM上での検証や負荷試験に使用できる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class SimulatedBluetoothBackend implements BluetoothBackend {
+
+	/** デフォルトの有効化に要するミリ秒 */
+	public static final long DEFAULT_ENABLE_DELAY = 500;
+	/** デフォルトの無効化に要するミリ秒 */
+	public static final long DEFAULT_DISABLE_DELAY = 300;
+	/** デフォルトの検索を行うミリ秒 */
+	public static final long DEFAULT_DISCOVERY_DURATION = 12 * 1000;
+	/** デフォルトのデバイスを検出する間隔のミリ秒 */
+	public static final long DEFAULT_FOUND_INTERVAL = 10;
+
+	/** シリアルポートプロファイルのUUID */
+	private static final UUID SERIAL_PORT_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+	/** 生成するデバイスクラス．ヘッドセット・スマートフォン・ラップトップ・キーボード・ウェアラブル */
+	private static final int[] DEVICE_CLASSES = { 0x0404, 0x020C, 0x010C, 0x0540, 0x0704 };
+	/** 生成するデバイス種別 */
+	private static final int[] DEVICE_TYPES = {
+			BluetoothDevice.DEVICE_TYPE_CLASSIC, BluetoothDevice.DEVICE_TYPE_LE, BluetoothDevice.DEVICE_TYPE_DUAL };
+
+	/** イベントを通知するスレッド */
+	private final ScheduledExecutorService executor;
+	/** 乱数 */
+	private final Random random;
+	/** 範囲内のデバイス */
+	private final LongObjectHashMap<DeviceRecord> devices = new LongObjectHashMap<DeviceRecord>(256);
+
+	/** リスナー */
+	private final List<BackendListener> listeners = new CopyOnWriteArrayList<BackendListener>();
+	/** Bluetoothの状態．thisで同期して更新する */
+	private int state = BluetoothAdapter.STATE_OFF;
+	/** 検索中かどうか．thisで同期して更新する */
+	private boolean discovering;
+	/** 状態の遷移を識別する番号．遷移が無効になった場合に進める */
+	private int transition;
+	/** 検索を識別する番号．検索が終了した場合に進める */
+	private int discovery;
+
+	/** 有効化に要するミリ秒 */
+	private volatile long enableDelay = DEFAULT_ENABLE_DELAY;
+	/** 無効化に要するミリ秒 */
+	private volatile long disableDelay = DEFAULT_DISABLE_DELAY;
+	/** 検索を行うミリ秒 */
+	private volatile long discoveryDuration = DEFAULT_DISCOVERY_DURATION;
+	/** デバイスを検出する間隔のミリ秒 */
+	private volatile long foundInterval = DEFAULT_FOUND_INTERVAL;
+	/** 状態の遷移に失敗する確率 */
+	private volatile float failureRate;
+	/** RSSIの最小値 */
+	private volatile int minRssi = -100;
+	/** RSSIの最大値 */
+	private volatile int maxRssi = -40;
+
+	/** 状態が変化した回数 */
+	private final AtomicLong stateChangeCount = new AtomicLong();
+	/** 検索を開始した回数 */
+	private final AtomicLong discoveryCount = new AtomicLong();
+	/** デバイスを検出した回数 */
+	private final AtomicLong foundCount = new AtomicLong();
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param seed 乱数の種．同じ値を指定すると同じデバイスと検索結果を生成する
+	 */
+	public SimulatedBluetoothBackend(long seed) {
+		this.random = new Random(seed);
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, SimulatedBluetoothBackend.class.getSimpleName());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * 有効化と無効化に要するミリ秒を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param enableDelay 有効化に要するミリ秒
+	 * @param disableDelay 無効化に要するミリ秒
+	 */
+	public void setStateDelay(long enableDelay, long disableDelay) {
+		if (enableDelay < 0 || disableDelay < 0) {
+			throw new IllegalArgumentException("enableDelayまたはdisableDelayが不正な値です．");
+		}
+
+		this.enableDelay = enableDelay;
+		this.disableDelay = disableDelay;
+	}
+
+	/**
+	 * 検索の時間を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param duration 検索を行うミリ秒
+	 * @param foundInterval デバイスを検出する間隔のミリ秒, 0の場合は開始時に全てのデバイスを検出する
+	 */
+	public void setDiscoveryTiming(long duration, long foundInterval) {
+		if (duration < 0 || foundInterval < 0) {
+			throw new IllegalArgumentException("durationまたはfoundIntervalが不正な値です．");
+		}
+
+		this.discoveryDuration = duration;
+		this.foundInterval = foundInterval;
+	}
+
+	/**
+	 * 状態の遷移に失敗する確率を設定する
+	 * 
+	 * <p>
+	 * 失敗した場合は実機と同様に遷移中の状態から元の状態に戻る．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param failureRate 0から1の確率
+	 */
+	public void setFailureRate(float failureRate) {
+		if (failureRate < 0 || failureRate > 1) {
+			throw new IllegalArgumentException("failureRateが不正な値です．");
+		}
+
+		this.failureRate = failureRate;
+	}
+
+	/**
+	 * 検出時のRSSIの範囲を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param min 最小値
+	 * @param max 最大値
+	 */
+	public void setRssiRange(int min, int max) {
+		if (min > max) {
+			throw new IllegalArgumentException("minまたはmaxが不正な値です．");
+		}
+
+		this.minRssi = min;
+		this.maxRssi = max;
+	}
+
+	/**
+	 * 遷移を行わずに状態を変更する
+	 * 
+	 * @since 0.0.1
+	 * @param enabled 有効にする場合に true
+	 */
+	public void setEnabledImmediately(boolean enabled) {
+		int previous;
+		int next = enabled ? BluetoothAdapter.STATE_ON : BluetoothAdapter.STATE_OFF;
+		synchronized (this) {
+			previous = state;
+			if (previous == next) {
+				return;
+			}
+			transition++;
+			if (!enabled) {
+				stopDiscoveryLocked();
+			}
+			state = next;
+		}
+
+		postStateChanged(previous, next);
+	}
+
+	/**
+	 * デバイスを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param count 生成するデバイス数
+	 * @param bondedRatio ペアリング済みにするデバイスの割合
+	 * @return 生成したデバイスの一覧
+	 */
+	public List<DeviceRecord> generateDevices(int count, float bondedRatio) {
+		List<DeviceRecord> generated = new ArrayList<DeviceRecord>(count);
+		synchronized (devices) {
+			for (int i = 0; i < count; i++) {
+				long address;
+				do {
+					address = random.nextLong() & 0xFFFFFFFFFFFFL;
+				} while (devices.containsKey(address));
+
+				int type = DEVICE_TYPES[random.nextInt(DEVICE_TYPES.length)];
+				int deviceClass = DEVICE_CLASSES[random.nextInt(DEVICE_CLASSES.length)];
+				int bondState = random.nextFloat() < bondedRatio ? BluetoothDevice.BOND_BONDED : BluetoothDevice.BOND_NONE;
+				UUID[] uuids = type != BluetoothDevice.DEVICE_TYPE_LE ? new UUID[] { SERIAL_PORT_UUID } : null;
+				DeviceRecord record = new DeviceRecord(address,
+						String.format(Locale.US, "SIM-%05d", devices.size()), type, deviceClass, bondState, uuids);
+				devices.put(address, record);
+				generated.add(record);
+			}
+		}
+
+		return generated;
+	}
+
+	/**
+	 * デバイスを追加する
+	 * 
+	 * <p>
+	 * 同じアドレスのデバイスが存在する場合は置き換え，名前やUUIDの変化としてリスナーに通知する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param record デバイス
+	 */
+	public void addDevice(final DeviceRecord record) {
+		if (record == null) {
+			throw new IllegalArgumentException("recordがnullです．");
+		}
+
+		boolean replaced;
+		synchronized (devices) {
+			replaced = devices.put(record.getAddressLong(), record) != null;
+		}
+		if (!replaced) {
+			return;
+		}
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (BackendListener listener : listeners) {
+					listener.onDeviceChanged(record);
+				}
+			}
+		});
+	}
+
+	/**
+	 * デバイスを削除する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return 削除した場合に true, 存在しない場合に falseを返す
+	 */
+	public boolean removeDevice(long address) {
+		synchronized (devices) {
+			return devices.remove(address) != null;
+		}
+	}
+
+	/**
+	 * 範囲内のデバイス数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイス数
+	 */
+	public int getDeviceCount() {
+		synchronized (devices) {
+			return devices.size();
+		}
+	}
+
+	/**
+	 * ペアリング状態を変更し，リスナーに通知する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param bondState {@link BluetoothDevice#BOND_BONDED} などの値
+	 * @return 変更した場合に true, デバイスが存在しない場合に falseを返す
+	 */
+	public boolean setBondState(long address, final int bondState) {
+		final DeviceRecord record;
+		synchronized (devices) {
+			DeviceRecord current = devices.get(address);
+			if (current == null) {
+				return false;
+			}
+			record = current.withBondState(bondState);
+			devices.put(address, record);
+		}
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (BackendListener listener : listeners) {
+					listener.onBondStateChanged(record, bondState);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * 状態が変化した回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 回数
+	 */
+	public long getStateChangeCount() {
+		return stateChangeCount.get();
+	}
+
+	/**
+	 * 検索を開始した回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 回数
+	 */
+	public long getDiscoveryCount() {
+		return discoveryCount.get();
+	}
+
+	/**
+	 * デバイスを検出した回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 回数
+	 */
+	public long getFoundCount() {
+		return foundCount.get();
+	}
+
+	/**
+	 * イベントの通知を終了する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Override
+	public synchronized int getState() {
+		return state;
+	}
+
+	@Override
+	public synchronized boolean isEnabled() {
+		return state == BluetoothAdapter.STATE_ON;
+	}
+
+	@Override
+	public boolean enable() {
+		synchronized (this) {
+			if (state == BluetoothAdapter.STATE_ON || state == BluetoothAdapter.STATE_TURNING_ON) {
+				return true;
+			}
+			if (state != BluetoothAdapter.STATE_OFF) {
+				return false;
+			}
+			beginTransitionLocked(BluetoothAdapter.STATE_OFF, BluetoothAdapter.STATE_TURNING_ON,
+					BluetoothAdapter.STATE_ON, enableDelay);
+		}
+
+		return true;
+	}
+
+	@Override
+	public boolean disable() {
+		synchronized (this) {
+			if (state == BluetoothAdapter.STATE_OFF || state == BluetoothAdapter.STATE_TURNING_OFF) {
+				return true;
+			}
+			if (state != BluetoothAdapter.STATE_ON) {
+				return false;
+			}
+			stopDiscoveryLocked();
+			beginTransitionLocked(BluetoothAdapter.STATE_ON, BluetoothAdapter.STATE_TURNING_OFF,
+					BluetoothAdapter.STATE_OFF, disableDelay);
+		}
+
+		return true;
+	}
+
+	@Override
+	public synchronized boolean isDiscovering() {
+		return discovering;
+	}
+
+	@Override
+	public boolean startDiscovery() {
+		List<DeviceRecord> targets;
+		synchronized (devices) {
+			targets = new ArrayList<DeviceRecord>(devices.size());
+			devices.collectValues(targets);
+		}
+		Collections.shuffle(targets, random);
+
+		final int id;
+		synchronized (this) {
+			if (state != BluetoothAdapter.STATE_ON) {
+				return false;
+			}
+			// 実機と同様に検索中に呼び出された場合は検索をやり直す
+			stopDiscoveryLocked();
+			discovering = true;
+			id = ++discovery;
+		}
+		discoveryCount.incrementAndGet();
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (!isCurrentDiscovery(id)) {
+					return;
+				}
+				for (BackendListener listener : listeners) {
+					listener.onDiscoveryStarted();
+				}
+			}
+		});
+		new Emitter(id, targets).schedule(0);
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				finishDiscovery(id);
+			}
+		}, discoveryDuration, TimeUnit.MILLISECONDS);
+
+		return true;
+	}
+
+	@Override
+	public boolean cancelDiscovery() {
+		synchronized (this) {
+			if (state != BluetoothAdapter.STATE_ON) {
+				return false;
+			}
+			stopDiscoveryLocked();
+		}
+
+		return true;
+	}
+
+	@Override
+	public List<DeviceRecord> getBondedDevices() {
+		List<DeviceRecord> all;
+		synchronized (devices) {
+			all = new ArrayList<DeviceRecord>(devices.size());
+			devices.collectValues(all);
+		}
+
+		List<DeviceRecord> bonded = new ArrayList<DeviceRecord>();
+		for (DeviceRecord record : all) {
+			if (record.getBondState() == BluetoothDevice.BOND_BONDED) {
+				bonded.add(record);
+			}
+		}
+
+		return bonded;
+	}
+
+	@Override
+	public void addListener(BackendListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("listenerがnullです．");
+		}
+
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(BackendListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * 状態の遷移を開始する．thisで同期して呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @param from 遷移前の状態
+	 * @param via 遷移中の状態
+	 * @param to 遷移後の状態
+	 * @param delay 遷移に要するミリ秒
+	 */
+	private void beginTransitionLocked(final int from, final int via, final int to, long delay) {
+		state = via;
+		final int id = ++transition;
+		postStateChanged(from, via);
+
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				int next = random.nextFloat() < failureRate ? from : to;
+				synchronized (SimulatedBluetoothBackend.this) {
+					if (id != transition) {
+						return;
+					}
+					state = next;
+				}
+				notifyStateChanged(via, next);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 検索中の場合に検索を終了する．thisで同期して呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 */
+	private void stopDiscoveryLocked() {
+		if (!discovering) {
+			return;
+		}
+
+		discovering = false;
+		discovery++;
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (BackendListener listener : listeners) {
+					listener.onDiscoveryFinished();
+				}
+			}
+		});
+	}
+
+	/**
+	 * 検索時間の経過により検索を終了する
+	 * 
+	 * @since 0.0.1
+	 * @param id 検索を識別する番号
+	 */
+	private void finishDiscovery(int id) {
+		synchronized (this) {
+			if (id != discovery || !discovering) {
+				return;
+			}
+			discovering = false;
+			discovery++;
+		}
+
+		for (BackendListener listener : listeners) {
+			listener.onDiscoveryFinished();
+		}
+	}
+
+	/**
+	 * 検索が継続しているかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param id 検索を識別する番号
+	 * @return 継続している場合に true, そうでない場合に falseを返す
+	 */
+	private synchronized boolean isCurrentDiscovery(int id) {
+		return discovering && id == discovery;
+	}
+
+	/**
+	 * 状態の変化を通知する処理を登録する
+	 * 
+	 * @since 0.0.1
+	 * @param previous 変化前の状態
+	 * @param state 変化後の状態
+	 */
+	private void postStateChanged(final int previous, final int state) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				notifyStateChanged(previous, state);
+			}
+		});
+	}
+
+	/**
+	 * 状態の変化を通知する
+	 * 
+	 * @since 0.0.1
+	 * @param previous 変化前の状態
+	 * @param state 変化後の状態
+	 */
+	private void notifyStateChanged(int previous, int state) {
+		stateChangeCount.incrementAndGet();
+		for (BackendListener listener : listeners) {
+			listener.onStateChanged(previous, state);
+		}
+	}
+
+	/**
+	 * 検索結果を順に通知する処理
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private class Emitter implements Runnable {
+
+		/** 検索を識別する番号 */
+		private final int id;
+		/** 検出するデバイス */
+		private final List<DeviceRecord> targets;
+		/** 次に検出するデバイスの位置 */
+		private int index;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param id 検索を識別する番号
+		 * @param targets 検出するデバイス
+		 */
+		Emitter(int id, List<DeviceRecord> targets) {
+			this.id = id;
+			this.targets = targets;
+		}
+
+		/**
+		 * 実行を登録する
+		 * 
+		 * @since 0.0.1
+		 * @param delay 遅延するミリ秒
+		 */
+		void schedule(long delay) {
+			executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void run() {
+			long interval = foundInterval;
+			int range = maxRssi - minRssi + 1;
+			do {
+				if (index >= targets.size() || !isCurrentDiscovery(id)) {
+					return;
+				}
+
+				DeviceRecord record = targets.get(index++);
+				int rssi = minRssi + random.nextInt(range);
+				foundCount.incrementAndGet();
+				for (BackendListener listener : listeners) {
+					listener.onDeviceFound(record, rssi);
+				}
+			} while (interval == 0);
+
+			schedule(interval);
+		}
+	}
+}
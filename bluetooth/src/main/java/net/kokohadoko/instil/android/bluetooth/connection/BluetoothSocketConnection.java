@@ -0,0 +1,63 @@
+package net.kokohadoko.instil.android.bluetooth.connection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import android.bluetooth.BluetoothSocket;
+
+/**
+ * BluetoothSocketによる接続
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BluetoothSocketConnection implements StreamConnection {
+
+	/** BluetoothSocket */
+	private final BluetoothSocket socket;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param socket 接続済みのBluetoothSocket
+	 */
+	public BluetoothSocketConnection(BluetoothSocket socket) {
+		if (socket == null) {
+			throw new IllegalArgumentException("socketがnullです．");
+		}
+
+		this.socket = socket;
+	}
+
+	/**
+	 * BluetoothSocketを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return BluetoothSocket
+	 */
+	public BluetoothSocket getSocket() {
+		return socket;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return socket.getInputStream();
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		return socket.getOutputStream();
+	}
+
+	@Override
+	public boolean isConnected() {
+		return socket.isConnected();
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+}
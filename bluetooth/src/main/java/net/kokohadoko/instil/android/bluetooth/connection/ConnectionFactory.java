@@ -0,0 +1,24 @@
+package net.kokohadoko.instil.android.bluetooth.connection;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * デバイスへの接続を確立するファクトリ
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface ConnectionFactory {
+
+	/**
+	 * デバイスに接続する．接続が確立するまでブロックする
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param uuid サービスUUID
+	 * @return 確立した接続
+	 * @throws IOException 接続に失敗した場合に例外を生成する
+	 */
+	StreamConnection connect(long address, UUID uuid) throws IOException;
+}
@@ -0,0 +1,47 @@
+package net.kokohadoko.instil.android.bluetooth.connection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link RfcommConnectionPool} の接続状態と受信データを受け取るリスナー
+ * 
+ * <p>
+ * 各メソッドはプールのスレッドから呼び出されるため，時間のかかる処理は行わないこと．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface ConnectionListener {
+
+	/**
+	 * 接続が確立した場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param connection 接続
+	 */
+	void onConnected(PooledConnection connection);
+
+	/**
+	 * データを受信した場合に呼び出される
+	 * 
+	 * <p>
+	 * bufferは接続ごとに再利用されるため，呼び出し後に参照を保持しないこと．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param connection 接続
+	 * @param buffer 受信したデータ．positionからlimitまでが有効
+	 */
+	void onData(PooledConnection connection, ByteBuffer buffer);
+
+	/**
+	 * 確立していた接続が切断された場合に呼び出される．プールは自動的に再接続を試みる
+	 * 
+	 * @since 0.0.1
+	 * @param connection 接続
+	 * @param cause 切断の原因
+	 */
+	void onDisconnected(PooledConnection connection, IOException cause);
+}
@@ -0,0 +1,200 @@
+package net.kokohadoko.instil.android.bluetooth.connection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import net.kokohadoko.instil.android.bluetooth.BluetoothAddress;
+
+/**
+ * {@link RfcommConnectionPool} が管理する接続
+ * 
+ * <p>
+ * 切断された場合もインスタンスは変わらず，プールが再接続した時点で再び書き込めるようになる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class PooledConnection {
+
+	/** 接続中を表す */
+	public static final int STATE_CONNECTING = 1;
+	/** 接続済みを表す */
+	public static final int STATE_CONNECTED = 2;
+	/** 再接続の待機中を表す */
+	public static final int STATE_WAITING = 3;
+	/** 閉じられたことを表す */
+	public static final int STATE_CLOSED = 4;
+
+	/** プール */
+	private final RfcommConnectionPool pool;
+	/** 数値のアドレス */
+	private final long address;
+	/** サービスUUID */
+	private final UUID uuid;
+	/** 読み込みを担当するワーカーの番号 */
+	final int worker;
+	/** 受信用のバッファ */
+	final ByteBuffer readBuffer;
+	/** 書き込みの同期用オブジェクト */
+	private final Object writeLock = new Object();
+
+	/** 状態 */
+	volatile int state = STATE_CONNECTING;
+	/** 接続 */
+	volatile StreamConnection connection;
+	/** 入力ストリーム */
+	volatile InputStream input;
+	/** 出力ストリーム */
+	volatile OutputStream output;
+	/** 参照数．プールで同期して更新する */
+	int refCount;
+	/** 最後に解放された時刻．プールで同期して更新する */
+	long lastReleased;
+	/** 連続して失敗した回数 */
+	volatile int failures;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param pool プール
+	 * @param address 数値のアドレス
+	 * @param uuid サービスUUID
+	 * @param worker 読み込みを担当するワーカーの番号
+	 * @param bufferSize 受信用のバッファのサイズ
+	 */
+	PooledConnection(RfcommConnectionPool pool, long address, UUID uuid, int worker, int bufferSize) {
+		this.pool = pool;
+		this.address = address;
+		this.uuid = uuid;
+		this.worker = worker;
+		this.readBuffer = ByteBuffer.allocate(bufferSize);
+	}
+
+	/**
+	 * データを書き込む
+	 * 
+	 * @since 0.0.1
+	 * @param buffer データ
+	 * @param offset 開始位置
+	 * @param length 長さ
+	 * @throws IOException 接続されていない場合または書き込みに失敗した場合に例外を生成する
+	 */
+	public void write(byte[] buffer, int offset, int length) throws IOException {
+		synchronized (writeLock) {
+			OutputStream out = output;
+			if (state != STATE_CONNECTED || out == null) {
+				throw new IOException("接続されていません．");
+			}
+
+			try {
+				out.write(buffer, offset, length);
+				out.flush();
+			} catch (IOException e) {
+				pool.onFailure(this, e);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * データを書き込む
+	 * 
+	 * @since 0.0.1
+	 * @param buffer positionからlimitまでのデータを書き込む
+	 * @throws IOException 接続されていない場合または書き込みに失敗した場合に例外を生成する
+	 */
+	public void write(ByteBuffer buffer) throws IOException {
+		if (buffer.hasArray()) {
+			write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			buffer.position(buffer.limit());
+		} else {
+			byte[] copy = new byte[buffer.remaining()];
+			buffer.get(copy);
+			write(copy, 0, copy.length);
+		}
+	}
+
+	/**
+	 * プールに返却する．参照がなくなった接続はアイドル状態となり，再利用または一定時間後に切断される
+	 * 
+	 * @since 0.0.1
+	 */
+	public void release() {
+		pool.release(this);
+	}
+
+	/**
+	 * 接続済みかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 接続済みの場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isConnected() {
+		return state == STATE_CONNECTED;
+	}
+
+	/**
+	 * 状態を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link #STATE_CONNECTING} などの値
+	 */
+	public int getState() {
+		return state;
+	}
+
+	/**
+	 * 数値のアドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 数値のアドレス
+	 */
+	public long getAddressLong() {
+		return address;
+	}
+
+	/**
+	 * アドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return "00:11:22:AA:BB:CC" 形式のアドレス
+	 */
+	public String getAddress() {
+		return BluetoothAddress.format(address);
+	}
+
+	/**
+	 * サービスUUIDを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return サービスUUID
+	 */
+	public UUID getUuid() {
+		return uuid;
+	}
+
+	/**
+	 * 連続して失敗した回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 失敗した回数
+	 */
+	public int getFailureCount() {
+		return failures;
+	}
+
+	/**
+	 * 書き込みの同期用オブジェクトを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 同期用オブジェクト
+	 */
+	Object getWriteLock() {
+		return writeLock;
+	}
+}
@@ -0,0 +1,117 @@
+package net.kokohadoko.instil.android.bluetooth.connection;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import net.kokohadoko.instil.android.bluetooth.BluetoothAdapterWrapper;
+import net.kokohadoko.instil.android.bluetooth.BluetoothAddress;
+import net.kokohadoko.instil.android.bluetooth.discovery.DiscoveryCoordinator;
+import net.kokohadoko.instil.android.bluetooth.exception.BluetoothWrapperException;
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * RFCOMMで接続するファクトリ
+ * 
+ * <p>
+ * 周辺デバイスの検索は接続を大きく遅延させるため，接続前に中止する．
+ * {@link DiscoveryCoordinator} を指定した場合は，接続処理の間だけ検索を中断する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class RfcommConnectionFactory implements ConnectionFactory {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = RfcommConnectionFactory.class.getSimpleName();
+
+	/** BluetoothAdapter */
+	private final BluetoothAdapter adapter;
+	/** 暗号化された接続を使用するかどうか */
+	private final boolean secure;
+	/** 検索のコーディネーター */
+	private final DiscoveryCoordinator coordinator;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param adapter BluetoothAdapter
+	 * @param secure 暗号化された接続を使用する場合に true
+	 */
+	public RfcommConnectionFactory(BluetoothAdapter adapter, boolean secure) {
+		this(adapter, secure, null);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param adapter BluetoothAdapter
+	 * @param secure 暗号化された接続を使用する場合に true
+	 * @param coordinator 接続中に中断する検索のコーディネーター, 使用しない場合は null
+	 */
+	public RfcommConnectionFactory(BluetoothAdapter adapter, boolean secure, DiscoveryCoordinator coordinator) {
+		if (adapter == null) {
+			throw new IllegalArgumentException("adapterがnullです．");
+		}
+
+		this.adapter = adapter;
+		this.secure = secure;
+		this.coordinator = coordinator;
+	}
+
+	@Override
+	public StreamConnection connect(long address, UUID uuid) throws IOException {
+		if (coordinator == null) {
+			return open(address, uuid);
+		}
+
+		coordinator.suspend();
+		try {
+			return open(address, uuid);
+		} finally {
+			coordinator.resume();
+		}
+	}
+
+	/**
+	 * 検索を中止して接続する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param uuid サービスUUID
+	 * @return 接続
+	 * @throws IOException 接続に失敗した場合に例外を生成する
+	 */
+	@TargetApi(Build.VERSION_CODES.GINGERBREAD_MR1)
+	private StreamConnection open(long address, UUID uuid) throws IOException {
+		BluetoothDevice device = adapter.getRemoteDevice(BluetoothAddress.format(address));
+		try {
+			BluetoothAdapterWrapper.cancelDiscovery(adapter);
+		} catch (BluetoothWrapperException e) {
+			Log.w(LOG_TAG, "検索の中止に失敗しました．", e);
+		}
+
+		BluetoothSocket socket = secure
+				? device.createRfcommSocketToServiceRecord(uuid)
+				: device.createInsecureRfcommSocketToServiceRecord(uuid);
+		try {
+			socket.connect();
+		} catch (IOException e) {
+			try {
+				socket.close();
+			} catch (IOException ignore) {
+				// 接続に失敗した例外を優先する
+			}
+			throw e;
+		}
+
+		return new BluetoothSocketConnection(socket);
+	}
+}
@@ -0,0 +1,837 @@
+package net.kokohadoko.instil.android.bluetooth.connection;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.kokohadoko.instil.android.bluetooth.BluetoothAddress;
+import net.kokohadoko.instil.android.bluetooth.BondedDeviceSnapshot;
+import android.os.ParcelUuid;
+import android.util.Log;
+
+/**
+ * デバイスのアドレスとサービスUUIDごとにRFCOMM接続を保持するプール
+ * 
+ * <p>
+ * 接続は上限数まで保持して再利用し，切断された場合は指数的に間隔を広げながら再接続する．
+ * 受信は接続ごとのスレッドではなく，少数の固定ワーカーが担当する接続を巡回し，
+ * 受信可能なデータを接続ごとに再利用するByteBufferに読み込んで通知する．
+ * 担当する接続がないワーカーは接続が追加されるまで待機し，受信データがない間は待機を
+ * 倍にしながら確認の間隔を広げる．
+ * </p>
+ * 
+ * <p>
+ * 接続処理は受信を妨げないように上限数のあるスレッドプールで行い，1台の応答しないデバイスが
+ * 他のデバイスの再接続を妨げないようにする．再接続の待機とアイドル状態の接続の切断は
+ * 別のスケジューラで行う．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class RfcommConnectionPool {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = RfcommConnectionPool.class.getSimpleName();
+
+	/** シリアルポートプロファイルのUUID */
+	public static final UUID SERIAL_PORT_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+	/** デフォルトの最大接続数 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 32;
+	/** デフォルトのワーカー数 */
+	public static final int DEFAULT_WORKER_COUNT = 2;
+	/** デフォルトの同時に接続処理を行うスレッド数 */
+	public static final int DEFAULT_CONNECT_THREADS = 4;
+	/** デフォルトの受信用バッファのサイズ */
+	public static final int DEFAULT_BUFFER_SIZE = 1024;
+	/** 再接続の初回の待機ミリ秒 */
+	public static final long DEFAULT_BACKOFF_BASE = 500;
+	/** 再接続の最大の待機ミリ秒 */
+	public static final long DEFAULT_BACKOFF_MAX = 30 * 1000;
+	/** 受信データがない場合に待機する最初のミリ秒 */
+	public static final long DEFAULT_POLL_INTERVAL = 5;
+	/** 受信データがない場合に待機する最大のミリ秒 */
+	public static final long DEFAULT_MAX_POLL_INTERVAL = 100;
+	/** アイドル状態の接続を切断するまでのミリ秒 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 60 * 1000;
+
+	/** 接続のファクトリ */
+	private final ConnectionFactory factory;
+	/** リスナー */
+	private final ConnectionListener listener;
+	/** 最大接続数 */
+	private final int maxConnections;
+	/** ワーカー数 */
+	private final int workerCount;
+	/** 受信用バッファのサイズ */
+	private final int bufferSize;
+
+	/** キーごとの接続 */
+	private final Map<Key, PooledConnection> connections = new HashMap<Key, PooledConnection>();
+	/** ワーカーが巡回する接続 */
+	private final List<PooledConnection> active = new CopyOnWriteArrayList<PooledConnection>();
+	/** 受信を行うワーカー */
+	private final ExecutorService readers;
+	/** 接続処理を行うスレッドプール */
+	private final ThreadPoolExecutor connectors;
+	/** 再接続の待機とアイドル状態の接続の切断を行うスケジューラ */
+	private final ScheduledExecutorService scheduler;
+	/** ワーカーの待機に使用するロック */
+	private final Object activeLock = new Object();
+	/** ワーカーの割り当てに使用するカウンタ */
+	private final AtomicInteger nextWorker = new AtomicInteger();
+	/** 再接続の間隔をばらつかせる乱数 */
+	private final Random random = new Random();
+
+	/** 再接続の初回の待機ミリ秒 */
+	private volatile long backoffBase = DEFAULT_BACKOFF_BASE;
+	/** 再接続の最大の待機ミリ秒 */
+	private volatile long backoffMax = DEFAULT_BACKOFF_MAX;
+	/** 受信データがない場合に待機する最初のミリ秒 */
+	private volatile long pollInterval = DEFAULT_POLL_INTERVAL;
+	/** 受信データがない場合に待機する最大のミリ秒 */
+	private volatile long maxPollInterval = DEFAULT_MAX_POLL_INTERVAL;
+	/** アイドル状態の接続を切断するまでのミリ秒 */
+	private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	/** 閉じられたかどうか */
+	private volatile boolean closed;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param factory 接続のファクトリ
+	 * @param listener リスナー
+	 */
+	public RfcommConnectionPool(ConnectionFactory factory, ConnectionListener listener) {
+		this(factory, listener, DEFAULT_MAX_CONNECTIONS, DEFAULT_WORKER_COUNT, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param factory 接続のファクトリ
+	 * @param listener リスナー
+	 * @param maxConnections 最大接続数
+	 * @param workerCount 受信を行うワーカー数
+	 * @param bufferSize 接続ごとの受信用バッファのサイズ
+	 */
+	public RfcommConnectionPool(ConnectionFactory factory, ConnectionListener listener,
+			int maxConnections, int workerCount, int bufferSize) {
+		this(factory, listener, maxConnections, workerCount, bufferSize, DEFAULT_CONNECT_THREADS);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param factory 接続のファクトリ
+	 * @param listener リスナー
+	 * @param maxConnections 最大接続数
+	 * @param workerCount 受信を行うワーカー数
+	 * @param bufferSize 接続ごとの受信用バッファのサイズ
+	 * @param connectThreads 同時に接続処理を行うスレッド数
+	 */
+	public RfcommConnectionPool(ConnectionFactory factory, ConnectionListener listener,
+			int maxConnections, int workerCount, int bufferSize, int connectThreads) {
+		if (factory == null) {
+			throw new IllegalArgumentException("factoryがnullです．");
+		}
+		if (listener == null) {
+			throw new IllegalArgumentException("listenerがnullです．");
+		}
+		if (maxConnections <= 0 || workerCount <= 0 || bufferSize <= 0 || connectThreads <= 0) {
+			throw new IllegalArgumentException("maxConnections, workerCount, bufferSize, connectThreadsは1以上を指定してください．");
+		}
+
+		this.factory = factory;
+		this.listener = listener;
+		this.maxConnections = maxConnections;
+		this.workerCount = workerCount;
+		this.bufferSize = bufferSize;
+
+		this.readers = Executors.newFixedThreadPool(workerCount, new NamedThreadFactory("RfcommReader"));
+		for (int i = 0; i < workerCount; i++) {
+			readers.execute(new ReadLoop(i));
+		}
+		// 接続処理がない間はスレッドを終了させる
+		this.connectors = new ThreadPoolExecutor(connectThreads, connectThreads, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("RfcommConnector"));
+		this.connectors.allowCoreThreadTimeOut(true);
+		this.scheduler = Executors.newScheduledThreadPool(1, new NamedThreadFactory("RfcommScheduler"));
+		this.scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				evictIdle();
+			}
+		}, 1, 1, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * 再接続の待機ミリ秒を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param base 初回の待機ミリ秒
+	 * @param max 最大の待機ミリ秒
+	 */
+	public void setBackoff(long base, long max) {
+		if (base <= 0 || max < base) {
+			throw new IllegalArgumentException("baseまたはmaxが不正な値です．");
+		}
+
+		this.backoffBase = base;
+		this.backoffMax = max;
+	}
+
+	/**
+	 * 受信データがない場合に待機する最初のミリ秒を設定する
+	 * 
+	 * <p>
+	 * 最大の待機ミリ秒は {@link #DEFAULT_MAX_POLL_INTERVAL} と指定した値の大きい方になる．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param pollInterval ミリ秒
+	 */
+	public void setPollInterval(long pollInterval) {
+		setPollInterval(pollInterval, Math.max(pollInterval, DEFAULT_MAX_POLL_INTERVAL));
+	}
+
+	/**
+	 * 受信データがない場合に待機するミリ秒を設定する
+	 * 
+	 * <p>
+	 * 受信データがない間は待機を最初のミリ秒から倍にしていき，受信すると最初のミリ秒に戻す．
+	 * 最大のミリ秒を大きくすると待機中のCPUの使用と電池の消費が減るが，
+	 * 受信が途切れた後に届いたデータを読むまでの遅延は最大でその時間だけ増える．
+	 * 最初と最大に同じ値を指定すると一定の間隔で確認する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param min 最初の待機ミリ秒
+	 * @param max 最大の待機ミリ秒
+	 */
+	public void setPollInterval(long min, long max) {
+		if (min <= 0 || max < min) {
+			throw new IllegalArgumentException("minまたはmaxが不正な値です．");
+		}
+
+		this.pollInterval = min;
+		this.maxPollInterval = max;
+	}
+
+	/**
+	 * アイドル状態の接続を切断するまでのミリ秒を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param idleTimeout ミリ秒
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * 接続を取得する．既存の接続がない場合は新たに接続を開始する
+	 * 
+	 * <p>
+	 * 返される接続は接続処理中の場合がある．接続の確立は {@link ConnectionListener#onConnected(PooledConnection)}
+	 * で通知される．使用後は {@link PooledConnection#release()} で返却すること．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param uuid サービスUUID
+	 * @return 接続
+	 * @throws IOException プールが閉じられている場合または最大接続数に達している場合に例外を生成する
+	 */
+	public PooledConnection acquire(long address, UUID uuid) throws IOException {
+		if (!BluetoothAddress.isValid(address)) {
+			throw new IllegalArgumentException("addressが不正な値です．");
+		}
+		if (uuid == null) {
+			throw new IllegalArgumentException("uuidがnullです．");
+		}
+
+		PooledConnection connection;
+		PooledConnection evicted = null;
+		synchronized (connections) {
+			if (closed) {
+				throw new IOException("プールは閉じられています．");
+			}
+
+			Key key = new Key(address, uuid);
+			connection = connections.get(key);
+			if (connection != null) {
+				connection.refCount++;
+				return connection;
+			}
+
+			if (connections.size() >= maxConnections) {
+				evicted = evictOldestIdle();
+				if (evicted == null) {
+					throw new IOException("最大接続数に達しています．");
+				}
+			}
+
+			int worker = (nextWorker.getAndIncrement() & Integer.MAX_VALUE) % workerCount;
+			connection = new PooledConnection(this, address, uuid, worker, bufferSize);
+			connection.refCount = 1;
+			connections.put(key, connection);
+		}
+
+		// 切断はブロックする場合があるため，connectionsのロックを解放してから行う
+		if (evicted != null) {
+			discard(evicted);
+		}
+		scheduleConnect(connection, 0);
+		return connection;
+	}
+
+	/**
+	 * 接続を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param address "00:11:22:AA:BB:CC" 形式のアドレス
+	 * @param uuid サービスUUID
+	 * @return 接続
+	 * @throws IOException プールが閉じられている場合または最大接続数に達している場合に例外を生成する
+	 */
+	public PooledConnection acquire(String address, UUID uuid) throws IOException {
+		long value = BluetoothAddress.parse(address);
+		if (value == BluetoothAddress.INVALID) {
+			throw new IllegalArgumentException("addressが不正な値です．");
+		}
+
+		return acquire(value, uuid);
+	}
+
+	/**
+	 * ペアリング済みのデバイスのシリアルポートへの接続を取得する
+	 * 
+	 * <p>
+	 * デバイスがシリアルポートプロファイルを公開していない場合は，最初のサービスUUIDを使用する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param snapshot ペアリング済みのデバイスのスナップショット
+	 * @param index デバイスの添字
+	 * @return 接続
+	 * @throws IOException サービスUUIDが取得できない場合または接続を取得できない場合に例外を生成する
+	 */
+	public PooledConnection acquireSerial(BondedDeviceSnapshot snapshot, int index) throws IOException {
+		ParcelUuid[] uuids = snapshot.getUuids(index);
+		if (uuids == null || uuids.length == 0) {
+			throw new IOException("サービスUUIDが取得できません．");
+		}
+
+		UUID uuid = uuids[0].getUuid();
+		for (ParcelUuid candidate : uuids) {
+			if (SERIAL_PORT_UUID.equals(candidate.getUuid())) {
+				uuid = SERIAL_PORT_UUID;
+				break;
+			}
+		}
+
+		return acquire(snapshot.getAddressLong(index), uuid);
+	}
+
+	/**
+	 * 接続を返却する
+	 * 
+	 * @since 0.0.1
+	 * @param connection 接続
+	 */
+	void release(PooledConnection connection) {
+		synchronized (connections) {
+			if (connection.refCount > 0) {
+				connection.refCount--;
+				if (connection.refCount == 0) {
+					connection.lastReleased = System.currentTimeMillis();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 保持している接続数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 接続数
+	 */
+	public int getConnectionCount() {
+		synchronized (connections) {
+			return connections.size();
+		}
+	}
+
+	/**
+	 * 保持している接続の一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 接続の一覧
+	 */
+	public List<PooledConnection> getConnections() {
+		synchronized (connections) {
+			return new ArrayList<PooledConnection>(connections.values());
+		}
+	}
+
+	/**
+	 * 全ての接続を閉じ，スレッドを終了する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void close() {
+		List<PooledConnection> all;
+		synchronized (connections) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			all = new ArrayList<PooledConnection>(connections.values());
+			connections.clear();
+		}
+
+		scheduler.shutdownNow();
+		connectors.shutdownNow();
+		readers.shutdownNow();
+		synchronized (activeLock) {
+			activeLock.notifyAll();
+		}
+		for (PooledConnection connection : all) {
+			discard(connection);
+		}
+	}
+
+	/**
+	 * 接続を開始する
+	 * 
+	 * <p>
+	 * 待機はスケジューラで行い，接続処理は接続用のスレッドプールに渡す．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param connection 接続
+	 * @param delay 待機ミリ秒
+	 */
+	private void scheduleConnect(final PooledConnection connection, long delay) {
+		if (closed) {
+			return;
+		}
+
+		final Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				connect(connection);
+			}
+		};
+
+		try {
+			if (delay <= 0) {
+				connectors.execute(task);
+				return;
+			}
+
+			scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						connectors.execute(task);
+					} catch (RejectedExecutionException e) {
+						// 閉じられた場合は接続しない
+					}
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// 閉じられた場合は接続しない
+		}
+	}
+
+	/**
+	 * 接続処理を行う
+	 * 
+	 * @since 0.0.1
+	 * @param connection 接続
+	 */
+	private void connect(PooledConnection connection) {
+		// 確認と更新の間にdiscard()が閉じた状態を上書きしないように，書き込みのロックの中で行う
+		synchronized (connection.getWriteLock()) {
+			if (connection.state == PooledConnection.STATE_CLOSED) {
+				return;
+			}
+			connection.state = PooledConnection.STATE_CONNECTING;
+		}
+
+		StreamConnection stream = null;
+		try {
+			stream = factory.connect(connection.getAddressLong(), connection.getUuid());
+			InputStream input = stream.getInputStream();
+			synchronized (connection.getWriteLock()) {
+				if (connection.state == PooledConnection.STATE_CLOSED) {
+					closeQuietly(stream);
+					return;
+				}
+				connection.connection = stream;
+				connection.input = input;
+				connection.output = stream.getOutputStream();
+				connection.failures = 0;
+				connection.state = PooledConnection.STATE_CONNECTED;
+				// discard()が取り除いた後に追加しないように，ロックの中で追加する
+				active.add(connection);
+			}
+			synchronized (activeLock) {
+				activeLock.notifyAll();
+			}
+		} catch (IOException e) {
+			closeQuietly(stream);
+			int failures;
+			synchronized (connection.getWriteLock()) {
+				if (connection.state == PooledConnection.STATE_CLOSED) {
+					return;
+				}
+				connection.state = PooledConnection.STATE_WAITING;
+				failures = ++connection.failures;
+			}
+			long delay = backoff(failures);
+			Log.w(LOG_TAG, "接続に失敗しました．" + delay + "ミリ秒後に再接続します．", e);
+			scheduleConnect(connection, delay);
+			return;
+		}
+
+		listener.onConnected(connection);
+	}
+
+	/**
+	 * 受信または送信の失敗を処理する
+	 * 
+	 * @since 0.0.1
+	 * @param connection 接続
+	 * @param cause 失敗の原因
+	 */
+	void onFailure(PooledConnection connection, IOException cause) {
+		int failures;
+		synchronized (connection.getWriteLock()) {
+			if (connection.state != PooledConnection.STATE_CONNECTED) {
+				return;
+			}
+			connection.state = PooledConnection.STATE_WAITING;
+			closeQuietly(connection.connection);
+			connection.connection = null;
+			connection.input = null;
+			connection.output = null;
+			failures = ++connection.failures;
+		}
+
+		active.remove(connection);
+		listener.onDisconnected(connection, cause);
+		scheduleConnect(connection, backoff(failures));
+	}
+
+	/**
+	 * 再接続までの待機ミリ秒を計算する
+	 * 
+	 * @since 0.0.1
+	 * @param failures 連続して失敗した回数
+	 * @return 待機ミリ秒
+	 */
+	private long backoff(int failures) {
+		int shift = Math.min(Math.max(failures - 1, 0), 16);
+		long delay = Math.min(backoffMax, backoffBase << shift);
+		// 複数の接続が同時に再接続しないように最大25%ずらす
+		return delay + (long) (random.nextDouble() * delay / 4);
+	}
+
+	/**
+	 * アイドル状態が続いた接続を切断する
+	 * 
+	 * @since 0.0.1
+	 */
+	private void evictIdle() {
+		long limit = System.currentTimeMillis() - idleTimeout;
+		List<PooledConnection> expired = new ArrayList<PooledConnection>();
+		synchronized (connections) {
+			for (PooledConnection connection : connections.values()) {
+				if (connection.refCount == 0 && connection.lastReleased < limit) {
+					expired.add(connection);
+				}
+			}
+			for (PooledConnection connection : expired) {
+				connections.remove(new Key(connection.getAddressLong(), connection.getUuid()));
+			}
+		}
+
+		for (PooledConnection connection : expired) {
+			discard(connection);
+		}
+	}
+
+	/**
+	 * 最も長くアイドル状態の接続をプールから取り除く．connectionsで同期して呼び出すこと
+	 * 
+	 * <p>
+	 * 取り除いた接続はロックを解放してから {@link #discard(PooledConnection)} で閉じること．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @return 取り除いた接続, アイドル状態の接続がない場合は nullを返す
+	 */
+	private PooledConnection evictOldestIdle() {
+		PooledConnection oldest = null;
+		for (PooledConnection connection : connections.values()) {
+			if (connection.refCount == 0 && (oldest == null || connection.lastReleased < oldest.lastReleased)) {
+				oldest = connection;
+			}
+		}
+		if (oldest == null) {
+			return null;
+		}
+
+		connections.remove(new Key(oldest.getAddressLong(), oldest.getUuid()));
+		return oldest;
+	}
+
+	/**
+	 * 接続を閉じて破棄する
+	 * 
+	 * @since 0.0.1
+	 * @param connection 接続
+	 */
+	private void discard(PooledConnection connection) {
+		synchronized (connection.getWriteLock()) {
+			connection.state = PooledConnection.STATE_CLOSED;
+			closeQuietly(connection.connection);
+			connection.connection = null;
+			connection.input = null;
+			connection.output = null;
+		}
+		active.remove(connection);
+	}
+
+	/**
+	 * 例外を無視して接続を閉じる
+	 * 
+	 * @since 0.0.1
+	 * @param stream 接続
+	 */
+	private static void closeQuietly(StreamConnection stream) {
+		if (stream == null) {
+			return;
+		}
+
+		try {
+			stream.close();
+		} catch (IOException e) {
+			Log.w(LOG_TAG, "切断に失敗しました．", e);
+		}
+	}
+
+	/**
+	 * 担当する接続を巡回して受信を行うワーカー
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private class ReadLoop implements Runnable {
+
+		/** ワーカーの番号 */
+		private final int index;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param index ワーカーの番号
+		 */
+		ReadLoop(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public void run() {
+			// 受信データがない間は待機を倍にしていき，受信すると最初の値に戻す
+			long interval = pollInterval;
+			try {
+				while (!closed && !Thread.currentThread().isInterrupted()) {
+					boolean assigned = false;
+					boolean received = false;
+					for (PooledConnection connection : active) {
+						if (connection.worker != index) {
+							continue;
+						}
+						assigned = true;
+						if (read(connection)) {
+							received = true;
+						}
+					}
+
+					if (!assigned) {
+						awaitAssigned();
+						interval = pollInterval;
+					} else if (received) {
+						interval = pollInterval;
+					} else {
+						Thread.sleep(interval);
+						interval = Math.min(interval * 2, maxPollInterval);
+					}
+				}
+			} catch (InterruptedException e) {
+				// 閉じられた場合は終了する
+			}
+		}
+
+		/**
+		 * 担当する接続が追加されるまで待機する
+		 * 
+		 * @since 0.0.1
+		 * @throws InterruptedException 割り込まれた場合に例外を生成する
+		 */
+		private void awaitAssigned() throws InterruptedException {
+			synchronized (activeLock) {
+				while (!closed && !hasAssigned()) {
+					activeLock.wait();
+				}
+			}
+		}
+
+		/**
+		 * 担当する接続があるかどうか
+		 * 
+		 * @since 0.0.1
+		 * @return ある場合に true, そうでない場合に falseを返す
+		 */
+		private boolean hasAssigned() {
+			for (PooledConnection connection : active) {
+				if (connection.worker == index) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		/**
+		 * 受信可能なデータを読み込んで通知する
+		 * 
+		 * @since 0.0.1
+		 * @param connection 接続
+		 * @return データを受信した場合に true, そうでない場合に falseを返す
+		 */
+		private boolean read(PooledConnection connection) {
+			InputStream input = connection.input;
+			if (connection.state != PooledConnection.STATE_CONNECTED || input == null) {
+				return false;
+			}
+
+			try {
+				int available = input.available();
+				if (available <= 0) {
+					return false;
+				}
+
+				ByteBuffer buffer = connection.readBuffer;
+				buffer.clear();
+				int length = input.read(buffer.array(), buffer.arrayOffset(), Math.min(available, buffer.capacity()));
+				if (length < 0) {
+					throw new EOFException("接続が切断されました．");
+				}
+				buffer.limit(length);
+				listener.onData(connection, buffer);
+				return length > 0;
+			} catch (IOException e) {
+				onFailure(connection, e);
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * 接続を識別するキー
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private static final class Key {
+
+		/** 数値のアドレス */
+		private final long address;
+		/** サービスUUID */
+		private final UUID uuid;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param address 数値のアドレス
+		 * @param uuid サービスUUID
+		 */
+		Key(long address, UUID uuid) {
+			this.address = address;
+			this.uuid = uuid;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (address ^ (address >>> 32)) * 31 + uuid.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) o;
+			return address == other.address && uuid.equals(other.uuid);
+		}
+	}
+
+	/**
+	 * 名前を付けたデーモンスレッドを生成するファクトリ
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private static final class NamedThreadFactory implements ThreadFactory {
+
+		/** スレッド名の接頭辞 */
+		private final String prefix;
+		/** 生成したスレッド数 */
+		private final AtomicInteger count = new AtomicInteger();
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param prefix スレッド名の接頭辞
+		 */
+		NamedThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
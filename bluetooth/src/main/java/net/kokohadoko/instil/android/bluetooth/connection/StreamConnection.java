@@ -0,0 +1,52 @@
+package net.kokohadoko.instil.android.bluetooth.connection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 入出力ストリームを持つ接続
+ * 
+ * <p>
+ * BluetoothSocketを抽象化し，JVM上ではパイプなどで代替できるようにする．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface StreamConnection {
+
+	/**
+	 * 入力ストリームを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 入力ストリーム
+	 * @throws IOException 取得に失敗した場合に例外を生成する
+	 */
+	InputStream getInputStream() throws IOException;
+
+	/**
+	 * 出力ストリームを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 出力ストリーム
+	 * @throws IOException 取得に失敗した場合に例外を生成する
+	 */
+	OutputStream getOutputStream() throws IOException;
+
+	/**
+	 * 接続中かどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 接続中の場合に true, そうでない場合に falseを返す
+	 */
+	boolean isConnected();
+
+	/**
+	 * 接続を閉じる
+	 * 
+	 * @since 0.0.1
+	 * @throws IOException 切断に失敗した場合に例外を生成する
+	 */
+	void close() throws IOException;
+}
@@ -0,0 +1,74 @@
+package net.kokohadoko.instil.android.bluetooth.connection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 任意の入出力ストリームの組による接続
+ * 
+ * <p>
+ * PipedInputStream/PipedOutputStreamと組み合わせることで，
+ * Bluetoothを使用せずにJVM上でプロトコル層を動作させることができる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class StreamPairConnection implements StreamConnection {
+
+	/** 入力ストリーム */
+	private final InputStream input;
+	/** 出力ストリーム */
+	private final OutputStream output;
+	/** 閉じられたかどうか */
+	private volatile boolean closed;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param input 入力ストリーム
+	 * @param output 出力ストリーム
+	 */
+	public StreamPairConnection(InputStream input, OutputStream output) {
+		if (input == null) {
+			throw new IllegalArgumentException("inputがnullです．");
+		}
+		if (output == null) {
+			throw new IllegalArgumentException("outputがnullです．");
+		}
+
+		this.input = input;
+		this.output = output;
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return input;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return output;
+	}
+
+	@Override
+	public boolean isConnected() {
+		return !closed;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			output.close();
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,455 @@
+package net.kokohadoko.instil.android.bluetooth.discovery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.kokohadoko.instil.android.bluetooth.BluetoothAdapterWrapper;
+import net.kokohadoko.instil.android.bluetooth.BluetoothAddress;
+import net.kokohadoko.instil.android.bluetooth.backend.AndroidBluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.BackendListener;
+import net.kokohadoko.instil.android.bluetooth.backend.BluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.DeviceRecord;
+import net.kokohadoko.instil.android.bluetooth.backend.HandlerBackendListener;
+import net.kokohadoko.instil.android.bluetooth.exception.BluetoothDisabledException;
+import net.kokohadoko.instil.android.bluetooth.exception.BluetoothWrapperException;
+import net.kokohadoko.instil.android.bluetooth.util.Clock;
+import net.kokohadoko.instil.android.bluetooth.util.HandlerScheduler;
+import net.kokohadoko.instil.android.bluetooth.util.LongObjectHashMap;
+import net.kokohadoko.instil.android.bluetooth.util.Scheduler;
+import android.bluetooth.BluetoothAdapter;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * 周辺デバイスの検索を行い，検出結果を逐次通知するクラス
+ * 
+ * <p>
+ * {@link BluetoothBackend} が通知する検出結果をアドレスごとに重複を排除した上で
+ * {@link DiscoveryListener} に通知する．タイムアウトまたは目的のデバイスが
+ * 見つかった時点で検索を中止する．
+ * </p>
+ * 
+ * <p>
+ * 各メソッドはコンストラクタで指定したHandlerまたは {@link Scheduler} のスレッドから呼び出すこと．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BluetoothDiscoveryEngine {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = BluetoothDiscoveryEngine.class.getSimpleName();
+
+	/** 検索が完了したことを表す */
+	public static final int FINISH_COMPLETED = 1;
+	/** タイムアウトしたことを表す */
+	public static final int FINISH_TIMEOUT = 2;
+	/** 目的のデバイスが見つかったことを表す */
+	public static final int FINISH_TARGET_FOUND = 3;
+	/** 検索が中止されたことを表す */
+	public static final int FINISH_CANCELLED = 4;
+	/** 検索の再開に失敗したことを表す */
+	public static final int FINISH_ERROR = 5;
+
+	/** BluetoothBackend */
+	private final BluetoothBackend backend;
+	/** 受信処理を行うスレッド */
+	private final Scheduler scheduler;
+	/** 時計 */
+	private final Clock clock;
+	/** 受信処理を行うスレッドで検索結果を受信するリスナー */
+	private final BackendListener backendListener;
+	/** 検出されたデバイス */
+	private final LongObjectHashMap<DiscoveredDevice> devices = new LongObjectHashMap<DiscoveredDevice>();
+	/** 検出された順のデバイス */
+	private final List<DiscoveredDevice> ordered = new ArrayList<DiscoveredDevice>();
+
+	/** リスナー */
+	private DiscoveryListener listener;
+	/** 目的のデバイスのアドレス */
+	private long target = BluetoothAddress.INVALID;
+	/** タイムアウトする時刻 */
+	private long deadline;
+	/** 検索中かどうか */
+	private boolean running;
+	/** 実行中の検索の開始を受信したかどうか */
+	private boolean inquiryStarted;
+
+	/** 検索結果の受信処理 */
+	private final BackendListener receiver = new BackendListener() {
+		@Override
+		public void onStateChanged(int previous, int state) {
+		}
+
+		@Override
+		public void onDiscoveryStarted() {
+			onInquiryStarted();
+		}
+
+		@Override
+		public void onDeviceFound(DeviceRecord device, int rssi) {
+			onFound(device, rssi);
+		}
+
+		@Override
+		public void onDiscoveryFinished() {
+			onInquiryFinished();
+		}
+
+		@Override
+		public void onBondStateChanged(DeviceRecord device, int state) {
+		}
+
+		@Override
+		public void onDeviceChanged(DeviceRecord device) {
+		}
+	};
+
+	/** タイムアウト処理 */
+	private final Runnable timeoutTask = new Runnable() {
+		@Override
+		public void run() {
+			finish(FINISH_TIMEOUT);
+		}
+	};
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * <p>
+	 * 検索結果はメインスレッドで受信する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param adapter BluetoothAdapter
+	 */
+	public BluetoothDiscoveryEngine(Context context, BluetoothAdapter adapter) {
+		this(context, adapter, new Handler(Looper.getMainLooper()));
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param adapter BluetoothAdapter
+	 * @param handler 検索結果の受信処理を行うHandler
+	 */
+	public BluetoothDiscoveryEngine(Context context, BluetoothAdapter adapter, Handler handler) {
+		this(new AndroidBluetoothBackend(context, adapter), handler);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * <p>
+	 * 検索結果はメインスレッドで受信する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 */
+	public BluetoothDiscoveryEngine(BluetoothBackend backend) {
+		this(backend, new Handler(Looper.getMainLooper()));
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @param handler 検索結果の受信処理を行うHandler
+	 */
+	public BluetoothDiscoveryEngine(BluetoothBackend backend, Handler handler) {
+		this(backend, new HandlerScheduler(handler), Clock.SYSTEM);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * <p>
+	 * {@link net.kokohadoko.instil.android.bluetooth.backend.SimulatedBluetoothBackend} などを使用した
+	 * JVM上での検証に使用する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @param scheduler 検索結果の受信処理を行うスレッド
+	 * @param clock タイムアウトと検出時刻の計算に使用する時計
+	 */
+	public BluetoothDiscoveryEngine(BluetoothBackend backend, Scheduler scheduler, Clock clock) {
+		if (backend == null) {
+			throw new IllegalArgumentException("backendがnullです．");
+		}
+		if (scheduler == null) {
+			throw new IllegalArgumentException("schedulerがnullです．");
+		}
+		if (clock == null) {
+			throw new IllegalArgumentException("clockがnullです．");
+		}
+
+		this.backend = backend;
+		this.scheduler = scheduler;
+		this.clock = clock;
+		this.backendListener = new HandlerBackendListener(receiver, scheduler);
+	}
+
+	/**
+	 * 目的のデバイスを設定する
+	 * 
+	 * <p>
+	 * 設定したアドレスのデバイスが検出された時点で検索を中止する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param address "00:11:22:AA:BB:CC" 形式のアドレス, 解除する場合は null
+	 * @throws IllegalArgumentException アドレスが不正な場合に例外を生成する
+	 */
+	public void setTarget(String address) {
+		if (address == null) {
+			target = BluetoothAddress.INVALID;
+			return;
+		}
+
+		long value = BluetoothAddress.parse(address);
+		if (value == BluetoothAddress.INVALID) {
+			throw new IllegalArgumentException("addressが不正な値です．");
+		}
+		target = value;
+	}
+
+	/**
+	 * 目的のデバイスを設定する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス, 解除する場合は {@link BluetoothAddress#INVALID}
+	 */
+	public void setTarget(long address) {
+		target = address;
+	}
+
+	/**
+	 * 周辺デバイスの検索を開始する
+	 * 
+	 * <p>
+	 * 通常の検索は12秒程度で終了するため，タイムアウトまでの時間が残っている場合は
+	 * 検索を自動的に再開する．以前の検索結果は破棄される．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー
+	 * @param timeoutMillis タイムアウトまでのミリ秒, 0以下の場合は1回の検索で終了する
+	 * @return 成功した場合に true, そうでない場合に falseを返す
+	 * @throws BluetoothWrapperException Bluetoothが無効な場合に例外を生成する
+	 */
+	public boolean start(DiscoveryListener listener, long timeoutMillis) throws BluetoothWrapperException {
+		if (listener == null) {
+			throw new IllegalArgumentException("listenerがnullです．");
+		}
+		if (running) {
+			throw new IllegalStateException("検索中です．");
+		}
+		if (!BluetoothAdapterWrapper.isEnabled(backend)) {
+			throw BluetoothDisabledException.INSTANCE;
+		}
+
+		clear();
+		this.listener = listener;
+		backend.addListener(backendListener);
+
+		// 他の検索が実行中の場合のみ中止してから開始する
+		// 中止による終了の通知は非同期に届くため，開始の通知を受信するまで終了の通知は無視する
+		inquiryStarted = false;
+		if (BluetoothAdapterWrapper.isDiscoverying(backend)) {
+			BluetoothAdapterWrapper.cancelDiscovery(backend);
+		}
+		if (!BluetoothAdapterWrapper.startDiscovery(backend)) {
+			backend.removeListener(backendListener);
+			this.listener = null;
+			return false;
+		}
+
+		running = true;
+		if (timeoutMillis > 0) {
+			deadline = clock.elapsedRealtime() + timeoutMillis;
+			scheduler.postDelayed(timeoutTask, timeoutMillis);
+		} else {
+			deadline = 0;
+		}
+
+		return true;
+	}
+
+	/**
+	 * 周辺デバイスの検索を中止する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void cancel() {
+		finish(FINISH_CANCELLED);
+	}
+
+	/**
+	 * 検索中かどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 検索中の場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * 検出されたデバイスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return 検出されたデバイス, 検出されていない場合は nullを返す
+	 */
+	public DiscoveredDevice getDevice(long address) {
+		return devices.get(address);
+	}
+
+	/**
+	 * 検出されたデバイスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param address "00:11:22:AA:BB:CC" 形式のアドレス
+	 * @return 検出されたデバイス, 検出されていない場合は nullを返す
+	 */
+	public DiscoveredDevice getDevice(String address) {
+		long value = BluetoothAddress.parse(address);
+		if (value == BluetoothAddress.INVALID) {
+			return null;
+		}
+
+		return devices.get(value);
+	}
+
+	/**
+	 * 検出されたデバイスの一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 検出された順のデバイス一覧
+	 */
+	public List<DiscoveredDevice> getDevices() {
+		return new ArrayList<DiscoveredDevice>(ordered);
+	}
+
+	/**
+	 * 検出されたデバイス数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 検出されたデバイス数
+	 */
+	public int getDeviceCount() {
+		return ordered.size();
+	}
+
+	/**
+	 * 検索結果を破棄する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void clear() {
+		devices.clear();
+		ordered.clear();
+	}
+
+	/**
+	 * デバイスが検出された場合の処理
+	 * 
+	 * @since 0.0.1
+	 * @param device 検出されたデバイス
+	 * @param rssi RSSI
+	 */
+	private void onFound(DeviceRecord device, int rssi) {
+		if (!running) {
+			return;
+		}
+
+		long address = device.getAddressLong();
+		long now = clock.elapsedRealtime();
+
+		DiscoveredDevice discovered = devices.get(address);
+		if (discovered == null) {
+			discovered = new DiscoveredDevice(address, now);
+			discovered.merge(device, rssi, now);
+			devices.put(address, discovered);
+			ordered.add(discovered);
+			listener.onDeviceFound(discovered);
+		} else {
+			discovered.merge(device, rssi, now);
+			listener.onDeviceUpdated(discovered);
+		}
+
+		if (running && address == target) {
+			finish(FINISH_TARGET_FOUND);
+		}
+	}
+
+	/**
+	 * 検索の開始が通知された場合の処理
+	 * 
+	 * @since 0.0.1
+	 */
+	private void onInquiryStarted() {
+		if (!running) {
+			return;
+		}
+
+		inquiryStarted = true;
+	}
+
+	/**
+	 * 検索の終了が通知された場合の処理
+	 * 
+	 * @since 0.0.1
+	 */
+	private void onInquiryFinished() {
+		// 開始前の検索の終了は無視する
+		if (!running || !inquiryStarted) {
+			return;
+		}
+
+		inquiryStarted = false;
+		if (deadline > 0 && clock.elapsedRealtime() < deadline) {
+			int result = BluetoothAdapterWrapper.tryStartDiscovery(backend);
+			if (result == BluetoothAdapterWrapper.RESULT_TRUE) {
+				return;
+			}
+			Log.w(LOG_TAG, "検索の再開に失敗しました．result=" + result);
+			finish(FINISH_ERROR);
+		} else {
+			finish(FINISH_COMPLETED);
+		}
+	}
+
+	/**
+	 * 検索を終了する
+	 * 
+	 * @since 0.0.1
+	 * @param reason 終了理由
+	 */
+	private void finish(int reason) {
+		if (!running) {
+			return;
+		}
+
+		running = false;
+		inquiryStarted = false;
+		scheduler.removeCallbacks(timeoutTask);
+		backend.removeListener(backendListener);
+		if (reason != FINISH_COMPLETED) {
+			BluetoothAdapterWrapper.tryCancelDiscovery(backend);
+		}
+
+		DiscoveryListener current = listener;
+		listener = null;
+		current.onDiscoveryFinished(reason);
+	}
+}
@@ -0,0 +1,221 @@
+package net.kokohadoko.instil.android.bluetooth.discovery;
+
+import net.kokohadoko.instil.android.bluetooth.BluetoothAddress;
+import net.kokohadoko.instil.android.bluetooth.backend.AndroidBluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.DeviceRecord;
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * 周辺デバイスの検索で検出されたデバイス
+ * 
+ * <p>
+ * 同じアドレスのデバイスが再度検出された場合は，新しいインスタンスを生成せずに
+ * 名前とRSSIを更新する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class DiscoveredDevice {
+
+	/** RSSIが取得できなかったことを表す */
+	public static final int RSSI_UNKNOWN = Short.MIN_VALUE;
+
+	/** 数値のアドレス */
+	private final long address;
+	/** BluetoothDevice */
+	private BluetoothDevice device;
+	/** デバイス名 */
+	private String name;
+	/** デバイスのクラス */
+	private BluetoothClass bluetoothClass;
+	/** デバイスクラスの値 */
+	private int deviceClass;
+	/** 最後に取得したRSSI */
+	private int rssi = RSSI_UNKNOWN;
+	/** 最大のRSSI */
+	private int maxRssi = RSSI_UNKNOWN;
+	/** RSSIの合計 */
+	private long rssiSum;
+	/** RSSIを取得した回数 */
+	private int rssiCount;
+	/** 検出された回数 */
+	private int foundCount;
+	/** 最初に検出された時刻 */
+	private final long firstSeen;
+	/** 最後に検出された時刻 */
+	private long lastSeen;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param now 検出された時刻
+	 */
+	DiscoveredDevice(long address, long now) {
+		this.address = address;
+		this.firstSeen = now;
+		this.lastSeen = now;
+	}
+
+	/**
+	 * 検出結果を反映する
+	 * 
+	 * @since 0.0.1
+	 * @param record 検出されたデバイス
+	 * @param rssi RSSI, 取得できなかった場合は {@link #RSSI_UNKNOWN}
+	 * @param now 検出された時刻
+	 */
+	void merge(DeviceRecord record, int rssi, long now) {
+		BluetoothDevice device = AndroidBluetoothBackend.getDevice(record);
+		if (device != null) {
+			this.device = device;
+		}
+		if (record.getName() != null) {
+			this.name = record.getName();
+		}
+		BluetoothClass bluetoothClass = AndroidBluetoothBackend.getBluetoothClass(record);
+		if (bluetoothClass != null) {
+			this.bluetoothClass = bluetoothClass;
+		}
+		if (record.getDeviceClass() != 0) {
+			this.deviceClass = record.getDeviceClass();
+		}
+		if (rssi != RSSI_UNKNOWN) {
+			this.rssi = rssi;
+			if (maxRssi == RSSI_UNKNOWN || rssi > maxRssi) {
+				maxRssi = rssi;
+			}
+			rssiSum += rssi;
+			rssiCount++;
+		}
+		foundCount++;
+		lastSeen = now;
+	}
+
+	/**
+	 * 数値のアドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 数値のアドレス
+	 */
+	public long getAddressLong() {
+		return address;
+	}
+
+	/**
+	 * アドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return "00:11:22:AA:BB:CC" 形式のアドレス
+	 */
+	public String getAddress() {
+		return device != null ? device.getAddress() : BluetoothAddress.format(address);
+	}
+
+	/**
+	 * BluetoothDeviceを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return BluetoothDevice, {@link AndroidBluetoothBackend} 以外で検出された場合は null
+	 */
+	public BluetoothDevice getDevice() {
+		return device;
+	}
+
+	/**
+	 * デバイス名を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイス名, 取得できていない場合は null
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * デバイスのクラスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイスのクラス, 取得できていない場合や {@link AndroidBluetoothBackend} 以外で検出された場合は null
+	 */
+	public BluetoothClass getBluetoothClass() {
+		return bluetoothClass;
+	}
+
+	/**
+	 * デバイスクラスの値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link BluetoothClass#getDeviceClass()} の値, 取得できていない場合は 0
+	 */
+	public int getDeviceClass() {
+		return deviceClass;
+	}
+
+	/**
+	 * 最後に取得したRSSIを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return RSSI, 取得できていない場合は {@link #RSSI_UNKNOWN}
+	 */
+	public int getRssi() {
+		return rssi;
+	}
+
+	/**
+	 * 最大のRSSIを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return RSSI, 取得できていない場合は {@link #RSSI_UNKNOWN}
+	 */
+	public int getMaxRssi() {
+		return maxRssi;
+	}
+
+	/**
+	 * RSSIの平均を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return RSSIの平均, 取得できていない場合は {@link #RSSI_UNKNOWN}
+	 */
+	public int getAverageRssi() {
+		if (rssiCount == 0) {
+			return RSSI_UNKNOWN;
+		}
+
+		return (int) (rssiSum / rssiCount);
+	}
+
+	/**
+	 * 検出された回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 検出された回数
+	 */
+	public int getFoundCount() {
+		return foundCount;
+	}
+
+	/**
+	 * 最初に検出された時刻を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link net.kokohadoko.instil.android.bluetooth.util.Clock#elapsedRealtime()} の時刻
+	 */
+	public long getFirstSeen() {
+		return firstSeen;
+	}
+
+	/**
+	 * 最後に検出された時刻を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link net.kokohadoko.instil.android.bluetooth.util.Clock#elapsedRealtime()} の時刻
+	 */
+	public long getLastSeen() {
+		return lastSeen;
+	}
+}
@@ -0,0 +1,589 @@
+package net.kokohadoko.instil.android.bluetooth.discovery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.kokohadoko.instil.android.bluetooth.BluetoothAdapterWrapper;
+import net.kokohadoko.instil.android.bluetooth.backend.AndroidBluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.BackendListener;
+import net.kokohadoko.instil.android.bluetooth.backend.BluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.backend.DeviceRecord;
+import net.kokohadoko.instil.android.bluetooth.backend.HandlerBackendListener;
+import net.kokohadoko.instil.android.bluetooth.exception.BluetoothDisabledException;
+import net.kokohadoko.instil.android.bluetooth.exception.BluetoothWrapperException;
+import net.kokohadoko.instil.android.bluetooth.util.Clock;
+import net.kokohadoko.instil.android.bluetooth.util.HandlerScheduler;
+import net.kokohadoko.instil.android.bluetooth.util.LongObjectHashMap;
+import net.kokohadoko.instil.android.bluetooth.util.Scheduler;
+import android.bluetooth.BluetoothAdapter;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * 複数の呼び出し元で1つの周辺デバイスの検索を共有するクラス
+ * 
+ * <p>
+ * 検索を必要とする呼び出し元を参照数で管理し，1つ以上の呼び出し元がいる間は検索を継続する．
+ * 検出結果は全ての呼び出し元に通知され，後から参加した呼び出し元にもそれまでの結果が通知される．
+ * 検索は接続処理を大きく遅延させるため，{@link #suspend()} から {@link #resume()} までの間は検索を中断する．
+ * 通常は {@link #getInstance(Context)} でプロセスにつき1つのインスタンスを使用する．
+ * </p>
+ * 
+ * <p>
+ * リスナーはコンストラクタで指定したHandlerまたは {@link Scheduler} のスレッドで呼び出される．各メソッドは任意のスレッドから呼び出せる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class DiscoveryCoordinator {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = DiscoveryCoordinator.class.getSimpleName();
+
+	/** インスタンス */
+	private static DiscoveryCoordinator instance;
+
+	/** BluetoothBackend */
+	private final BluetoothBackend backend;
+	/** 受信処理とリスナーの呼び出しを行うスレッド */
+	private final Scheduler scheduler;
+	/** 時計 */
+	private final Clock clock;
+	/** 受信処理を行うスレッドで検索結果を受信するリスナー */
+	private final BackendListener backendListener;
+	/** 検出されたデバイス */
+	private final LongObjectHashMap<DiscoveredDevice> devices = new LongObjectHashMap<DiscoveredDevice>();
+	/** 検出された順のデバイス */
+	private final List<DiscoveredDevice> ordered = new ArrayList<DiscoveredDevice>();
+	/** 参加している呼び出し元 */
+	private final List<DiscoverySession> sessions = new ArrayList<DiscoverySession>();
+
+	/** 中断を要求している数 */
+	private int suspendCount;
+	/** 検索中かどうか */
+	private boolean inquiring;
+	/** 実行中の検索の開始を受信したかどうか */
+	private boolean inquiryStarted;
+
+	/** 検索を開始した回数 */
+	private int inquiryCount;
+	/** 中断した回数 */
+	private int suspendedCount;
+	/** 検索していた合計ミリ秒 */
+	private long inquiryTime;
+	/** 呼び出し元が参加していた合計ミリ秒 */
+	private long activeTime;
+	/** 中断していた合計ミリ秒 */
+	private long suspendedTime;
+	/** 検索を開始した時刻 */
+	private long inquiryStartedAt;
+	/** 呼び出し元が参加した時刻 */
+	private long activeSince;
+	/** 中断した時刻 */
+	private long suspendedSince;
+
+	/** 検索結果の受信処理 */
+	private final BackendListener receiver = new BackendListener() {
+		@Override
+		public void onStateChanged(int previous, int state) {
+			if (state != BluetoothAdapter.STATE_ON) {
+				releaseAll(BluetoothDiscoveryEngine.FINISH_ERROR);
+			}
+		}
+
+		@Override
+		public void onDiscoveryStarted() {
+			onInquiryStarted();
+		}
+
+		@Override
+		public void onDeviceFound(DeviceRecord device, int rssi) {
+			onFound(device, rssi);
+		}
+
+		@Override
+		public void onDiscoveryFinished() {
+			onInquiryFinished();
+		}
+
+		@Override
+		public void onBondStateChanged(DeviceRecord device, int state) {
+		}
+
+		@Override
+		public void onDeviceChanged(DeviceRecord device) {
+		}
+	};
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * <p>
+	 * {@link #getInstance(Context)} 以外のインスタンスは，
+	 * {@link net.kokohadoko.instil.android.bluetooth.backend.SimulatedBluetoothBackend} などを使用した検証に使用する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @param handler 受信処理とリスナーの呼び出しを行うHandler
+	 */
+	public DiscoveryCoordinator(BluetoothBackend backend, Handler handler) {
+		this(backend, new HandlerScheduler(handler), Clock.SYSTEM);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * <p>
+	 * Handlerを使用できないJVM上での検証に使用する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param backend BluetoothBackend
+	 * @param scheduler 受信処理とリスナーの呼び出しを行うスレッド
+	 * @param clock 検索時間などの集計に使用する時計
+	 */
+	public DiscoveryCoordinator(BluetoothBackend backend, Scheduler scheduler, Clock clock) {
+		if (backend == null) {
+			throw new IllegalArgumentException("backendがnullです．");
+		}
+		if (scheduler == null) {
+			throw new IllegalArgumentException("schedulerがnullです．");
+		}
+		if (clock == null) {
+			throw new IllegalArgumentException("clockがnullです．");
+		}
+
+		this.backend = backend;
+		this.scheduler = scheduler;
+		this.clock = clock;
+		this.backendListener = new HandlerBackendListener(receiver, scheduler);
+	}
+
+	/**
+	 * インスタンスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return DiscoveryCoordinator
+	 * @throws BluetoothWrapperException 端末がBluetoothをサポートしていない場合に例外を生成する
+	 */
+	public static synchronized DiscoveryCoordinator getInstance(Context context) throws BluetoothWrapperException {
+		if (instance == null) {
+			BluetoothAdapter adapter = BluetoothAdapterWrapper.getBluetoothAdapter(context);
+			instance = new DiscoveryCoordinator(new AndroidBluetoothBackend(context, adapter),
+					new Handler(Looper.getMainLooper()));
+		}
+
+		return instance;
+	}
+
+	/**
+	 * 検索に参加する
+	 * 
+	 * <p>
+	 * 最初の呼び出し元が参加した時点で検索を開始する．検索は約12秒ごとに自動的に再開される．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー
+	 * @param timeoutMillis 自動的に離脱するまでのミリ秒, 0以下の場合は {@link DiscoverySession#release()} まで参加する
+	 * @return 参加を表すセッション
+	 * @throws BluetoothWrapperException Bluetoothが無効な場合に例外を生成する
+	 */
+	public DiscoverySession acquire(DiscoveryListener listener, long timeoutMillis) throws BluetoothWrapperException {
+		if (listener == null) {
+			throw new IllegalArgumentException("listenerがnullです．");
+		}
+		if (!BluetoothAdapterWrapper.isEnabled(backend)) {
+			throw BluetoothDisabledException.INSTANCE;
+		}
+
+		final DiscoverySession session = new DiscoverySession(this, listener);
+		synchronized (this) {
+			if (sessions.isEmpty()) {
+				backend.addListener(backendListener);
+				activeSince = clock.elapsedRealtime();
+			}
+			sessions.add(session);
+			startInquiry();
+		}
+
+		if (timeoutMillis > 0) {
+			scheduler.postDelayed(session.timeoutTask, timeoutMillis);
+		}
+		// 通知の重複を避けるため，過去の検出結果を通知するまで新たな検出結果は通知しない
+		scheduler.post(new Runnable() {
+			@Override
+			public void run() {
+				replay(session);
+			}
+		});
+
+		return session;
+	}
+
+	/**
+	 * 接続処理のために検索を中断する
+	 * 
+	 * <p>
+	 * 呼び出しごとに {@link #resume()} を呼び出すこと．全ての中断が解除された時点で，
+	 * 参加している呼び出し元がいれば検索を再開する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 */
+	public synchronized void suspend() {
+		if (suspendCount++ > 0) {
+			return;
+		}
+
+		suspendedCount++;
+		suspendedSince = clock.elapsedRealtime();
+		if (inquiring) {
+			stopInquiry();
+		}
+	}
+
+	/**
+	 * 検索の中断を解除する
+	 * 
+	 * @since 0.0.1
+	 */
+	public synchronized void resume() {
+		if (suspendCount == 0) {
+			throw new IllegalStateException("中断されていません．");
+		}
+		if (--suspendCount > 0) {
+			return;
+		}
+
+		suspendedTime += clock.elapsedRealtime() - suspendedSince;
+		startInquiry();
+	}
+
+	/**
+	 * 検索中かどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 検索中の場合に true, そうでない場合に falseを返す
+	 */
+	public synchronized boolean isInquiring() {
+		return inquiring;
+	}
+
+	/**
+	 * 中断中かどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 中断中の場合に true, そうでない場合に falseを返す
+	 */
+	public synchronized boolean isSuspended() {
+		return suspendCount > 0;
+	}
+
+	/**
+	 * 参加している呼び出し元の数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 呼び出し元の数
+	 */
+	public synchronized int getSessionCount() {
+		return sessions.size();
+	}
+
+	/**
+	 * 検出されたデバイスの一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 検出された順のデバイス一覧
+	 */
+	public synchronized List<DiscoveredDevice> getDevices() {
+		return new ArrayList<DiscoveredDevice>(ordered);
+	}
+
+	/**
+	 * 検索を開始した回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 検索を開始した回数
+	 */
+	public synchronized int getInquiryCount() {
+		return inquiryCount;
+	}
+
+	/**
+	 * 接続処理のために中断した回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 中断した回数
+	 */
+	public synchronized int getSuspendedCount() {
+		return suspendedCount;
+	}
+
+	/**
+	 * 検索していた合計ミリ秒を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return ミリ秒
+	 */
+	public synchronized long getInquiryTime() {
+		long time = inquiryTime;
+		if (inquiring) {
+			time += clock.elapsedRealtime() - inquiryStartedAt;
+		}
+
+		return time;
+	}
+
+	/**
+	 * 呼び出し元が参加していた合計ミリ秒を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return ミリ秒
+	 */
+	public synchronized long getActiveTime() {
+		long time = activeTime;
+		if (!sessions.isEmpty()) {
+			time += clock.elapsedRealtime() - activeSince;
+		}
+
+		return time;
+	}
+
+	/**
+	 * 接続処理のために中断していた合計ミリ秒を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return ミリ秒
+	 */
+	public synchronized long getSuspendedTime() {
+		long time = suspendedTime;
+		if (suspendCount > 0) {
+			time += clock.elapsedRealtime() - suspendedSince;
+		}
+
+		return time;
+	}
+
+	/**
+	 * 呼び出し元が参加していた時間のうち，実際に検索していた割合を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 0から1までの割合
+	 */
+	public synchronized float getDutyCycle() {
+		long active = getActiveTime();
+		if (active <= 0) {
+			return 0;
+		}
+
+		return Math.min(1f, (float) getInquiryTime() / active);
+	}
+
+	/**
+	 * 検索から離脱させる
+	 * 
+	 * @since 0.0.1
+	 * @param session セッション
+	 * @param reason リスナーに通知する終了理由
+	 */
+	void release(DiscoverySession session, int reason) {
+		synchronized (this) {
+			if (!session.active) {
+				return;
+			}
+			session.active = false;
+			sessions.remove(session);
+			if (sessions.isEmpty()) {
+				stop();
+			}
+		}
+
+		scheduler.removeCallbacks(session.timeoutTask);
+		session.listener.onDiscoveryFinished(reason);
+	}
+
+	/**
+	 * 全ての呼び出し元を離脱させる
+	 * 
+	 * @since 0.0.1
+	 * @param reason リスナーに通知する終了理由
+	 */
+	private void releaseAll(int reason) {
+		List<DiscoverySession> current;
+		synchronized (this) {
+			current = new ArrayList<DiscoverySession>(sessions);
+		}
+
+		for (DiscoverySession session : current) {
+			release(session, reason);
+		}
+	}
+
+	/**
+	 * 条件を満たす場合に検索を開始する．thisで同期して呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 */
+	private void startInquiry() {
+		if (inquiring || suspendCount > 0 || sessions.isEmpty()) {
+			return;
+		}
+
+		// 検索の再開は周期的に行われるため，例外を生成しない方法で開始する
+		int result = BluetoothAdapterWrapper.tryStartDiscovery(backend);
+		if (result == BluetoothAdapterWrapper.RESULT_TRUE) {
+			inquiring = true;
+			inquiryStarted = false;
+			inquiryCount++;
+			inquiryStartedAt = clock.elapsedRealtime();
+			return;
+		}
+
+		Log.w(LOG_TAG, "検索の開始に失敗しました．result=" + result);
+		scheduler.post(new Runnable() {
+			@Override
+			public void run() {
+				releaseAll(BluetoothDiscoveryEngine.FINISH_ERROR);
+			}
+		});
+	}
+
+	/**
+	 * 検索を中止する．thisで同期して呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 */
+	private void stopInquiry() {
+		inquiring = false;
+		inquiryStarted = false;
+		inquiryTime += clock.elapsedRealtime() - inquiryStartedAt;
+		BluetoothAdapterWrapper.tryCancelDiscovery(backend);
+	}
+
+	/**
+	 * 全ての呼び出し元が離脱した場合に検索を終了する．thisで同期して呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 */
+	private void stop() {
+		if (inquiring) {
+			stopInquiry();
+		}
+		activeTime += clock.elapsedRealtime() - activeSince;
+		backend.removeListener(backendListener);
+		devices.clear();
+		ordered.clear();
+	}
+
+	/**
+	 * 参加した呼び出し元にそれまでの検出結果を通知する
+	 * 
+	 * <p>
+	 * 受信処理と同じスレッドで呼び出すこと．通知した時点以降の検出結果は {@link #onFound(DeviceRecord, int)} で通知される．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param session セッション
+	 */
+	private void replay(DiscoverySession session) {
+		List<DiscoveredDevice> current;
+		synchronized (this) {
+			if (!session.active) {
+				return;
+			}
+			current = new ArrayList<DiscoveredDevice>(ordered);
+			session.replayed = true;
+		}
+
+		for (DiscoveredDevice device : current) {
+			session.listener.onDeviceFound(device);
+		}
+	}
+
+	/**
+	 * デバイスが検出された場合の処理
+	 * 
+	 * @since 0.0.1
+	 * @param device 検出されたデバイス
+	 * @param rssi RSSI
+	 */
+	private void onFound(DeviceRecord device, int rssi) {
+		long address = device.getAddressLong();
+		long now = clock.elapsedRealtime();
+
+		DiscoveredDevice discovered;
+		boolean found;
+		List<DiscoverySession> current;
+		synchronized (this) {
+			if (sessions.isEmpty()) {
+				return;
+			}
+			discovered = devices.get(address);
+			found = discovered == null;
+			if (found) {
+				discovered = new DiscoveredDevice(address, now);
+				devices.put(address, discovered);
+				ordered.add(discovered);
+			}
+			discovered.merge(device, rssi, now);
+			// 過去の検出結果を通知していない呼び出し元には，後から通知する
+			current = new ArrayList<DiscoverySession>(sessions.size());
+			for (DiscoverySession session : sessions) {
+				if (session.replayed) {
+					current.add(session);
+				}
+			}
+		}
+
+		for (DiscoverySession session : current) {
+			if (found) {
+				session.listener.onDeviceFound(discovered);
+			} else {
+				session.listener.onDeviceUpdated(discovered);
+			}
+		}
+	}
+
+	/**
+	 * 検索の開始が通知された場合の処理
+	 * 
+	 * @since 0.0.1
+	 */
+	private synchronized void onInquiryStarted() {
+		if (inquiring) {
+			inquiryStarted = true;
+		}
+	}
+
+	/**
+	 * 検索の終了が通知された場合の処理
+	 * 
+	 * <p>
+	 * 中止による終了の通知は非同期に届くため，中断の直後に再開した場合は以前の検索の終了を受信することがある．
+	 * 開始の通知を受信していない場合と，アダプターがまだ検索中の場合は以前の検索の終了として無視する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 */
+	private synchronized void onInquiryFinished() {
+		if (!inquiring || !inquiryStarted) {
+			// 中断または終了により中止した検索
+			return;
+		}
+		if (BluetoothAdapterWrapper.tryIsDiscovering(backend) == BluetoothAdapterWrapper.RESULT_TRUE) {
+			// 再開した検索が実行中
+			return;
+		}
+
+		inquiring = false;
+		inquiryStarted = false;
+		inquiryTime += clock.elapsedRealtime() - inquiryStartedAt;
+		startInquiry();
+	}
+}
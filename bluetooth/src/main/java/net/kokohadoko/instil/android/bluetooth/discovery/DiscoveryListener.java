@@ -0,0 +1,34 @@
+package net.kokohadoko.instil.android.bluetooth.discovery;
+
+/**
+ * 周辺デバイスの検索結果を受け取るリスナー
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface DiscoveryListener {
+
+	/**
+	 * デバイスが初めて検出された場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param device 検出されたデバイス
+	 */
+	void onDeviceFound(DiscoveredDevice device);
+
+	/**
+	 * 検出済みのデバイスが再度検出され，RSSIなどが更新された場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param device 更新されたデバイス
+	 */
+	void onDeviceUpdated(DiscoveredDevice device);
+
+	/**
+	 * 検索が終了した場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param reason 終了理由．{@link BluetoothDiscoveryEngine#FINISH_COMPLETED} などの値
+	 */
+	void onDiscoveryFinished(int reason);
+}
@@ -0,0 +1,69 @@
+package net.kokohadoko.instil.android.bluetooth.discovery;
+
+/**
+ * {@link DiscoveryCoordinator} の検索に参加している呼び出し元
+ * 
+ * <p>
+ * 検索結果が不要になった時点で {@link #release()} を呼び出すこと．
+ * 全ての呼び出し元が解放した時点で検索は中止される．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class DiscoverySession {
+
+	/** コーディネーター */
+	private final DiscoveryCoordinator coordinator;
+	/** リスナー */
+	final DiscoveryListener listener;
+	/** 参加しているかどうか．コーディネーターで同期して更新する */
+	boolean active = true;
+	/** 参加前の検出結果を通知したかどうか．コーディネーターで同期して更新する */
+	boolean replayed;
+
+	/** タイムアウト処理 */
+	final Runnable timeoutTask = new Runnable() {
+		@Override
+		public void run() {
+			coordinator.release(DiscoverySession.this, BluetoothDiscoveryEngine.FINISH_TIMEOUT);
+		}
+	};
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param coordinator コーディネーター
+	 * @param listener リスナー
+	 */
+	DiscoverySession(DiscoveryCoordinator coordinator, DiscoveryListener listener) {
+		this.coordinator = coordinator;
+		this.listener = listener;
+	}
+
+	/**
+	 * 検索から離脱する
+	 * 
+	 * <p>
+	 * リスナーには {@link BluetoothDiscoveryEngine#FINISH_CANCELLED} が通知される．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 */
+	public void release() {
+		coordinator.release(this, BluetoothDiscoveryEngine.FINISH_CANCELLED);
+	}
+
+	/**
+	 * 検索に参加しているかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 参加している場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isActive() {
+		synchronized (coordinator) {
+			return active;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package net.kokohadoko.instil.android.bluetooth.exception;
+
+/**
+ * Bluetoothが無効な場合の例外クラス
+ * 
+ * <p>
+ * 想定される状態のため，スタックトレースを持たない {@link #INSTANCE} を使い回す．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BluetoothDisabledException extends BluetoothWrapperException {
+
+	/**  */
+	private static final long serialVersionUID = 1L;
+
+	/** スタックトレースを持たないインスタンス */
+	public static final BluetoothDisabledException INSTANCE =
+			new BluetoothDisabledException("Bluetoothが無効です．", false);
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param detailMessage メッセージ
+	 */
+	public BluetoothDisabledException(String detailMessage) {
+		super(detailMessage);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param detailMessage メッセージ
+	 * @param writableStackTrace スタックトレースを保持する場合に true
+	 */
+	private BluetoothDisabledException(String detailMessage, boolean writableStackTrace) {
+		super(detailMessage, writableStackTrace);
+	}
+}
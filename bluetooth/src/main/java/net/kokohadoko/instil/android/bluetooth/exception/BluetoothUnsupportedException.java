@@ -0,0 +1,42 @@
+package net.kokohadoko.instil.android.bluetooth.exception;
+
+/**
+ * 端末がBluetoothをサポートしていない場合の例外クラス
+ * 
+ * <p>
+ * 想定される状態のため，スタックトレースを持たない {@link #INSTANCE} を使い回す．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BluetoothUnsupportedException extends BluetoothWrapperException {
+
+	/**  */
+	private static final long serialVersionUID = 1L;
+
+	/** スタックトレースを持たないインスタンス */
+	public static final BluetoothUnsupportedException INSTANCE =
+			new BluetoothUnsupportedException("端末がBluetoothをサポートしていません．", false);
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param detailMessage メッセージ
+	 */
+	public BluetoothUnsupportedException(String detailMessage) {
+		super(detailMessage);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param detailMessage メッセージ
+	 * @param writableStackTrace スタックトレースを保持する場合に true
+	 */
+	private BluetoothUnsupportedException(String detailMessage, boolean writableStackTrace) {
+		super(detailMessage, writableStackTrace);
+	}
+}
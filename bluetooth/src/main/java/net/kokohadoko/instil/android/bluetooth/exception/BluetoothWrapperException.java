@@ -0,0 +1,73 @@
+package net.kokohadoko.instil.android.bluetooth.exception;
+
+/**
+ * BluetoothAdapterWrapperにおける独自例外クラス
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BluetoothWrapperException extends Exception {
+
+	/**  */
+	private static final long serialVersionUID = 1L;
+
+	/** 空のスタックトレース */
+	private static final StackTraceElement[] EMPTY_STACK_TRACE = new StackTraceElement[0];
+
+	/**
+	 * デフォルトコンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	public BluetoothWrapperException() {
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param detailMessage メッセージ
+	 */
+	public BluetoothWrapperException(String detailMessage) {
+		super(detailMessage);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param throwable 例外オブジェクト
+	 */
+	public BluetoothWrapperException(Throwable throwable) {
+		super(throwable);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param detailMessage メッセージ
+	 * @param throwable 例外オブジェクト
+	 */
+	public BluetoothWrapperException(String detailMessage, Throwable throwable) {
+		super(detailMessage, throwable);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * <p>
+	 * 事前に生成して使い回す例外は，生成した箇所のスタックトレースが誤解を招くため破棄する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param detailMessage メッセージ
+	 * @param writableStackTrace スタックトレースを保持する場合に true
+	 */
+	protected BluetoothWrapperException(String detailMessage, boolean writableStackTrace) {
+		super(detailMessage);
+		if (!writableStackTrace) {
+			setStackTrace(EMPTY_STACK_TRACE);
+		}
+	}
+}
@@ -0,0 +1,1206 @@
+package net.kokohadoko.instil.android.bluetooth.gatt;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Future;
+
+import net.kokohadoko.instil.android.bluetooth.util.SettableFuture;
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * GATTの操作をキューに追加して1つずつ実行するクライアント
+ * 
+ * <p>
+ * Androidでは1つの接続につき同時に1つの操作しか実行できないため，
+ * 複数の箇所から要求された操作をキューに追加し，コールバックを受け取るまで次の操作を開始しない．
+ * 各メソッドは任意のスレッドから呼び出せ，結果はFutureで返す．
+ * </p>
+ * 
+ * <p>
+ * {@link #writeStream(UUID, UUID, byte[], int, int)} はデータをMTUに合わせて分割し，
+ * キューに残っている同じキャラクタリスティックへの書き込みに連結してから応答なしで書き込む．
+ * まとまったデータを転送する間は {@link #beginBulkTransfer()} で接続間隔を短くする．
+ * </p>
+ * 
+ * <p>
+ * {@link #connect(boolean)} で自動接続を指定した場合は，切断されてもBluetoothGattを閉じずに
+ * スタックによる再接続を待ち，再接続した時点でサービスを検索し直す．
+ * {@link #disconnect()} または {@link #close()} を呼び出すまで再接続を続ける．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+public class GattClient {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = GattClient.class.getSimpleName();
+
+	/** サービスの検索を表す */
+	public static final int OPERATION_DISCOVER_SERVICES = 0;
+	/** キャラクタリスティックの読み込みを表す */
+	public static final int OPERATION_READ = 1;
+	/** 応答ありのキャラクタリスティックの書き込みを表す */
+	public static final int OPERATION_WRITE = 2;
+	/** 応答なしのキャラクタリスティックの書き込みを表す */
+	public static final int OPERATION_WRITE_NO_RESPONSE = 3;
+	/** ディスクリプタの読み込みを表す */
+	public static final int OPERATION_READ_DESCRIPTOR = 4;
+	/** ディスクリプタの書き込みを表す */
+	public static final int OPERATION_WRITE_DESCRIPTOR = 5;
+	/** MTUの変更を表す */
+	public static final int OPERATION_REQUEST_MTU = 6;
+	/** RSSIの読み込みを表す */
+	public static final int OPERATION_READ_RSSI = 7;
+	/** 接続優先度の変更を表す */
+	public static final int OPERATION_CONNECTION_PRIORITY = 8;
+	/** 操作種別の数 */
+	static final int OPERATION_COUNT = 9;
+
+	/** デフォルトのMTU */
+	public static final int DEFAULT_MTU = 23;
+	/** 要求できる最大のMTU */
+	public static final int MAX_MTU = 517;
+	/** ATTヘッダのバイト数 */
+	public static final int ATT_HEADER_SIZE = 3;
+	/** デフォルトの操作のタイムアウトのミリ秒 */
+	public static final long DEFAULT_OPERATION_TIMEOUT = 5 * 1000;
+
+	/** Client Characteristic Configuration DescriptorのUUID */
+	public static final UUID CLIENT_CHARACTERISTIC_CONFIG = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+	/** 接続優先度 BluetoothGatt.CONNECTION_PRIORITY_BALANCED */
+	private static final int PRIORITY_BALANCED = 0;
+	/** 接続優先度 BluetoothGatt.CONNECTION_PRIORITY_HIGH */
+	private static final int PRIORITY_HIGH = 1;
+	/** BLEで接続することを表す BluetoothDevice.TRANSPORT_LE */
+	private static final int TRANSPORT_LE = 2;
+
+	/** コンテキスト */
+	private final Context context;
+	/** 接続先のデバイス */
+	private final BluetoothDevice device;
+	/** 操作を実行するHandler */
+	private final Handler handler;
+	/** 処理時間の集計 */
+	private final GattOperationStats stats = new GattOperationStats();
+	/** 実行待ちの操作．handlerのスレッドからのみ参照する */
+	private final ArrayDeque<Operation<?>> queue = new ArrayDeque<Operation<?>>();
+
+	/** BluetoothGatt．handlerのスレッドからのみ参照する */
+	private BluetoothGatt gatt;
+	/** 実行中の操作．handlerのスレッドからのみ参照する */
+	private Operation<?> current;
+	/** 接続の完了を通知するFuture．handlerのスレッドからのみ参照する */
+	private SettableFuture<Boolean> connectFuture;
+	/** 大量転送を要求している数．handlerのスレッドからのみ参照する */
+	private int bulkCount;
+	/** 切断後に再接続を待つかどうか．handlerのスレッドからのみ参照する */
+	private boolean autoConnect;
+
+	/** 接続済みかどうか */
+	private volatile boolean connected;
+	/** 現在のMTU */
+	private volatile int mtu = DEFAULT_MTU;
+	/** 操作のタイムアウトのミリ秒 */
+	private volatile long operationTimeout = DEFAULT_OPERATION_TIMEOUT;
+	/** リスナー */
+	private volatile GattClientListener listener;
+
+	/** タイムアウト処理 */
+	private final Runnable timeoutTask = new Runnable() {
+		@Override
+		public void run() {
+			if (current == null) {
+				return;
+			}
+
+			Log.w(LOG_TAG, "操作がタイムアウトしました．type=" + current.type);
+			Operation<?> operation = current;
+			current = null;
+			finish(operation, false, null);
+			fail(operation, new IOException("操作がタイムアウトしました．"));
+			// 応答のなかった操作のコールバックが後から届くと後続の操作と区別できず，
+			// スタックも次の操作を受け付けないことがあるため，接続を閉じてコールバックを止める
+			release(BluetoothGatt.GATT_FAILURE, true);
+		}
+	};
+
+	/** GATTのコールバック．Binderのスレッドから呼び出されるため，値を複製してhandlerに渡す */
+	private final BluetoothGattCallback callback = new BluetoothGattCallback() {
+		@Override
+		public void onConnectionStateChange(final BluetoothGatt g, final int status, final int newState) {
+			handler.post(new Runnable() {
+				@Override
+				public void run() {
+					onConnectionChanged(g, status, newState);
+				}
+			});
+		}
+
+		@Override
+		public void onServicesDiscovered(BluetoothGatt g, int status) {
+			post(g, OPERATION_DISCOVER_SERVICES, null, null, status, null, 0);
+		}
+
+		@Override
+		public void onCharacteristicRead(BluetoothGatt g, BluetoothGattCharacteristic c, int status) {
+			post(g, OPERATION_READ, c.getUuid(), null, status, copy(c.getValue()), 0);
+		}
+
+		@Override
+		public void onCharacteristicWrite(BluetoothGatt g, BluetoothGattCharacteristic c, int status) {
+			post(g, OPERATION_WRITE, c.getUuid(), null, status, null, 0);
+		}
+
+		@Override
+		public void onCharacteristicChanged(BluetoothGatt g, BluetoothGattCharacteristic c) {
+			final UUID service = c.getService().getUuid();
+			final UUID characteristic = c.getUuid();
+			final byte[] value = copy(c.getValue());
+			handler.post(new Runnable() {
+				@Override
+				public void run() {
+					GattClientListener target = listener;
+					if (target != null) {
+						target.onCharacteristicChanged(service, characteristic, value);
+					}
+				}
+			});
+		}
+
+		@Override
+		public void onDescriptorRead(BluetoothGatt g, BluetoothGattDescriptor d, int status) {
+			post(g, OPERATION_READ_DESCRIPTOR, d.getCharacteristic().getUuid(), d.getUuid(), status, copy(d.getValue()), 0);
+		}
+
+		@Override
+		public void onDescriptorWrite(BluetoothGatt g, BluetoothGattDescriptor d, int status) {
+			post(g, OPERATION_WRITE_DESCRIPTOR, d.getCharacteristic().getUuid(), d.getUuid(), status, null, 0);
+		}
+
+		@Override
+		public void onMtuChanged(BluetoothGatt g, int mtu, int status) {
+			post(g, OPERATION_REQUEST_MTU, null, null, status, null, mtu);
+		}
+
+		@Override
+		public void onReadRemoteRssi(BluetoothGatt g, int rssi, int status) {
+			post(g, OPERATION_READ_RSSI, null, null, status, null, rssi);
+		}
+
+		/**
+		 * 操作の完了をhandlerに渡す
+		 * 
+		 * @since 0.0.1
+		 * @param g コールバックを呼び出したBluetoothGatt
+		 * @param type 操作種別
+		 * @param characteristic 対象のキャラクタリスティックUUID, 対象がない場合は null
+		 * @param descriptor 対象のディスクリプタUUID, 対象がない場合は null
+		 * @param status ステータス
+		 * @param value 読み込んだ値
+		 * @param number 読み込んだ数値
+		 */
+		private void post(final BluetoothGatt g, final int type, final UUID characteristic, final UUID descriptor,
+				final int status, final byte[] value, final int number) {
+			handler.post(new Runnable() {
+				@Override
+				public void run() {
+					if (g != gatt) {
+						// 閉じた接続のコールバック
+						return;
+					}
+					onOperationCompleted(type, characteristic, descriptor, status, value, number);
+				}
+			});
+		}
+	};
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * <p>
+	 * 操作はメインスレッドで実行する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param device 接続先のデバイス
+	 */
+	public GattClient(Context context, BluetoothDevice device) {
+		this(context, device, new Handler(Looper.getMainLooper()));
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param device 接続先のデバイス
+	 * @param handler 操作を実行するHandler
+	 */
+	public GattClient(Context context, BluetoothDevice device, Handler handler) {
+		if (context == null) {
+			throw new IllegalArgumentException("contextがnullです．");
+		}
+		if (device == null) {
+			throw new IllegalArgumentException("deviceがnullです．");
+		}
+		if (handler == null) {
+			throw new IllegalArgumentException("handlerがnullです．");
+		}
+
+		this.context = context.getApplicationContext();
+		this.device = device;
+		this.handler = handler;
+	}
+
+	/**
+	 * リスナーを設定する
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー, 解除する場合は null
+	 */
+	public void setListener(GattClientListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 操作のタイムアウトを設定する
+	 * 
+	 * <p>
+	 * 操作がタイムアウトした場合は接続を閉じ，実行待ちの操作を全て失敗させる．
+	 * リスナーには {@link BluetoothGatt#GATT_FAILURE} で切断を通知する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param operationTimeout ミリ秒
+	 */
+	public void setOperationTimeout(long operationTimeout) {
+		if (operationTimeout <= 0) {
+			throw new IllegalArgumentException("operationTimeoutが不正な値です．");
+		}
+
+		this.operationTimeout = operationTimeout;
+	}
+
+	/**
+	 * 接続先のデバイスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return BluetoothDevice
+	 */
+	public BluetoothDevice getDevice() {
+		return device;
+	}
+
+	/**
+	 * 接続済みかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 接続済みの場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isConnected() {
+		return connected;
+	}
+
+	/**
+	 * 現在のMTUを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return MTU
+	 */
+	public int getMtu() {
+		return mtu;
+	}
+
+	/**
+	 * 1回の書き込みで送信できる最大のバイト数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return バイト数
+	 */
+	public int getMaxPayloadSize() {
+		return mtu - ATT_HEADER_SIZE;
+	}
+
+	/**
+	 * 処理時間の集計を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return GattOperationStats
+	 */
+	public GattOperationStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * 接続してサービスを検索する
+	 * 
+	 * @since 0.0.1
+	 * @param autoConnect デバイスが利用可能になった時点で自動的に接続し，切断後も再接続を待つ場合に true
+	 * @return サービスの検索が完了した場合に true, 接続に失敗した場合に falseを返すFuture
+	 */
+	public Future<Boolean> connect(final boolean autoConnect) {
+		final SettableFuture<Boolean> future = new SettableFuture<Boolean>();
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				if (gatt != null) {
+					future.setException(new IllegalStateException("接続中です．"));
+					return;
+				}
+
+				connectFuture = future;
+				GattClient.this.autoConnect = autoConnect;
+				if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+					gatt = device.connectGatt(context, autoConnect, callback, TRANSPORT_LE);
+				} else {
+					gatt = device.connectGatt(context, autoConnect, callback);
+				}
+				if (gatt == null) {
+					connectFuture = null;
+					GattClient.this.autoConnect = false;
+					future.set(false);
+				}
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * 切断する
+	 * 
+	 * <p>
+	 * 実行待ちの操作は切断が完了した時点で失敗する．
+	 * 自動接続を指定した場合は再接続を止め，切断が完了した時点で接続を閉じる．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 */
+	public void disconnect() {
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				if (gatt == null) {
+					return;
+				}
+
+				boolean waiting = autoConnect && !connected;
+				autoConnect = false;
+				gatt.disconnect();
+				// 再接続を待っている間は切断のコールバックが届かないため，ここで閉じる
+				if (waiting) {
+					release(BluetoothGatt.GATT_SUCCESS, false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 接続を閉じ，実行待ちの操作を全て失敗させる
+	 * 
+	 * @since 0.0.1
+	 */
+	public void close() {
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				release(BluetoothGatt.GATT_SUCCESS, false);
+			}
+		});
+	}
+
+	/**
+	 * キャラクタリスティックを読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param service サービスUUID
+	 * @param characteristic キャラクタリスティックUUID
+	 * @return 読み込んだ値を返すFuture
+	 */
+	public Future<byte[]> read(UUID service, UUID characteristic) {
+		Operation<byte[]> operation = new Operation<byte[]>(OPERATION_READ);
+		operation.setTarget(service, characteristic, null);
+		return enqueue(operation);
+	}
+
+	/**
+	 * 応答ありでキャラクタリスティックに書き込む
+	 * 
+	 * @since 0.0.1
+	 * @param service サービスUUID
+	 * @param characteristic キャラクタリスティックUUID
+	 * @param value 書き込む値
+	 * @return 書き込みが完了した時点で完了するFuture
+	 */
+	public Future<Void> write(UUID service, UUID characteristic, byte[] value) {
+		Operation<Void> operation = new Operation<Void>(OPERATION_WRITE);
+		operation.setTarget(service, characteristic, null);
+		operation.setValue(value.clone(), value.length);
+		return enqueue(operation);
+	}
+
+	/**
+	 * 応答なしでキャラクタリスティックに書き込む
+	 * 
+	 * <p>
+	 * 1回の書き込みで送信するため，値の長さは {@link #getMaxPayloadSize()} 以下であること．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param service サービスUUID
+	 * @param characteristic キャラクタリスティックUUID
+	 * @param value 書き込む値
+	 * @return 書き込みがスタックに渡された時点で完了するFuture
+	 */
+	public Future<Void> writeNoResponse(UUID service, UUID characteristic, byte[] value) {
+		if (value.length > getMaxPayloadSize()) {
+			throw new IllegalArgumentException("valueがMTUを超えています．");
+		}
+
+		Operation<Void> operation = new Operation<Void>(OPERATION_WRITE_NO_RESPONSE);
+		operation.setTarget(service, characteristic, null);
+		operation.setValue(value.clone(), value.length);
+		return enqueue(operation);
+	}
+
+	/**
+	 * 応答なしでキャラクタリスティックにデータを書き込む
+	 * 
+	 * @since 0.0.1
+	 * @param service サービスUUID
+	 * @param characteristic キャラクタリスティックUUID
+	 * @param data データ
+	 * @return 全てのデータがスタックに渡された時点で完了するFuture
+	 * @see #writeStream(UUID, UUID, byte[], int, int)
+	 */
+	public Future<Void> writeStream(UUID service, UUID characteristic, byte[] data) {
+		return writeStream(service, characteristic, data, 0, data.length);
+	}
+
+	/**
+	 * 応答なしでキャラクタリスティックにデータを書き込む
+	 * 
+	 * <p>
+	 * データは {@link #getMaxPayloadSize()} ごとに分割し，キューの末尾に同じキャラクタリスティックへの
+	 * 未実行の書き込みがある場合はそれに連結する．そのためデータの区切りは保持されない．
+	 * 途中の書き込みに失敗した場合は，同じキャラクタリスティックへの実行待ちの書き込みも全て失敗する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param service サービスUUID
+	 * @param characteristic キャラクタリスティックUUID
+	 * @param data データ
+	 * @param offset データの開始位置
+	 * @param length データ長
+	 * @return 全てのデータがスタックに渡された時点で完了するFuture
+	 */
+	public Future<Void> writeStream(final UUID service, final UUID characteristic, byte[] data, int offset, int length) {
+		if (service == null) {
+			throw new IllegalArgumentException("serviceがnullです．");
+		}
+		if (characteristic == null) {
+			throw new IllegalArgumentException("characteristicがnullです．");
+		}
+
+		final SettableFuture<Void> future = new SettableFuture<Void>();
+		final byte[] copy = Arrays.copyOfRange(data, offset, offset + length);
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				appendStream(service, characteristic, copy, future);
+				drain();
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * ディスクリプタを読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param service サービスUUID
+	 * @param characteristic キャラクタリスティックUUID
+	 * @param descriptor ディスクリプタUUID
+	 * @return 読み込んだ値を返すFuture
+	 */
+	public Future<byte[]> readDescriptor(UUID service, UUID characteristic, UUID descriptor) {
+		Operation<byte[]> operation = new Operation<byte[]>(OPERATION_READ_DESCRIPTOR);
+		operation.setTarget(service, characteristic, descriptor);
+		return enqueue(operation);
+	}
+
+	/**
+	 * ディスクリプタに書き込む
+	 * 
+	 * @since 0.0.1
+	 * @param service サービスUUID
+	 * @param characteristic キャラクタリスティックUUID
+	 * @param descriptor ディスクリプタUUID
+	 * @param value 書き込む値
+	 * @return 書き込みが完了した時点で完了するFuture
+	 */
+	public Future<Void> writeDescriptor(UUID service, UUID characteristic, UUID descriptor, byte[] value) {
+		Operation<Void> operation = new Operation<Void>(OPERATION_WRITE_DESCRIPTOR);
+		operation.setTarget(service, characteristic, descriptor);
+		operation.setValue(value.clone(), value.length);
+		return enqueue(operation);
+	}
+
+	/**
+	 * 通知の受信を設定する
+	 * 
+	 * <p>
+	 * キャラクタリスティックが指示のみをサポートしている場合は指示を有効にする．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param service サービスUUID
+	 * @param characteristic キャラクタリスティックUUID
+	 * @param enable 有効にする場合に true
+	 * @return 設定が完了した時点で完了するFuture
+	 */
+	public Future<Void> setNotification(UUID service, UUID characteristic, boolean enable) {
+		Operation<Void> operation = new Operation<Void>(OPERATION_WRITE_DESCRIPTOR);
+		operation.setTarget(service, characteristic, CLIENT_CHARACTERISTIC_CONFIG);
+		operation.notification = enable ? 1 : 0;
+		return enqueue(operation);
+	}
+
+	/**
+	 * MTUの変更を要求する
+	 * 
+	 * <p>
+	 * Android 5.0未満では変更せずに現在のMTUを返す．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param mtu 要求するMTU
+	 * @return 変更後のMTUを返すFuture
+	 */
+	public Future<Integer> requestMtu(int mtu) {
+		if (mtu < DEFAULT_MTU || mtu > MAX_MTU) {
+			throw new IllegalArgumentException("mtuが不正な値です．");
+		}
+
+		Operation<Integer> operation = new Operation<Integer>(OPERATION_REQUEST_MTU);
+		operation.number = mtu;
+		return enqueue(operation);
+	}
+
+	/**
+	 * RSSIを読み込む
+	 * 
+	 * @since 0.0.1
+	 * @return RSSIを返すFuture
+	 */
+	public Future<Integer> readRssi() {
+		return enqueue(new Operation<Integer>(OPERATION_READ_RSSI));
+	}
+
+	/**
+	 * 接続優先度の変更を要求する
+	 * 
+	 * <p>
+	 * 完了のコールバックがないため，要求した時点で完了する．Android 5.0未満では何もしない．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param priority {@link BluetoothGatt#CONNECTION_PRIORITY_HIGH} などの値
+	 * @return 要求した時点で完了するFuture
+	 */
+	public Future<Void> requestConnectionPriority(int priority) {
+		Operation<Void> operation = new Operation<Void>(OPERATION_CONNECTION_PRIORITY);
+		operation.number = priority;
+		return enqueue(operation);
+	}
+
+	/**
+	 * 大量転送を開始する
+	 * 
+	 * <p>
+	 * 最初の呼び出しで接続優先度を高くし，全ての呼び出しが {@link #endBulkTransfer()} で
+	 * 終了した時点で元に戻す．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 */
+	public void beginBulkTransfer() {
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				if (bulkCount++ == 0) {
+					requestConnectionPriority(PRIORITY_HIGH);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 大量転送を終了する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void endBulkTransfer() {
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				if (bulkCount > 0 && --bulkCount == 0) {
+					requestConnectionPriority(PRIORITY_BALANCED);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 操作をキューに追加する
+	 * 
+	 * @since 0.0.1
+	 * @param operation 操作
+	 * @return 操作の結果を返すFuture
+	 */
+	private <V> Future<V> enqueue(final Operation<V> operation) {
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				queue.add(operation);
+				drain();
+			}
+		});
+
+		return operation;
+	}
+
+	/**
+	 * データを応答なしの書き込みに分割してキューに追加する．handlerのスレッドから呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @param service サービスUUID
+	 * @param characteristic キャラクタリスティックUUID
+	 * @param data データ
+	 * @param future 全てのデータの書き込みが完了した時点で完了するFuture
+	 */
+	private void appendStream(UUID service, UUID characteristic, byte[] data, SettableFuture<Void> future) {
+		if (data.length == 0) {
+			future.set(null);
+			return;
+		}
+
+		int payload = getMaxPayloadSize();
+		int position = 0;
+
+		// 未実行の末尾の書き込みに空きがあれば連結する
+		Operation<?> tail = queue.peekLast();
+		if (tail != null && tail.isStream(service, characteristic) && tail.length < tail.value.length) {
+			int count = Math.min(data.length, tail.value.length - tail.length);
+			System.arraycopy(data, 0, tail.value, tail.length, count);
+			tail.length += count;
+			position = count;
+			if (position == data.length) {
+				tail.addWaiter(future);
+				return;
+			}
+		}
+
+		while (position < data.length) {
+			int count = Math.min(payload, data.length - position);
+			Operation<Void> packet = new Operation<Void>(OPERATION_WRITE_NO_RESPONSE);
+			packet.setTarget(service, characteristic, null);
+			packet.stream = true;
+			packet.setValue(new byte[payload], count);
+			System.arraycopy(data, position, packet.value, 0, count);
+			position += count;
+			if (position == data.length) {
+				packet.addWaiter(future);
+			}
+			queue.add(packet);
+		}
+	}
+
+	/**
+	 * 実行待ちの操作を開始する．handlerのスレッドから呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 */
+	private void drain() {
+		while (current == null) {
+			Operation<?> operation = queue.poll();
+			if (operation == null) {
+				return;
+			}
+			if (operation.isDone()) {
+				continue;
+			}
+			if (gatt == null || !connected) {
+				fail(operation, new IOException("接続されていません．"));
+				continue;
+			}
+
+			operation.startedAt = System.nanoTime();
+			String error = execute(operation);
+			if (error != null) {
+				finish(operation, false, null);
+				fail(operation, new IOException(error));
+				continue;
+			}
+
+			if (operation.type == OPERATION_CONNECTION_PRIORITY
+					|| (operation.type == OPERATION_REQUEST_MTU && Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)) {
+				// 完了のコールバックがない操作はその場で完了する
+				finish(operation, true, null);
+				operation.succeed(operation.type == OPERATION_REQUEST_MTU ? Integer.valueOf(mtu) : null);
+				continue;
+			}
+
+			current = operation;
+			handler.postDelayed(timeoutTask, operationTimeout);
+		}
+	}
+
+	/**
+	 * 操作を実行する
+	 * 
+	 * @since 0.0.1
+	 * @param operation 操作
+	 * @return 成功した場合に null, 失敗した場合にエラーメッセージを返す
+	 */
+	private String execute(Operation<?> operation) {
+		switch (operation.type) {
+		case OPERATION_DISCOVER_SERVICES:
+			return gatt.discoverServices() ? null : "サービスの検索を開始できません．";
+		case OPERATION_REQUEST_MTU:
+			if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+				return null;
+			}
+			return gatt.requestMtu(operation.number) ? null : "MTUの変更を要求できません．";
+		case OPERATION_READ_RSSI:
+			return gatt.readRemoteRssi() ? null : "RSSIの読み込みを開始できません．";
+		case OPERATION_CONNECTION_PRIORITY:
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+				gatt.requestConnectionPriority(operation.number);
+			}
+			return null;
+		default:
+			break;
+		}
+
+		BluetoothGattService service = gatt.getService(operation.service);
+		BluetoothGattCharacteristic characteristic = service != null ? service.getCharacteristic(operation.characteristic) : null;
+		if (characteristic == null) {
+			return "キャラクタリスティックが見つかりません．" + operation.characteristic;
+		}
+
+		switch (operation.type) {
+		case OPERATION_READ:
+			return gatt.readCharacteristic(characteristic) ? null : "読み込みを開始できません．";
+		case OPERATION_WRITE:
+		case OPERATION_WRITE_NO_RESPONSE:
+			characteristic.setWriteType(operation.type == OPERATION_WRITE
+					? BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT
+					: BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+			characteristic.setValue(operation.length == operation.value.length
+					? operation.value : Arrays.copyOf(operation.value, operation.length));
+			return gatt.writeCharacteristic(characteristic) ? null : "書き込みを開始できません．";
+		default:
+			break;
+		}
+
+		BluetoothGattDescriptor descriptor = characteristic.getDescriptor(operation.descriptor);
+		if (descriptor == null) {
+			return "ディスクリプタが見つかりません．" + operation.descriptor;
+		}
+
+		if (operation.type == OPERATION_READ_DESCRIPTOR) {
+			return gatt.readDescriptor(descriptor) ? null : "読み込みを開始できません．";
+		}
+
+		byte[] value = operation.value;
+		if (operation.notification >= 0) {
+			boolean enable = operation.notification == 1;
+			if (!gatt.setCharacteristicNotification(characteristic, enable)) {
+				return "通知を設定できません．";
+			}
+			int properties = characteristic.getProperties();
+			boolean indicate = (properties & BluetoothGattCharacteristic.PROPERTY_NOTIFY) == 0
+					&& (properties & BluetoothGattCharacteristic.PROPERTY_INDICATE) != 0;
+			if (!enable) {
+				value = BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE;
+			} else if (indicate) {
+				value = BluetoothGattDescriptor.ENABLE_INDICATION_VALUE;
+			} else {
+				value = BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE;
+			}
+		}
+		descriptor.setValue(value);
+		return gatt.writeDescriptor(descriptor) ? null : "書き込みを開始できません．";
+	}
+
+	/**
+	 * 操作が完了した場合の処理．handlerのスレッドから呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @param type コールバックの操作種別
+	 * @param characteristic 対象のキャラクタリスティックUUID, 対象がない場合は null
+	 * @param descriptor 対象のディスクリプタUUID, 対象がない場合は null
+	 * @param status ステータス
+	 * @param value 読み込んだ値
+	 * @param number 読み込んだ数値
+	 */
+	private void onOperationCompleted(int type, UUID characteristic, UUID descriptor, int status, byte[] value, int number) {
+		Operation<?> operation = current;
+		if (operation == null || !operation.matches(type, characteristic, descriptor)) {
+			// タイムアウト時は接続を閉じるため通常は発生しないが，実行中の操作と対象が異なるコールバックは無視する
+			Log.d(LOG_TAG, "対応する操作がありません．type=" + type + " characteristic=" + characteristic);
+			return;
+		}
+
+		handler.removeCallbacks(timeoutTask);
+		current = null;
+		boolean success = status == BluetoothGatt.GATT_SUCCESS;
+		finish(operation, success, value);
+
+		if (!success) {
+			fail(operation, new IOException("操作に失敗しました．status=" + status));
+		} else if (type == OPERATION_DISCOVER_SERVICES) {
+			operation.succeed(Boolean.TRUE);
+			if (connectFuture != null) {
+				connectFuture.set(true);
+				connectFuture = null;
+			}
+		} else if (type == OPERATION_REQUEST_MTU) {
+			mtu = number;
+			operation.succeed(Integer.valueOf(number));
+		} else if (type == OPERATION_READ_RSSI) {
+			operation.succeed(Integer.valueOf(number));
+		} else {
+			operation.succeed(value);
+		}
+
+		drain();
+	}
+
+	/**
+	 * 接続状態が変化した場合の処理．handlerのスレッドから呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @param g BluetoothGatt
+	 * @param status ステータス
+	 * @param newState 変化後の接続状態
+	 */
+	private void onConnectionChanged(BluetoothGatt g, int status, int newState) {
+		if (g != gatt) {
+			return;
+		}
+
+		if (newState == BluetoothProfile.STATE_CONNECTED && status == BluetoothGatt.GATT_SUCCESS) {
+			connected = true;
+			mtu = DEFAULT_MTU;
+			// サービスの検索を他の操作より先に行う
+			queue.addFirst(new Operation<Boolean>(OPERATION_DISCOVER_SERVICES));
+			drain();
+		} else if (newState == BluetoothProfile.STATE_DISCONNECTED && autoConnect) {
+			// BluetoothGattを閉じるとスタックが再接続しなくなるため，開いたまま再接続を待つ
+			boolean wasConnected = connected;
+			connected = false;
+			failPending(status);
+			GattClientListener target = listener;
+			if (wasConnected && target != null) {
+				target.onDisconnected(status);
+			}
+		} else if (newState == BluetoothProfile.STATE_DISCONNECTED || status != BluetoothGatt.GATT_SUCCESS) {
+			release(status, true);
+		}
+	}
+
+	/**
+	 * 実行中と実行待ちの操作を全て失敗させる．handlerのスレッドから呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @param status 切断時のステータス
+	 */
+	private void failPending(int status) {
+		handler.removeCallbacks(timeoutTask);
+
+		IOException error = new IOException("切断されました．status=" + status);
+		if (current != null) {
+			current.setException(error);
+			current.failWaiters(error);
+			current = null;
+		}
+		Operation<?> operation;
+		while ((operation = queue.poll()) != null) {
+			operation.setException(error);
+			operation.failWaiters(error);
+		}
+		bulkCount = 0;
+	}
+
+	/**
+	 * 接続を閉じ，実行待ちの操作を全て失敗させる．handlerのスレッドから呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @param status 切断時のステータス
+	 * @param notify リスナーに通知する場合に true
+	 */
+	private void release(int status, boolean notify) {
+		boolean opened = gatt != null;
+		connected = false;
+		autoConnect = false;
+		failPending(status);
+
+		if (gatt != null) {
+			gatt.close();
+			gatt = null;
+		}
+		if (connectFuture != null) {
+			connectFuture.set(false);
+			connectFuture = null;
+		}
+
+		GattClientListener target = listener;
+		if (notify && opened && target != null) {
+			target.onDisconnected(status);
+		}
+	}
+
+	/**
+	 * 操作を失敗させる．連結した書き込みの場合は同じキャラクタリスティックへの実行待ちの書き込みも失敗させる
+	 * 
+	 * @since 0.0.1
+	 * @param operation 操作
+	 * @param error 例外
+	 */
+	private void fail(Operation<?> operation, IOException error) {
+		operation.setException(error);
+		operation.failWaiters(error);
+		if (operation.type == OPERATION_DISCOVER_SERVICES && connectFuture != null) {
+			connectFuture.setException(error);
+			connectFuture = null;
+		}
+		if (!operation.stream) {
+			return;
+		}
+
+		Iterator<Operation<?>> itr = queue.iterator();
+		while (itr.hasNext()) {
+			Operation<?> queued = itr.next();
+			if (queued.isStream(operation.service, operation.characteristic)) {
+				queued.setException(error);
+				queued.failWaiters(error);
+				itr.remove();
+			}
+		}
+	}
+
+	/**
+	 * 処理時間を記録する
+	 * 
+	 * @since 0.0.1
+	 * @param operation 操作
+	 * @param success 成功した場合に true
+	 * @param value 読み込んだ値
+	 */
+	private void finish(Operation<?> operation, boolean success, byte[] value) {
+		long now = System.nanoTime();
+		int length = value != null ? value.length : operation.length;
+		stats.record(operation.type, operation.startedAt - operation.enqueuedAt, now - operation.startedAt, length, success);
+	}
+
+	/**
+	 * 値を複製する
+	 * 
+	 * @since 0.0.1
+	 * @param value 値
+	 * @return 複製, 値が nullの場合は空の配列を返す
+	 */
+	private static byte[] copy(byte[] value) {
+		return value != null ? value.clone() : new byte[0];
+	}
+
+	/**
+	 * キューに追加する操作
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 * @param <V> 結果の型
+	 */
+	private static class Operation<V> extends SettableFuture<V> {
+
+		/** 操作種別 */
+		final int type;
+		/** キューに追加した時刻 */
+		final long enqueuedAt = System.nanoTime();
+		/** 開始した時刻 */
+		long startedAt;
+		/** サービスUUID */
+		UUID service;
+		/** キャラクタリスティックUUID */
+		UUID characteristic;
+		/** ディスクリプタUUID */
+		UUID descriptor;
+		/** 書き込む値 */
+		byte[] value;
+		/** 書き込む値の長さ */
+		int length;
+		/** MTUや接続優先度 */
+		int number;
+		/** 通知の設定．有効にする場合に1, 無効にする場合に0, 通知の設定でない場合に-1 */
+		int notification = -1;
+		/** {@link GattClient#writeStream(UUID, UUID, byte[], int, int)} の書き込みかどうか */
+		boolean stream;
+		/** この書き込みで完了する呼び出し元のFuture */
+		List<SettableFuture<Void>> waiters;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param type 操作種別
+		 */
+		Operation(int type) {
+			this.type = type;
+		}
+
+		/**
+		 * 操作の対象を設定する
+		 * 
+		 * @since 0.0.1
+		 * @param service サービスUUID
+		 * @param characteristic キャラクタリスティックUUID
+		 * @param descriptor ディスクリプタUUID
+		 */
+		void setTarget(UUID service, UUID characteristic, UUID descriptor) {
+			if (service == null) {
+				throw new IllegalArgumentException("serviceがnullです．");
+			}
+			if (characteristic == null) {
+				throw new IllegalArgumentException("characteristicがnullです．");
+			}
+
+			this.service = service;
+			this.characteristic = characteristic;
+			this.descriptor = descriptor;
+		}
+
+		/**
+		 * 書き込む値を設定する
+		 * 
+		 * @since 0.0.1
+		 * @param value 値
+		 * @param length 値の長さ
+		 */
+		void setValue(byte[] value, int length) {
+			this.value = value;
+			this.length = length;
+		}
+
+		/**
+		 * 連結できる書き込みかどうか
+		 * 
+		 * @since 0.0.1
+		 * @param service サービスUUID
+		 * @param characteristic キャラクタリスティックUUID
+		 * @return 連結できる場合に true, そうでない場合に falseを返す
+		 */
+		boolean isStream(UUID service, UUID characteristic) {
+			return stream && service.equals(this.service) && characteristic.equals(this.characteristic);
+		}
+
+		/**
+		 * コールバックの操作種別と対象に対応するかどうか
+		 * 
+		 * @since 0.0.1
+		 * @param callbackType コールバックの操作種別
+		 * @param callbackCharacteristic コールバックのキャラクタリスティックUUID, 対象がない場合は null
+		 * @param callbackDescriptor コールバックのディスクリプタUUID, 対象がない場合は null
+		 * @return 対応する場合に true, そうでない場合に falseを返す
+		 */
+		boolean matches(int callbackType, UUID callbackCharacteristic, UUID callbackDescriptor) {
+			if (callbackType == OPERATION_WRITE) {
+				if (type != OPERATION_WRITE && type != OPERATION_WRITE_NO_RESPONSE) {
+					return false;
+				}
+			} else if (type != callbackType) {
+				return false;
+			}
+
+			return equals(characteristic, callbackCharacteristic) && equals(descriptor, callbackDescriptor);
+		}
+
+		/**
+		 * UUIDが等しいかどうか
+		 * 
+		 * @since 0.0.1
+		 * @param a UUID
+		 * @param b UUID
+		 * @return 等しい場合または両方が nullの場合に true, そうでない場合に falseを返す
+		 */
+		private static boolean equals(UUID a, UUID b) {
+			return a == null ? b == null : a.equals(b);
+		}
+
+		/**
+		 * 呼び出し元のFutureを追加する
+		 * 
+		 * @since 0.0.1
+		 * @param future Future
+		 */
+		void addWaiter(SettableFuture<Void> future) {
+			if (waiters == null) {
+				waiters = new ArrayList<SettableFuture<Void>>(2);
+			}
+			waiters.add(future);
+		}
+
+		/**
+		 * 成功させる
+		 * 
+		 * @since 0.0.1
+		 * @param result 結果
+		 */
+		@SuppressWarnings("unchecked")
+		void succeed(Object result) {
+			set((V) result);
+			if (waiters != null) {
+				for (SettableFuture<Void> waiter : waiters) {
+					waiter.set(null);
+				}
+			}
+		}
+
+		/**
+		 * 呼び出し元のFutureを失敗させる
+		 * 
+		 * @since 0.0.1
+		 * @param error 例外
+		 */
+		void failWaiters(Throwable error) {
+			if (waiters != null) {
+				for (SettableFuture<Void> waiter : waiters) {
+					waiter.setException(error);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package net.kokohadoko.instil.android.bluetooth.gatt;
+
+import java.util.UUID;
+
+/**
+ * {@link GattClient} のイベントを受け取るリスナー
+ * 
+ * <p>
+ * {@link GattClient} のHandlerのスレッドから呼び出される．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface GattClientListener {
+
+	/**
+	 * 通知または指示を受信した場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param service サービスUUID
+	 * @param characteristic キャラクタリスティックUUID
+	 * @param value 受信した値の複製
+	 */
+	void onCharacteristicChanged(UUID service, UUID characteristic, byte[] value);
+
+	/**
+	 * 切断された場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param status 切断時のステータス
+	 */
+	void onDisconnected(int status);
+}
@@ -0,0 +1,180 @@
+package net.kokohadoko.instil.android.bluetooth.gatt;
+
+/**
+ * {@link GattClient} の操作種別ごとの処理時間を集計するクラス
+ * 
+ * <p>
+ * 処理時間は操作を開始してからコールバックを受け取るまで，待ち時間はキューに追加してから
+ * 操作を開始するまでの時間．処理時間はマイクロ秒を2のべき乗で区切った度数分布でも保持し，
+ * パーセンタイルの近似値を求められる．各メソッドは任意のスレッドから呼び出せる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class GattOperationStats {
+
+	/** 度数分布の区間数 */
+	private static final int BUCKET_COUNT = 32;
+
+	/** 完了した回数 */
+	private final long[] counts = new long[GattClient.OPERATION_COUNT];
+	/** 失敗した回数 */
+	private final long[] failures = new long[GattClient.OPERATION_COUNT];
+	/** 処理時間の合計のナノ秒 */
+	private final long[] totalLatency = new long[GattClient.OPERATION_COUNT];
+	/** 処理時間の最大値のナノ秒 */
+	private final long[] maxLatency = new long[GattClient.OPERATION_COUNT];
+	/** 待ち時間の合計のナノ秒 */
+	private final long[] totalQueueTime = new long[GattClient.OPERATION_COUNT];
+	/** 処理時間の度数分布 */
+	private final long[][] histogram = new long[GattClient.OPERATION_COUNT][BUCKET_COUNT];
+	/** 送受信したバイト数 */
+	private final long[] bytes = new long[GattClient.OPERATION_COUNT];
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	GattOperationStats() {
+	}
+
+	/**
+	 * 操作の結果を記録する
+	 * 
+	 * @since 0.0.1
+	 * @param type 操作種別
+	 * @param queueTime 待ち時間のナノ秒
+	 * @param latency 処理時間のナノ秒
+	 * @param length 送受信したバイト数
+	 * @param success 成功した場合に true
+	 */
+	synchronized void record(int type, long queueTime, long latency, int length, boolean success) {
+		counts[type]++;
+		if (!success) {
+			failures[type]++;
+		}
+		totalLatency[type] += latency;
+		totalQueueTime[type] += queueTime;
+		bytes[type] += length;
+		if (latency > maxLatency[type]) {
+			maxLatency[type] = latency;
+		}
+
+		long micros = Math.max(1, latency / 1000);
+		int bucket = Math.min(BUCKET_COUNT - 1, 63 - Long.numberOfLeadingZeros(micros));
+		histogram[type][bucket]++;
+	}
+
+	/**
+	 * 完了した回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param type {@link GattClient#OPERATION_READ} などの操作種別
+	 * @return 回数
+	 */
+	public synchronized long getCount(int type) {
+		return counts[type];
+	}
+
+	/**
+	 * 失敗した回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param type {@link GattClient#OPERATION_READ} などの操作種別
+	 * @return 回数
+	 */
+	public synchronized long getFailureCount(int type) {
+		return failures[type];
+	}
+
+	/**
+	 * 送受信したバイト数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param type {@link GattClient#OPERATION_READ} などの操作種別
+	 * @return バイト数
+	 */
+	public synchronized long getBytes(int type) {
+		return bytes[type];
+	}
+
+	/**
+	 * 処理時間の平均を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param type {@link GattClient#OPERATION_READ} などの操作種別
+	 * @return ミリ秒, 完了した操作がない場合は 0
+	 */
+	public synchronized float getAverageLatency(int type) {
+		return counts[type] > 0 ? totalLatency[type] / 1e6f / counts[type] : 0;
+	}
+
+	/**
+	 * 処理時間の最大値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param type {@link GattClient#OPERATION_READ} などの操作種別
+	 * @return ミリ秒
+	 */
+	public synchronized float getMaxLatency(int type) {
+		return maxLatency[type] / 1e6f;
+	}
+
+	/**
+	 * 処理時間のパーセンタイルの近似値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param type {@link GattClient#OPERATION_READ} などの操作種別
+	 * @param percentile 0から100のパーセンタイル
+	 * @return 該当する区間の上限のミリ秒, 完了した操作がない場合は 0
+	 */
+	public synchronized float getLatencyPercentile(int type, float percentile) {
+		long total = counts[type];
+		if (total == 0) {
+			return 0;
+		}
+
+		long threshold = (long) Math.ceil(total * percentile / 100.0);
+		long accumulated = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			accumulated += histogram[type][i];
+			if (accumulated >= threshold) {
+				return Math.min((2L << i) / 1000f, getMaxLatency(type));
+			}
+		}
+
+		return getMaxLatency(type);
+	}
+
+	/**
+	 * 待ち時間の平均を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param type {@link GattClient#OPERATION_READ} などの操作種別
+	 * @return ミリ秒, 完了した操作がない場合は 0
+	 */
+	public synchronized float getAverageQueueTime(int type) {
+		return counts[type] > 0 ? totalQueueTime[type] / 1e6f / counts[type] : 0;
+	}
+
+	/**
+	 * 集計結果を破棄する
+	 * 
+	 * @since 0.0.1
+	 */
+	public synchronized void reset() {
+		for (int i = 0; i < GattClient.OPERATION_COUNT; i++) {
+			counts[i] = 0;
+			failures[i] = 0;
+			totalLatency[i] = 0;
+			maxLatency[i] = 0;
+			totalQueueTime[i] = 0;
+			bytes[i] = 0;
+			for (int j = 0; j < BUCKET_COUNT; j++) {
+				histogram[i][j] = 0;
+			}
+		}
+	}
+}
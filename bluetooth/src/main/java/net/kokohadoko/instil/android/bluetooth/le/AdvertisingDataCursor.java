@@ -0,0 +1,587 @@
+package net.kokohadoko.instil.android.bluetooth.le;
+
+/**
+ * BLEアドバタイズデータのAD構造を順に参照するカーソル
+ * 
+ * <p>
+ * 受信したバイト配列を複製せずにその場で走査し，現在のAD構造の種類と値を返す．
+ * インスタンスは {@link #reset(byte[], int, int)} で使い回すことができ，
+ * 文字列の取得や {@link #copyData(byte[], int)} を呼び出した場合を除いてオブジェクトを生成しない．
+ * スレッドセーフではない．
+ * </p>
+ * 
+ * <pre>
+ * AdvertisingDataCursor cursor = new AdvertisingDataCursor();
+ * cursor.reset(scanRecord, 0, scanRecord.length);
+ * while (cursor.next()) {
+ *     if (cursor.getType() == AdvertisingDataCursor.TYPE_MANUFACTURER_DATA) {
+ *         int id = cursor.getManufacturerId();
+ *     }
+ * }
+ * </pre>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class AdvertisingDataCursor {
+
+	/** Flags */
+	public static final int TYPE_FLAGS = 0x01;
+	/** Incomplete List of 16-bit Service UUIDs */
+	public static final int TYPE_UUID16_INCOMPLETE = 0x02;
+	/** Complete List of 16-bit Service UUIDs */
+	public static final int TYPE_UUID16_COMPLETE = 0x03;
+	/** Incomplete List of 32-bit Service UUIDs */
+	public static final int TYPE_UUID32_INCOMPLETE = 0x04;
+	/** Complete List of 32-bit Service UUIDs */
+	public static final int TYPE_UUID32_COMPLETE = 0x05;
+	/** Incomplete List of 128-bit Service UUIDs */
+	public static final int TYPE_UUID128_INCOMPLETE = 0x06;
+	/** Complete List of 128-bit Service UUIDs */
+	public static final int TYPE_UUID128_COMPLETE = 0x07;
+	/** Shortened Local Name */
+	public static final int TYPE_SHORT_LOCAL_NAME = 0x08;
+	/** Complete Local Name */
+	public static final int TYPE_COMPLETE_LOCAL_NAME = 0x09;
+	/** Tx Power Level */
+	public static final int TYPE_TX_POWER_LEVEL = 0x0A;
+	/** Service Data - 16-bit UUID */
+	public static final int TYPE_SERVICE_DATA_UUID16 = 0x16;
+	/** Service Data - 32-bit UUID */
+	public static final int TYPE_SERVICE_DATA_UUID32 = 0x20;
+	/** Service Data - 128-bit UUID */
+	public static final int TYPE_SERVICE_DATA_UUID128 = 0x21;
+	/** Manufacturer Specific Data */
+	public static final int TYPE_MANUFACTURER_DATA = 0xFF;
+
+	/** Bluetooth Base UUIDの上位64bit */
+	public static final long BASE_UUID_MSB = 0x0000000000001000L;
+	/** Bluetooth Base UUIDの下位64bit */
+	public static final long BASE_UUID_LSB = 0x800000805F9B34FBL;
+
+	/** アドバタイズデータ */
+	private byte[] buffer;
+	/** 走査の開始位置 */
+	private int start;
+	/** 走査の終了位置 */
+	private int end;
+	/** 次のAD構造の位置 */
+	private int position;
+	/** 現在のAD構造の種類 */
+	private int type = -1;
+	/** 現在のAD構造の値の開始位置 */
+	private int dataOffset;
+	/** 現在のAD構造の値の長さ */
+	private int dataLength;
+	/** 不正なAD構造を検出したかどうか */
+	private boolean malformed;
+
+	/**
+	 * デフォルトコンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	public AdvertisingDataCursor() {
+	}
+
+	/**
+	 * 走査するアドバタイズデータを設定する
+	 * 
+	 * @since 0.0.1
+	 * @param buffer アドバタイズデータ
+	 * @param offset 開始位置
+	 * @param length 長さ
+	 * @return このカーソル
+	 */
+	public AdvertisingDataCursor reset(byte[] buffer, int offset, int length) {
+		if (buffer == null) {
+			throw new IllegalArgumentException("bufferがnullです．");
+		}
+		if (offset < 0 || length < 0 || offset + length > buffer.length) {
+			throw new IndexOutOfBoundsException("offsetまたはlengthが不正な値です．");
+		}
+
+		this.buffer = buffer;
+		this.start = offset;
+		this.end = offset + length;
+		rewind();
+		return this;
+	}
+
+	/**
+	 * 走査位置を先頭に戻す
+	 * 
+	 * @since 0.0.1
+	 * @return このカーソル
+	 */
+	public AdvertisingDataCursor rewind() {
+		this.position = start;
+		this.type = -1;
+		this.dataOffset = start;
+		this.dataLength = 0;
+		this.malformed = false;
+		return this;
+	}
+
+	/**
+	 * 次のAD構造に移動する
+	 * 
+	 * <p>
+	 * 長さ0のAD構造は以降のデータが存在しないことを表すため，その時点で終了する．
+	 * 長さがデータの終端を超える場合は {@link #isMalformed()} が true となる．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @return 移動した場合に true, 終端に達した場合に falseを返す
+	 */
+	public boolean next() {
+		if (position >= end) {
+			type = -1;
+			return false;
+		}
+
+		int length = buffer[position] & 0xFF;
+		if (length == 0) {
+			position = end;
+			type = -1;
+			return false;
+		}
+		if (position + 1 + length > end) {
+			malformed = true;
+			position = end;
+			type = -1;
+			return false;
+		}
+
+		type = buffer[position + 1] & 0xFF;
+		dataOffset = position + 2;
+		dataLength = length - 1;
+		position += 1 + length;
+		return true;
+	}
+
+	/**
+	 * 指定した種類のAD構造を先頭から検索して移動する
+	 * 
+	 * @since 0.0.1
+	 * @param type AD構造の種類
+	 * @return 見つかった場合に true, そうでない場合に falseを返す
+	 */
+	public boolean find(int type) {
+		rewind();
+		while (next()) {
+			if (this.type == type) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * 不正なAD構造を検出したかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 検出した場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isMalformed() {
+		return malformed;
+	}
+
+	/**
+	 * 現在のAD構造の種類を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link #TYPE_FLAGS} などの値, 移動していない場合は -1
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * 走査しているアドバタイズデータを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return アドバタイズデータ
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * 現在のAD構造の値の開始位置を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link #getBuffer()} 内の位置
+	 */
+	public int getDataOffset() {
+		return dataOffset;
+	}
+
+	/**
+	 * 現在のAD構造の値の長さを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 値の長さ
+	 */
+	public int getDataLength() {
+		return dataLength;
+	}
+
+	/**
+	 * 現在のAD構造の値から符号なし8bit値を読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param index 値の先頭からの位置
+	 * @return 読み込んだ値
+	 */
+	public int getUint8(int index) {
+		checkIndex(index, 1);
+		return buffer[dataOffset + index] & 0xFF;
+	}
+
+	/**
+	 * 現在のAD構造の値から符号付き8bit値を読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param index 値の先頭からの位置
+	 * @return 読み込んだ値
+	 */
+	public int getInt8(int index) {
+		checkIndex(index, 1);
+		return buffer[dataOffset + index];
+	}
+
+	/**
+	 * 現在のAD構造の値からリトルエンディアンの符号なし16bit値を読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param index 値の先頭からの位置
+	 * @return 読み込んだ値
+	 */
+	public int getUint16(int index) {
+		checkIndex(index, 2);
+		int pos = dataOffset + index;
+		return (buffer[pos] & 0xFF) | (buffer[pos + 1] & 0xFF) << 8;
+	}
+
+	/**
+	 * 現在のAD構造の値からビッグエンディアンの符号なし16bit値を読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param index 値の先頭からの位置
+	 * @return 読み込んだ値
+	 */
+	public int getUint16BigEndian(int index) {
+		checkIndex(index, 2);
+		int pos = dataOffset + index;
+		return (buffer[pos] & 0xFF) << 8 | (buffer[pos + 1] & 0xFF);
+	}
+
+	/**
+	 * 現在のAD構造の値からリトルエンディアンの符号なし32bit値を読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param index 値の先頭からの位置
+	 * @return 読み込んだ値
+	 */
+	public long getUint32(int index) {
+		checkIndex(index, 4);
+		return readLittleEndian(dataOffset + index, 4);
+	}
+
+	/**
+	 * 現在のAD構造の値からビッグエンディアンの符号なし32bit値を読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param index 値の先頭からの位置
+	 * @return 読み込んだ値
+	 */
+	public long getUint32BigEndian(int index) {
+		checkIndex(index, 4);
+		return readBigEndian(dataOffset + index, 4);
+	}
+
+	/**
+	 * 現在のAD構造の値からビッグエンディアンの値を読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param index 値の先頭からの位置
+	 * @param size 読み込むバイト数．1から8まで
+	 * @return 読み込んだ値
+	 */
+	public long getBigEndian(int index, int size) {
+		if (size < 1 || size > 8) {
+			throw new IllegalArgumentException("sizeが不正な値です．");
+		}
+		checkIndex(index, size);
+		return readBigEndian(dataOffset + index, size);
+	}
+
+	/**
+	 * Flagsの値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return Flagsの値, 現在のAD構造がFlagsでない場合は -1
+	 */
+	public int getFlags() {
+		if (type != TYPE_FLAGS || dataLength < 1) {
+			return -1;
+		}
+
+		return buffer[dataOffset] & 0xFF;
+	}
+
+	/**
+	 * Tx Power Levelの値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return dBm, 現在のAD構造がTx Power Levelでない場合は {@link Integer#MIN_VALUE}
+	 */
+	public int getTxPowerLevel() {
+		if (type != TYPE_TX_POWER_LEVEL || dataLength < 1) {
+			return Integer.MIN_VALUE;
+		}
+
+		return buffer[dataOffset];
+	}
+
+	/**
+	 * サービスUUIDの1件あたりのバイト数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 2, 4, 16 のいずれか, 現在のAD構造がサービスUUIDの一覧でない場合は 0
+	 */
+	public int getUuidSize() {
+		switch (type) {
+		case TYPE_UUID16_INCOMPLETE:
+		case TYPE_UUID16_COMPLETE:
+			return 2;
+		case TYPE_UUID32_INCOMPLETE:
+		case TYPE_UUID32_COMPLETE:
+			return 4;
+		case TYPE_UUID128_INCOMPLETE:
+		case TYPE_UUID128_COMPLETE:
+			return 16;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * サービスUUIDの件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数, 現在のAD構造がサービスUUIDの一覧でない場合は 0
+	 */
+	public int getUuidCount() {
+		int size = getUuidSize();
+		return size == 0 ? 0 : dataLength / size;
+	}
+
+	/**
+	 * サービスUUIDの上位64bitを取得する．16bit, 32bitのUUIDはBase UUIDで展開する
+	 * 
+	 * @since 0.0.1
+	 * @param index UUIDの添字
+	 * @return UUIDの上位64bit
+	 */
+	public long getUuidMostSignificantBits(int index) {
+		int size = checkUuid(index);
+		int pos = dataOffset + index * size;
+		if (size == 16) {
+			return readLittleEndian(pos + 8, 8);
+		}
+
+		return BASE_UUID_MSB | readLittleEndian(pos, size) << 32;
+	}
+
+	/**
+	 * サービスUUIDの下位64bitを取得する．16bit, 32bitのUUIDはBase UUIDで展開する
+	 * 
+	 * @since 0.0.1
+	 * @param index UUIDの添字
+	 * @return UUIDの下位64bit
+	 */
+	public long getUuidLeastSignificantBits(int index) {
+		int size = checkUuid(index);
+		if (size == 16) {
+			return readLittleEndian(dataOffset + index * size, 8);
+		}
+
+		return BASE_UUID_LSB;
+	}
+
+	/**
+	 * 16bitのサービスUUIDを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index UUIDの添字
+	 * @return 16bitのUUID
+	 */
+	public int getUuid16(int index) {
+		if (getUuidSize() != 2) {
+			throw new IllegalStateException("16bitのUUIDの一覧ではありません．");
+		}
+		checkUuid(index);
+
+		int pos = dataOffset + index * 2;
+		return (buffer[pos] & 0xFF) | (buffer[pos + 1] & 0xFF) << 8;
+	}
+
+	/**
+	 * サービスUUIDの一覧に指定したUUIDが含まれるかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param msb UUIDの上位64bit
+	 * @param lsb UUIDの下位64bit
+	 * @return 含まれる場合に true, そうでない場合に falseを返す
+	 */
+	public boolean containsUuid(long msb, long lsb) {
+		int count = getUuidCount();
+		for (int i = 0; i < count; i++) {
+			if (getUuidLeastSignificantBits(i) == lsb && getUuidMostSignificantBits(i) == msb) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * メーカーIDを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return メーカーID, 現在のAD構造がManufacturer Specific Dataでない場合は -1
+	 */
+	public int getManufacturerId() {
+		if (type != TYPE_MANUFACTURER_DATA || dataLength < 2) {
+			return -1;
+		}
+
+		return (buffer[dataOffset] & 0xFF) | (buffer[dataOffset + 1] & 0xFF) << 8;
+	}
+
+	/**
+	 * Service Dataの16bitのUUIDを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 16bitのUUID, 現在のAD構造が16bitのUUIDのService Dataでない場合は -1
+	 */
+	public int getServiceDataUuid16() {
+		if (type != TYPE_SERVICE_DATA_UUID16 || dataLength < 2) {
+			return -1;
+		}
+
+		return (buffer[dataOffset] & 0xFF) | (buffer[dataOffset + 1] & 0xFF) << 8;
+	}
+
+	/**
+	 * 現在のAD構造の値を複製する
+	 * 
+	 * @since 0.0.1
+	 * @param dst 複製先の配列
+	 * @param offset 複製先の開始位置
+	 * @return 複製したバイト数
+	 */
+	public int copyData(byte[] dst, int offset) {
+		int length = Math.min(dataLength, dst.length - offset);
+		System.arraycopy(buffer, dataOffset, dst, offset, length);
+		return length;
+	}
+
+	/**
+	 * 現在のAD構造の値を新しい配列に複製する
+	 * 
+	 * @since 0.0.1
+	 * @return 値の複製
+	 */
+	public byte[] copyData() {
+		byte[] copy = new byte[dataLength];
+		System.arraycopy(buffer, dataOffset, copy, 0, dataLength);
+		return copy;
+	}
+
+	/**
+	 * 現在のAD構造の値をUTF-8の文字列として取得する．Local Nameの取得に使用する
+	 * 
+	 * @since 0.0.1
+	 * @return 文字列
+	 */
+	public String getString() {
+		try {
+			return new String(buffer, dataOffset, dataLength, "UTF-8");
+		} catch (java.io.UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 値の範囲を検査する
+	 * 
+	 * @since 0.0.1
+	 * @param index 値の先頭からの位置
+	 * @param size 読み込むバイト数
+	 */
+	private void checkIndex(int index, int size) {
+		if (type < 0) {
+			throw new IllegalStateException("AD構造に移動していません．");
+		}
+		if (index < 0 || index + size > dataLength) {
+			throw new IndexOutOfBoundsException("indexが範囲外です．");
+		}
+	}
+
+	/**
+	 * サービスUUIDの添字を検査する
+	 * 
+	 * @since 0.0.1
+	 * @param index UUIDの添字
+	 * @return UUIDのバイト数
+	 */
+	private int checkUuid(int index) {
+		int size = getUuidSize();
+		if (size == 0) {
+			throw new IllegalStateException("サービスUUIDの一覧ではありません．");
+		}
+		if (index < 0 || index >= dataLength / size) {
+			throw new IndexOutOfBoundsException("indexが範囲外です．");
+		}
+
+		return size;
+	}
+
+	/**
+	 * リトルエンディアンの値を読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param pos 開始位置
+	 * @param size バイト数
+	 * @return 読み込んだ値
+	 */
+	private long readLittleEndian(int pos, int size) {
+		long value = 0;
+		for (int i = size - 1; i >= 0; i--) {
+			value = (value << 8) | (buffer[pos + i] & 0xFF);
+		}
+
+		return value;
+	}
+
+	/**
+	 * ビッグエンディアンの値を読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param pos 開始位置
+	 * @param size バイト数
+	 * @return 読み込んだ値
+	 */
+	private long readBigEndian(int pos, int size) {
+		long value = 0;
+		for (int i = 0; i < size; i++) {
+			value = (value << 8) | (buffer[pos + i] & 0xFF);
+		}
+
+		return value;
+	}
+}
@@ -0,0 +1,304 @@
+package net.kokohadoko.instil.android.bluetooth.le;
+
+/**
+ * iBeacon, Eddystoneのフレームを {@link AdvertisingDataCursor} の現在位置から読み取るユーティリティクラス
+ * 
+ * <p>
+ * 各メソッドはカーソルが該当するAD構造を指している場合にのみ有効な値を返す．
+ * {@link #appendEddystoneUrl(AdvertisingDataCursor, StringBuilder)} 以外はオブジェクトを生成しない．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public final class BeaconFrames {
+
+	/** AppleのメーカーID */
+	public static final int APPLE_MANUFACTURER_ID = 0x004C;
+	/** EddystoneのサービスUUID */
+	public static final int EDDYSTONE_SERVICE_UUID = 0xFEAA;
+
+	/** EddystoneのUIDフレームを表す */
+	public static final int EDDYSTONE_UID = 0x00;
+	/** EddystoneのURLフレームを表す */
+	public static final int EDDYSTONE_URL = 0x10;
+	/** EddystoneのTLMフレームを表す */
+	public static final int EDDYSTONE_TLM = 0x20;
+	/** EddystoneのEIDフレームを表す */
+	public static final int EDDYSTONE_EID = 0x30;
+
+	/** iBeaconのデータ長 */
+	private static final int IBEACON_LENGTH = 25;
+	/** EddystoneのUIDフレームのデータ長 */
+	private static final int EDDYSTONE_UID_LENGTH = 20;
+	/** EddystoneのTLMフレームのデータ長 */
+	private static final int EDDYSTONE_TLM_LENGTH = 16;
+	/** EddystoneのURLフレームの最小データ長 */
+	private static final int EDDYSTONE_URL_MIN_LENGTH = 5;
+	/** EddystoneのEIDフレームのデータ長 */
+	private static final int EDDYSTONE_EID_LENGTH = 12;
+
+	/** EddystoneのURLのスキーム */
+	private static final String[] URL_SCHEMES = {
+		"http://www.", "https://www.", "http://", "https://"
+	};
+
+	/** EddystoneのURLの展開文字列 */
+	private static final String[] URL_EXPANSIONS = {
+		".com/", ".org/", ".edu/", ".net/", ".info/", ".biz/", ".gov/",
+		".com", ".org", ".edu", ".net", ".info", ".biz", ".gov"
+	};
+
+	/**
+	 * デフォルトコンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	private BeaconFrames() {
+	}
+
+	/**
+	 * 現在のAD構造がiBeaconかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param cursor カーソル
+	 * @return iBeaconの場合に true, そうでない場合に falseを返す
+	 */
+	public static boolean isIBeacon(AdvertisingDataCursor cursor) {
+		return cursor.getManufacturerId() == APPLE_MANUFACTURER_ID
+				&& cursor.getDataLength() >= IBEACON_LENGTH
+				&& cursor.getUint8(2) == 0x02
+				&& cursor.getUint8(3) == 0x15;
+	}
+
+	/**
+	 * iBeaconのProximity UUIDの上位64bitを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor iBeaconを指すカーソル
+	 * @return Proximity UUIDの上位64bit
+	 */
+	public static long getIBeaconUuidMostSignificantBits(AdvertisingDataCursor cursor) {
+		return cursor.getBigEndian(4, 8);
+	}
+
+	/**
+	 * iBeaconのProximity UUIDの下位64bitを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor iBeaconを指すカーソル
+	 * @return Proximity UUIDの下位64bit
+	 */
+	public static long getIBeaconUuidLeastSignificantBits(AdvertisingDataCursor cursor) {
+		return cursor.getBigEndian(12, 8);
+	}
+
+	/**
+	 * iBeaconのMajorを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor iBeaconを指すカーソル
+	 * @return Major
+	 */
+	public static int getIBeaconMajor(AdvertisingDataCursor cursor) {
+		return cursor.getUint16BigEndian(20);
+	}
+
+	/**
+	 * iBeaconのMinorを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor iBeaconを指すカーソル
+	 * @return Minor
+	 */
+	public static int getIBeaconMinor(AdvertisingDataCursor cursor) {
+		return cursor.getUint16BigEndian(22);
+	}
+
+	/**
+	 * iBeaconの1mでの受信強度を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor iBeaconを指すカーソル
+	 * @return dBm
+	 */
+	public static int getIBeaconTxPower(AdvertisingDataCursor cursor) {
+		return cursor.getInt8(24);
+	}
+
+	/**
+	 * 現在のAD構造がEddystoneのフレームかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param cursor カーソル
+	 * @return Eddystoneのフレームの場合に true, そうでない場合に falseを返す
+	 */
+	public static boolean isEddystone(AdvertisingDataCursor cursor) {
+		return cursor.getServiceDataUuid16() == EDDYSTONE_SERVICE_UUID && cursor.getDataLength() >= 3;
+	}
+
+	/**
+	 * Eddystoneのフレームの種類を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor カーソル
+	 * @return {@link #EDDYSTONE_UID} などの値, Eddystoneのフレームでない場合または長さが不足している場合は -1
+	 */
+	public static int getEddystoneFrameType(AdvertisingDataCursor cursor) {
+		if (!isEddystone(cursor)) {
+			return -1;
+		}
+
+		int frameType = cursor.getUint8(2) & 0xF0;
+		int required;
+		switch (frameType) {
+		case EDDYSTONE_UID:
+			required = EDDYSTONE_UID_LENGTH;
+			break;
+		case EDDYSTONE_URL:
+			required = EDDYSTONE_URL_MIN_LENGTH;
+			break;
+		case EDDYSTONE_TLM:
+			required = EDDYSTONE_TLM_LENGTH;
+			break;
+		case EDDYSTONE_EID:
+			required = EDDYSTONE_EID_LENGTH;
+			break;
+		default:
+			return -1;
+		}
+
+		return cursor.getDataLength() >= required ? frameType : -1;
+	}
+
+	/**
+	 * EddystoneのUID, URL, EIDフレームの0mでの送信強度を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor Eddystoneのフレームを指すカーソル
+	 * @return dBm
+	 */
+	public static int getEddystoneTxPower(AdvertisingDataCursor cursor) {
+		return cursor.getInt8(3);
+	}
+
+	/**
+	 * EddystoneのUIDフレームのNamespaceの上位8バイトを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor UIDフレームを指すカーソル
+	 * @return Namespaceの上位8バイト
+	 */
+	public static long getEddystoneNamespaceHigh(AdvertisingDataCursor cursor) {
+		return cursor.getBigEndian(4, 8);
+	}
+
+	/**
+	 * EddystoneのUIDフレームのNamespaceの下位2バイトを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor UIDフレームを指すカーソル
+	 * @return Namespaceの下位2バイト
+	 */
+	public static int getEddystoneNamespaceLow(AdvertisingDataCursor cursor) {
+		return cursor.getUint16BigEndian(12);
+	}
+
+	/**
+	 * EddystoneのUIDフレームのInstanceを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor UIDフレームを指すカーソル
+	 * @return 6バイトのInstance
+	 */
+	public static long getEddystoneInstance(AdvertisingDataCursor cursor) {
+		return cursor.getBigEndian(14, 6);
+	}
+
+	/**
+	 * EddystoneのEIDフレームのEphemeral IDを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor EIDフレームを指すカーソル
+	 * @return 8バイトのEphemeral ID
+	 */
+	public static long getEddystoneEphemeralId(AdvertisingDataCursor cursor) {
+		return cursor.getBigEndian(4, 8);
+	}
+
+	/**
+	 * EddystoneのTLMフレームのバッテリー電圧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor TLMフレームを指すカーソル
+	 * @return mV, 取得できない場合は 0
+	 */
+	public static int getEddystoneBatteryVoltage(AdvertisingDataCursor cursor) {
+		return cursor.getUint16BigEndian(4);
+	}
+
+	/**
+	 * EddystoneのTLMフレームの温度を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor TLMフレームを指すカーソル
+	 * @return 摂氏, 取得できない場合は {@link Float#NaN}
+	 */
+	public static float getEddystoneTemperature(AdvertisingDataCursor cursor) {
+		int raw = cursor.getUint16BigEndian(6);
+		if (raw == 0x8000) {
+			return Float.NaN;
+		}
+
+		return (short) raw / 256.0f;
+	}
+
+	/**
+	 * EddystoneのTLMフレームの起動後のアドバタイズ回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor TLMフレームを指すカーソル
+	 * @return アドバタイズ回数
+	 */
+	public static long getEddystoneAdvertisingCount(AdvertisingDataCursor cursor) {
+		return cursor.getUint32BigEndian(8);
+	}
+
+	/**
+	 * EddystoneのTLMフレームの起動後の経過時間を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor TLMフレームを指すカーソル
+	 * @return 0.1秒単位の経過時間
+	 */
+	public static long getEddystoneUptime(AdvertisingDataCursor cursor) {
+		return cursor.getUint32BigEndian(12);
+	}
+
+	/**
+	 * EddystoneのURLフレームのURLを展開して追加する
+	 * 
+	 * @since 0.0.1
+	 * @param cursor URLフレームを指すカーソル
+	 * @param out 追加先
+	 * @return 展開できた場合に true, 不正なスキームの場合に falseを返す
+	 */
+	public static boolean appendEddystoneUrl(AdvertisingDataCursor cursor, StringBuilder out) {
+		int scheme = cursor.getUint8(4);
+		if (scheme >= URL_SCHEMES.length) {
+			return false;
+		}
+
+		out.append(URL_SCHEMES[scheme]);
+		for (int i = 5; i < cursor.getDataLength(); i++) {
+			int c = cursor.getUint8(i);
+			if (c < URL_EXPANSIONS.length) {
+				out.append(URL_EXPANSIONS[c]);
+			} else if (c > 0x20 && c < 0x7F) {
+				out.append((char) c);
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,183 @@
+package net.kokohadoko.instil.android.bluetooth.le;
+
+import net.kokohadoko.instil.android.bluetooth.BluetoothAddress;
+
+/**
+ * BLEスキャンで検出されたデバイス
+ * 
+ * <p>
+ * インスタンスは {@link LeDeviceTable} が事前に確保して使い回すため，
+ * リスナーの呼び出し後も参照を保持する場合は必要な値を複製すること．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class LeDevice {
+
+	/** アドバタイズデータの最大長 */
+	public static final int MAX_RECORD_LENGTH = 62;
+
+	/** 数値のアドレス */
+	long address = BluetoothAddress.INVALID;
+	/** 最後に取得したRSSI */
+	int rssi;
+	/** 最初に検出された時刻 */
+	long firstSeen;
+	/** 最後に検出された時刻 */
+	long lastSeen;
+	/** 検出された回数 */
+	int seenCount;
+	/** 最後に受信したアドバタイズデータ */
+	byte[] record = new byte[MAX_RECORD_LENGTH];
+	/** アドバタイズデータの長さ */
+	int recordLength;
+
+	/** 通知待ちかどうか */
+	boolean pending;
+	/** LRUリストの前の要素 */
+	LeDevice prev;
+	/** LRUリストの次の要素 */
+	LeDevice next;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	LeDevice() {
+	}
+
+	/**
+	 * 検出結果を反映する
+	 * 
+	 * @since 0.0.1
+	 * @param rssi RSSI
+	 * @param scanRecord アドバタイズデータ, 取得できなかった場合は null
+	 * @param now 検出された時刻
+	 */
+	void update(int rssi, byte[] scanRecord, long now) {
+		this.rssi = rssi;
+		this.lastSeen = now;
+		this.seenCount++;
+		if (scanRecord != null) {
+			int length = scanRecord.length;
+			if (length > record.length) {
+				record = new byte[length];
+			}
+			System.arraycopy(scanRecord, 0, record, 0, length);
+			recordLength = length;
+		}
+	}
+
+	/**
+	 * 初期状態に戻す
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param now 検出された時刻
+	 */
+	void reset(long address, long now) {
+		this.address = address;
+		this.firstSeen = now;
+		this.lastSeen = now;
+		this.seenCount = 0;
+		this.recordLength = 0;
+	}
+
+	/**
+	 * 数値のアドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 数値のアドレス
+	 */
+	public long getAddressLong() {
+		return address;
+	}
+
+	/**
+	 * アドレスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return "00:11:22:AA:BB:CC" 形式のアドレス
+	 */
+	public String getAddress() {
+		return BluetoothAddress.format(address);
+	}
+
+	/**
+	 * 最後に取得したRSSIを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return RSSI
+	 */
+	public int getRssi() {
+		return rssi;
+	}
+
+	/**
+	 * 最初に検出された時刻を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link android.os.SystemClock#elapsedRealtime()} の時刻
+	 */
+	public long getFirstSeen() {
+		return firstSeen;
+	}
+
+	/**
+	 * 最後に検出された時刻を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link android.os.SystemClock#elapsedRealtime()} の時刻
+	 */
+	public long getLastSeen() {
+		return lastSeen;
+	}
+
+	/**
+	 * 検出された回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 検出された回数
+	 */
+	public int getSeenCount() {
+		return seenCount;
+	}
+
+	/**
+	 * 最後に受信したアドバタイズデータを取得する
+	 * 
+	 * <p>
+	 * 返す配列は内部のバッファであり，有効な長さは {@link #getRecordLength()} で取得する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @return アドバタイズデータ
+	 */
+	public byte[] getRecord() {
+		return record;
+	}
+
+	/**
+	 * アドバタイズデータの長さを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return アドバタイズデータの長さ
+	 */
+	public int getRecordLength() {
+		return recordLength;
+	}
+
+	/**
+	 * アドバタイズデータを複製する
+	 * 
+	 * @since 0.0.1
+	 * @return アドバタイズデータの複製
+	 */
+	public byte[] copyRecord() {
+		byte[] copy = new byte[recordLength];
+		System.arraycopy(record, 0, copy, 0, recordLength);
+		return copy;
+	}
+}
@@ -0,0 +1,229 @@
+package net.kokohadoko.instil.android.bluetooth.le;
+
+import net.kokohadoko.instil.android.bluetooth.util.LongObjectHashMap;
+
+/**
+ * BLEデバイスごとの最終検出情報を保持する容量固定のテーブル
+ * 
+ * <p>
+ * 全ての {@link LeDevice} を生成時に確保し，容量を超えた場合は最も長く検出されていない
+ * デバイスを再利用する．更新処理ではオブジェクトを生成しない．
+ * スレッドセーフではないため，呼び出し側で同期すること．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class LeDeviceTable {
+
+	/** 容量 */
+	private final int capacity;
+	/** アドレスからデバイスへの索引 */
+	private final LongObjectHashMap<LeDevice> index;
+	/** 未使用のデバイス */
+	private final LeDevice[] free;
+	/** 未使用のデバイス数 */
+	private int freeCount;
+	/** 最近検出されたデバイス．LRUリストの先頭 */
+	private LeDevice head;
+	/** 最も長く検出されていないデバイス．LRUリストの末尾 */
+	private LeDevice tail;
+	/** 容量超過により再利用した回数 */
+	private long evictedCount;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param capacity 保持するデバイス数の上限
+	 */
+	public LeDeviceTable(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacityが不正な値です．");
+		}
+
+		this.capacity = capacity;
+		this.index = new LongObjectHashMap<LeDevice>(capacity);
+		this.free = new LeDevice[capacity];
+		for (int i = 0; i < capacity; i++) {
+			free[i] = new LeDevice();
+		}
+		this.freeCount = capacity;
+	}
+
+	/**
+	 * 検出結果を反映する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param rssi RSSI
+	 * @param scanRecord アドバタイズデータ, 取得できなかった場合は null
+	 * @param now 検出された時刻
+	 * @return 更新したデバイス
+	 */
+	public LeDevice update(long address, int rssi, byte[] scanRecord, long now) {
+		LeDevice device = index.get(address);
+		if (device == null) {
+			device = obtain();
+			device.reset(address, now);
+			index.put(address, device);
+			linkFirst(device);
+		} else if (device != head) {
+			unlink(device);
+			linkFirst(device);
+		}
+		device.update(rssi, scanRecord, now);
+
+		return device;
+	}
+
+	/**
+	 * デバイスを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return デバイス, 存在しない場合は nullを返す
+	 */
+	public LeDevice get(long address) {
+		return index.get(address);
+	}
+
+	/**
+	 * 指定した時刻以降に検出されていないデバイスを削除する
+	 * 
+	 * @since 0.0.1
+	 * @param limit {@link android.os.SystemClock#elapsedRealtime()} の時刻
+	 * @return 削除したデバイス数
+	 */
+	public int evictOlderThan(long limit) {
+		int count = 0;
+		while (tail != null && tail.lastSeen < limit) {
+			LeDevice device = tail;
+			unlink(device);
+			index.remove(device.address);
+			free[freeCount++] = device;
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * 保持しているデバイスを最近検出された順に配列に格納する
+	 * 
+	 * @since 0.0.1
+	 * @param out 格納先の配列
+	 * @return 格納したデバイス数
+	 */
+	public int copyTo(LeDevice[] out) {
+		int count = 0;
+		for (LeDevice device = head; device != null && count < out.length; device = device.next) {
+			out[count++] = device;
+		}
+
+		return count;
+	}
+
+	/**
+	 * 保持しているデバイス数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイス数
+	 */
+	public int size() {
+		return capacity - freeCount;
+	}
+
+	/**
+	 * 容量を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 容量
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * 容量超過により再利用した回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 再利用した回数
+	 */
+	public long getEvictedCount() {
+		return evictedCount;
+	}
+
+	/**
+	 * 全てのデバイスを削除する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void clear() {
+		while (tail != null) {
+			LeDevice device = tail;
+			unlink(device);
+			free[freeCount++] = device;
+		}
+		index.clear();
+	}
+
+	/**
+	 * 未使用のデバイスを取得する．存在しない場合は最も長く検出されていないデバイスを再利用する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイス
+	 */
+	private LeDevice obtain() {
+		if (freeCount > 0) {
+			LeDevice device = free[--freeCount];
+			free[freeCount] = null;
+			return device;
+		}
+
+		LeDevice device = tail;
+		unlink(device);
+		index.remove(device.address);
+		evictedCount++;
+		return device;
+	}
+
+	/**
+	 * LRUリストの先頭に追加する
+	 * 
+	 * @since 0.0.1
+	 * @param device デバイス
+	 */
+	private void linkFirst(LeDevice device) {
+		device.prev = null;
+		device.next = head;
+		if (head != null) {
+			head.prev = device;
+		}
+		head = device;
+		if (tail == null) {
+			tail = device;
+		}
+	}
+
+	/**
+	 * LRUリストから取り除く
+	 * 
+	 * @since 0.0.1
+	 * @param device デバイス
+	 */
+	private void unlink(LeDevice device) {
+		if (device.prev != null) {
+			device.prev.next = device.next;
+		} else {
+			head = device.next;
+		}
+		if (device.next != null) {
+			device.next.prev = device.prev;
+		} else {
+			tail = device.prev;
+		}
+		device.prev = null;
+		device.next = null;
+	}
+}
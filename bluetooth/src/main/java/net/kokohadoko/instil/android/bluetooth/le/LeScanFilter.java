@@ -0,0 +1,249 @@
+package net.kokohadoko.instil.android.bluetooth.le;
+
+import java.util.UUID;
+
+import net.kokohadoko.instil.android.bluetooth.BluetoothAddress;
+import android.annotation.TargetApi;
+import android.bluetooth.le.ScanFilter;
+import android.os.Build;
+import android.os.ParcelUuid;
+
+/**
+ * BLEスキャンのフィルタ条件
+ * 
+ * <p>
+ * Android 5.0以降ではScanFilterに変換してコントローラでの絞り込みに使用し，
+ * それ以前の端末ではアドバタイズデータを直接照合する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class LeScanFilter {
+
+	/** サービスUUIDによる条件を表す */
+	public static final int TYPE_SERVICE_UUID = 1;
+	/** メーカーIDによる条件を表す */
+	public static final int TYPE_MANUFACTURER = 2;
+	/** アドレスによる条件を表す */
+	public static final int TYPE_ADDRESS = 3;
+
+	/** 条件の種類 */
+	private final int type;
+	/** サービスUUID */
+	private final UUID serviceUuid;
+	/** メーカーID */
+	private final int manufacturerId;
+	/** メーカー固有データ */
+	private final byte[] manufacturerData;
+	/** メーカー固有データのマスク */
+	private final byte[] manufacturerDataMask;
+	/** 数値のアドレス */
+	private final long address;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param type 条件の種類
+	 * @param serviceUuid サービスUUID
+	 * @param manufacturerId メーカーID
+	 * @param manufacturerData メーカー固有データ
+	 * @param manufacturerDataMask メーカー固有データのマスク
+	 * @param address 数値のアドレス
+	 */
+	private LeScanFilter(int type, UUID serviceUuid, int manufacturerId,
+			byte[] manufacturerData, byte[] manufacturerDataMask, long address) {
+		this.type = type;
+		this.serviceUuid = serviceUuid;
+		this.manufacturerId = manufacturerId;
+		this.manufacturerData = manufacturerData;
+		this.manufacturerDataMask = manufacturerDataMask;
+		this.address = address;
+	}
+
+	/**
+	 * サービスUUIDに一致するデバイスを対象とするフィルタを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param serviceUuid サービスUUID
+	 * @return フィルタ
+	 */
+	public static LeScanFilter forServiceUuid(UUID serviceUuid) {
+		if (serviceUuid == null) {
+			throw new IllegalArgumentException("serviceUuidがnullです．");
+		}
+
+		return new LeScanFilter(TYPE_SERVICE_UUID, serviceUuid, -1, null, null, BluetoothAddress.INVALID);
+	}
+
+	/**
+	 * メーカーIDに一致するデバイスを対象とするフィルタを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param manufacturerId Bluetooth SIGが割り当てたメーカーID
+	 * @return フィルタ
+	 */
+	public static LeScanFilter forManufacturerId(int manufacturerId) {
+		return forManufacturerData(manufacturerId, new byte[0], null);
+	}
+
+	/**
+	 * メーカー固有データに一致するデバイスを対象とするフィルタを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param manufacturerId Bluetooth SIGが割り当てたメーカーID
+	 * @param data メーカーIDに続くデータの先頭部分
+	 * @param mask 比較するビットを1としたマスク, 全て比較する場合は null
+	 * @return フィルタ
+	 */
+	public static LeScanFilter forManufacturerData(int manufacturerId, byte[] data, byte[] mask) {
+		if (manufacturerId < 0 || manufacturerId > 0xFFFF) {
+			throw new IllegalArgumentException("manufacturerIdが不正な値です．");
+		}
+		if (data == null) {
+			throw new IllegalArgumentException("dataがnullです．");
+		}
+		if (mask != null && mask.length != data.length) {
+			throw new IllegalArgumentException("maskの長さが不正です．");
+		}
+
+		return new LeScanFilter(TYPE_MANUFACTURER, null, manufacturerId,
+				data.clone(), mask != null ? mask.clone() : null, BluetoothAddress.INVALID);
+	}
+
+	/**
+	 * アドレスに一致するデバイスを対象とするフィルタを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param address "00:11:22:AA:BB:CC" 形式のアドレス
+	 * @return フィルタ
+	 */
+	public static LeScanFilter forAddress(String address) {
+		long value = BluetoothAddress.parse(address);
+		if (value == BluetoothAddress.INVALID) {
+			throw new IllegalArgumentException("addressが不正な値です．");
+		}
+
+		return new LeScanFilter(TYPE_ADDRESS, null, -1, null, null, value);
+	}
+
+	/**
+	 * 条件の種類を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link #TYPE_SERVICE_UUID} などの値
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * ScanFilterに変換する
+	 * 
+	 * @since 0.0.1
+	 * @return ScanFilter
+	 */
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	public ScanFilter toScanFilter() {
+		ScanFilter.Builder builder = new ScanFilter.Builder();
+		switch (type) {
+		case TYPE_SERVICE_UUID:
+			builder.setServiceUuid(new ParcelUuid(serviceUuid));
+			break;
+		case TYPE_MANUFACTURER:
+			if (manufacturerDataMask != null) {
+				builder.setManufacturerData(manufacturerId, manufacturerData, manufacturerDataMask);
+			} else {
+				builder.setManufacturerData(manufacturerId, manufacturerData);
+			}
+			break;
+		case TYPE_ADDRESS:
+			builder.setDeviceAddress(BluetoothAddress.format(address));
+			break;
+		default:
+			break;
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * 検出結果が条件に一致するかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param record アドバタイズデータ
+	 * @param length アドバタイズデータの長さ
+	 * @return 一致する場合に true, そうでない場合に falseを返す
+	 */
+	public boolean matches(long address, byte[] record, int length) {
+		if (type == TYPE_ADDRESS || record == null) {
+			return matches(address, null);
+		}
+
+		return matches(address, new AdvertisingDataCursor().reset(record, 0, length));
+	}
+
+	/**
+	 * 検出結果が条件に一致するかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param cursor アドバタイズデータを設定したカーソル, アドバタイズデータがない場合は null
+	 * @return 一致する場合に true, そうでない場合に falseを返す
+	 */
+	boolean matches(long address, AdvertisingDataCursor cursor) {
+		if (type == TYPE_ADDRESS) {
+			return this.address == address;
+		}
+		if (cursor == null) {
+			return false;
+		}
+
+		cursor.rewind();
+		while (cursor.next()) {
+			if (type == TYPE_SERVICE_UUID ? matchesServiceUuid(cursor) : matchesManufacturer(cursor)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * サービスUUIDのAD構造が条件に一致するかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param cursor カーソル
+	 * @return 一致する場合に true, そうでない場合に falseを返す
+	 */
+	private boolean matchesServiceUuid(AdvertisingDataCursor cursor) {
+		return cursor.getUuidSize() != 0
+				&& cursor.containsUuid(serviceUuid.getMostSignificantBits(), serviceUuid.getLeastSignificantBits());
+	}
+
+	/**
+	 * メーカー固有データのAD構造が条件に一致するかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param cursor カーソル
+	 * @return 一致する場合に true, そうでない場合に falseを返す
+	 */
+	private boolean matchesManufacturer(AdvertisingDataCursor cursor) {
+		if (cursor.getManufacturerId() != manufacturerId
+				|| cursor.getDataLength() < 2 + manufacturerData.length) {
+			return false;
+		}
+
+		for (int i = 0; i < manufacturerData.length; i++) {
+			// getUint8は符号なしのため，比較する値とマスクも符号なしに揃える
+			int mask = manufacturerDataMask != null ? manufacturerDataMask[i] & 0xFF : 0xFF;
+			if (((cursor.getUint8(2 + i) ^ (manufacturerData[i] & 0xFF)) & mask) != 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
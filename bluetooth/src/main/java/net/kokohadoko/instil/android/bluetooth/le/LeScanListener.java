@@ -0,0 +1,31 @@
+package net.kokohadoko.instil.android.bluetooth.le;
+
+/**
+ * BLEスキャンの結果を受け取るリスナー
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface LeScanListener {
+
+	/**
+	 * 前回の通知以降に検出されたデバイスをまとめて通知する
+	 * 
+	 * <p>
+	 * 配列とデバイスは再利用されるため，呼び出し後に参照を保持しないこと．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param devices 検出されたデバイス
+	 * @param count 有効なデバイス数
+	 */
+	void onScanResults(LeDevice[] devices, int count);
+
+	/**
+	 * スキャンの開始に失敗した場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param errorCode エラーコード
+	 */
+	void onScanFailed(int errorCode);
+}
@@ -0,0 +1,512 @@
+package net.kokohadoko.instil.android.bluetooth.le;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.kokohadoko.instil.android.bluetooth.BluetoothAddress;
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * BLEデバイスのスキャンを行うクラス
+ * 
+ * <p>
+ * Android 5.0以降ではフィルタとバッチ処理をコントローラに任せ，
+ * それ以前の端末やバッチ処理に対応していない端末ではソフトウェアで同等の処理を行う．
+ * 検出結果は {@link LeDeviceTable} に反映し，前回の通知以降に更新されたデバイスを
+ * まとめて {@link LeScanListener} に通知する．検出ごとのオブジェクト生成は行わない．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+public class LeScanner {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = LeScanner.class.getSimpleName();
+
+	/** 消費電力を優先するスキャンモード */
+	public static final int SCAN_MODE_LOW_POWER = 0;
+	/** 消費電力と遅延のバランスを取るスキャンモード */
+	public static final int SCAN_MODE_BALANCED = 1;
+	/** 遅延を優先するスキャンモード */
+	public static final int SCAN_MODE_LOW_LATENCY = 2;
+
+	/** BluetoothAdapter */
+	private final BluetoothAdapter adapter;
+	/** 通知を行うHandler */
+	private final Handler handler;
+	/** デバイスのテーブル */
+	private final LeDeviceTable table;
+	/** 通知待ちのデバイス */
+	private final LeDevice[] pending;
+	/** 通知待ちのデバイス数 */
+	private int pendingCount;
+	/** フィルタ */
+	private final List<LeScanFilter> filters = new ArrayList<LeScanFilter>();
+	/** 同期用オブジェクト */
+	private final Object lock = new Object();
+	/** フィルタの照合に使用するカーソル */
+	private final AdvertisingDataCursor cursor = new AdvertisingDataCursor();
+
+	/** スキャンモード */
+	private int scanMode = SCAN_MODE_BALANCED;
+	/** 通知を遅延させるミリ秒 */
+	private long reportDelay;
+	/** デバイスを保持するミリ秒 */
+	private long expiry;
+	/** リスナー */
+	private LeScanListener listener;
+	/** スキャン中かどうか */
+	private boolean scanning;
+	/** コントローラでバッチ処理を行っているかどうか */
+	private boolean hardwareBatching;
+	/** ソフトウェアでフィルタを照合するかどうか */
+	private boolean softwareFiltering;
+	/** 通知を予約しているかどうか */
+	private boolean deliveryScheduled;
+
+	/** Android 5.0以降のコールバック */
+	private ScanCallback scanCallback;
+
+	/** Android 4.3, 4.4のコールバック */
+	private final BluetoothAdapter.LeScanCallback leScanCallback = new BluetoothAdapter.LeScanCallback() {
+		@Override
+		public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
+			handleResult(device, rssi, scanRecord);
+		}
+	};
+
+	/** 通知処理 */
+	private final Runnable deliveryTask = new Runnable() {
+		@Override
+		public void run() {
+			synchronized (lock) {
+				deliveryScheduled = false;
+				deliver();
+			}
+		}
+	};
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * <p>
+	 * 検出結果はメインスレッドで通知する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param adapter BluetoothAdapter
+	 * @param capacity 保持するデバイス数の上限
+	 */
+	public LeScanner(BluetoothAdapter adapter, int capacity) {
+		this(adapter, capacity, new Handler(Looper.getMainLooper()));
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param adapter BluetoothAdapter
+	 * @param capacity 保持するデバイス数の上限
+	 * @param handler 検出結果の通知を行うHandler
+	 */
+	public LeScanner(BluetoothAdapter adapter, int capacity, Handler handler) {
+		if (adapter == null) {
+			throw new IllegalArgumentException("adapterがnullです．");
+		}
+		if (handler == null) {
+			throw new IllegalArgumentException("handlerがnullです．");
+		}
+
+		this.adapter = adapter;
+		this.handler = handler;
+		this.table = new LeDeviceTable(capacity);
+		this.pending = new LeDevice[capacity];
+	}
+
+	/**
+	 * フィルタを追加する．いずれかのフィルタに一致したデバイスを対象とする
+	 * 
+	 * @since 0.0.1
+	 * @param filter フィルタ
+	 */
+	public void addFilter(LeScanFilter filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException("filterがnullです．");
+		}
+
+		synchronized (lock) {
+			filters.add(filter);
+		}
+	}
+
+	/**
+	 * フィルタを全て削除する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void clearFilters() {
+		synchronized (lock) {
+			filters.clear();
+		}
+	}
+
+	/**
+	 * スキャンモードを設定する．次回のスキャン開始時に反映される
+	 * 
+	 * @since 0.0.1
+	 * @param scanMode {@link #SCAN_MODE_LOW_POWER}, {@link #SCAN_MODE_BALANCED}, {@link #SCAN_MODE_LOW_LATENCY} のいずれか
+	 */
+	public void setScanMode(int scanMode) {
+		if (scanMode != SCAN_MODE_LOW_POWER
+		 && scanMode != SCAN_MODE_BALANCED
+		 && scanMode != SCAN_MODE_LOW_LATENCY) {
+			throw new IllegalArgumentException("scanModeが不正な値です．");
+		}
+
+		this.scanMode = scanMode;
+	}
+
+	/**
+	 * 検出結果の通知を遅延させるミリ秒を設定する．次回のスキャン開始時に反映される
+	 * 
+	 * @since 0.0.1
+	 * @param reportDelay ミリ秒, 0の場合は検出ごとに通知する
+	 */
+	public void setReportDelay(long reportDelay) {
+		if (reportDelay < 0) {
+			throw new IllegalArgumentException("reportDelayが不正な値です．");
+		}
+
+		this.reportDelay = reportDelay;
+	}
+
+	/**
+	 * デバイスを保持するミリ秒を設定する．通知の際にこれより古いデバイスを削除する
+	 * 
+	 * @since 0.0.1
+	 * @param expiry ミリ秒, 0の場合は容量を超えるまで保持する
+	 */
+	public void setExpiry(long expiry) {
+		synchronized (lock) {
+			this.expiry = expiry;
+		}
+	}
+
+	/**
+	 * デバイスのテーブルを取得する．参照する場合は {@link #getLock()} で同期すること
+	 * 
+	 * @since 0.0.1
+	 * @return デバイスのテーブル
+	 */
+	public LeDeviceTable getTable() {
+		return table;
+	}
+
+	/**
+	 * 同期用オブジェクトを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 同期用オブジェクト
+	 */
+	public Object getLock() {
+		return lock;
+	}
+
+	/**
+	 * コントローラでバッチ処理を行っているかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return コントローラで行っている場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isHardwareBatching() {
+		return hardwareBatching;
+	}
+
+	/**
+	 * スキャン中かどうか
+	 * 
+	 * @since 0.0.1
+	 * @return スキャン中の場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isScanning() {
+		return scanning;
+	}
+
+	/**
+	 * スキャンを開始する
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー
+	 * @return 成功した場合に true, そうでない場合に falseを返す
+	 */
+	public boolean start(LeScanListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("listenerがnullです．");
+		}
+
+		synchronized (lock) {
+			if (scanning) {
+				throw new IllegalStateException("スキャン中です．");
+			}
+			this.listener = listener;
+			this.scanning = true;
+		}
+
+		boolean started;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+			started = startLollipop();
+		} else {
+			hardwareBatching = false;
+			softwareFiltering = true;
+			started = adapter.startLeScan(leScanCallback);
+		}
+
+		if (!started) {
+			synchronized (lock) {
+				this.scanning = false;
+				this.listener = null;
+			}
+		}
+
+		return started;
+	}
+
+	/**
+	 * スキャンを終了する．通知待ちの検出結果は通知してから終了する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void stop() {
+		synchronized (lock) {
+			if (!scanning) {
+				return;
+			}
+		}
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+			stopLollipop();
+		} else {
+			adapter.stopLeScan(leScanCallback);
+		}
+
+		synchronized (lock) {
+			handler.removeCallbacks(deliveryTask);
+			deliveryScheduled = false;
+			deliver();
+			scanning = false;
+			listener = null;
+		}
+	}
+
+	/**
+	 * 通知待ちの検出結果を直ちに通知する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void flush() {
+		if (hardwareBatching && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+			BluetoothLeScanner scanner = adapter.getBluetoothLeScanner();
+			if (scanner != null && scanCallback != null) {
+				scanner.flushPendingScanResults(scanCallback);
+			}
+		}
+
+		synchronized (lock) {
+			handler.removeCallbacks(deliveryTask);
+			deliveryScheduled = false;
+			deliver();
+		}
+	}
+
+	/**
+	 * Android 5.0以降のスキャンを開始する
+	 * 
+	 * @since 0.0.1
+	 * @return 成功した場合に true, そうでない場合に falseを返す
+	 */
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	private boolean startLollipop() {
+		BluetoothLeScanner scanner = adapter.getBluetoothLeScanner();
+		if (scanner == null) {
+			return false;
+		}
+
+		List<ScanFilter> scanFilters = null;
+		synchronized (lock) {
+			if (!filters.isEmpty() && adapter.isOffloadedFilteringSupported()) {
+				scanFilters = new ArrayList<ScanFilter>(filters.size());
+				for (LeScanFilter filter : filters) {
+					scanFilters.add(filter.toScanFilter());
+				}
+				softwareFiltering = false;
+			} else {
+				softwareFiltering = !filters.isEmpty();
+			}
+		}
+
+		hardwareBatching = reportDelay > 0 && adapter.isOffloadedScanBatchingSupported();
+		ScanSettings settings = new ScanSettings.Builder()
+				.setScanMode(scanMode)
+				.setReportDelay(hardwareBatching ? reportDelay : 0)
+				.build();
+
+		if (scanCallback == null) {
+			scanCallback = new ScanCallback() {
+				@Override
+				public void onScanResult(int callbackType, ScanResult result) {
+					handleResult(result);
+				}
+
+				@Override
+				public void onBatchScanResults(List<ScanResult> results) {
+					for (int i = 0, size = results.size(); i < size; i++) {
+						handleResult(results.get(i));
+					}
+				}
+
+				@Override
+				public void onScanFailed(int errorCode) {
+					LeScanListener current;
+					synchronized (lock) {
+						current = listener;
+						scanning = false;
+						listener = null;
+					}
+					if (current != null) {
+						current.onScanFailed(errorCode);
+					}
+				}
+			};
+		}
+		scanner.startScan(scanFilters, settings, scanCallback);
+
+		return true;
+	}
+
+	/**
+	 * Android 5.0以降のスキャンを終了する
+	 * 
+	 * @since 0.0.1
+	 */
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	private void stopLollipop() {
+		BluetoothLeScanner scanner = adapter.getBluetoothLeScanner();
+		if (scanner != null && scanCallback != null) {
+			if (hardwareBatching) {
+				scanner.flushPendingScanResults(scanCallback);
+			}
+			scanner.stopScan(scanCallback);
+		}
+	}
+
+	/**
+	 * Android 5.0以降の検出結果を反映する
+	 * 
+	 * @since 0.0.1
+	 * @param result 検出結果
+	 */
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	private void handleResult(ScanResult result) {
+		ScanRecord record = result.getScanRecord();
+		handleResult(result.getDevice(), result.getRssi(), record != null ? record.getBytes() : null);
+	}
+
+	/**
+	 * 検出結果を反映する
+	 * 
+	 * @since 0.0.1
+	 * @param device BluetoothDevice
+	 * @param rssi RSSI
+	 * @param scanRecord アドバタイズデータ
+	 */
+	private void handleResult(BluetoothDevice device, int rssi, byte[] scanRecord) {
+		if (device == null) {
+			return;
+		}
+
+		long address = BluetoothAddress.parse(device.getAddress());
+		if (address == BluetoothAddress.INVALID) {
+			return;
+		}
+
+		synchronized (lock) {
+			if (!scanning) {
+				return;
+			}
+			if (softwareFiltering && !matches(address, scanRecord)) {
+				return;
+			}
+
+			LeDevice updated = table.update(address, rssi, scanRecord, SystemClock.elapsedRealtime());
+			if (!updated.pending) {
+				updated.pending = true;
+				pending[pendingCount++] = updated;
+			}
+
+			if (hardwareBatching || reportDelay == 0) {
+				// コントローラでまとめられた結果と即時通知の場合は遅延させずに通知する
+				if (!deliveryScheduled) {
+					deliveryScheduled = true;
+					handler.post(deliveryTask);
+				}
+			} else if (!deliveryScheduled) {
+				deliveryScheduled = true;
+				handler.postDelayed(deliveryTask, reportDelay);
+			}
+		}
+	}
+
+	/**
+	 * いずれかのフィルタに一致するかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param scanRecord アドバタイズデータ
+	 * @return 一致する場合に true, そうでない場合に falseを返す
+	 */
+	private boolean matches(long address, byte[] scanRecord) {
+		AdvertisingDataCursor current = scanRecord != null ? cursor.reset(scanRecord, 0, scanRecord.length) : null;
+		for (int i = 0, size = filters.size(); i < size; i++) {
+			if (filters.get(i).matches(address, current)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * 通知待ちのデバイスを通知する．lockで同期して呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 */
+	private void deliver() {
+		if (pendingCount > 0 && listener != null) {
+			listener.onScanResults(pending, pendingCount);
+			for (int i = 0; i < pendingCount; i++) {
+				pending[i].pending = false;
+				pending[i] = null;
+			}
+			pendingCount = 0;
+		}
+
+		// 通知待ちのデバイスを解放しないように通知後に削除する
+		if (expiry > 0 && pendingCount == 0) {
+			table.evictOlderThan(SystemClock.elapsedRealtime() - expiry);
+		}
+	}
+}
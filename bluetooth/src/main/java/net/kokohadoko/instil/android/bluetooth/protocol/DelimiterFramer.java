@@ -0,0 +1,90 @@
+package net.kokohadoko.instil.android.bluetooth.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * ペイロードの後に区切り文字を付けるフレーム形式
+ * 
+ * <p>
+ * 改行で区切るテキストコマンドのような形式に使用する．
+ * ペイロードに区切り文字を含めることはできない．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class DelimiterFramer implements Framer {
+
+	/** 改行 */
+	public static final byte LF = '\n';
+
+	/** 区切り文字 */
+	private final byte delimiter;
+	/** 最大のペイロード長 */
+	private final int maxLength;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param delimiter 区切り文字
+	 * @param maxLength 最大のペイロード長
+	 */
+	public DelimiterFramer(byte delimiter, int maxLength) {
+		if (maxLength <= 0) {
+			throw new IllegalArgumentException("maxLengthが不正な値です．");
+		}
+
+		this.delimiter = delimiter;
+		this.maxLength = maxLength;
+	}
+
+	@Override
+	public void validate(byte[] payload, int offset, int length) {
+		if (length > maxLength) {
+			throw new IllegalArgumentException("ペイロードが最大長を超えています．");
+		}
+		for (int i = offset; i < offset + length; i++) {
+			if (payload[i] == delimiter) {
+				throw new IllegalArgumentException("ペイロードに区切り文字が含まれています．");
+			}
+		}
+	}
+
+	@Override
+	public void write(OutputStream out, byte[] payload, int offset, int length) throws IOException {
+		validate(payload, offset, length);
+
+		out.write(payload, offset, length);
+		out.write(delimiter);
+	}
+
+	@Override
+	public byte[] read(InputStream in) throws IOException {
+		byte[] buffer = new byte[Math.min(maxLength, 64)];
+		int length = 0;
+		while (true) {
+			int b = in.read();
+			if (b < 0) {
+				if (length == 0) {
+					return null;
+				}
+				throw new EOFException("フレームの途中でストリームが終了しました．");
+			}
+			if ((byte) b == delimiter) {
+				return Arrays.copyOf(buffer, length);
+			}
+			if (length == maxLength) {
+				throw new IOException("フレーム長が最大長を超えています．");
+			}
+			if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.min(maxLength, buffer.length * 2));
+			}
+			buffer[length++] = (byte) b;
+		}
+	}
+}
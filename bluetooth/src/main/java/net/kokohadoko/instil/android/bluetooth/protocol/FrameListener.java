@@ -0,0 +1,18 @@
+package net.kokohadoko.instil.android.bluetooth.protocol;
+
+/**
+ * 要求に対応しないフレームを受信するリスナー
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface FrameListener {
+
+	/**
+	 * 要求に対応しないフレームを受信した場合に呼び出される．受信スレッドで呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param payload ペイロード
+	 */
+	void onFrame(byte[] payload);
+}
@@ -0,0 +1,52 @@
+package net.kokohadoko.instil.android.bluetooth.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * バイトストリーム上でメッセージの区切りを表現する方式
+ * 
+ * <p>
+ * 実装は状態を持たず，複数のストリームで共有できること．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface Framer {
+
+	/**
+	 * ペイロードをフレームとして書き込めるかどうかを検査する
+	 * 
+	 * @since 0.0.1
+	 * @param payload ペイロード
+	 * @param offset ペイロードの開始位置
+	 * @param length ペイロードの長さ
+	 * @throws IllegalArgumentException 書き込めない場合に例外を生成する
+	 */
+	void validate(byte[] payload, int offset, int length);
+
+	/**
+	 * 1フレームを書き込む．フラッシュは呼び出し側で行う
+	 * 
+	 * @since 0.0.1
+	 * @param out 出力ストリーム
+	 * @param payload ペイロード
+	 * @param offset ペイロードの開始位置
+	 * @param length ペイロードの長さ
+	 * @throws IOException 書き込みに失敗した場合に例外を生成する
+	 * @throws IllegalArgumentException {@link #validate(byte[], int, int)} を満たさない場合に例外を生成する
+	 */
+	void write(OutputStream out, byte[] payload, int offset, int length) throws IOException;
+
+	/**
+	 * 1フレームを読み込む．フレーム全体を受信するまでブロックする
+	 * 
+	 * @since 0.0.1
+	 * @param in 入力ストリーム
+	 * @return ペイロード, フレームの境界でストリームが終了した場合は null
+	 * @throws IOException 読み込みに失敗した場合またはフレームが不正な場合に例外を生成する
+	 */
+	byte[] read(InputStream in) throws IOException;
+}
@@ -0,0 +1,100 @@
+package net.kokohadoko.instil.android.bluetooth.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * ペイロードの前にビッグエンディアンの長さを付けるフレーム形式
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class LengthPrefixedFramer implements Framer {
+
+	/** 長さのバイト数 */
+	private final int prefixLength;
+	/** 最大のペイロード長 */
+	private final int maxLength;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param prefixLength 長さのバイト数, 1・2・4のいずれか
+	 * @param maxLength 最大のペイロード長
+	 */
+	public LengthPrefixedFramer(int prefixLength, int maxLength) {
+		if (prefixLength != 1 && prefixLength != 2 && prefixLength != 4) {
+			throw new IllegalArgumentException("prefixLengthは1・2・4のいずれかを指定してください．");
+		}
+		long limit = prefixLength == 4 ? Integer.MAX_VALUE : (1L << (prefixLength * 8)) - 1;
+		if (maxLength <= 0 || maxLength > limit) {
+			throw new IllegalArgumentException("maxLengthが不正な値です．");
+		}
+
+		this.prefixLength = prefixLength;
+		this.maxLength = maxLength;
+	}
+
+	@Override
+	public void validate(byte[] payload, int offset, int length) {
+		if (length > maxLength) {
+			throw new IllegalArgumentException("ペイロードが最大長を超えています．");
+		}
+	}
+
+	@Override
+	public void write(OutputStream out, byte[] payload, int offset, int length) throws IOException {
+		validate(payload, offset, length);
+
+		for (int shift = (prefixLength - 1) * 8; shift >= 0; shift -= 8) {
+			out.write(length >>> shift);
+		}
+		out.write(payload, offset, length);
+	}
+
+	@Override
+	public byte[] read(InputStream in) throws IOException {
+		int first = in.read();
+		if (first < 0) {
+			return null;
+		}
+
+		long length = first;
+		for (int i = 1; i < prefixLength; i++) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException("フレームの途中でストリームが終了しました．");
+			}
+			length = (length << 8) | b;
+		}
+		if (length > maxLength) {
+			throw new IOException("フレーム長が最大長を超えています．length=" + length);
+		}
+
+		byte[] payload = new byte[(int) length];
+		readFully(in, payload);
+		return payload;
+	}
+
+	/**
+	 * 配列が埋まるまで読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param in 入力ストリーム
+	 * @param buffer 読み込み先
+	 * @throws IOException 読み込みに失敗した場合またはストリームが終了した場合に例外を生成する
+	 */
+	static void readFully(InputStream in, byte[] buffer) throws IOException {
+		int offset = 0;
+		while (offset < buffer.length) {
+			int read = in.read(buffer, offset, buffer.length - offset);
+			if (read < 0) {
+				throw new EOFException("フレームの途中でストリームが終了しました．");
+			}
+			offset += read;
+		}
+	}
+}
@@ -0,0 +1,557 @@
+package net.kokohadoko.instil.android.bluetooth.protocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.kokohadoko.instil.android.bluetooth.connection.StreamConnection;
+import net.kokohadoko.instil.android.bluetooth.util.SettableFuture;
+import android.util.Log;
+
+/**
+ * 応答を待たずに複数の要求を送信できる要求/応答クライアント
+ * 
+ * <p>
+ * 要求は送信キューに積まれ，送信スレッドがキューに溜まった要求をまとめて書き込んでから1回だけフラッシュする．
+ * 応答は受信スレッドが読み込み，対応する要求の {@link Future} を完了させる．
+ * </p>
+ * <p>
+ * 相関IDを使用する場合は，ペイロードの前に4バイトのビッグエンディアンのIDを付加し，
+ * 応答も同じIDを先頭に持つものとする．相関IDを使用しない場合は，応答が要求の順に
+ * 返るものとして先頭から対応付ける．この場合は応答のない要求があると後続の応答を正しく対応付けられないため，
+ * 要求がタイムアウトした時点でクライアントを閉じ，応答待ちの要求を全て失敗させる．
+ * 相関IDは任意のバイト列になるため，{@link DelimiterFramer} とは併用できない．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class PipelinedClient {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = PipelinedClient.class.getSimpleName();
+
+	/** デフォルトのタイムアウトミリ秒 */
+	public static final long DEFAULT_TIMEOUT = 5000;
+	/** デフォルトの応答待ちの最大数 */
+	public static final int DEFAULT_MAX_OUTSTANDING = 16;
+	/** 相関IDのバイト数 */
+	public static final int ID_LENGTH = 4;
+
+	/** 送信バッファのサイズ */
+	private static final int BUFFER_SIZE = 4096;
+
+	/** タイムアウトを処理するスレッド */
+	private static final ScheduledExecutorService TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "PipelinedClientTimer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/** 接続 */
+	private final StreamConnection connection;
+	/** フレーム形式 */
+	private final Framer framer;
+	/** 相関IDを使用するかどうか */
+	private final boolean correlationIds;
+	/** 応答待ちの数の制限 */
+	private final Semaphore window;
+
+	/** 送信キュー */
+	private final BlockingQueue<Request> sendQueue = new LinkedBlockingQueue<Request>();
+	/** IDごとの応答待ちの要求 */
+	private final ConcurrentHashMap<Integer, Request> pendingById = new ConcurrentHashMap<Integer, Request>();
+	/** 送信順の応答待ちの要求 */
+	private final Queue<Request> pendingInOrder = new ConcurrentLinkedQueue<Request>();
+	/** 相関IDの採番 */
+	private final AtomicInteger nextId = new AtomicInteger();
+
+	/** タイムアウトミリ秒 */
+	private volatile long timeout = DEFAULT_TIMEOUT;
+	/** 要求に対応しないフレームのリスナー */
+	private volatile FrameListener frameListener;
+	/** 送信スレッド */
+	private Thread writer;
+	/** 受信スレッド */
+	private Thread reader;
+	/** 閉じられたかどうか */
+	private volatile boolean closed;
+	/** 閉じた原因 */
+	private volatile IOException closeCause;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param connection 接続
+	 * @param framer フレーム形式
+	 * @param correlationIds 相関IDを使用する場合に true, 応答を送信順に対応付ける場合に false
+	 */
+	public PipelinedClient(StreamConnection connection, Framer framer, boolean correlationIds) {
+		this(connection, framer, correlationIds, DEFAULT_MAX_OUTSTANDING);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param connection 接続
+	 * @param framer フレーム形式
+	 * @param correlationIds 相関IDを使用する場合に true, 応答を送信順に対応付ける場合に false
+	 * @param maxOutstanding 応答待ちの最大数
+	 * @throws IllegalArgumentException {@link DelimiterFramer} で相関IDを使用する場合に例外を生成する
+	 */
+	public PipelinedClient(StreamConnection connection, Framer framer, boolean correlationIds, int maxOutstanding) {
+		if (connection == null) {
+			throw new IllegalArgumentException("connectionがnullです．");
+		}
+		if (framer == null) {
+			throw new IllegalArgumentException("framerがnullです．");
+		}
+		if (maxOutstanding <= 0) {
+			throw new IllegalArgumentException("maxOutstandingは1以上を指定してください．");
+		}
+		// 相関IDに区切り文字が含まれるとフレームが分断される
+		if (correlationIds && framer instanceof DelimiterFramer) {
+			throw new IllegalArgumentException("DelimiterFramerでは相関IDを使用できません．");
+		}
+
+		this.connection = connection;
+		this.framer = framer;
+		this.correlationIds = correlationIds;
+		this.window = new Semaphore(maxOutstanding);
+	}
+
+	/**
+	 * タイムアウトミリ秒を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param timeout ミリ秒
+	 */
+	public void setTimeout(long timeout) {
+		if (timeout <= 0) {
+			throw new IllegalArgumentException("timeoutが不正な値です．");
+		}
+
+		this.timeout = timeout;
+	}
+
+	/**
+	 * 要求に対応しないフレームのリスナーを設定する
+	 * 
+	 * @since 0.0.1
+	 * @param frameListener リスナー, 破棄する場合は null
+	 */
+	public void setFrameListener(FrameListener frameListener) {
+		this.frameListener = frameListener;
+	}
+
+	/**
+	 * 送信スレッドと受信スレッドを開始する
+	 * 
+	 * @since 0.0.1
+	 * @throws IOException ストリームの取得に失敗した場合に例外を生成する
+	 */
+	public synchronized void start() throws IOException {
+		if (writer != null) {
+			return;
+		}
+		if (closed) {
+			throw new IOException("クライアントは閉じられています．");
+		}
+
+		final OutputStream out = new BufferedOutputStream(connection.getOutputStream(), BUFFER_SIZE);
+		final InputStream in = new BufferedInputStream(connection.getInputStream(), BUFFER_SIZE);
+
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop(out);
+			}
+		}, LOG_TAG + "-writer");
+		reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readLoop(in);
+			}
+		}, LOG_TAG + "-reader");
+		writer.setDaemon(true);
+		reader.setDaemon(true);
+		writer.start();
+		reader.start();
+	}
+
+	/**
+	 * 要求を送信する
+	 * 
+	 * @since 0.0.1
+	 * @param payload ペイロード
+	 * @return 応答のペイロードを返すFuture
+	 */
+	public Future<byte[]> send(byte[] payload) {
+		return send(payload, 0, payload.length);
+	}
+
+	/**
+	 * 要求を送信する
+	 * 
+	 * <p>
+	 * 応答待ちの数が上限に達している場合は空きができるまでブロックする．
+	 * タイムアウトした場合はFutureが {@link TimeoutException} で完了する．
+	 * 相関IDを使用しない場合は，タイムアウトした時点でクライアントも閉じられる．
+	 * フレーム形式で送信できないペイロードの場合はFutureが {@link IllegalArgumentException} で完了する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param payload ペイロード
+	 * @param offset ペイロードの開始位置
+	 * @param length ペイロードの長さ
+	 * @return 応答のペイロードを返すFuture
+	 */
+	public Future<byte[]> send(byte[] payload, int offset, int length) {
+		if (payload == null) {
+			throw new IllegalArgumentException("payloadがnullです．");
+		}
+
+		long timeout = this.timeout;
+		Request request;
+		if (correlationIds) {
+			int id = nextId.incrementAndGet();
+			byte[] frame = new byte[ID_LENGTH + length];
+			frame[0] = (byte) (id >>> 24);
+			frame[1] = (byte) (id >>> 16);
+			frame[2] = (byte) (id >>> 8);
+			frame[3] = (byte) id;
+			System.arraycopy(payload, offset, frame, ID_LENGTH, length);
+			request = new Request(id, frame, 0, frame.length);
+		} else {
+			request = new Request(0, payload, offset, length);
+		}
+
+		// 送信スレッドで失敗しないように，キューに積む前に検査する
+		try {
+			framer.validate(request.payload, request.offset, request.length);
+		} catch (IllegalArgumentException e) {
+			request.setException(e);
+			return request;
+		}
+
+		try {
+			if (!window.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+				request.setException(new TimeoutException("応答待ちの数が上限に達しています．"));
+				return request;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			request.setException(e);
+			return request;
+		}
+		request.acquired = true;
+
+		if (closed) {
+			request.setException(closedException());
+			return request;
+		}
+
+		if (correlationIds) {
+			pendingById.put(request.id, request);
+		} else {
+			// 応答の順序を保つため，送信キューと同じ順序で登録する
+			synchronized (pendingInOrder) {
+				pendingInOrder.add(request);
+				sendQueue.add(request);
+			}
+		}
+		if (correlationIds) {
+			sendQueue.add(request);
+		}
+		request.timer = TIMER.schedule(request, timeout, TimeUnit.MILLISECONDS);
+		if (closed) {
+			request.setException(closedException());
+		}
+		return request;
+	}
+
+	/**
+	 * 要求を送信し，応答を待つ
+	 * 
+	 * @since 0.0.1
+	 * @param payload ペイロード
+	 * @return 応答のペイロード
+	 * @throws IOException 送信に失敗した場合またはタイムアウトした場合に例外を生成する
+	 */
+	public byte[] request(byte[] payload) throws IOException {
+		try {
+			return send(payload).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("応答の待機中に割り込まれました．");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			IOException exception = new IOException("要求が失敗しました．");
+			exception.initCause(cause);
+			throw exception;
+		}
+	}
+
+	/**
+	 * 応答待ちの要求数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 応答待ちの要求数
+	 */
+	public int getOutstandingCount() {
+		return correlationIds ? pendingById.size() : pendingInOrder.size();
+	}
+
+	/**
+	 * クライアントを閉じる．応答待ちの要求は例外で完了する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void close() {
+		shutdown(new IOException("クライアントは閉じられました．"));
+	}
+
+	/**
+	 * 送信スレッドの処理
+	 * 
+	 * @since 0.0.1
+	 * @param out 出力ストリーム
+	 */
+	private void writeLoop(OutputStream out) {
+		List<Request> batch = new ArrayList<Request>();
+		try {
+			while (!closed) {
+				batch.add(sendQueue.take());
+				sendQueue.drainTo(batch);
+				for (int i = 0; i < batch.size(); i++) {
+					Request request = batch.get(i);
+					// 順序で対応付ける場合は応答の順序を保つため完了済みの要求も送信する
+					if (!correlationIds || !request.isDone()) {
+						framer.write(out, request.payload, request.offset, request.length);
+					}
+				}
+				out.flush();
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			// closeによる終了
+		} catch (IOException e) {
+			shutdown(e);
+		} catch (RuntimeException e) {
+			// 送信スレッドが終了した後に要求が滞留しないように閉じる
+			Log.e(LOG_TAG, "送信中に予期しない例外が発生しました．", e);
+			IOException exception = new IOException("送信中に予期しない例外が発生しました．");
+			exception.initCause(e);
+			shutdown(exception);
+		}
+	}
+
+	/**
+	 * 受信スレッドの処理
+	 * 
+	 * @since 0.0.1
+	 * @param in 入力ストリーム
+	 */
+	private void readLoop(InputStream in) {
+		try {
+			while (!closed) {
+				byte[] frame = framer.read(in);
+				if (frame == null) {
+					throw new EOFException("接続が切断されました．");
+				}
+				dispatch(frame);
+			}
+		} catch (IOException e) {
+			shutdown(e);
+		} catch (RuntimeException e) {
+			Log.e(LOG_TAG, "受信中に予期しない例外が発生しました．", e);
+			IOException exception = new IOException("受信中に予期しない例外が発生しました．");
+			exception.initCause(e);
+			shutdown(exception);
+		}
+	}
+
+	/**
+	 * 受信したフレームを要求に対応付ける
+	 * 
+	 * @since 0.0.1
+	 * @param frame 受信したフレーム
+	 */
+	private void dispatch(byte[] frame) {
+		Request request;
+		byte[] payload;
+		if (correlationIds) {
+			if (frame.length < ID_LENGTH) {
+				Log.w(LOG_TAG, "相関IDを含まないフレームを受信しました．");
+				notifyFrame(frame);
+				return;
+			}
+			int id = ((frame[0] & 0xff) << 24) | ((frame[1] & 0xff) << 16) | ((frame[2] & 0xff) << 8) | (frame[3] & 0xff);
+			request = pendingById.remove(id);
+			payload = new byte[frame.length - ID_LENGTH];
+			System.arraycopy(frame, ID_LENGTH, payload, 0, payload.length);
+		} else {
+			request = pendingInOrder.poll();
+			payload = frame;
+		}
+
+		if (request == null) {
+			notifyFrame(payload);
+			return;
+		}
+		request.set(payload);
+	}
+
+	/**
+	 * 要求に対応しないフレームを通知する
+	 * 
+	 * @since 0.0.1
+	 * @param payload ペイロード
+	 */
+	private void notifyFrame(byte[] payload) {
+		FrameListener listener = frameListener;
+		if (listener != null) {
+			listener.onFrame(payload);
+		}
+	}
+
+	/**
+	 * 停止し，応答待ちの要求を例外で完了させる
+	 * 
+	 * @since 0.0.1
+	 * @param cause 停止の原因
+	 */
+	private void shutdown(IOException cause) {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closeCause = cause;
+			closed = true;
+		}
+
+		if (writer != null) {
+			writer.interrupt();
+		}
+		try {
+			connection.close();
+		} catch (IOException e) {
+			Log.w(LOG_TAG, "切断に失敗しました．", e);
+		}
+
+		Request request;
+		while ((request = sendQueue.poll()) != null) {
+			request.setException(cause);
+		}
+		for (Request pending : pendingById.values()) {
+			pending.setException(cause);
+		}
+		while ((request = pendingInOrder.poll()) != null) {
+			request.setException(cause);
+		}
+	}
+
+	/**
+	 * 閉じた原因を表す例外を生成する
+	 * 
+	 * @since 0.0.1
+	 * @return 例外
+	 */
+	private IOException closedException() {
+		IOException exception = new IOException("クライアントは閉じられています．");
+		exception.initCause(closeCause);
+		return exception;
+	}
+
+	/**
+	 * 送信した要求
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private class Request extends SettableFuture<byte[]> implements Runnable {
+
+		/** 相関ID */
+		final int id;
+		/** 送信するフレームのペイロード */
+		final byte[] payload;
+		/** ペイロードの開始位置 */
+		final int offset;
+		/** ペイロードの長さ */
+		final int length;
+		/** 応答待ちの枠を確保したかどうか */
+		volatile boolean acquired;
+		/** タイムアウトの予約 */
+		volatile ScheduledFuture<?> timer;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param id 相関ID
+		 * @param payload 送信するフレームのペイロード
+		 * @param offset ペイロードの開始位置
+		 * @param length ペイロードの長さ
+		 */
+		Request(int id, byte[] payload, int offset, int length) {
+			this.id = id;
+			this.payload = payload;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * タイムアウトの処理
+		 */
+		@Override
+		public void run() {
+			if (!setException(new TimeoutException("応答がありません．")) || correlationIds) {
+				return;
+			}
+			// 応答が届かないまま次の応答を受信すると，以降の応答が1つずつずれて対応付けられる
+			shutdown(new IOException("応答がないため後続の応答を対応付けられません．"));
+		}
+
+		@Override
+		protected void done() {
+			ScheduledFuture<?> scheduled = timer;
+			if (scheduled != null) {
+				scheduled.cancel(false);
+			}
+			if (correlationIds) {
+				pendingById.remove(id);
+			}
+			if (acquired) {
+				window.release();
+			}
+		}
+	}
+}
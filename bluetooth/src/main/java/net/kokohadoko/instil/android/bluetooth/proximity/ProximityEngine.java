@@ -0,0 +1,534 @@
+package net.kokohadoko.instil.android.bluetooth.proximity;
+
+import net.kokohadoko.instil.android.bluetooth.discovery.DiscoveredDevice;
+import net.kokohadoko.instil.android.bluetooth.le.AdvertisingDataCursor;
+import net.kokohadoko.instil.android.bluetooth.le.BeaconFrames;
+import net.kokohadoko.instil.android.bluetooth.le.LeDevice;
+import net.kokohadoko.instil.android.bluetooth.util.LongIntHashMap;
+
+/**
+ * RSSIからデバイスまでの距離を推定し，接近・離脱を判定するクラス
+ * 
+ * <p>
+ * デバイスごとの状態は容量固定のプリミティブ配列に保持し，アドレスから添字への索引で参照する．
+ * 更新処理は定数時間で行われ，オブジェクトを生成しない．容量を超えた場合は最も長く検出されていない
+ * デバイスを破棄する．
+ * </p>
+ * 
+ * <p>
+ * RSSIはカルマンフィルタまたは指数移動平均で平滑化し，1mでの受信強度 txPower と
+ * 減衰係数 n から d = 10 ^ ((txPower - rssi) / (10 * n)) で距離を推定する．
+ * 接近と判定する距離と離脱と判定する距離を分けることで，境界付近での判定の揺れを防ぐ．
+ * </p>
+ * 
+ * <p>
+ * スレッドセーフではないため，同じスレッドから呼び出すこと．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class ProximityEngine {
+
+	/** カルマンフィルタを表す */
+	public static final int FILTER_KALMAN = 1;
+	/** 指数移動平均を表す */
+	public static final int FILTER_EWMA = 2;
+
+	/** 送信強度が不明であることを表す */
+	public static final int TX_POWER_UNKNOWN = Integer.MIN_VALUE;
+	/** デフォルトの1mでの受信強度(dBm) */
+	public static final int DEFAULT_TX_POWER = -59;
+	/** デフォルトの減衰係数 */
+	public static final float DEFAULT_PATH_LOSS_EXPONENT = 2.0f;
+	/** デフォルトの接近と判定する距離(m) */
+	public static final float DEFAULT_ENTER_DISTANCE = 2.0f;
+	/** デフォルトの離脱と判定する距離(m) */
+	public static final float DEFAULT_EXIT_DISTANCE = 3.0f;
+	/** デフォルトの検出されない場合に離脱と判定するミリ秒 */
+	public static final long DEFAULT_EXIT_TIMEOUT = 10 * 1000;
+
+	/** 0mでの送信強度を1mでの受信強度に換算する減衰量(dB) */
+	private static final int ONE_METER_LOSS = 41;
+	/** 空きを表す添字 */
+	private static final int NONE = -1;
+
+	/** 容量 */
+	private final int capacity;
+	/** アドレスから添字への索引 */
+	private final LongIntHashMap index;
+	/** 数値のアドレス */
+	private final long[] addresses;
+	/** 平滑化したRSSI */
+	private final float[] estimates;
+	/** カルマンフィルタの推定誤差の分散 */
+	private final float[] variances;
+	/** 推定距離 */
+	private final float[] distances;
+	/** 1mでの受信強度 */
+	private final int[] txPowers;
+	/** 最後に検出された時刻 */
+	private final long[] lastSeen;
+	/** 接近しているかどうか */
+	private final boolean[] near;
+	/** LRUリストの前の添字 */
+	private final int[] prev;
+	/** LRUリストの次の添字 */
+	private final int[] next;
+	/** 未使用の添字 */
+	private final int[] free;
+	/** 未使用の添字の数 */
+	private int freeCount;
+	/** 最近検出されたデバイスの添字 */
+	private int head = NONE;
+	/** 最も長く検出されていないデバイスの添字 */
+	private int tail = NONE;
+
+	/** アドバタイズデータの解析に使用するカーソル */
+	private final AdvertisingDataCursor cursor = new AdvertisingDataCursor();
+
+	/** フィルタの種類 */
+	private int filter = FILTER_KALMAN;
+	/** カルマンフィルタのプロセスノイズ */
+	private float processNoise = 0.008f;
+	/** カルマンフィルタの観測ノイズ */
+	private float measurementNoise = 4f;
+	/** 指数移動平均の係数 */
+	private float alpha = 0.25f;
+	/** デフォルトの1mでの受信強度 */
+	private int defaultTxPower = DEFAULT_TX_POWER;
+	/** 減衰係数 */
+	private float pathLossExponent = DEFAULT_PATH_LOSS_EXPONENT;
+	/** 接近と判定する距離 */
+	private float enterDistance = DEFAULT_ENTER_DISTANCE;
+	/** 離脱と判定する距離 */
+	private float exitDistance = DEFAULT_EXIT_DISTANCE;
+	/** 検出されない場合に離脱と判定するミリ秒 */
+	private long exitTimeout = DEFAULT_EXIT_TIMEOUT;
+	/** リスナー */
+	private ProximityListener listener;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param capacity 保持するデバイス数の上限
+	 */
+	public ProximityEngine(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacityが不正な値です．");
+		}
+
+		this.capacity = capacity;
+		this.index = new LongIntHashMap(capacity);
+		this.addresses = new long[capacity];
+		this.estimates = new float[capacity];
+		this.variances = new float[capacity];
+		this.distances = new float[capacity];
+		this.txPowers = new int[capacity];
+		this.lastSeen = new long[capacity];
+		this.near = new boolean[capacity];
+		this.prev = new int[capacity];
+		this.next = new int[capacity];
+		this.free = new int[capacity];
+		for (int i = 0; i < capacity; i++) {
+			free[i] = capacity - 1 - i;
+		}
+		this.freeCount = capacity;
+	}
+
+	/**
+	 * リスナーを設定する
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー, 解除する場合は null
+	 */
+	public void setListener(ProximityListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * カルマンフィルタを使用する
+	 * 
+	 * @since 0.0.1
+	 * @param processNoise プロセスノイズ．大きいほど変化に追従する
+	 * @param measurementNoise 観測ノイズ．大きいほど平滑化される
+	 */
+	public void setKalmanFilter(float processNoise, float measurementNoise) {
+		if (processNoise <= 0 || measurementNoise <= 0) {
+			throw new IllegalArgumentException("processNoiseまたはmeasurementNoiseが不正な値です．");
+		}
+
+		this.filter = FILTER_KALMAN;
+		this.processNoise = processNoise;
+		this.measurementNoise = measurementNoise;
+	}
+
+	/**
+	 * 指数移動平均を使用する
+	 * 
+	 * @since 0.0.1
+	 * @param alpha 新しい値の重み．0より大きく1以下
+	 */
+	public void setEwmaFilter(float alpha) {
+		if (alpha <= 0 || alpha > 1) {
+			throw new IllegalArgumentException("alphaが不正な値です．");
+		}
+
+		this.filter = FILTER_EWMA;
+		this.alpha = alpha;
+	}
+
+	/**
+	 * 距離の推定に使用する値を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param defaultTxPower 送信強度が不明な場合の1mでの受信強度(dBm)
+	 * @param pathLossExponent 減衰係数．自由空間で2, 屋内で2から4程度
+	 */
+	public void setCalibration(int defaultTxPower, float pathLossExponent) {
+		if (pathLossExponent <= 0) {
+			throw new IllegalArgumentException("pathLossExponentが不正な値です．");
+		}
+
+		this.defaultTxPower = defaultTxPower;
+		this.pathLossExponent = pathLossExponent;
+	}
+
+	/**
+	 * 接近・離脱と判定する距離を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param enterDistance 接近と判定する距離(m)
+	 * @param exitDistance 離脱と判定する距離(m)．enterDistance以上
+	 */
+	public void setThresholds(float enterDistance, float exitDistance) {
+		if (enterDistance <= 0 || exitDistance < enterDistance) {
+			throw new IllegalArgumentException("enterDistanceまたはexitDistanceが不正な値です．");
+		}
+
+		this.enterDistance = enterDistance;
+		this.exitDistance = exitDistance;
+	}
+
+	/**
+	 * 検出されない場合に離脱と判定するミリ秒を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param exitTimeout ミリ秒
+	 */
+	public void setExitTimeout(long exitTimeout) {
+		this.exitTimeout = exitTimeout;
+	}
+
+	/**
+	 * 検出結果を反映する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param rssi RSSI
+	 * @param txPower 1mでの受信強度(dBm), 不明な場合は {@link #TX_POWER_UNKNOWN}
+	 * @param now 検出された時刻
+	 * @return 推定距離(m)
+	 */
+	public float update(long address, int rssi, int txPower, long now) {
+		int slot = index.get(address);
+		if (slot == LongIntHashMap.NO_VALUE) {
+			slot = obtain();
+			index.put(address, slot);
+			addresses[slot] = address;
+			estimates[slot] = rssi;
+			variances[slot] = measurementNoise;
+			near[slot] = false;
+			linkFirst(slot);
+		} else {
+			if (slot != head) {
+				unlink(slot);
+				linkFirst(slot);
+			}
+			estimates[slot] = filter(slot, rssi);
+		}
+		txPowers[slot] = txPower != TX_POWER_UNKNOWN ? txPower : defaultTxPower;
+		lastSeen[slot] = now;
+
+		float distance = (float) Math.pow(10, (txPowers[slot] - estimates[slot]) / (10 * pathLossExponent));
+		distances[slot] = distance;
+
+		if (!near[slot] && distance <= enterDistance) {
+			near[slot] = true;
+			if (listener != null) {
+				listener.onEnter(address, distance);
+			}
+		} else if (near[slot] && distance >= exitDistance) {
+			near[slot] = false;
+			if (listener != null) {
+				listener.onExit(address, distance);
+			}
+		}
+
+		return distance;
+	}
+
+	/**
+	 * BLEスキャンの検出結果を反映する
+	 * 
+	 * <p>
+	 * アドバタイズデータにiBeaconの受信強度，EddystoneまたはTx Power Levelの送信強度が
+	 * 含まれる場合はその値を使用する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param device BLEデバイス
+	 * @return 推定距離(m)
+	 */
+	public float update(LeDevice device) {
+		return update(device.getAddressLong(), device.getRssi(),
+				resolveTxPower(device.getRecord(), device.getRecordLength()), device.getLastSeen());
+	}
+
+	/**
+	 * 周辺デバイスの検索結果を反映する
+	 * 
+	 * @since 0.0.1
+	 * @param device 検出されたデバイス
+	 * @return 推定距離(m), RSSIが取得できていない場合は {@link Float#NaN}
+	 */
+	public float update(DiscoveredDevice device) {
+		if (device.getRssi() == DiscoveredDevice.RSSI_UNKNOWN) {
+			return Float.NaN;
+		}
+
+		return update(device.getAddressLong(), device.getRssi(), TX_POWER_UNKNOWN, device.getLastSeen());
+	}
+
+	/**
+	 * 一定時間検出されていないデバイスを離脱として破棄する
+	 * 
+	 * @since 0.0.1
+	 * @param now 現在時刻
+	 * @return 破棄したデバイス数
+	 */
+	public int expire(long now) {
+		long limit = now - exitTimeout;
+		int count = 0;
+		while (tail != NONE && lastSeen[tail] < limit) {
+			release(tail);
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * 推定距離を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return 推定距離(m), 保持していない場合は {@link Float#NaN}
+	 */
+	public float getDistance(long address) {
+		int slot = index.get(address);
+		return slot != LongIntHashMap.NO_VALUE ? distances[slot] : Float.NaN;
+	}
+
+	/**
+	 * 平滑化したRSSIを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return RSSI, 保持していない場合は {@link Float#NaN}
+	 */
+	public float getFilteredRssi(long address) {
+		int slot = index.get(address);
+		return slot != LongIntHashMap.NO_VALUE ? estimates[slot] : Float.NaN;
+	}
+
+	/**
+	 * 接近しているかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @return 接近している場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isNear(long address) {
+		int slot = index.get(address);
+		return slot != LongIntHashMap.NO_VALUE && near[slot];
+	}
+
+	/**
+	 * 接近しているデバイスのアドレスを配列に格納する
+	 * 
+	 * @since 0.0.1
+	 * @param out 格納先
+	 * @return 格納した数
+	 */
+	public int getNearAddresses(long[] out) {
+		int count = 0;
+		for (int slot = head; slot != NONE && count < out.length; slot = next[slot]) {
+			if (near[slot]) {
+				out[count++] = addresses[slot];
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * 保持しているデバイス数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return デバイス数
+	 */
+	public int size() {
+		return capacity - freeCount;
+	}
+
+	/**
+	 * 容量を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 容量
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * 全てのデバイスを破棄する．リスナーは呼び出されない
+	 * 
+	 * @since 0.0.1
+	 */
+	public void clear() {
+		index.clear();
+		head = NONE;
+		tail = NONE;
+		for (int i = 0; i < capacity; i++) {
+			free[i] = capacity - 1 - i;
+		}
+		freeCount = capacity;
+	}
+
+	/**
+	 * 観測値で平滑化したRSSIを計算する
+	 * 
+	 * @since 0.0.1
+	 * @param slot 添字
+	 * @param rssi 観測したRSSI
+	 * @return 平滑化したRSSI
+	 */
+	private float filter(int slot, int rssi) {
+		float estimate = estimates[slot];
+		if (filter == FILTER_EWMA) {
+			return estimate + alpha * (rssi - estimate);
+		}
+
+		float variance = variances[slot] + processNoise;
+		float gain = variance / (variance + measurementNoise);
+		variances[slot] = (1 - gain) * variance;
+		return estimate + gain * (rssi - estimate);
+	}
+
+	/**
+	 * アドバタイズデータから1mでの受信強度を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param record アドバタイズデータ
+	 * @param length アドバタイズデータの長さ
+	 * @return 1mでの受信強度(dBm), 含まれない場合は {@link #TX_POWER_UNKNOWN}
+	 */
+	private int resolveTxPower(byte[] record, int length) {
+		int txPower = TX_POWER_UNKNOWN;
+		cursor.reset(record, 0, length);
+		while (cursor.next()) {
+			if (BeaconFrames.isIBeacon(cursor)) {
+				return BeaconFrames.getIBeaconTxPower(cursor);
+			}
+
+			int frameType = BeaconFrames.getEddystoneFrameType(cursor);
+			if (frameType == BeaconFrames.EDDYSTONE_UID
+			 || frameType == BeaconFrames.EDDYSTONE_URL
+			 || frameType == BeaconFrames.EDDYSTONE_EID) {
+				return BeaconFrames.getEddystoneTxPower(cursor) - ONE_METER_LOSS;
+			}
+
+			int level = cursor.getTxPowerLevel();
+			if (level != Integer.MIN_VALUE) {
+				txPower = level - ONE_METER_LOSS;
+			}
+		}
+
+		return txPower;
+	}
+
+	/**
+	 * 未使用の添字を取得する．空きがない場合は最も長く検出されていないデバイスを破棄する
+	 * 
+	 * @since 0.0.1
+	 * @return 添字
+	 */
+	private int obtain() {
+		if (freeCount == 0) {
+			release(tail);
+		}
+
+		return free[--freeCount];
+	}
+
+	/**
+	 * デバイスを破棄し，接近していた場合は離脱を通知する
+	 * 
+	 * @since 0.0.1
+	 * @param slot 添字
+	 */
+	private void release(int slot) {
+		unlink(slot);
+		index.remove(addresses[slot]);
+		free[freeCount++] = slot;
+
+		if (near[slot]) {
+			near[slot] = false;
+			if (listener != null) {
+				listener.onExit(addresses[slot], distances[slot]);
+			}
+		}
+	}
+
+	/**
+	 * LRUリストの先頭に追加する
+	 * 
+	 * @since 0.0.1
+	 * @param slot 添字
+	 */
+	private void linkFirst(int slot) {
+		prev[slot] = NONE;
+		next[slot] = head;
+		if (head != NONE) {
+			prev[head] = slot;
+		}
+		head = slot;
+		if (tail == NONE) {
+			tail = slot;
+		}
+	}
+
+	/**
+	 * LRUリストから取り除く
+	 * 
+	 * @since 0.0.1
+	 * @param slot 添字
+	 */
+	private void unlink(int slot) {
+		int p = prev[slot];
+		int n = next[slot];
+		if (p != NONE) {
+			next[p] = n;
+		} else {
+			head = n;
+		}
+		if (n != NONE) {
+			prev[n] = p;
+		} else {
+			tail = p;
+		}
+	}
+}
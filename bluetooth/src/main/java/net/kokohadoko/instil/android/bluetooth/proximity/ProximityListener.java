@@ -0,0 +1,28 @@
+package net.kokohadoko.instil.android.bluetooth.proximity;
+
+/**
+ * デバイスの接近・離脱を受け取るリスナー
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface ProximityListener {
+
+	/**
+	 * デバイスが接近した場合に呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param distance 推定距離(m)
+	 */
+	void onEnter(long address, float distance);
+
+	/**
+	 * デバイスが離脱した場合に呼び出される．一定時間検出されなかった場合も呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param address 数値のアドレス
+	 * @param distance 最後の推定距離(m)
+	 */
+	void onExit(long address, float distance);
+}
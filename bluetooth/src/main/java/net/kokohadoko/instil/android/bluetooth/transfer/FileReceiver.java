@@ -0,0 +1,184 @@
+package net.kokohadoko.instil.android.bluetooth.transfer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import net.kokohadoko.instil.android.bluetooth.connection.StreamConnection;
+
+/**
+ * {@link FileSender} から送信されたファイルを受信するクラス
+ * 
+ * <p>
+ * 受信確認はデータを受信するたびには送らず，受信待ちのデータがなくなった時点か
+ * 一定量を受信した時点でまとめて送信する．最後の受信確認は，受信先でCRC32を照合してから送信する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class FileReceiver {
+
+	/** 受信確認を送信する間隔のバイト数 */
+	public static final int DEFAULT_ACK_INTERVAL = 32 * 1024;
+
+	/** 受信先 */
+	private final TransferSink sink;
+	/** 受信用のバッファ */
+	private final byte[] buffer = new byte[TransferProtocol.MAX_CHUNK_SIZE];
+	/** 受信確認を送信する間隔のバイト数 */
+	private int ackInterval = DEFAULT_ACK_INTERVAL;
+	/** リスナー */
+	private TransferListener listener;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param sink 受信先
+	 */
+	public FileReceiver(TransferSink sink) {
+		if (sink == null) {
+			throw new IllegalArgumentException("sinkがnullです．");
+		}
+
+		this.sink = sink;
+	}
+
+	/**
+	 * リスナーを設定する
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー, 解除する場合は null
+	 */
+	public void setListener(TransferListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 受信確認を送信する間隔を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param ackInterval バイト数
+	 */
+	public void setAckInterval(int ackInterval) {
+		if (ackInterval <= 0) {
+			throw new IllegalArgumentException("ackIntervalが不正な値です．");
+		}
+
+		this.ackInterval = ackInterval;
+	}
+
+	/**
+	 * 1つのファイルを受信する．受信が完了するか切断されるまでブロックする
+	 * 
+	 * @since 0.0.1
+	 * @param connection 接続
+	 * @throws IOException 受信に失敗した場合または切断された場合に例外を生成する
+	 */
+	public void receive(StreamConnection connection) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 8192));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 64));
+
+		if (in.read() != TransferProtocol.OFFER) {
+			throw new IOException("送信の申し込みではありません．");
+		}
+		String name = in.readUTF();
+		long size = in.readLong();
+		long checksum = in.readLong();
+
+		long received;
+		try {
+			received = sink.open(name, size, checksum);
+		} catch (IOException e) {
+			sendError(out, e);
+			throw e;
+		}
+		out.write(TransferProtocol.ACCEPT);
+		out.writeLong(received);
+		out.flush();
+
+		boolean closed = false;
+		try {
+			long acknowledged = received;
+			long startedAt = System.nanoTime();
+			long startOffset = received;
+			while (received < size) {
+				int type = in.read();
+				if (type < 0) {
+					throw new EOFException("受信中に切断されました．");
+				}
+				if (type != TransferProtocol.DATA) {
+					throw new IOException("不正なメッセージです．type=" + type);
+				}
+
+				long position = in.readLong();
+				int length = in.readInt();
+				if (position != received || length <= 0 || length > buffer.length || position + length > size) {
+					throw new IOException("不正なデータです．position=" + position + ", length=" + length);
+				}
+				in.readFully(buffer, 0, length);
+				sink.write(position, buffer, 0, length);
+				received += length;
+
+				// 続けて受信できるデータがある間は受信確認をまとめる．最後の受信確認は照合後に送信する
+				if (received < size && (received - acknowledged >= ackInterval || in.available() == 0)) {
+					out.write(TransferProtocol.ACK);
+					out.writeLong(received);
+					out.flush();
+					acknowledged = received;
+					notifyProgress(received, size, startOffset, startedAt);
+				}
+			}
+
+			closed = true;
+			try {
+				sink.close(true);
+			} catch (IOException e) {
+				sendError(out, e);
+				throw e;
+			}
+			out.write(TransferProtocol.ACK);
+			out.writeLong(received);
+			out.flush();
+			notifyProgress(received, size, startOffset, startedAt);
+		} finally {
+			if (!closed) {
+				sink.close(false);
+			}
+		}
+	}
+
+	/**
+	 * 進捗を通知する
+	 * 
+	 * @since 0.0.1
+	 * @param received 受信したバイト数
+	 * @param size ファイルのバイト数
+	 * @param startOffset 受信を開始した位置
+	 * @param startedAt 受信を開始した時刻
+	 */
+	private void notifyProgress(long received, long size, long startOffset, long startedAt) {
+		if (listener != null) {
+			long elapsed = Math.max(1, System.nanoTime() - startedAt);
+			listener.onProgress(received, size, (received - startOffset) * 1e9f / elapsed);
+		}
+	}
+
+	/**
+	 * エラーを送信する
+	 * 
+	 * @since 0.0.1
+	 * @param out 出力ストリーム
+	 * @param cause エラーの原因
+	 * @throws IOException 送信に失敗した場合に例外を生成する
+	 */
+	private static void sendError(DataOutputStream out, IOException cause) throws IOException {
+		out.write(TransferProtocol.ERROR);
+		out.writeUTF(String.valueOf(cause.getMessage()));
+		out.flush();
+	}
+}
@@ -0,0 +1,562 @@
+package net.kokohadoko.instil.android.bluetooth.transfer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import net.kokohadoko.instil.android.bluetooth.connection.ConnectionFactory;
+import net.kokohadoko.instil.android.bluetooth.connection.StreamConnection;
+import android.util.Log;
+
+/**
+ * ファイルを {@link FileReceiver} に送信するクラス
+ * 
+ * <p>
+ * 送信元はメモリマップしたバッファから読み出し，受信確認を待たずにウィンドウの範囲で続けて送信する．
+ * 1回に送るデータ長は受信確認の進み方から求めたスループットに応じて調整し，
+ * 1回分の送信にかかる時間が目標の範囲に収まるように，速ければ大きく，遅ければ小さくする．
+ * 切断された場合は，受信側が返す再開位置から続きを送信する．
+ * 送信の申し込みにはファイル全体のCRC32を含め，受信側はそれを照合してから完了を確認する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class FileSender {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = FileSender.class.getSimpleName();
+
+	/** デフォルトの最小のデータ長 */
+	public static final int DEFAULT_MIN_CHUNK_SIZE = 512;
+	/** デフォルトの最大のデータ長 */
+	public static final int DEFAULT_MAX_CHUNK_SIZE = TransferProtocol.MAX_CHUNK_SIZE;
+	/** デフォルトの初期のデータ長 */
+	public static final int DEFAULT_INITIAL_CHUNK_SIZE = 4 * 1024;
+	/** デフォルトの受信確認を待たずに送信するバイト数 */
+	public static final int DEFAULT_WINDOW_SIZE = 256 * 1024;
+	/** デフォルトの1回分のデータの送信にかける目標ミリ秒 */
+	public static final long DEFAULT_TARGET_LATENCY = 200;
+	/** デフォルトの受信確認を待つミリ秒 */
+	public static final long DEFAULT_ACK_TIMEOUT = 10 * 1000;
+	/** 進捗を通知する間隔のミリ秒 */
+	private static final long PROGRESS_INTERVAL = 200;
+	/** スループットの平滑化係数 */
+	private static final float THROUGHPUT_ALPHA = 0.3f;
+
+	/** 送信元 */
+	private final ByteBuffer source;
+	/** ファイル名 */
+	private final String name;
+	/** ファイルのバイト数 */
+	private final long size;
+	/** 送信用のバッファ */
+	private final byte[] chunk = new byte[TransferProtocol.MAX_CHUNK_SIZE];
+
+	/** 最小のデータ長 */
+	private int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+	/** 最大のデータ長 */
+	private int maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+	/** 受信確認を待たずに送信するバイト数 */
+	private int windowSize = DEFAULT_WINDOW_SIZE;
+	/** 1回分のデータの送信にかける目標ミリ秒 */
+	private long targetLatency = DEFAULT_TARGET_LATENCY;
+	/** 受信確認を待つミリ秒 */
+	private long ackTimeout = DEFAULT_ACK_TIMEOUT;
+	/** リスナー */
+	private TransferListener listener;
+
+	/** 現在のデータ長 */
+	private volatile int chunkSize = DEFAULT_INITIAL_CHUNK_SIZE;
+	/** ファイル全体のCRC32．計算していない場合は -1 */
+	private long checksum = -1;
+	/** 受信が確認されたバイト数．thisで同期して更新する */
+	private long acknowledged;
+	/** 受信側で照合が完了したかどうか．thisで同期して更新する */
+	private boolean completed;
+	/** 受信確認の読み込みで発生した例外．thisで同期して更新する */
+	private IOException ackError;
+	/** スループット(バイト/秒) */
+	private volatile float throughput;
+	/** スループットを計算した時刻 */
+	private long throughputAt;
+	/** スループットを計算した時点の受信確認済みのバイト数 */
+	private long throughputOffset;
+	/** 進捗を通知した時刻 */
+	private long notifiedAt;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param source 送信元．positionからlimitまでを送信する
+	 * @param name ファイル名
+	 */
+	public FileSender(ByteBuffer source, String name) {
+		if (source == null) {
+			throw new IllegalArgumentException("sourceがnullです．");
+		}
+		if (name == null) {
+			throw new IllegalArgumentException("nameがnullです．");
+		}
+
+		this.source = source.slice();
+		this.name = name;
+		this.size = this.source.remaining();
+	}
+
+	/**
+	 * ファイルをメモリマップして送信するFileSenderを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param file ファイル
+	 * @return FileSender
+	 * @throws IOException ファイルを読み込めない場合に例外を生成する
+	 */
+	public static FileSender open(File file) throws IOException {
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			// マップしたバッファはチャネルを閉じた後も有効
+			ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new FileSender(mapped, file.getName());
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * リスナーを設定する
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー, 解除する場合は null
+	 */
+	public void setListener(TransferListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * データ長の範囲を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param min 最小のデータ長
+	 * @param max 最大のデータ長
+	 */
+	public void setChunkSizeRange(int min, int max) {
+		if (min <= 0 || max < min || max > TransferProtocol.MAX_CHUNK_SIZE) {
+			throw new IllegalArgumentException("minまたはmaxが不正な値です．");
+		}
+
+		this.minChunkSize = min;
+		this.maxChunkSize = max;
+		this.chunkSize = Math.max(min, Math.min(max, chunkSize));
+	}
+
+	/**
+	 * 受信確認を待たずに送信するバイト数を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param windowSize バイト数
+	 */
+	public void setWindowSize(int windowSize) {
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException("windowSizeが不正な値です．");
+		}
+
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * 1回分のデータの送信にかける目標ミリ秒を設定する
+	 * 
+	 * <p>
+	 * データ長はスループットでこの時間に送信できるバイト数に近づける．
+	 * 短くすると進捗の通知と再開位置が細かくなり，長くするとデータごとのヘッダの割合が減る．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param targetLatency ミリ秒
+	 */
+	public void setTargetLatency(long targetLatency) {
+		if (targetLatency <= 0) {
+			throw new IllegalArgumentException("targetLatencyが不正な値です．");
+		}
+
+		this.targetLatency = targetLatency;
+	}
+
+	/**
+	 * 受信確認を待つミリ秒を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param ackTimeout ミリ秒
+	 */
+	public void setAckTimeout(long ackTimeout) {
+		if (ackTimeout <= 0) {
+			throw new IllegalArgumentException("ackTimeoutが不正な値です．");
+		}
+
+		this.ackTimeout = ackTimeout;
+	}
+
+	/**
+	 * ファイルのバイト数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return バイト数
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * ファイル全体のCRC32を取得する
+	 * 
+	 * <p>
+	 * 初回の呼び出し時に送信元の全体を読み込んで計算する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @return CRC32
+	 */
+	public synchronized long getChecksum() {
+		if (checksum < 0) {
+			CRC32 crc = new CRC32();
+			ByteBuffer view = source.duplicate();
+			while (view.hasRemaining()) {
+				int length = Math.min(chunk.length, view.remaining());
+				view.get(chunk, 0, length);
+				crc.update(chunk, 0, length);
+			}
+			checksum = crc.getValue();
+		}
+
+		return checksum;
+	}
+
+	/**
+	 * 受信が確認されたバイト数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return バイト数
+	 */
+	public synchronized long getAcknowledged() {
+		return acknowledged;
+	}
+
+	/**
+	 * 現在のデータ長を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return データ長
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * 直近のスループットを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return バイト/秒
+	 */
+	public float getThroughput() {
+		return throughput;
+	}
+
+	/**
+	 * 接続を作成してファイルを送信する．切断された場合は再接続して続きから送信する
+	 * 
+	 * @since 0.0.1
+	 * @param factory 接続のファクトリ
+	 * @param address 数値のアドレス
+	 * @param uuid サービスUUID
+	 * @param maxAttempts 最大の接続回数
+	 * @throws IOException 全ての接続で送信が完了しなかった場合に例外を生成する
+	 */
+	public void send(ConnectionFactory factory, long address, UUID uuid, int maxAttempts) throws IOException {
+		IOException last = null;
+		for (int attempt = 0; attempt < maxAttempts; attempt++) {
+			StreamConnection connection = null;
+			try {
+				connection = factory.connect(address, uuid);
+				send(connection);
+				return;
+			} catch (IOException e) {
+				Log.w(LOG_TAG, "送信に失敗しました．acknowledged=" + getAcknowledged(), e);
+				last = e;
+			} finally {
+				if (connection != null) {
+					try {
+						connection.close();
+					} catch (IOException e) {
+						Log.w(LOG_TAG, "切断に失敗しました．", e);
+					}
+				}
+			}
+		}
+
+		throw last != null ? last : new IOException("maxAttemptsが0です．");
+	}
+
+	/**
+	 * ファイルを送信する．全ての受信が確認されるまでブロックする
+	 * 
+	 * <p>
+	 * 受信側が途中まで受信済みの場合は，その位置から送信する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param connection 接続
+	 * @throws IOException 送信に失敗した場合または切断された場合に例外を生成する
+	 */
+	public void send(StreamConnection connection) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 256));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 8192));
+
+		out.write(TransferProtocol.OFFER);
+		out.writeUTF(name);
+		out.writeLong(size);
+		out.writeLong(getChecksum());
+		out.flush();
+
+		int type = in.read();
+		if (type == TransferProtocol.ERROR) {
+			throw new IOException("受信を拒否されました．" + in.readUTF());
+		}
+		if (type != TransferProtocol.ACCEPT) {
+			throw new IOException("不正な応答です．type=" + type);
+		}
+		long position = in.readLong();
+		if (position < 0 || position > size) {
+			throw new IOException("不正な再開位置です．position=" + position);
+		}
+
+		synchronized (this) {
+			acknowledged = position;
+			completed = false;
+			ackError = null;
+			throughputAt = System.nanoTime();
+			throughputOffset = position;
+		}
+
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readAcks(in);
+			}
+		}, LOG_TAG + "-ack");
+		reader.setDaemon(true);
+		reader.start();
+
+		try {
+			ByteBuffer view = source.duplicate();
+			while (position < size) {
+				int length = (int) Math.min(chunkSize, size - position);
+				awaitWindow(position, length);
+
+				view.position((int) position);
+				view.get(chunk, 0, length);
+				out.write(TransferProtocol.DATA);
+				out.writeLong(position);
+				out.writeInt(length);
+				out.write(chunk, 0, length);
+				position += length;
+
+				// ウィンドウに空きがある間はまとめて書き込み，待機する前にフラッシュする
+				if (!hasWindow(position, chunkSize)) {
+					out.flush();
+				}
+			}
+			out.flush();
+			awaitWindow(size, 0);
+			awaitAcknowledged(size);
+		} finally {
+			reader.interrupt();
+		}
+	}
+
+	/**
+	 * 受信確認を読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param in 入力ストリーム
+	 */
+	private void readAcks(DataInputStream in) {
+		try {
+			while (true) {
+				int type = in.read();
+				if (type < 0) {
+					throw new EOFException("送信中に切断されました．");
+				}
+				if (type == TransferProtocol.ERROR) {
+					throw new IOException("受信側でエラーが発生しました．" + in.readUTF());
+				}
+				if (type != TransferProtocol.ACK) {
+					throw new IOException("不正なメッセージです．type=" + type);
+				}
+
+				long offset = in.readLong();
+				onAck(offset);
+				if (offset >= size) {
+					return;
+				}
+			}
+		} catch (IOException e) {
+			synchronized (this) {
+				ackError = e;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * 受信確認を反映する
+	 * 
+	 * @since 0.0.1
+	 * @param offset 先頭から連続して受信されたバイト数
+	 */
+	private void onAck(long offset) {
+		long now = System.nanoTime();
+		boolean notify = false;
+		synchronized (this) {
+			if (offset >= size) {
+				completed = true;
+				notifyAll();
+			}
+			if (offset <= acknowledged) {
+				return;
+			}
+			acknowledged = offset;
+
+			// 送信から受信確認までの時間はウィンドウ内で待った時間を含み，ウィンドウが大きいほど長くなるため，
+			// 受信確認の間隔と確認されたバイト数から求めたスループットでデータ長を調整する
+			long elapsed = now - throughputAt;
+			if (elapsed >= PROGRESS_INTERVAL * 1000000 / 4) {
+				float current = (offset - throughputOffset) * 1e9f / elapsed;
+				throughput = throughput == 0 ? current : throughput + THROUGHPUT_ALPHA * (current - throughput);
+				throughputAt = now;
+				throughputOffset = offset;
+				adjustChunkSize(throughput);
+			}
+
+			if (offset >= size || now - notifiedAt >= PROGRESS_INTERVAL * 1000000) {
+				notifiedAt = now;
+				notify = true;
+			}
+			notifyAll();
+		}
+
+		if (notify && listener != null) {
+			listener.onProgress(offset, size, throughput);
+		}
+	}
+
+	/**
+	 * スループットからデータ長を調整する．thisで同期して呼び出すこと
+	 * 
+	 * <p>
+	 * 現在のデータ長の送信にかかる時間が目標の半分未満なら倍にし，目標を超えたら半分にする．
+	 * 間の範囲では変えないため，スループットの揺らぎでデータ長が振動しない．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param throughput スループット(バイト/秒)
+	 */
+	private void adjustChunkSize(float throughput) {
+		if (throughput <= 0) {
+			return;
+		}
+
+		int current = chunkSize;
+		float serviceTime = current * 1000.0f / throughput;
+		if (serviceTime < targetLatency / 2.0f) {
+			chunkSize = Math.min(maxChunkSize, current * 2);
+		} else if (serviceTime > targetLatency) {
+			chunkSize = Math.max(minChunkSize, current / 2);
+		}
+	}
+
+	/**
+	 * ウィンドウに空きがあるかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param position 送信済みの位置
+	 * @param length 次に送信するデータ長
+	 * @return 空きがある場合に true, そうでない場合に falseを返す
+	 */
+	private synchronized boolean hasWindow(long position, int length) {
+		return position + length - acknowledged <= Math.max(windowSize, length);
+	}
+
+	/**
+	 * ウィンドウに空きができるまで待機する
+	 * 
+	 * @since 0.0.1
+	 * @param position 送信済みの位置
+	 * @param length 次に送信するデータ長
+	 * @throws IOException 受信確認が途絶えた場合または切断された場合に例外を生成する
+	 */
+	private synchronized void awaitWindow(long position, int length) throws IOException {
+		long limit = Math.max(windowSize, length);
+		waitUntil(position + length - limit);
+	}
+
+	/**
+	 * 指定した位置まで受信が確認されるまで待機する
+	 * 
+	 * <p>
+	 * ファイルの終端を指定した場合は，受信側でCRC32の照合が完了するまで待機する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param offset 位置
+	 * @throws IOException 受信確認が途絶えた場合または切断された場合に例外を生成する
+	 */
+	private synchronized void awaitAcknowledged(long offset) throws IOException {
+		waitUntil(offset);
+	}
+
+	/**
+	 * 受信確認済みのバイト数が指定した値以上になるまで待機する．thisで同期して呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @param offset バイト数
+	 * @throws IOException 受信確認が途絶えた場合または切断された場合に例外を生成する
+	 */
+	private void waitUntil(long offset) throws IOException {
+		long last = acknowledged;
+		long deadline = System.nanoTime() + ackTimeout * 1000000;
+		while (acknowledged < offset || (offset >= size && !completed)) {
+			if (ackError != null) {
+				throw ackError;
+			}
+
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				throw new IOException("受信確認がありません．acknowledged=" + acknowledged);
+			}
+			try {
+				wait(remaining / 1000000 + 1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("送信中に割り込まれました．");
+			}
+
+			// 受信確認が進んでいる間はタイムアウトを延長する
+			if (acknowledged != last) {
+				last = acknowledged;
+				deadline = System.nanoTime() + ackTimeout * 1000000;
+			}
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package net.kokohadoko.instil.android.bluetooth.transfer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+/**
+ * ディレクトリにファイルとして書き込む受信先
+ * 
+ * <p>
+ * 受信中のファイルは拡張子 .part を付けて書き込み，全て受信してCRC32を照合した時点で名前を変更する．
+ * 送信元のバイト数とCRC32は拡張子 .part.crc のファイルに保存し，同じ名前の .part ファイルが存在して
+ * バイト数とCRC32も一致する場合のみ，その長さから受信を再開する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class FileTransferSink implements TransferSink {
+
+	/** 受信中のファイルの拡張子 */
+	public static final String PART_SUFFIX = ".part";
+	/** 受信中のファイルの送信元を識別する情報の拡張子 */
+	public static final String CHECKSUM_SUFFIX = PART_SUFFIX + ".crc";
+
+	/** CRC32の計算に使用するバッファのサイズ */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** 保存先のディレクトリ */
+	private final File directory;
+	/** 受信中のファイル */
+	private File partFile;
+	/** 受信が完了したファイル */
+	private File targetFile;
+	/** 送信元を識別する情報のファイル */
+	private File checksumFile;
+	/** ファイル全体のCRC32 */
+	private long checksum;
+	/** 書き込み先 */
+	private RandomAccessFile file;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param directory 保存先のディレクトリ
+	 */
+	public FileTransferSink(File directory) {
+		if (directory == null) {
+			throw new IllegalArgumentException("directoryがnullです．");
+		}
+
+		this.directory = directory;
+	}
+
+	@Override
+	public long open(String name, long size, long checksum) throws IOException {
+		// 送信元が指定したパスを辿らないようにファイル名のみを使用する
+		String fileName = new File(name).getName();
+		if (fileName.length() == 0 || fileName.equals(".") || fileName.equals("..")) {
+			throw new IOException("ファイル名が不正です．");
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("ディレクトリを作成できません．");
+		}
+
+		targetFile = new File(directory, fileName);
+		partFile = new File(directory, fileName + PART_SUFFIX);
+		checksumFile = new File(directory, fileName + CHECKSUM_SUFFIX);
+		this.checksum = checksum;
+		file = new RandomAccessFile(partFile, "rw");
+
+		long length = file.length();
+		// 別の内容のファイルを途中まで受信していた場合は先頭から受信し直す
+		if (length > size || !matchesSource(size, checksum)) {
+			file.setLength(0);
+			length = 0;
+			writeSource(size, checksum);
+		}
+
+		return length;
+	}
+
+	@Override
+	public void write(long position, byte[] data, int offset, int length) throws IOException {
+		file.seek(position);
+		file.write(data, offset, length);
+	}
+
+	@Override
+	public void close(boolean completed) throws IOException {
+		if (file == null) {
+			return;
+		}
+
+		try {
+			file.close();
+		} finally {
+			file = null;
+		}
+
+		if (completed) {
+			if (computeChecksum(partFile) != checksum) {
+				// 破損したデータから再開しないように破棄する
+				partFile.delete();
+				checksumFile.delete();
+				throw new IOException("CRC32が一致しません．");
+			}
+			if (targetFile.exists() && !targetFile.delete()) {
+				throw new IOException("既存のファイルを削除できません．");
+			}
+			if (!partFile.renameTo(targetFile)) {
+				throw new IOException("ファイル名を変更できません．");
+			}
+			checksumFile.delete();
+		}
+	}
+
+	/**
+	 * 保存された送信元の情報が一致するかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param size ファイルのバイト数
+	 * @param checksum ファイル全体のCRC32
+	 * @return 一致する場合に true, 一致しない場合や保存されていない場合に falseを返す
+	 */
+	private boolean matchesSource(long size, long checksum) {
+		if (!checksumFile.isFile()) {
+			return false;
+		}
+
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(checksumFile));
+			try {
+				return in.readLong() == size && in.readLong() == checksum;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 送信元の情報を保存する
+	 * 
+	 * @since 0.0.1
+	 * @param size ファイルのバイト数
+	 * @param checksum ファイル全体のCRC32
+	 * @throws IOException 保存に失敗した場合に例外を生成する
+	 */
+	private void writeSource(long size, long checksum) throws IOException {
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(checksumFile));
+		try {
+			out.writeLong(size);
+			out.writeLong(checksum);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * ファイルのCRC32を計算する
+	 * 
+	 * @since 0.0.1
+	 * @param source ファイル
+	 * @return CRC32
+	 * @throws IOException 読み込みに失敗した場合に例外を生成する
+	 */
+	private static long computeChecksum(File source) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		InputStream in = new FileInputStream(source);
+		try {
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				crc.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+
+		return crc.getValue();
+	}
+
+	/**
+	 * 受信が完了したファイルを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return ファイル, 受信を開始していない場合は null
+	 */
+	public File getFile() {
+		return targetFile;
+	}
+}
@@ -0,0 +1,88 @@
+package net.kokohadoko.instil.android.bluetooth.transfer;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * メモリ上の配列に書き込む受信先
+ * 
+ * <p>
+ * 受信済みのバイト数を保持するため，同じインスタンスを使用すれば切断後に続きから受信できる．
+ * 主に動作確認に使用する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class MemoryTransferSink implements TransferSink {
+
+	/** 受信したデータ */
+	private byte[] data;
+	/** ファイル名 */
+	private String name;
+	/** ファイル全体のCRC32 */
+	private long checksum;
+	/** 先頭から連続して受信したバイト数 */
+	private long received;
+	/** 全て受信したかどうか */
+	private boolean completed;
+
+	@Override
+	public synchronized long open(String name, long size, long checksum) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("ファイルが大きすぎます．");
+		}
+
+		if (data == null || data.length != size || !name.equals(this.name) || checksum != this.checksum) {
+			this.data = new byte[(int) size];
+			this.name = name;
+			this.checksum = checksum;
+			this.received = 0;
+		}
+		this.completed = false;
+
+		return received;
+	}
+
+	@Override
+	public synchronized void write(long position, byte[] data, int offset, int length) throws IOException {
+		System.arraycopy(data, offset, this.data, (int) position, length);
+		if (position == received) {
+			received += length;
+		}
+	}
+
+	@Override
+	public synchronized void close(boolean completed) throws IOException {
+		if (completed) {
+			CRC32 crc = new CRC32();
+			crc.update(data, 0, data.length);
+			if (crc.getValue() != checksum) {
+				received = 0;
+				this.completed = false;
+				throw new IOException("CRC32が一致しません．");
+			}
+		}
+		this.completed = completed;
+	}
+
+	/**
+	 * 受信したデータを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 受信したデータ
+	 */
+	public synchronized byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * 全て受信したかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 全て受信した場合に true, そうでない場合に falseを返す
+	 */
+	public synchronized boolean isCompleted() {
+		return completed;
+	}
+}
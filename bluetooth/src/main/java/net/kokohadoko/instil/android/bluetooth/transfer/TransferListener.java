@@ -0,0 +1,20 @@
+package net.kokohadoko.instil.android.bluetooth.transfer;
+
+/**
+ * ファイル転送の進捗を受け取るリスナー
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface TransferListener {
+
+	/**
+	 * 進捗が更新された場合に呼び出される．転送を行うスレッドで呼び出される
+	 * 
+	 * @since 0.0.1
+	 * @param transferred 確認済みのバイト数
+	 * @param total 全体のバイト数
+	 * @param bytesPerSecond 直近のスループット(バイト/秒)
+	 */
+	void onProgress(long transferred, long total, float bytesPerSecond);
+}
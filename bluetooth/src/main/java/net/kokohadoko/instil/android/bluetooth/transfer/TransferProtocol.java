@@ -0,0 +1,46 @@
+package net.kokohadoko.instil.android.bluetooth.transfer;
+
+/**
+ * ファイル転送で使用するメッセージの定義
+ * 
+ * <p>
+ * 各メッセージは1バイトの種別に続けて，ビッグエンディアンで以下の項目を持つ．
+ * </p>
+ * <ul>
+ * <li>OFFER: ファイル名(修正UTF-8), ファイルのバイト数(long), ファイル全体のCRC32(long)</li>
+ * <li>ACCEPT: 受信を開始する位置(long)</li>
+ * <li>DATA: ファイル内の位置(long), 長さ(int), データ</li>
+ * <li>ACK: 先頭から連続して受信したバイト数(long)</li>
+ * <li>ERROR: メッセージ(修正UTF-8)</li>
+ * </ul>
+ * <p>
+ * ファイルのバイト数を示すACKは，受信側がCRC32を照合した後に送信する．照合に失敗した場合はERRORを送信する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+final class TransferProtocol {
+
+	/** 送信の申し込み */
+	static final int OFFER = 1;
+	/** 受信の開始 */
+	static final int ACCEPT = 2;
+	/** データ */
+	static final int DATA = 3;
+	/** 受信の確認 */
+	static final int ACK = 4;
+	/** エラー */
+	static final int ERROR = 5;
+
+	/** 1回に送信できる最大のデータ長 */
+	static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * デフォルトコンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	private TransferProtocol() {
+	}
+}
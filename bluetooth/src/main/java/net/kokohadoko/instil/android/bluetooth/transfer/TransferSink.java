@@ -0,0 +1,55 @@
+package net.kokohadoko.instil.android.bluetooth.transfer;
+
+import java.io.IOException;
+
+/**
+ * 受信したファイルの書き込み先
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface TransferSink {
+
+	/**
+	 * 受信を開始する
+	 * 
+	 * <p>
+	 * 同じファイルを途中まで受信済みの場合は，受信済みのバイト数を返すことで続きから受信できる．
+	 * 同じファイルかどうかは名前だけでなくバイト数とCRC32で判断し，一致しない場合は先頭から受信すること．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param name ファイル名
+	 * @param size ファイルのバイト数
+	 * @param checksum ファイル全体のCRC32
+	 * @return 受信を開始する位置
+	 * @throws IOException 書き込み先を準備できない場合に例外を生成する
+	 */
+	long open(String name, long size, long checksum) throws IOException;
+
+	/**
+	 * 受信したデータを書き込む
+	 * 
+	 * @since 0.0.1
+	 * @param position ファイル内の位置
+	 * @param data データ
+	 * @param offset データの開始位置
+	 * @param length データの長さ
+	 * @throws IOException 書き込みに失敗した場合に例外を生成する
+	 */
+	void write(long position, byte[] data, int offset, int length) throws IOException;
+
+	/**
+	 * 受信を終了する．切断された場合も呼び出される
+	 * 
+	 * <p>
+	 * 全てのデータを受信した場合は，受信したデータのCRC32を {@link #open(String, long, long)} で
+	 * 指定された値と照合すること．一致しない場合は受信済みのデータを破棄して例外を生成する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param completed 全てのデータを受信した場合に true
+	 * @throws IOException 終了処理に失敗した場合またはCRC32が一致しない場合に例外を生成する
+	 */
+	void close(boolean completed) throws IOException;
+}
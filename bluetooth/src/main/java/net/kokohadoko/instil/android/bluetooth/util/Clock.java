@@ -0,0 +1,33 @@
+package net.kokohadoko.instil.android.bluetooth.util;
+
+import android.os.SystemClock;
+
+/**
+ * 経過時間を計る時計
+ * 
+ * <p>
+ * 検索や登録内容の保持期間の計算に使用する．JVM上での検証では {@link #SYSTEM} の代わりに
+ * {@link System#nanoTime()} を使用する実装や，手動で進める実装を指定する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface Clock {
+
+	/** {@link SystemClock#elapsedRealtime()} を使用する時計 */
+	Clock SYSTEM = new Clock() {
+		@Override
+		public long elapsedRealtime() {
+			return SystemClock.elapsedRealtime();
+		}
+	};
+
+	/**
+	 * 起動からの経過ミリ秒を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return ミリ秒
+	 */
+	long elapsedRealtime();
+}
@@ -0,0 +1,165 @@
+package net.kokohadoko.instil.android.bluetooth.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 専用の1つのスレッドで処理を実行する {@link Scheduler}
+ * 
+ * <p>
+ * Androidのクラスを読み込まないため，{@link net.kokohadoko.instil.android.bluetooth.backend.SimulatedBluetoothBackend}
+ * と組み合わせてJVM上での検証や負荷試験に使用できる．
+ * {@link android.os.Handler} と同様に，処理で発生した例外はスレッドのUncaughtExceptionHandlerに渡す．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class ExecutorScheduler implements Scheduler {
+
+	/** 処理を実行するスレッド */
+	private final ScheduledExecutorService executor;
+	/** 未実行の処理．自身で同期して更新する */
+	private final Map<Runnable, List<Entry>> pending = new IdentityHashMap<Runnable, List<Entry>>();
+	/** 処理を実行するスレッド */
+	private volatile Thread thread;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param name スレッド名
+	 */
+	public ExecutorScheduler(final String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("nameがnullです．");
+		}
+
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread created = new Thread(r, name);
+				created.setDaemon(true);
+				thread = created;
+				return created;
+			}
+		});
+	}
+
+	@Override
+	public void post(Runnable task) {
+		postDelayed(task, 0);
+	}
+
+	@Override
+	public void postDelayed(Runnable task, long delayMillis) {
+		if (task == null) {
+			throw new IllegalArgumentException("taskがnullです．");
+		}
+
+		Entry entry = new Entry(task);
+		synchronized (pending) {
+			// 実行時に一覧から削除するため，登録が終わるまで実行を待たせる
+			entry.future = executor.schedule(entry, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+			List<Entry> entries = pending.get(task);
+			if (entries == null) {
+				entries = new ArrayList<Entry>(1);
+				pending.put(task, entries);
+			}
+			entries.add(entry);
+		}
+	}
+
+	@Override
+	public void removeCallbacks(Runnable task) {
+		List<Entry> entries;
+		synchronized (pending) {
+			entries = pending.remove(task);
+			if (entries == null) {
+				return;
+			}
+			for (Entry entry : entries) {
+				entry.cancelled = true;
+			}
+		}
+
+		for (Entry entry : entries) {
+			entry.future.cancel(false);
+		}
+	}
+
+	@Override
+	public boolean isCurrentThread() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * 処理の実行を終了する
+	 * 
+	 * <p>
+	 * 未実行の処理は破棄される．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		synchronized (pending) {
+			pending.clear();
+		}
+	}
+
+	/**
+	 * 登録した処理
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private class Entry implements Runnable {
+
+		/** 処理 */
+		private final Runnable task;
+		/** 実行の予定．pendingで同期して設定する */
+		private Future<?> future;
+		/** 取り消されたかどうか．pendingで同期して更新する */
+		private boolean cancelled;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param task 処理
+		 */
+		Entry(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			synchronized (pending) {
+				if (cancelled) {
+					return;
+				}
+				List<Entry> entries = pending.get(task);
+				entries.remove(this);
+				if (entries.isEmpty()) {
+					pending.remove(task);
+				}
+			}
+
+			try {
+				task.run();
+			} catch (Throwable e) {
+				Thread current = Thread.currentThread();
+				current.getUncaughtExceptionHandler().uncaughtException(current, e);
+			}
+		}
+	}
+}
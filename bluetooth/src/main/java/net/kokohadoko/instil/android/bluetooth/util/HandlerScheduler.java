@@ -0,0 +1,60 @@
+package net.kokohadoko.instil.android.bluetooth.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * {@link Handler} のスレッドで処理を実行する {@link Scheduler}
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class HandlerScheduler implements Scheduler {
+
+	/** 処理を実行するHandler */
+	private final Handler handler;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param handler 処理を実行するHandler
+	 */
+	public HandlerScheduler(Handler handler) {
+		if (handler == null) {
+			throw new IllegalArgumentException("handlerがnullです．");
+		}
+
+		this.handler = handler;
+	}
+
+	/**
+	 * Handlerを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return Handler
+	 */
+	public Handler getHandler() {
+		return handler;
+	}
+
+	@Override
+	public void post(Runnable task) {
+		handler.post(task);
+	}
+
+	@Override
+	public void postDelayed(Runnable task, long delayMillis) {
+		handler.postDelayed(task, delayMillis);
+	}
+
+	@Override
+	public void removeCallbacks(Runnable task) {
+		handler.removeCallbacks(task);
+	}
+
+	@Override
+	public boolean isCurrentThread() {
+		return Looper.myLooper() == handler.getLooper();
+	}
+}
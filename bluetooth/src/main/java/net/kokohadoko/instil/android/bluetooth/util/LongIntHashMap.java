@@ -0,0 +1,257 @@
+package net.kokohadoko.instil.android.bluetooth.util;
+
+import java.util.Arrays;
+
+/**
+ * longをキー，0以上のintを値とするオープンアドレス法のハッシュマップ
+ * 
+ * <p>
+ * 配列の添字のような値をボクシングせずに保持するため，格納・検索でオブジェクトを生成しない．
+ * 負の値は空きスロットを表すため格納できない．スレッドセーフではない．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class LongIntHashMap {
+
+	/** デフォルトの初期容量 */
+	public static final int DEFAULT_CAPACITY = 16;
+
+	/** 値が存在しないことを表す */
+	public static final int NO_VALUE = -1;
+
+	/** 負荷率の上限 */
+	private static final float LOAD_FACTOR = 0.5f;
+
+	/** キー */
+	private long[] keys;
+	/** 値．負の場合は空きスロットを表す */
+	private int[] values;
+	/** 格納数 */
+	private int size;
+	/** 拡張する格納数 */
+	private int threshold;
+
+	/**
+	 * デフォルトコンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	public LongIntHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param expectedSize 想定する格納数
+	 */
+	public LongIntHashMap(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("expectedSizeが不正な値です．");
+		}
+
+		allocate(LongObjectHashMap.tableSizeFor((int) (expectedSize / LOAD_FACTOR) + 1));
+	}
+
+	/**
+	 * 値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param key キー
+	 * @return 値, 存在しない場合は {@link #NO_VALUE}を返す
+	 */
+	public int get(long key) {
+		int mask = keys.length - 1;
+		int index = LongObjectHashMap.hash(key) & mask;
+		while (values[index] >= 0) {
+			if (keys[index] == key) {
+				return values[index];
+			}
+			index = (index + 1) & mask;
+		}
+
+		return NO_VALUE;
+	}
+
+	/**
+	 * キーが存在するかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param key キー
+	 * @return 存在する場合に true, そうでない場合に falseを返す
+	 */
+	public boolean containsKey(long key) {
+		return get(key) >= 0;
+	}
+
+	/**
+	 * 値を格納する
+	 * 
+	 * @since 0.0.1
+	 * @param key キー
+	 * @param value 値
+	 * @return 以前の値, 存在しなかった場合は {@link #NO_VALUE}を返す
+	 * @throws IllegalArgumentException valueが負の場合に例外を生成する
+	 */
+	public int put(long key, int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("valueが負の値です．");
+		}
+
+		int mask = keys.length - 1;
+		int index = LongObjectHashMap.hash(key) & mask;
+		while (values[index] >= 0) {
+			if (keys[index] == key) {
+				int old = values[index];
+				values[index] = value;
+				return old;
+			}
+			index = (index + 1) & mask;
+		}
+
+		keys[index] = key;
+		values[index] = value;
+		if (++size > threshold) {
+			rehash(keys.length << 1);
+		}
+
+		return NO_VALUE;
+	}
+
+	/**
+	 * 値を削除する
+	 * 
+	 * @since 0.0.1
+	 * @param key キー
+	 * @return 削除した値, 存在しなかった場合は {@link #NO_VALUE}を返す
+	 */
+	public int remove(long key) {
+		int mask = keys.length - 1;
+		int index = LongObjectHashMap.hash(key) & mask;
+		while (values[index] >= 0) {
+			if (keys[index] == key) {
+				int old = values[index];
+				shiftKeys(index);
+				size--;
+				return old;
+			}
+			index = (index + 1) & mask;
+		}
+
+		return NO_VALUE;
+	}
+
+	/**
+	 * 格納数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 格納数
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 空かどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 空の場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * 全ての値を削除する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void clear() {
+		Arrays.fill(values, NO_VALUE);
+		size = 0;
+	}
+
+	/**
+	 * 全てのキーを配列に格納する
+	 * 
+	 * @since 0.0.1
+	 * @return キーの配列
+	 */
+	public long[] keys() {
+		long[] result = new long[size];
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] >= 0) {
+				result[count++] = keys[i];
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * 削除したスロット以降の要素を詰め直す
+	 * 
+	 * @since 0.0.1
+	 * @param index 削除したスロット
+	 */
+	private void shiftKeys(int index) {
+		int mask = keys.length - 1;
+		int last = index;
+		int slot = (index + 1) & mask;
+		while (values[slot] >= 0) {
+			int home = LongObjectHashMap.hash(keys[slot]) & mask;
+			// homeが (last, slot] の範囲外であれば last に移動できる
+			boolean movable = last <= slot
+					? (home <= last || home > slot)
+					: (home <= last && home > slot);
+			if (movable) {
+				keys[last] = keys[slot];
+				values[last] = values[slot];
+				last = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		values[last] = NO_VALUE;
+	}
+
+	/**
+	 * テーブルを拡張する
+	 * 
+	 * @since 0.0.1
+	 * @param capacity 新しい容量
+	 */
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+
+		int mask = capacity - 1;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] >= 0) {
+				int index = LongObjectHashMap.hash(oldKeys[i]) & mask;
+				while (values[index] >= 0) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = oldKeys[i];
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * テーブルを確保する
+	 * 
+	 * @since 0.0.1
+	 * @param capacity 容量
+	 */
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, NO_VALUE);
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+}
@@ -0,0 +1,310 @@
+package net.kokohadoko.instil.android.bluetooth.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * longをキーとするオープンアドレス法のハッシュマップ
+ * 
+ * <p>
+ * キーをボクシングせずに保持するため，Bluetoothアドレスのような
+ * 数値キーの検索でオブジェクトを生成しない．値にnullは格納できない．
+ * スレッドセーフではない．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ * @param <V> 値の型
+ */
+public class LongObjectHashMap<V> {
+
+	/** デフォルトの初期容量 */
+	public static final int DEFAULT_CAPACITY = 16;
+
+	/** 負荷率の上限 */
+	private static final float LOAD_FACTOR = 0.5f;
+
+	/** キー */
+	private long[] keys;
+	/** 値．nullの場合は空きスロットを表す */
+	private Object[] values;
+	/** 格納数 */
+	private int size;
+	/** 拡張する格納数 */
+	private int threshold;
+
+	/**
+	 * デフォルトコンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	public LongObjectHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param expectedSize 想定する格納数
+	 */
+	public LongObjectHashMap(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("expectedSizeが不正な値です．");
+		}
+
+		allocate(tableSizeFor((int) (expectedSize / LOAD_FACTOR) + 1));
+	}
+
+	/**
+	 * 値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param key キー
+	 * @return 値, 存在しない場合は nullを返す
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		while (values[index] != null) {
+			if (keys[index] == key) {
+				return (V) values[index];
+			}
+			index = (index + 1) & mask;
+		}
+
+		return null;
+	}
+
+	/**
+	 * キーが存在するかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param key キー
+	 * @return 存在する場合に true, そうでない場合に falseを返す
+	 */
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * 値を格納する
+	 * 
+	 * @since 0.0.1
+	 * @param key キー
+	 * @param value 値
+	 * @return 以前の値, 存在しなかった場合は nullを返す
+	 * @throws IllegalArgumentException valueがnullの場合に例外を生成する
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("valueがnullです．");
+		}
+
+		int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		while (values[index] != null) {
+			if (keys[index] == key) {
+				V old = (V) values[index];
+				values[index] = value;
+				return old;
+			}
+			index = (index + 1) & mask;
+		}
+
+		keys[index] = key;
+		values[index] = value;
+		if (++size > threshold) {
+			rehash(keys.length << 1);
+		}
+
+		return null;
+	}
+
+	/**
+	 * 値を削除する
+	 * 
+	 * @since 0.0.1
+	 * @param key キー
+	 * @return 削除した値, 存在しなかった場合は nullを返す
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		while (values[index] != null) {
+			if (keys[index] == key) {
+				V old = (V) values[index];
+				shiftKeys(index);
+				size--;
+				return old;
+			}
+			index = (index + 1) & mask;
+		}
+
+		return null;
+	}
+
+	/**
+	 * 格納数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 格納数
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 空かどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 空の場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * 全ての値を削除する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/**
+	 * 全ての値をコレクションに追加する
+	 * 
+	 * @since 0.0.1
+	 * @param out 追加先のコレクション
+	 * @return 追加した数
+	 */
+	@SuppressWarnings("unchecked")
+	public int collectValues(Collection<? super V> out) {
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				out.add((V) values[i]);
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * 全てのキーを配列に格納する
+	 * 
+	 * @since 0.0.1
+	 * @return キーの配列
+	 */
+	public long[] keys() {
+		long[] result = new long[size];
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				result[count++] = keys[i];
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * 削除したスロット以降の要素を詰め直す
+	 * 
+	 * @since 0.0.1
+	 * @param index 削除したスロット
+	 */
+	private void shiftKeys(int index) {
+		int mask = keys.length - 1;
+		int last = index;
+		int slot = (index + 1) & mask;
+		while (values[slot] != null) {
+			int home = hash(keys[slot]) & mask;
+			// homeが (last, slot] の範囲外であれば last に移動できる
+			boolean movable = last <= slot
+					? (home <= last || home > slot)
+					: (home <= last && home > slot);
+			if (movable) {
+				keys[last] = keys[slot];
+				values[last] = values[slot];
+				last = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		values[last] = null;
+	}
+
+	/**
+	 * テーブルを拡張する
+	 * 
+	 * @since 0.0.1
+	 * @param capacity 新しい容量
+	 */
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+
+		int mask = capacity - 1;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int index = hash(oldKeys[i]) & mask;
+				while (values[index] != null) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = oldKeys[i];
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * テーブルを確保する
+	 * 
+	 * @since 0.0.1
+	 * @param capacity 容量
+	 */
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	/**
+	 * キーのハッシュ値を計算する
+	 * 
+	 * @since 0.0.1
+	 * @param key キー
+	 * @return ハッシュ値
+	 */
+	static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	/**
+	 * 容量を2の累乗に切り上げる
+	 * 
+	 * @since 0.0.1
+	 * @param capacity 容量
+	 * @return 2の累乗の容量
+	 */
+	static int tableSizeFor(int capacity) {
+		int n = Math.max(capacity, 2) - 1;
+		n |= n >>> 1;
+		n |= n >>> 2;
+		n |= n >>> 4;
+		n |= n >>> 8;
+		n |= n >>> 16;
+		return n + 1;
+	}
+}
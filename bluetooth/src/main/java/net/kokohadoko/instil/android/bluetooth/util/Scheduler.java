@@ -0,0 +1,48 @@
+package net.kokohadoko.instil.android.bluetooth.util;
+
+/**
+ * 1つのスレッドで処理を順に実行する
+ * 
+ * <p>
+ * {@link android.os.Handler} の必要な操作だけを抜き出したもので，
+ * Androidでは {@link HandlerScheduler}，JVM上での検証では {@link ExecutorScheduler} を使用する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface Scheduler {
+
+	/**
+	 * 処理を登録する
+	 * 
+	 * @since 0.0.1
+	 * @param task 処理
+	 */
+	void post(Runnable task);
+
+	/**
+	 * 指定したミリ秒後に実行する処理を登録する
+	 * 
+	 * @since 0.0.1
+	 * @param task 処理
+	 * @param delayMillis 遅延するミリ秒
+	 */
+	void postDelayed(Runnable task, long delayMillis);
+
+	/**
+	 * 登録した処理のうち未実行のものを取り消す
+	 * 
+	 * @since 0.0.1
+	 * @param task 処理
+	 */
+	void removeCallbacks(Runnable task);
+
+	/**
+	 * 呼び出し元が処理を実行するスレッドかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 処理を実行するスレッドの場合に true, そうでない場合に falseを返す
+	 */
+	boolean isCurrentThread();
+}
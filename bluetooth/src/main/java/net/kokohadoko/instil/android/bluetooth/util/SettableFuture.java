@@ -0,0 +1,146 @@
+package net.kokohadoko.instil.android.bluetooth.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 外部から結果を設定するFuture
+ * 
+ * <p>
+ * 結果・例外・キャンセルのうち最初の1回だけが反映される．
+ * 完了時に一度だけ {@link #done()} が呼び出される．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ * @param <V> 結果の型
+ */
+public class SettableFuture<V> implements Future<V> {
+
+	/** 完了の待機用 */
+	private final CountDownLatch latch = new CountDownLatch(1);
+
+	/** 完了したかどうか */
+	private boolean completed;
+	/** キャンセルされたかどうか */
+	private boolean cancelled;
+	/** 結果 */
+	private V value;
+	/** 例外 */
+	private Throwable error;
+
+	/**
+	 * 結果を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param value 結果
+	 * @return 設定した場合に true, 既に完了していた場合に falseを返す
+	 */
+	public boolean set(V value) {
+		return complete(value, null, false);
+	}
+
+	/**
+	 * 例外を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param error 例外
+	 * @return 設定した場合に true, 既に完了していた場合に falseを返す
+	 */
+	public boolean setException(Throwable error) {
+		if (error == null) {
+			throw new IllegalArgumentException("errorがnullです．");
+		}
+
+		return complete(null, error, false);
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return complete(null, null, true);
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public synchronized boolean isDone() {
+		return completed;
+	}
+
+	@Override
+	public V get() throws InterruptedException, ExecutionException {
+		latch.await();
+		return getResult();
+	}
+
+	@Override
+	public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!latch.await(timeout, unit)) {
+			throw new TimeoutException();
+		}
+
+		return getResult();
+	}
+
+	/**
+	 * 完了した場合に呼び出される
+	 * 
+	 * <p>
+	 * 完了させたスレッドで呼び出される．サブクラスで後処理を行う場合にオーバーライドする．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 */
+	protected void done() {
+	}
+
+	/**
+	 * 完了させる
+	 * 
+	 * @since 0.0.1
+	 * @param value 結果
+	 * @param error 例外
+	 * @param cancel キャンセルする場合に true
+	 * @return 完了させた場合に true, 既に完了していた場合に falseを返す
+	 */
+	private boolean complete(V value, Throwable error, boolean cancel) {
+		synchronized (this) {
+			if (completed) {
+				return false;
+			}
+			this.completed = true;
+			this.cancelled = cancel;
+			this.value = value;
+			this.error = error;
+		}
+
+		latch.countDown();
+		done();
+		return true;
+	}
+
+	/**
+	 * 完了後の結果を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 結果
+	 * @throws ExecutionException 例外が設定された場合に例外を生成する
+	 */
+	private synchronized V getResult() throws ExecutionException {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		if (error != null) {
+			throw new ExecutionException(error);
+		}
+
+		return value;
+	}
+}
@@ -0,0 +1,536 @@
+package net.kokohadoko.instil.android.bluetooth.discovery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.kokohadoko.instil.android.bluetooth.BluetoothDeviceRegistry;
+import net.kokohadoko.instil.android.bluetooth.backend.BackendListener;
+import net.kokohadoko.instil.android.bluetooth.backend.DeviceRecord;
+import net.kokohadoko.instil.android.bluetooth.backend.SimulatedBluetoothBackend;
+import net.kokohadoko.instil.android.bluetooth.util.Clock;
+import net.kokohadoko.instil.android.bluetooth.util.ExecutorScheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * {@link SimulatedBluetoothBackend} で {@link BluetoothDiscoveryEngine}・{@link DiscoveryCoordinator}・
+ * {@link BluetoothDeviceRegistry} を動かす負荷試験
+ * 
+ * <p>
+ * Handlerの代わりに {@link ExecutorScheduler}，SystemClockの代わりに {@link System#nanoTime()} または
+ * 手動で進める {@link Clock} を指定し，JVM上で実行する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class DiscoveryStressTest {
+
+	/** 結果を待つ最大の秒数 */
+	private static final long WAIT_SECONDS = 10;
+
+	/** {@link System#nanoTime()} を使用する時計 */
+	private static final Clock NANO_CLOCK = new Clock() {
+		@Override
+		public long elapsedRealtime() {
+			return System.nanoTime() / 1000000;
+		}
+	};
+
+	/** BluetoothBackend */
+	private SimulatedBluetoothBackend backend;
+	/** 受信処理を行うスレッド */
+	private ExecutorScheduler scheduler;
+
+	/**
+	 * 手動で進める時計
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private static final class ManualClock implements Clock {
+
+		/** 現在の時刻 */
+		private volatile long now = 1000000;
+
+		@Override
+		public long elapsedRealtime() {
+			return now;
+		}
+
+		/**
+		 * 時刻を進める
+		 * 
+		 * @since 0.0.1
+		 * @param millis 進めるミリ秒
+		 */
+		void advance(long millis) {
+			now += millis;
+		}
+	}
+
+	/**
+	 * 検出結果を記録するリスナー
+	 * 
+	 * <p>
+	 * 検出の通知は受信処理を行うスレッドで届くことを検証し，重複した検出や検出前の更新を数える．
+	 * </p>
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private final class RecordingListener implements DiscoveryListener {
+
+		/** 検出されたアドレス．受信処理を行うスレッドからのみ参照する */
+		final Set<Long> found = new HashSet<Long>();
+		/** 更新の回数 */
+		final AtomicInteger updated = new AtomicInteger();
+		/** 不正な通知の内容 */
+		final ConcurrentLinkedQueue<String> errors;
+		/** 終了の通知の回数 */
+		final AtomicInteger finished = new AtomicInteger();
+		/** 終了理由 */
+		volatile int reason;
+		/** 終了の待機用 */
+		final CountDownLatch done = new CountDownLatch(1);
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param errors 不正な通知の内容の出力先
+		 */
+		RecordingListener(ConcurrentLinkedQueue<String> errors) {
+			this.errors = errors;
+		}
+
+		@Override
+		public void onDeviceFound(DiscoveredDevice device) {
+			if (!scheduler.isCurrentThread()) {
+				errors.add("onDeviceFound: " + Thread.currentThread().getName());
+			}
+			if (!found.add(device.getAddressLong())) {
+				errors.add("重複した検出: " + device.getAddress());
+			}
+		}
+
+		@Override
+		public void onDeviceUpdated(DiscoveredDevice device) {
+			if (!scheduler.isCurrentThread()) {
+				errors.add("onDeviceUpdated: " + Thread.currentThread().getName());
+			}
+			if (!found.contains(device.getAddressLong())) {
+				errors.add("検出前の更新: " + device.getAddress());
+			}
+			updated.incrementAndGet();
+		}
+
+		@Override
+		public void onDiscoveryFinished(int reason) {
+			this.reason = reason;
+			if (finished.incrementAndGet() > 1) {
+				errors.add("終了の重複: " + reason);
+			}
+			done.countDown();
+		}
+	}
+
+	/**
+	 * BluetoothBackendと受信処理を行うスレッドを準備する
+	 * 
+	 * @since 0.0.1
+	 */
+	@Before
+	public void setUp() {
+		backend = new SimulatedBluetoothBackend(42);
+		backend.setEnabledImmediately(true);
+		scheduler = new ExecutorScheduler(DiscoveryStressTest.class.getSimpleName());
+	}
+
+	/**
+	 * スレッドを終了する
+	 * 
+	 * @since 0.0.1
+	 */
+	@After
+	public void tearDown() {
+		backend.shutdown();
+		scheduler.shutdown();
+	}
+
+	/**
+	 * 受信処理を行うスレッドで処理を実行し，結果を待つ
+	 * 
+	 * @since 0.0.1
+	 * @param task 処理
+	 * @return 結果
+	 * @throws Exception 処理に失敗した場合に例外を生成する
+	 */
+	private <T> T call(Callable<T> task) throws Exception {
+		FutureTask<T> future = new FutureTask<T>(task);
+		scheduler.post(future);
+		return future.get(WAIT_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * BluetoothBackendがそれまでに登録したイベントを全て通知するまで待つ
+	 * 
+	 * <p>
+	 * イベントは1つのスレッドから順に通知されるため，既存のデバイスを置き換えた通知が届いた時点で
+	 * それ以前のイベントも通知されている．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param record 置き換えに使用する既存のデバイス
+	 * @throws InterruptedException 待機中に割り込まれた場合に例外を生成する
+	 */
+	private void drain(DeviceRecord record) throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		BackendListener marker = new BackendListener() {
+			@Override
+			public void onStateChanged(int previous, int state) {
+			}
+
+			@Override
+			public void onDiscoveryStarted() {
+			}
+
+			@Override
+			public void onDeviceFound(DeviceRecord device, int rssi) {
+			}
+
+			@Override
+			public void onDiscoveryFinished() {
+			}
+
+			@Override
+			public void onBondStateChanged(DeviceRecord device, int state) {
+			}
+
+			@Override
+			public void onDeviceChanged(DeviceRecord device) {
+				latch.countDown();
+			}
+		};
+		backend.addListener(marker);
+		try {
+			backend.addDevice(record);
+			assertTrue(latch.await(WAIT_SECONDS, TimeUnit.SECONDS));
+		} finally {
+			backend.removeListener(marker);
+		}
+	}
+
+	/**
+	 * 1回の検索で全てのデバイスを重複なく検出し，完了を通知すること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void engineFindsEveryDeviceOnce() throws Exception {
+		backend.generateDevices(2000, 0.2f);
+		backend.setDiscoveryTiming(300, 0);
+		final BluetoothDiscoveryEngine engine = new BluetoothDiscoveryEngine(backend, scheduler, NANO_CLOCK);
+		ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<String>();
+		final RecordingListener listener = new RecordingListener(errors);
+
+		assertTrue(call(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return engine.start(listener, 0);
+			}
+		}));
+		assertTrue(listener.done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(BluetoothDiscoveryEngine.FINISH_COMPLETED, listener.reason);
+		assertEquals(2000, listener.found.size());
+		assertEquals(0, listener.updated.get());
+		assertEquals(2000, (int) call(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				return engine.getDeviceCount();
+			}
+		}));
+		assertFalse(backend.isDiscovering());
+	}
+
+	/**
+	 * タイムアウトまで検索を再開し続け，再開後の検出を更新として通知すること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void engineRestartsUntilTimeout() throws Exception {
+		backend.generateDevices(200, 0.0f);
+		backend.setDiscoveryTiming(20, 0);
+		final BluetoothDiscoveryEngine engine = new BluetoothDiscoveryEngine(backend, scheduler, NANO_CLOCK);
+		ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<String>();
+		final RecordingListener listener = new RecordingListener(errors);
+
+		long started = System.nanoTime();
+		call(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return engine.start(listener, 500);
+			}
+		});
+		assertTrue(listener.done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+		long elapsed = (System.nanoTime() - started) / 1000000;
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(BluetoothDiscoveryEngine.FINISH_TIMEOUT, listener.reason);
+		assertTrue("elapsed=" + elapsed, elapsed >= 500);
+		assertTrue("discoveryCount=" + backend.getDiscoveryCount(), backend.getDiscoveryCount() > 5);
+		assertEquals(200, listener.found.size());
+		assertTrue(listener.updated.get() > 0);
+	}
+
+	/**
+	 * 目的のデバイスを検出した時点で検索を中止すること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void engineStopsAtTarget() throws Exception {
+		List<DeviceRecord> devices = backend.generateDevices(500, 0.0f);
+		backend.setDiscoveryTiming(60 * 1000, 1);
+		final long target = devices.get(new Random(1).nextInt(devices.size())).getAddressLong();
+		final BluetoothDiscoveryEngine engine = new BluetoothDiscoveryEngine(backend, scheduler, NANO_CLOCK);
+		ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<String>();
+		final RecordingListener listener = new RecordingListener(errors);
+
+		call(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				engine.setTarget(target);
+				return engine.start(listener, 0);
+			}
+		});
+		assertTrue(listener.done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(BluetoothDiscoveryEngine.FINISH_TARGET_FOUND, listener.reason);
+		assertTrue(listener.found.contains(target));
+		assertNotNull(call(new Callable<DiscoveredDevice>() {
+			@Override
+			public DiscoveredDevice call() throws Exception {
+				return engine.getDevice(target);
+			}
+		}));
+		assertFalse(backend.isDiscovering());
+	}
+
+	/**
+	 * 検索・参加・中断の時間を指定した時計で集計すること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void coordinatorAccountsTimeWithClock() throws Exception {
+		backend.generateDevices(10, 0.0f);
+		// 集計中に検索が終了しないようにする
+		backend.setDiscoveryTiming(60 * 1000, 0);
+		ManualClock clock = new ManualClock();
+		DiscoveryCoordinator coordinator = new DiscoveryCoordinator(backend, scheduler, clock);
+		RecordingListener listener = new RecordingListener(new ConcurrentLinkedQueue<String>());
+
+		DiscoverySession session = coordinator.acquire(listener, 0);
+		assertTrue(coordinator.isInquiring());
+		clock.advance(400);
+		coordinator.suspend();
+		assertFalse(coordinator.isInquiring());
+		clock.advance(200);
+		coordinator.resume();
+		assertTrue(coordinator.isInquiring());
+		clock.advance(400);
+
+		assertEquals(800, coordinator.getInquiryTime());
+		assertEquals(200, coordinator.getSuspendedTime());
+		assertEquals(1000, coordinator.getActiveTime());
+		assertEquals(0.8f, coordinator.getDutyCycle(), 0.0f);
+		assertEquals(2, coordinator.getInquiryCount());
+		assertEquals(1, coordinator.getSuspendedCount());
+
+		clock.advance(500);
+		session.release();
+		clock.advance(1000);
+		assertEquals(BluetoothDiscoveryEngine.FINISH_CANCELLED, listener.reason);
+		assertEquals(1300, coordinator.getInquiryTime());
+		assertEquals(1500, coordinator.getActiveTime());
+		assertFalse(coordinator.isInquiring());
+	}
+
+	/**
+	 * 保持期間を指定した時計で判定し，期限を過ぎた未ペアリングのデバイスだけを削除すること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void registryEvictsWithClock() throws Exception {
+		List<DeviceRecord> devices = backend.generateDevices(300, 0.3f);
+		backend.setDiscoveryTiming(100, 0);
+		ManualClock clock = new ManualClock();
+		BluetoothDeviceRegistry registry = new BluetoothDeviceRegistry(backend, clock);
+		registry.setRetention(60 * 1000);
+		registry.start();
+		int bonded = backend.getBondedDevices().size();
+		assertEquals(bonded, registry.size());
+
+		final BluetoothDiscoveryEngine engine = new BluetoothDiscoveryEngine(backend, scheduler, clock);
+		final RecordingListener listener = new RecordingListener(new ConcurrentLinkedQueue<String>());
+		call(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return engine.start(listener, 0);
+			}
+		});
+		assertTrue(listener.done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+		drain(devices.get(0));
+		assertEquals(300, registry.size());
+
+		// 保持期間内は削除しない
+		clock.advance(60 * 1000);
+		assertEquals(0, registry.evictExpired());
+		clock.advance(1);
+		assertEquals(300 - bonded, registry.evictExpired());
+		assertEquals(bonded, registry.size());
+		for (DeviceRecord record : devices) {
+			assertEquals(record.getBondState() == BluetoothDevice.BOND_BONDED,
+					registry.lookup(record.getAddressLong()) != null);
+		}
+		registry.stop();
+	}
+
+	/**
+	 * 複数のスレッドからの参加・中断・離脱とペアリング状態の変化が並行しても，通知と集計が整合すること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void coordinatorAndRegistryUnderConcurrentLoad() throws Exception {
+		final int deviceCount = 1000;
+		final int threadCount = 8;
+		final int iterations = 40;
+		final List<DeviceRecord> devices = backend.generateDevices(deviceCount, 0.2f);
+		backend.setDiscoveryTiming(30, 0);
+		final DiscoveryCoordinator coordinator = new DiscoveryCoordinator(backend, scheduler, NANO_CLOCK);
+		final BluetoothDeviceRegistry registry = new BluetoothDeviceRegistry(backend, NANO_CLOCK);
+		registry.start();
+
+		final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<String>();
+		final ConcurrentLinkedQueue<RecordingListener> listeners = new ConcurrentLinkedQueue<RecordingListener>();
+		final CountDownLatch workersDone = new CountDownLatch(threadCount);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < threadCount; t++) {
+			final long seed = t;
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					try {
+						for (int i = 0; i < iterations; i++) {
+							RecordingListener listener = new RecordingListener(errors);
+							listeners.add(listener);
+							// 一部はタイムアウトで離脱させる
+							long timeout = random.nextInt(4) == 0 ? 1 + random.nextInt(20) : 0;
+							DiscoverySession session = coordinator.acquire(listener, timeout);
+							Thread.sleep(random.nextInt(10));
+							if (random.nextInt(3) == 0) {
+								coordinator.suspend();
+								Thread.sleep(random.nextInt(5));
+								coordinator.resume();
+							}
+							if (timeout == 0 || random.nextBoolean()) {
+								session.release();
+							}
+						}
+					} catch (Throwable e) {
+						errors.add(e.toString());
+					} finally {
+						workersDone.countDown();
+					}
+				}
+			}, "worker-" + t));
+		}
+		Thread bonding = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Random random = new Random(99);
+				while (workersDone.getCount() > 0) {
+					DeviceRecord record = devices.get(random.nextInt(devices.size()));
+					backend.setBondState(record.getAddressLong(),
+							random.nextBoolean() ? BluetoothDevice.BOND_BONDED : BluetoothDevice.BOND_NONE);
+					Thread.yield();
+				}
+			}
+		}, "bonding");
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		bonding.start();
+		assertTrue(workersDone.await(WAIT_SECONDS * 3, TimeUnit.SECONDS));
+		bonding.join();
+
+		// タイムアウトで離脱するセッションを含め，全てのセッションが1回だけ終了を受け取る
+		for (RecordingListener listener : listeners) {
+			assertTrue(listener.done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+		}
+		drain(devices.get(0));
+		// 受信処理を行うスレッドに残った通知を処理させる
+		call(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				return null;
+			}
+		});
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(threadCount * iterations, listeners.size());
+		for (RecordingListener listener : listeners) {
+			assertEquals(1, listener.finished.get());
+		}
+		assertEquals(0, coordinator.getSessionCount());
+		assertFalse(coordinator.isInquiring());
+		assertFalse(coordinator.isSuspended());
+		assertTrue(coordinator.getInquiryCount() > 0);
+		assertTrue(coordinator.getDutyCycle() > 0.0f && coordinator.getDutyCycle() <= 1.0f);
+		assertTrue(coordinator.getDevices().isEmpty());
+
+		// レジストリのペアリング状態はBluetoothBackendの最終状態と一致する
+		Set<Long> bonded = new HashSet<Long>();
+		for (DeviceRecord record : backend.getBondedDevices()) {
+			bonded.add(record.getAddressLong());
+		}
+		for (DeviceRecord record : devices) {
+			long address = record.getAddressLong();
+			assertEquals(record.getAddress(), bonded.contains(address), registry.isBonded(address));
+		}
+		registry.stop();
+	}
+}
@@ -0,0 +1,188 @@
+package net.kokohadoko.instil.android.bluetooth.le;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * {@link AdvertisingDataCursor} と {@link LeScanFilter} のベンチマーク
+ * 
+ * <p>
+ * iBeacon, Eddystone, 一般的な周辺機器のアドバタイズデータを1回の操作でまとめて処理する．
+ * {@link #main(String[])} はGCのプロファイラを付けて実行するため，
+ * gc.alloc.rate.norm で1回の操作あたりの確保バイト数が0であることを確認できる．
+ * </p>
+ * 
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:(テストのクラスパス) \
+ *     net.kokohadoko.instil.android.bluetooth.le.AdvertisingDataCursorBenchmark
+ * </pre>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdvertisingDataCursorBenchmark {
+
+	/** 検出したデバイスの数値のアドレス */
+	private static final long ADDRESS = 0x001122AABBCCL;
+
+	/** アドバタイズデータ */
+	private byte[][] payloads;
+	/** カーソル */
+	private AdvertisingDataCursor cursor;
+	/** サービスUUIDのフィルタ */
+	private LeScanFilter serviceFilter;
+	/** メーカー固有データのフィルタ */
+	private LeScanFilter manufacturerFilter;
+
+	/**
+	 * アドバタイズデータを準備する
+	 * 
+	 * @since 0.0.1
+	 */
+	@Setup
+	public void setUp() {
+		payloads = new byte[][] {
+				// iBeacon
+				hex("020106" + "1AFF4C000215" + "E2C56DB5DFFB48D2B060D0F5A71096E0" + "00010002C5"),
+				// Eddystone-UID
+				hex("020106" + "0303AAFE" + "1716AAFE00E7" + "00112233445566778899" + "AABBCCDDEEFF" + "0000"),
+				// Eddystone-URL (https://example)
+				hex("020106" + "0303AAFE" + "0E16AAFE10EB03" + "6578616D706C65" + "07"),
+				// 心拍計 (16bitのUUID2件, 128bitのUUID, 名前, 送信強度)
+				hex("020106" + "05020D180F18" + "1107" + "9ECADC240EE5A9E093F3A3B50100406E"
+						+ "0909" + "496E7374696C2D31" + "020A04"),
+				// メーカー固有データ
+				hex("02011A" + "0BFF5900" + "0102030405060708"),
+		};
+		cursor = new AdvertisingDataCursor();
+		serviceFilter = LeScanFilter.forServiceUuid(UUID.fromString("0000180d-0000-1000-8000-00805f9b34fb"));
+		manufacturerFilter = LeScanFilter.forManufacturerData(0x0059, new byte[] { 0x01, 0x02 }, null);
+	}
+
+	/**
+	 * 16進数の文字列をバイト配列に変換する
+	 * 
+	 * @since 0.0.1
+	 * @param hex 16進数の文字列
+	 * @return バイト配列
+	 */
+	private static byte[] hex(String hex) {
+		byte[] bytes = new byte[hex.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+		}
+		return bytes;
+	}
+
+	/**
+	 * 全てのAD構造を走査する
+	 * 
+	 * @since 0.0.1
+	 * @return 種類と長さの合計
+	 */
+	@Benchmark
+	public int walk() {
+		int sum = 0;
+		for (byte[] payload : payloads) {
+			cursor.reset(payload, 0, payload.length);
+			while (cursor.next()) {
+				sum += cursor.getType() + cursor.getDataLength();
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * iBeaconとEddystoneのフレームを解析する
+	 * 
+	 * @since 0.0.1
+	 * @return 解析した値の合計
+	 */
+	@Benchmark
+	public long decodeBeacons() {
+		long sum = 0;
+		for (byte[] payload : payloads) {
+			cursor.reset(payload, 0, payload.length);
+			while (cursor.next()) {
+				if (BeaconFrames.isIBeacon(cursor)) {
+					sum += BeaconFrames.getIBeaconUuidMostSignificantBits(cursor)
+							^ BeaconFrames.getIBeaconUuidLeastSignificantBits(cursor);
+					sum += BeaconFrames.getIBeaconMajor(cursor) + BeaconFrames.getIBeaconMinor(cursor);
+				} else if (BeaconFrames.getEddystoneFrameType(cursor) == BeaconFrames.EDDYSTONE_UID) {
+					sum += BeaconFrames.getEddystoneNamespaceHigh(cursor) ^ BeaconFrames.getEddystoneInstance(cursor);
+				}
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * サービスUUIDのフィルタで照合する
+	 * 
+	 * @since 0.0.1
+	 * @return 一致した件数
+	 */
+	@Benchmark
+	public int filterServiceUuid() {
+		int matched = 0;
+		for (byte[] payload : payloads) {
+			if (serviceFilter.matches(ADDRESS, cursor.reset(payload, 0, payload.length))) {
+				matched++;
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * メーカー固有データのフィルタで照合する
+	 * 
+	 * @since 0.0.1
+	 * @return 一致した件数
+	 */
+	@Benchmark
+	public int filterManufacturerData() {
+		int matched = 0;
+		for (byte[] payload : payloads) {
+			if (manufacturerFilter.matches(ADDRESS, cursor.reset(payload, 0, payload.length))) {
+				matched++;
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * ベンチマークを実行する
+	 * 
+	 * @since 0.0.1
+	 * @param args 使用しない
+	 * @throws RunnerException 実行できない場合に例外を生成する
+	 */
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(AdvertisingDataCursorBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
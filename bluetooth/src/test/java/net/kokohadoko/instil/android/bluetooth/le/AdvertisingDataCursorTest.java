@@ -0,0 +1,250 @@
+package net.kokohadoko.instil.android.bluetooth.le;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * {@link AdvertisingDataCursor} のテスト
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class AdvertisingDataCursorTest {
+
+	/** 心拍計のアドバタイズデータ (16bitのUUID2件, 128bitのUUID, 名前, 送信強度) */
+	private static final String HEART_RATE = "020106" + "05020D180F18" + "1107" + "9ECADC240EE5A9E093F3A3B50100406E"
+			+ "0909" + "496E7374696C2D31" + "020A04";
+
+	/**
+	 * 16進数の文字列をバイト配列に変換する
+	 * 
+	 * @since 0.0.1
+	 * @param hex 16進数の文字列
+	 * @return バイト配列
+	 */
+	static byte[] hex(String hex) {
+		byte[] bytes = new byte[hex.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+		}
+		return bytes;
+	}
+
+	/**
+	 * アドバタイズデータを設定したカーソルを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param hex 16進数の文字列
+	 * @return カーソル
+	 */
+	static AdvertisingDataCursor cursor(String hex) {
+		byte[] payload = hex(hex);
+		return new AdvertisingDataCursor().reset(payload, 0, payload.length);
+	}
+
+	/**
+	 * 全てのAD構造を順に走査すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void walksAllStructures() {
+		AdvertisingDataCursor cursor = cursor(HEART_RATE);
+
+		assertTrue(cursor.next());
+		assertEquals(AdvertisingDataCursor.TYPE_FLAGS, cursor.getType());
+		assertEquals(0x06, cursor.getFlags());
+		assertTrue(cursor.next());
+		assertEquals(AdvertisingDataCursor.TYPE_UUID16_INCOMPLETE, cursor.getType());
+		assertTrue(cursor.next());
+		assertEquals(AdvertisingDataCursor.TYPE_UUID128_COMPLETE, cursor.getType());
+		assertTrue(cursor.next());
+		assertEquals(AdvertisingDataCursor.TYPE_COMPLETE_LOCAL_NAME, cursor.getType());
+		assertEquals("Instil-1", cursor.getString());
+		assertTrue(cursor.next());
+		assertEquals(AdvertisingDataCursor.TYPE_TX_POWER_LEVEL, cursor.getType());
+		assertEquals(4, cursor.getTxPowerLevel());
+		assertFalse(cursor.next());
+		assertEquals(-1, cursor.getType());
+		assertFalse(cursor.isMalformed());
+
+		// 先頭に戻して検索できる
+		assertTrue(cursor.find(AdvertisingDataCursor.TYPE_COMPLETE_LOCAL_NAME));
+		assertEquals("Instil-1", cursor.getString());
+		assertFalse(cursor.find(AdvertisingDataCursor.TYPE_MANUFACTURER_DATA));
+	}
+
+	/**
+	 * 16bitのUUIDをBase UUIDで展開すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void expandsUuid16() {
+		AdvertisingDataCursor cursor = cursor(HEART_RATE);
+		assertTrue(cursor.find(AdvertisingDataCursor.TYPE_UUID16_INCOMPLETE));
+
+		assertEquals(2, cursor.getUuidSize());
+		assertEquals(2, cursor.getUuidCount());
+		assertEquals(0x180D, cursor.getUuid16(0));
+		assertEquals(0x180F, cursor.getUuid16(1));
+		UUID heartRate = UUID.fromString("0000180d-0000-1000-8000-00805f9b34fb");
+		assertEquals(heartRate.getMostSignificantBits(), cursor.getUuidMostSignificantBits(0));
+		assertEquals(heartRate.getLeastSignificantBits(), cursor.getUuidLeastSignificantBits(0));
+		assertTrue(cursor.containsUuid(heartRate.getMostSignificantBits(), heartRate.getLeastSignificantBits()));
+		UUID battery = UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb");
+		assertTrue(cursor.containsUuid(battery.getMostSignificantBits(), battery.getLeastSignificantBits()));
+	}
+
+	/**
+	 * 32bitのUUIDをBase UUIDで展開すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void expandsUuid32() {
+		// 0x12345678 と 0xFEDCBA98 (上位のビットが立っていても符号拡張しない)
+		AdvertisingDataCursor cursor = cursor("0905" + "78563412" + "98BADCFE");
+		assertTrue(cursor.next());
+
+		assertEquals(4, cursor.getUuidSize());
+		assertEquals(2, cursor.getUuidCount());
+		UUID first = UUID.fromString("12345678-0000-1000-8000-00805f9b34fb");
+		UUID second = UUID.fromString("fedcba98-0000-1000-8000-00805f9b34fb");
+		assertEquals(first.getMostSignificantBits(), cursor.getUuidMostSignificantBits(0));
+		assertEquals(first.getLeastSignificantBits(), cursor.getUuidLeastSignificantBits(0));
+		assertEquals(second.getMostSignificantBits(), cursor.getUuidMostSignificantBits(1));
+		assertTrue(cursor.containsUuid(second.getMostSignificantBits(), second.getLeastSignificantBits()));
+	}
+
+	/**
+	 * 128bitのUUIDをリトルエンディアンで読み込むこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void readsUuid128() {
+		AdvertisingDataCursor cursor = cursor(HEART_RATE);
+		assertTrue(cursor.find(AdvertisingDataCursor.TYPE_UUID128_COMPLETE));
+
+		UUID uart = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+		assertEquals(16, cursor.getUuidSize());
+		assertEquals(1, cursor.getUuidCount());
+		assertEquals(uart.getMostSignificantBits(), cursor.getUuidMostSignificantBits(0));
+		assertEquals(uart.getLeastSignificantBits(), cursor.getUuidLeastSignificantBits(0));
+	}
+
+	/**
+	 * 長さ0のAD構造で走査を終了し，以降のデータを不正としないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void stopsAtZeroLengthStructure() {
+		// 長さ0以降は未使用の領域のため，続くバイトは解釈しない
+		AdvertisingDataCursor cursor = cursor("020106" + "00" + "0303AAFE" + "FFFF");
+
+		assertTrue(cursor.next());
+		assertFalse(cursor.next());
+		assertFalse(cursor.isMalformed());
+		assertFalse(cursor.find(AdvertisingDataCursor.TYPE_UUID16_COMPLETE));
+	}
+
+	/**
+	 * 終端を超える長さのAD構造を不正として検出すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void detectsTruncatedStructure() {
+		AdvertisingDataCursor cursor = cursor("020106" + "05020D18");
+
+		assertTrue(cursor.next());
+		assertFalse(cursor.next());
+		assertTrue(cursor.isMalformed());
+		assertEquals(-1, cursor.getType());
+
+		// 先頭に戻すと検出結果も消える
+		cursor.rewind();
+		assertFalse(cursor.isMalformed());
+	}
+
+	/**
+	 * 種類だけで値のないAD構造を読み込めること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void readsEmptyStructure() {
+		AdvertisingDataCursor cursor = cursor("0101" + "0109" + "01FF");
+
+		assertTrue(cursor.next());
+		assertEquals(AdvertisingDataCursor.TYPE_FLAGS, cursor.getType());
+		assertEquals(0, cursor.getDataLength());
+		assertEquals(-1, cursor.getFlags());
+		assertTrue(cursor.next());
+		assertEquals("", cursor.getString());
+		assertTrue(cursor.next());
+		assertEquals(-1, cursor.getManufacturerId());
+		assertFalse(cursor.next());
+		assertFalse(cursor.isMalformed());
+	}
+
+	/**
+	 * 開始位置と長さで指定した範囲だけを走査すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void walksRangeOfBuffer() {
+		byte[] buffer = hex("AAAA" + "020106" + "0303AAFE" + "BBBB");
+		AdvertisingDataCursor cursor = new AdvertisingDataCursor().reset(buffer, 2, 7);
+
+		assertTrue(cursor.next());
+		assertEquals(0x06, cursor.getFlags());
+		assertTrue(cursor.next());
+		assertEquals(0xFEAA, cursor.getUuid16(0));
+		assertFalse(cursor.next());
+		assertFalse(cursor.isMalformed());
+	}
+
+	/**
+	 * 値の範囲を超えて読み込めないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void rejectsReadPastData() {
+		AdvertisingDataCursor cursor = cursor("03FF5900");
+		assertTrue(cursor.next());
+
+		cursor.getUint16(1);
+	}
+
+	/**
+	 * 数値を符号とエンディアンに従って読み込むこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void readsNumbers() {
+		AdvertisingDataCursor cursor = cursor("09FF" + "5900" + "80FF" + "01020304");
+		assertTrue(cursor.next());
+
+		assertEquals(0x0059, cursor.getManufacturerId());
+		assertEquals(0x80, cursor.getUint8(2));
+		assertEquals(-128, cursor.getInt8(2));
+		assertEquals(0xFF80, cursor.getUint16(2));
+		assertEquals(0x80FF, cursor.getUint16BigEndian(2));
+		assertEquals(0x04030201L, cursor.getUint32(4));
+		assertEquals(0x01020304L, cursor.getUint32BigEndian(4));
+		assertEquals(0x80FF010203L, cursor.getBigEndian(2, 5));
+		assertArrayEquals(hex("590080FF01020304"), cursor.copyData());
+	}
+}
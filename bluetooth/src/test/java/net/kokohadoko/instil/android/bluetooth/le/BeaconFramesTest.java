@@ -0,0 +1,149 @@
+package net.kokohadoko.instil.android.bluetooth.le;
+
+import static net.kokohadoko.instil.android.bluetooth.le.AdvertisingDataCursorTest.cursor;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * {@link BeaconFrames} のテスト
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BeaconFramesTest {
+
+	/** iBeacon */
+	private static final String IBEACON = "020106" + "1AFF4C000215" + "E2C56DB5DFFB48D2B060D0F5A71096E0" + "00010002C5";
+	/** Eddystone-UID */
+	private static final String EDDYSTONE_UID = "020106" + "0303AAFE" + "1716AAFE00E7" + "00112233445566778899"
+			+ "AABBCCDDEEFF" + "0000";
+	/** Eddystone-URL (https://example.com) */
+	private static final String EDDYSTONE_URL = "020106" + "0303AAFE" + "0E16AAFE10EB03" + "6578616D706C65" + "07";
+	/** Eddystone-TLM */
+	private static final String EDDYSTONE_TLM = "020106" + "0303AAFE" + "1116AAFE2000" + "0BB8" + "1880"
+			+ "00000064" + "000003E8";
+
+	/**
+	 * iBeaconのフレームを解析すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void decodesIBeacon() {
+		AdvertisingDataCursor cursor = cursor(IBEACON);
+		assertTrue(cursor.find(AdvertisingDataCursor.TYPE_MANUFACTURER_DATA));
+
+		assertTrue(BeaconFrames.isIBeacon(cursor));
+		assertEquals(0xE2C56DB5DFFB48D2L, BeaconFrames.getIBeaconUuidMostSignificantBits(cursor));
+		assertEquals(0xB060D0F5A71096E0L, BeaconFrames.getIBeaconUuidLeastSignificantBits(cursor));
+		assertEquals(1, BeaconFrames.getIBeaconMajor(cursor));
+		assertEquals(2, BeaconFrames.getIBeaconMinor(cursor));
+		assertEquals(-59, BeaconFrames.getIBeaconTxPower(cursor));
+		assertFalse(BeaconFrames.isEddystone(cursor));
+	}
+
+	/**
+	 * 長さの足りないiBeaconのフレームを認識しないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void rejectsTruncatedIBeacon() {
+		// 送信強度を欠いた24バイト
+		AdvertisingDataCursor cursor = cursor("19FF4C000215" + "E2C56DB5DFFB48D2B060D0F5A71096E0" + "00010002");
+		assertTrue(cursor.next());
+
+		assertFalse(BeaconFrames.isIBeacon(cursor));
+	}
+
+	/**
+	 * EddystoneのUIDフレームを解析すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void decodesEddystoneUid() {
+		AdvertisingDataCursor cursor = cursor(EDDYSTONE_UID);
+		assertTrue(cursor.find(AdvertisingDataCursor.TYPE_SERVICE_DATA_UUID16));
+
+		assertTrue(BeaconFrames.isEddystone(cursor));
+		assertEquals(BeaconFrames.EDDYSTONE_UID, BeaconFrames.getEddystoneFrameType(cursor));
+		assertEquals(-25, BeaconFrames.getEddystoneTxPower(cursor));
+		assertEquals(0x0011223344556677L, BeaconFrames.getEddystoneNamespaceHigh(cursor));
+		assertEquals(0x8899, BeaconFrames.getEddystoneNamespaceLow(cursor));
+		assertEquals(0xAABBCCDDEEFFL, BeaconFrames.getEddystoneInstance(cursor));
+		assertFalse(BeaconFrames.isIBeacon(cursor));
+	}
+
+	/**
+	 * EddystoneのURLフレームを展開すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void decodesEddystoneUrl() {
+		AdvertisingDataCursor cursor = cursor(EDDYSTONE_URL);
+		assertTrue(cursor.find(AdvertisingDataCursor.TYPE_SERVICE_DATA_UUID16));
+
+		assertEquals(BeaconFrames.EDDYSTONE_URL, BeaconFrames.getEddystoneFrameType(cursor));
+		assertEquals(-21, BeaconFrames.getEddystoneTxPower(cursor));
+		StringBuilder url = new StringBuilder();
+		assertTrue(BeaconFrames.appendEddystoneUrl(cursor, url));
+		assertEquals("https://example.com", url.toString());
+	}
+
+	/**
+	 * 不正なスキームのURLフレームを展開しないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void rejectsUnknownUrlScheme() {
+		AdvertisingDataCursor cursor = cursor("0816AAFE10EB04" + "6162");
+		assertTrue(cursor.next());
+
+		StringBuilder url = new StringBuilder();
+		assertFalse(BeaconFrames.appendEddystoneUrl(cursor, url));
+		assertEquals(0, url.length());
+	}
+
+	/**
+	 * EddystoneのTLMフレームを解析すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void decodesEddystoneTlm() {
+		AdvertisingDataCursor cursor = cursor(EDDYSTONE_TLM);
+		assertTrue(cursor.find(AdvertisingDataCursor.TYPE_SERVICE_DATA_UUID16));
+
+		assertEquals(BeaconFrames.EDDYSTONE_TLM, BeaconFrames.getEddystoneFrameType(cursor));
+		assertEquals(3000, BeaconFrames.getEddystoneBatteryVoltage(cursor));
+		assertEquals(24.5f, BeaconFrames.getEddystoneTemperature(cursor), 0.0f);
+		assertEquals(100, BeaconFrames.getEddystoneAdvertisingCount(cursor));
+		assertEquals(1000, BeaconFrames.getEddystoneUptime(cursor));
+	}
+
+	/**
+	 * 長さの足りないEddystoneのフレームの種類を返さないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void rejectsTruncatedEddystone() {
+		// UIDフレームに必要な20バイトに対して19バイト
+		AdvertisingDataCursor uid = cursor("1416AAFE00E7" + "00112233445566778899" + "AABBCCDDEE");
+		assertTrue(uid.next());
+		assertTrue(BeaconFrames.isEddystone(uid));
+		assertEquals(-1, BeaconFrames.getEddystoneFrameType(uid));
+
+		// フレームの種類もない
+		AdvertisingDataCursor empty = cursor("0316AAFE");
+		assertTrue(empty.next());
+		assertFalse(BeaconFrames.isEddystone(empty));
+		assertEquals(-1, BeaconFrames.getEddystoneFrameType(empty));
+	}
+}
@@ -0,0 +1,156 @@
+package net.kokohadoko.instil.android.bluetooth.le;
+
+import static net.kokohadoko.instil.android.bluetooth.le.AdvertisingDataCursorTest.hex;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * {@link LeScanFilter} のテスト
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class LeScanFilterTest {
+
+	/** 検出したデバイスの数値のアドレス */
+	private static final long ADDRESS = 0x001122AABBCCL;
+
+	/** 心拍計 (16bitのUUID2件, 128bitのUUID, 名前, 送信強度) */
+	private static final byte[] HEART_RATE = hex("020106" + "05020D180F18" + "1107"
+			+ "9ECADC240EE5A9E093F3A3B50100406E" + "0909" + "496E7374696C2D31" + "020A04");
+	/** 32bitのUUID */
+	private static final byte[] UUID32 = hex("020106" + "0505" + "98BADCFE");
+	/** iBeacon */
+	private static final byte[] IBEACON = hex("020106" + "1AFF4C000215" + "E2C56DB5DFFB48D2B060D0F5A71096E0"
+			+ "00010002C5");
+	/** 上位のビットが立ったメーカー固有データ */
+	private static final byte[] HIGH_BYTES = hex("02011A" + "07FF5900" + "80FE7F01");
+
+	/**
+	 * フィルタで照合する
+	 * 
+	 * @since 0.0.1
+	 * @param filter フィルタ
+	 * @param record アドバタイズデータ
+	 * @return 一致する場合に true
+	 */
+	private static boolean matches(LeScanFilter filter, byte[] record) {
+		return filter.matches(ADDRESS, record, record.length);
+	}
+
+	/**
+	 * 16bit, 32bit, 128bitのサービスUUIDで照合すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void matchesServiceUuid() {
+		assertTrue(matches(LeScanFilter.forServiceUuid(UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb")),
+				HEART_RATE));
+		assertTrue(matches(LeScanFilter.forServiceUuid(UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e")),
+				HEART_RATE));
+		assertTrue(matches(LeScanFilter.forServiceUuid(UUID.fromString("fedcba98-0000-1000-8000-00805f9b34fb")),
+				UUID32));
+
+		assertFalse(matches(LeScanFilter.forServiceUuid(UUID.fromString("00001810-0000-1000-8000-00805f9b34fb")),
+				HEART_RATE));
+		assertFalse(matches(LeScanFilter.forServiceUuid(UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb")),
+				IBEACON));
+	}
+
+	/**
+	 * メーカーIDとデータの先頭で照合すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void matchesManufacturerData() {
+		assertTrue(matches(LeScanFilter.forManufacturerId(BeaconFrames.APPLE_MANUFACTURER_ID), IBEACON));
+		assertTrue(matches(LeScanFilter.forManufacturerData(BeaconFrames.APPLE_MANUFACTURER_ID,
+				new byte[] { 0x02, 0x15 }, null), IBEACON));
+
+		assertFalse(matches(LeScanFilter.forManufacturerId(0x0059), IBEACON));
+		assertFalse(matches(LeScanFilter.forManufacturerData(BeaconFrames.APPLE_MANUFACTURER_ID,
+				new byte[] { 0x02, 0x16 }, null), IBEACON));
+		assertFalse(matches(LeScanFilter.forManufacturerId(BeaconFrames.APPLE_MANUFACTURER_ID), HEART_RATE));
+	}
+
+	/**
+	 * 0x80以上のバイトをマスクの有無に関わらず符号なしで比較すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void comparesManufacturerDataUnsigned() {
+		byte[] data = { (byte) 0x80, (byte) 0xFE, 0x7F, 0x01 };
+		byte[] mask = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF };
+
+		assertTrue(matches(LeScanFilter.forManufacturerData(0x0059, data, null), HIGH_BYTES));
+		assertTrue(matches(LeScanFilter.forManufacturerData(0x0059, data, mask), HIGH_BYTES));
+		// マスクの上位のビットも有効であること
+		assertFalse(matches(LeScanFilter.forManufacturerData(0x0059,
+				new byte[] { 0x00 }, new byte[] { (byte) 0x80 }), HIGH_BYTES));
+		assertTrue(matches(LeScanFilter.forManufacturerData(0x0059,
+				new byte[] { 0x00 }, new byte[] { 0x7F }), HIGH_BYTES));
+		assertTrue(matches(LeScanFilter.forManufacturerData(0x0059,
+				new byte[] { (byte) 0x8F, (byte) 0xF0 }, new byte[] { (byte) 0xF0, (byte) 0xF0 }), HIGH_BYTES));
+		assertFalse(matches(LeScanFilter.forManufacturerData(0x0059,
+				new byte[] { (byte) 0x81 }, new byte[] { (byte) 0xFF }), HIGH_BYTES));
+	}
+
+	/**
+	 * メーカー固有データより長いデータでは一致しないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void rejectsDataLongerThanRecord() {
+		assertFalse(matches(LeScanFilter.forManufacturerData(0x0059,
+				new byte[] { (byte) 0x80, (byte) 0xFE, 0x7F, 0x01, 0x00 }, null), HIGH_BYTES));
+	}
+
+	/**
+	 * 不正なAD構造の前までで照合し，例外を生成しないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void toleratesMalformedRecord() {
+		byte[] truncated = hex("0303AAFE" + "07FF5900" + "80");
+		byte[] zeroLength = hex("0303AAFE" + "00" + "07FF590080FE7F01");
+
+		UUID eddystone = UUID.fromString("0000feaa-0000-1000-8000-00805f9b34fb");
+		assertTrue(matches(LeScanFilter.forServiceUuid(eddystone), truncated));
+		assertFalse(matches(LeScanFilter.forManufacturerId(0x0059), truncated));
+		assertFalse(matches(LeScanFilter.forManufacturerId(0x0059), zeroLength));
+		assertFalse(matches(LeScanFilter.forManufacturerId(0x0059), new byte[0]));
+	}
+
+	/**
+	 * アドレスで照合すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void matchesAddress() {
+		LeScanFilter filter = LeScanFilter.forAddress("00:11:22:AA:BB:CC");
+
+		assertTrue(filter.matches(ADDRESS, null, 0));
+		assertTrue(matches(filter, IBEACON));
+		assertFalse(filter.matches(ADDRESS + 1, IBEACON, IBEACON.length));
+	}
+
+	/**
+	 * マスクの長さがデータと異なる場合は生成できないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMaskOfDifferentLength() {
+		LeScanFilter.forManufacturerData(0x0059, new byte[] { 0x01 }, new byte[] { 0x01, 0x02 });
+	}
+}
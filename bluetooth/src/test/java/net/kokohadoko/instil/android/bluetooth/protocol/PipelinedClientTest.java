@@ -0,0 +1,448 @@
+package net.kokohadoko.instil.android.bluetooth.protocol;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.kokohadoko.instil.android.bluetooth.connection.StreamConnection;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * {@link PipelinedClient} のテスト
+ * 
+ * <p>
+ * パイプでつないだ相手側をテストのスレッドで操作し，要求の読み込みと応答の書き込みを行う．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class PipelinedClientTest {
+
+	/** 結果を待機する最大のミリ秒 */
+	private static final long WAIT = 5000;
+	/** 要求のタイムアウトのミリ秒 */
+	private static final long TIMEOUT = 200;
+	/** フレームの最大長 */
+	private static final int MAX_LENGTH = 256;
+
+	/** テストするクライアント */
+	private PipelinedClient client;
+	/** 相手側 */
+	private Peer peer;
+
+	/**
+	 * パイプでつないだ接続
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private static class PipedConnection implements StreamConnection {
+
+		/** クライアントが読み込むストリーム */
+		final PipedInputStream input = new PipedInputStream(4096);
+		/** クライアントが書き込むストリーム */
+		final PipedOutputStream output = new PipedOutputStream();
+		/** 閉じられたかどうか */
+		volatile boolean closed;
+
+		@Override
+		public InputStream getInputStream() {
+			return input;
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return output;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return !closed;
+		}
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+			input.close();
+			output.close();
+		}
+	}
+
+	/**
+	 * 接続の相手側
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private static class Peer {
+
+		/** フレーム形式 */
+		final Framer framer;
+		/** 受信した要求 */
+		final LinkedBlockingQueue<byte[]> requests = new LinkedBlockingQueue<byte[]>();
+		/** 応答を書き込むストリーム */
+		final PipedOutputStream out;
+		/** 要求を読み込むスレッド */
+		final Thread reader;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param connection 接続
+		 * @param framer フレーム形式
+		 * @throws IOException パイプの接続に失敗した場合に例外を生成する
+		 */
+		Peer(PipedConnection connection, Framer framer) throws IOException {
+			this.framer = framer;
+			this.out = new PipedOutputStream(connection.input);
+			final PipedInputStream in = new PipedInputStream(connection.output, 4096);
+			this.reader = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						byte[] frame;
+						while ((frame = Peer.this.framer.read(in)) != null) {
+							requests.add(frame);
+						}
+					} catch (IOException e) {
+						// クライアントが閉じた場合は終了する
+					}
+				}
+			}, "Peer-reader");
+			this.reader.setDaemon(true);
+			this.reader.start();
+		}
+
+		/**
+		 * 要求を1件受信する
+		 * 
+		 * @since 0.0.1
+		 * @return 要求のフレーム
+		 * @throws InterruptedException 割り込まれた場合に例外を生成する
+		 */
+		byte[] take() throws InterruptedException {
+			byte[] frame = requests.poll(WAIT, TimeUnit.MILLISECONDS);
+			if (frame == null) {
+				fail("要求を受信しませんでした．");
+			}
+			return frame;
+		}
+
+		/**
+		 * 応答を書き込む
+		 * 
+		 * @since 0.0.1
+		 * @param frame 応答のフレーム
+		 * @throws IOException 書き込みに失敗した場合に例外を生成する
+		 */
+		synchronized void reply(byte[] frame) throws IOException {
+			framer.write(out, frame, 0, frame.length);
+			out.flush();
+		}
+	}
+
+	/**
+	 * クライアントを開始する
+	 * 
+	 * @since 0.0.1
+	 * @param framer フレーム形式
+	 * @param correlationIds 相関IDを使用する場合に true
+	 * @throws IOException 開始に失敗した場合に例外を生成する
+	 */
+	private void start(Framer framer, boolean correlationIds) throws IOException {
+		PipedConnection connection = new PipedConnection();
+		peer = new Peer(connection, framer);
+		client = new PipelinedClient(connection, framer, correlationIds);
+		client.setTimeout(TIMEOUT);
+		client.start();
+	}
+
+	/**
+	 * クライアントを閉じる
+	 * 
+	 * @since 0.0.1
+	 */
+	@After
+	public void tearDown() {
+		if (client != null) {
+			client.close();
+		}
+	}
+
+	/**
+	 * 文字列をバイト配列に変換する
+	 * 
+	 * @since 0.0.1
+	 * @param text 文字列
+	 * @return バイト配列
+	 */
+	private static byte[] bytes(String text) {
+		try {
+			return text.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * 相関IDの付いたフレームからペイロードを取り出す
+	 * 
+	 * @since 0.0.1
+	 * @param frame フレーム
+	 * @return ペイロード
+	 */
+	private static byte[] payloadOf(byte[] frame) {
+		byte[] payload = new byte[frame.length - PipelinedClient.ID_LENGTH];
+		System.arraycopy(frame, PipelinedClient.ID_LENGTH, payload, 0, payload.length);
+		return payload;
+	}
+
+	/**
+	 * 要求のフレームと同じ相関IDを付けた応答を生成する
+	 * 
+	 * @since 0.0.1
+	 * @param request 要求のフレーム
+	 * @param payload 応答のペイロード
+	 * @return 応答のフレーム
+	 */
+	private static byte[] replyTo(byte[] request, byte[] payload) {
+		byte[] frame = new byte[PipelinedClient.ID_LENGTH + payload.length];
+		System.arraycopy(request, 0, frame, 0, PipelinedClient.ID_LENGTH);
+		System.arraycopy(payload, 0, frame, PipelinedClient.ID_LENGTH, payload.length);
+		return frame;
+	}
+
+	/**
+	 * Futureが失敗した原因を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param future Future
+	 * @return 原因
+	 * @throws Exception 待機に失敗した場合に例外を生成する
+	 */
+	private static Throwable causeOf(Future<byte[]> future) throws Exception {
+		try {
+			future.get(WAIT, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+		fail("Futureが成功しました．");
+		return null;
+	}
+
+	/**
+	 * 長さを前置したフレームで順序どおりの応答を対応付けること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void lengthPrefixedInOrder() throws Exception {
+		start(new LengthPrefixedFramer(2, MAX_LENGTH), false);
+
+		Future<byte[]> first = client.send(bytes("ping-1"));
+		Future<byte[]> second = client.send(bytes("ping-2"));
+		assertArrayEquals(bytes("ping-1"), peer.take());
+		assertArrayEquals(bytes("ping-2"), peer.take());
+		peer.reply(bytes("pong-1"));
+		peer.reply(bytes("pong-2"));
+
+		assertArrayEquals(bytes("pong-1"), first.get(WAIT, TimeUnit.MILLISECONDS));
+		assertArrayEquals(bytes("pong-2"), second.get(WAIT, TimeUnit.MILLISECONDS));
+		assertEquals(0, client.getOutstandingCount());
+	}
+
+	/**
+	 * 区切り文字のフレームで順序どおりの応答を対応付けること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void delimiterInOrder() throws Exception {
+		start(new DelimiterFramer(DelimiterFramer.LF, MAX_LENGTH), false);
+
+		Future<byte[]> first = client.send(bytes("GET a"));
+		Future<byte[]> second = client.send(bytes("GET b"));
+		Future<byte[]> empty = client.send(new byte[0]);
+		assertArrayEquals(bytes("GET a"), peer.take());
+		assertArrayEquals(bytes("GET b"), peer.take());
+		assertArrayEquals(new byte[0], peer.take());
+		peer.reply(bytes("A"));
+		peer.reply(bytes("B"));
+		peer.reply(bytes("OK"));
+
+		assertArrayEquals(bytes("A"), first.get(WAIT, TimeUnit.MILLISECONDS));
+		assertArrayEquals(bytes("B"), second.get(WAIT, TimeUnit.MILLISECONDS));
+		assertArrayEquals(bytes("OK"), empty.get(WAIT, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * 区切り文字を含むペイロードは送信せずに失敗すること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void rejectsPayloadContainingDelimiter() throws Exception {
+		start(new DelimiterFramer(DelimiterFramer.LF, MAX_LENGTH), false);
+
+		Future<byte[]> future = client.send(bytes("a\nb"));
+		assertTrue(causeOf(future) instanceof IllegalArgumentException);
+		assertEquals(0, client.getOutstandingCount());
+	}
+
+	/**
+	 * 区切り文字のフレームでは相関IDを使用できないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsCorrelationIdsWithDelimiter() {
+		new PipelinedClient(new PipedConnection(), new DelimiterFramer(DelimiterFramer.LF, MAX_LENGTH), true);
+	}
+
+	/**
+	 * 相関IDで順序の入れ替わった応答を対応付けること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void correlationIdsOutOfOrder() throws Exception {
+		start(new LengthPrefixedFramer(4, MAX_LENGTH), true);
+
+		Future<byte[]> first = client.send(bytes("one"));
+		Future<byte[]> second = client.send(bytes("two"));
+		Future<byte[]> third = client.send(bytes("three"));
+		byte[] r1 = peer.take();
+		byte[] r2 = peer.take();
+		byte[] r3 = peer.take();
+		assertArrayEquals(bytes("one"), payloadOf(r1));
+		assertArrayEquals(bytes("two"), payloadOf(r2));
+		assertArrayEquals(bytes("three"), payloadOf(r3));
+		assertEquals(3, client.getOutstandingCount());
+
+		peer.reply(replyTo(r3, bytes("3")));
+		peer.reply(replyTo(r1, bytes("1")));
+		peer.reply(replyTo(r2, bytes("2")));
+
+		assertArrayEquals(bytes("1"), first.get(WAIT, TimeUnit.MILLISECONDS));
+		assertArrayEquals(bytes("2"), second.get(WAIT, TimeUnit.MILLISECONDS));
+		assertArrayEquals(bytes("3"), third.get(WAIT, TimeUnit.MILLISECONDS));
+		assertEquals(0, client.getOutstandingCount());
+	}
+
+	/**
+	 * 要求に対応しないフレームをリスナーに通知すること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void notifiesUnmatchedFrame() throws Exception {
+		start(new LengthPrefixedFramer(4, MAX_LENGTH), true);
+		final LinkedBlockingQueue<byte[]> frames = new LinkedBlockingQueue<byte[]>();
+		client.setFrameListener(new FrameListener() {
+			@Override
+			public void onFrame(byte[] payload) {
+				frames.add(payload);
+			}
+		});
+
+		peer.reply(new byte[] { 0x7f, 0, 0, 0, 'e', 'v' });
+
+		assertArrayEquals(bytes("ev"), frames.poll(WAIT, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * 相関IDを使用する場合はタイムアウトした要求だけが失敗し，後続の要求に影響しないこと
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void correlationIdTimeoutIsolated() throws Exception {
+		start(new LengthPrefixedFramer(2, MAX_LENGTH), true);
+
+		Future<byte[]> lost = client.send(bytes("lost"));
+		Future<byte[]> answered = client.send(bytes("answered"));
+		byte[] r1 = peer.take();
+		byte[] r2 = peer.take();
+		peer.reply(replyTo(r2, bytes("ok")));
+
+		assertArrayEquals(bytes("ok"), answered.get(WAIT, TimeUnit.MILLISECONDS));
+		assertTrue(causeOf(lost) instanceof TimeoutException);
+
+		// 遅れて届いた応答は破棄され，後続の要求は対応付けられる
+		peer.reply(replyTo(r1, bytes("late")));
+		Future<byte[]> next = client.send(bytes("next"));
+		peer.reply(replyTo(peer.take(), bytes("next-ok")));
+		assertArrayEquals(bytes("next-ok"), next.get(WAIT, TimeUnit.MILLISECONDS));
+		assertEquals(0, client.getOutstandingCount());
+	}
+
+	/**
+	 * 順序で対応付ける場合に応答のない要求がタイムアウトすると，
+	 * 後続の応答を別の要求に対応付けずにクライアントを閉じること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void inOrderTimeoutDoesNotMisalign() throws Exception {
+		start(new LengthPrefixedFramer(2, MAX_LENGTH), false);
+
+		Future<byte[]> lost = client.send(bytes("lost"));
+		Future<byte[]> second = client.send(bytes("second"));
+		peer.take();
+		peer.take();
+
+		assertTrue(causeOf(lost) instanceof TimeoutException);
+		// 相手は1件目を応答せずに2件目に応答するが，1件目に対応付けられてはならない
+		try {
+			peer.reply(bytes("second-ok"));
+		} catch (IOException e) {
+			// 既に閉じられている
+		}
+		assertTrue(causeOf(second) instanceof IOException);
+
+		Future<byte[]> third = client.send(bytes("third"));
+		assertTrue(causeOf(third) instanceof IOException);
+		assertEquals(0, client.getOutstandingCount());
+	}
+
+	/**
+	 * 閉じた時点で応答待ちの要求が失敗すること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void closeFailsPending() throws Exception {
+		start(new LengthPrefixedFramer(2, MAX_LENGTH), true);
+
+		Future<byte[]> pending = client.send(bytes("pending"));
+		peer.take();
+		client.close();
+
+		assertTrue(causeOf(pending) instanceof IOException);
+	}
+}
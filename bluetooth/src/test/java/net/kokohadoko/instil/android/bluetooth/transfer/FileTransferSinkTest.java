@@ -0,0 +1,208 @@
+package net.kokohadoko.instil.android.bluetooth.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@link FileTransferSink} のテスト
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class FileTransferSinkTest {
+
+	/** ファイル名 */
+	private static final String NAME = "data.bin";
+
+	/** 保存先のディレクトリ */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * 乱数のデータを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param size バイト数
+	 * @param seed 乱数の種
+	 * @return データ
+	 */
+	private static byte[] random(int size, long seed) {
+		byte[] data = new byte[size];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * CRC32を計算する
+	 * 
+	 * @since 0.0.1
+	 * @param data データ
+	 * @return CRC32
+	 */
+	private static long crc(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		return crc.getValue();
+	}
+
+	/**
+	 * ファイルの内容を読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param file ファイル
+	 * @return 内容
+	 * @throws IOException 読み込みに失敗した場合に例外を生成する
+	 */
+	private static byte[] read(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			byte[] data = new byte[(int) in.length()];
+			in.readFully(data);
+			return data;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * 受信を開始して指定した範囲を書き込み，受信を終了する
+	 * 
+	 * @since 0.0.1
+	 * @param sink 受信先
+	 * @param data ファイルの内容
+	 * @param end 書き込む終端
+	 * @return 受信を開始した位置
+	 * @throws IOException 書き込みまたは照合に失敗した場合に例外を生成する
+	 */
+	private static long receive(FileTransferSink sink, byte[] data, int end) throws IOException {
+		long start = sink.open(NAME, data.length, crc(data));
+		try {
+			sink.write(start, data, (int) start, end - (int) start);
+		} catch (IOException e) {
+			sink.close(false);
+			throw e;
+		}
+		sink.close(end == data.length);
+		return start;
+	}
+
+	/**
+	 * ディレクトリを指すファイル名を拒否すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void rejectsDirectoryNames() {
+		FileTransferSink sink = new FileTransferSink(folder.getRoot());
+		for (String name : new String[] { "", ".", "..", "a/..", "a/." }) {
+			try {
+				sink.open(name, 1, 0);
+				fail("name=" + name);
+			} catch (IOException e) {
+				// 拒否された
+			}
+		}
+	}
+
+	/**
+	 * ファイル名に含まれるパスを使用しないこと
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void ignoresPathInName() throws Exception {
+		File directory = folder.newFolder("in");
+		FileTransferSink sink = new FileTransferSink(directory);
+		byte[] data = random(100, 1);
+
+		sink.open("../../" + NAME, data.length, crc(data));
+		sink.write(0, data, 0, data.length);
+		sink.close(true);
+
+		assertEquals(new File(directory, NAME), sink.getFile());
+		assertArrayEquals(data, read(sink.getFile()));
+	}
+
+	/**
+	 * 途中まで受信したファイルの続きから再開すること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void resumesPartFile() throws Exception {
+		byte[] data = random(10000, 2);
+
+		assertEquals(0, receive(new FileTransferSink(folder.getRoot()), data, 4000));
+		assertEquals(4000, receive(new FileTransferSink(folder.getRoot()), data, data.length));
+
+		assertArrayEquals(data, read(new File(folder.getRoot(), NAME)));
+		assertFalse(new File(folder.getRoot(), NAME + FileTransferSink.PART_SUFFIX).exists());
+		assertFalse(new File(folder.getRoot(), NAME + FileTransferSink.CHECKSUM_SUFFIX).exists());
+	}
+
+	/**
+	 * 同じ名前の別の内容のファイルは先頭から受信し直すこと
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void restartsWhenFileIsSwapped() throws Exception {
+		byte[] a = random(10000, 3);
+		byte[] b = random(a.length, 4);
+
+		receive(new FileTransferSink(folder.getRoot()), a, 6000);
+		assertEquals(0, receive(new FileTransferSink(folder.getRoot()), b, b.length));
+
+		assertArrayEquals(b, read(new File(folder.getRoot(), NAME)));
+	}
+
+	/**
+	 * 破損した .part ファイルから再開した場合は照合に失敗して破棄し，次は先頭から受信すること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void discardsCorruptPartFile() throws Exception {
+		byte[] data = random(10000, 5);
+		receive(new FileTransferSink(folder.getRoot()), data, 5000);
+
+		File part = new File(folder.getRoot(), NAME + FileTransferSink.PART_SUFFIX);
+		RandomAccessFile corrupt = new RandomAccessFile(part, "rw");
+		try {
+			corrupt.seek(1234);
+			corrupt.write(~data[1234]);
+		} finally {
+			corrupt.close();
+		}
+
+		try {
+			receive(new FileTransferSink(folder.getRoot()), data, data.length);
+			fail("照合に成功しました．");
+		} catch (IOException e) {
+			// CRC32が一致しない
+		}
+		assertFalse(part.exists());
+		assertFalse(new File(folder.getRoot(), NAME).exists());
+
+		assertEquals(0, receive(new FileTransferSink(folder.getRoot()), data, data.length));
+		assertTrue(new File(folder.getRoot(), NAME).isFile());
+		assertArrayEquals(data, read(new File(folder.getRoot(), NAME)));
+	}
+}
@@ -0,0 +1,421 @@
+package net.kokohadoko.instil.android.bluetooth.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.kokohadoko.instil.android.bluetooth.connection.StreamConnection;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * {@link FileSender} と {@link FileReceiver} のテスト
+ * 
+ * <p>
+ * パイプでつないだ接続で {@link MemoryTransferSink} に送信し，切断と再開，
+ * 途中で別の内容に差し替えたファイルの送信，遅い回線でのデータ長の調整を確認する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class FileTransferTest {
+
+	/** 結果を待機する最大のミリ秒 */
+	private static final long WAIT = 30 * 1000;
+	/** パイプのバッファのサイズ */
+	private static final int PIPE_SIZE = 64 * 1024;
+	/** 遅い回線のパイプのバッファのサイズ．送信側はウィンドウの分だけ待たずに書き込める */
+	private static final int SLOW_PIPE_SIZE = 1024 * 1024;
+	/** ファイル名 */
+	private static final String NAME = "data.bin";
+
+	/** 受信を行うスレッド */
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	/**
+	 * パイプでつないだ接続の一端
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private static class Endpoint implements StreamConnection {
+
+		/** 入力元のパイプ */
+		final PipedInputStream pipe;
+		/** 入力ストリーム */
+		InputStream in;
+		/** 出力ストリーム */
+		OutputStream out;
+		/** 出力したバイト数 */
+		long written;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param pipeSize パイプのバッファのサイズ
+		 */
+		Endpoint(int pipeSize) {
+			this.pipe = new PipedInputStream(pipeSize);
+			this.in = pipe;
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return in;
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return out;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+			out.close();
+		}
+	}
+
+	/**
+	 * 出力したバイト数を数え，指定したバイト数を超えると切断するストリーム
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private static class LinkOutputStream extends FilterOutputStream {
+
+		/** 出力元の接続 */
+		private final Endpoint endpoint;
+		/** 切断するバイト数 */
+		private final long limit;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param out 出力先
+		 * @param endpoint 出力元の接続
+		 * @param limit 切断するバイト数
+		 */
+		LinkOutputStream(OutputStream out, Endpoint endpoint, long limit) {
+			super(out);
+			this.endpoint = endpoint;
+			this.limit = limit;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (endpoint.written + len > limit) {
+				out.close();
+				throw new IOException("切断されました．");
+			}
+			out.write(b, off, len);
+			endpoint.written += len;
+		}
+	}
+
+	/**
+	 * 回線の速度に合わせて読み込みを制限するストリーム
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private static class ThrottledInputStream extends FilterInputStream {
+
+		/** 1回に読み込む最大のバイト数 */
+		private static final int MAX_READ = 1024;
+
+		/** 1秒あたりのバイト数 */
+		private final long bytesPerSecond;
+		/** 読み込んだバイト数 */
+		private long read;
+		/** 読み込みを開始した時刻．開始していない場合は -1 */
+		private long startedAt = -1;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param in 入力元
+		 * @param bytesPerSecond 1秒あたりのバイト数
+		 */
+		ThrottledInputStream(InputStream in, long bytesPerSecond) {
+			super(in);
+			this.bytesPerSecond = bytesPerSecond;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = in.read(b, off, Math.min(len, MAX_READ));
+			if (count <= 0) {
+				return count;
+			}
+			if (startedAt < 0) {
+				startedAt = System.nanoTime();
+			}
+			read += count;
+
+			long wait = startedAt + read * 1000000000L / bytesPerSecond - System.nanoTime();
+			if (wait > 0) {
+				try {
+					Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("割り込まれました．");
+				}
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * 送信側と受信側の接続を生成する
+	 * 
+	 * @since 0.0.1
+	 * @param limit 送信側が切断するバイト数
+	 * @param bytesPerSecond 受信側に届く1秒あたりのバイト数．制限しない場合は 0
+	 * @return 送信側と受信側の接続
+	 * @throws IOException パイプの接続に失敗した場合に例外を生成する
+	 */
+	private static Endpoint[] link(long limit, long bytesPerSecond) throws IOException {
+		Endpoint sender = new Endpoint(PIPE_SIZE);
+		Endpoint receiver = new Endpoint(bytesPerSecond > 0 ? SLOW_PIPE_SIZE : PIPE_SIZE);
+		sender.out = new LinkOutputStream(new PipedOutputStream(receiver.pipe), sender, limit);
+		receiver.out = new PipedOutputStream(sender.pipe);
+		if (bytesPerSecond > 0) {
+			receiver.in = new ThrottledInputStream(receiver.pipe, bytesPerSecond);
+		}
+		return new Endpoint[] { sender, receiver };
+	}
+
+	/**
+	 * 乱数のデータを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param size バイト数
+	 * @param seed 乱数の種
+	 * @return データ
+	 */
+	private static byte[] random(int size, long seed) {
+		byte[] data = new byte[size];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * 別のスレッドで受信を開始する
+	 * 
+	 * @since 0.0.1
+	 * @param receiver FileReceiver
+	 * @param connection 接続
+	 * @return 受信の完了を返すFuture
+	 */
+	private Future<Void> receive(final FileReceiver receiver, final Endpoint connection) {
+		return executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				try {
+					receiver.receive(connection);
+				} finally {
+					connection.close();
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 送信が切断で失敗し，受信側も失敗することを確認する
+	 * 
+	 * @since 0.0.1
+	 * @param sender FileSender
+	 * @param receiver FileReceiver
+	 * @param cutAfter 切断するバイト数
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	private void sendUntilCut(FileSender sender, FileReceiver receiver, long cutAfter) throws Exception {
+		Endpoint[] link = link(cutAfter, 0);
+		Future<Void> received = receive(receiver, link[1]);
+		try {
+			sender.send(link[0]);
+			fail("切断されませんでした．");
+		} catch (IOException e) {
+			// 切断された
+		} finally {
+			link[0].close();
+		}
+		try {
+			received.get(WAIT, TimeUnit.MILLISECONDS);
+			fail("受信が完了しました．");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+	}
+
+	/**
+	 * 最後まで送信する
+	 * 
+	 * @since 0.0.1
+	 * @param sender FileSender
+	 * @param receiver FileReceiver
+	 * @param bytesPerSecond 受信側に届く1秒あたりのバイト数．制限しない場合は 0
+	 * @return 送信側が出力したバイト数
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	private long sendAll(FileSender sender, FileReceiver receiver, long bytesPerSecond) throws Exception {
+		Endpoint[] link = link(Long.MAX_VALUE, bytesPerSecond);
+		Future<Void> received = receive(receiver, link[1]);
+		try {
+			sender.send(link[0]);
+		} finally {
+			link[0].close();
+		}
+		received.get(WAIT, TimeUnit.MILLISECONDS);
+		return link[0].written;
+	}
+
+	/**
+	 * 受信を行うスレッドを終了する
+	 * 
+	 * @since 0.0.1
+	 */
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * ファイル全体を送信できること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void transfersFile() throws Exception {
+		byte[] data = random(300 * 1024 + 17, 1);
+		MemoryTransferSink sink = new MemoryTransferSink();
+		FileSender sender = new FileSender(ByteBuffer.wrap(data), NAME);
+
+		sendAll(sender, new FileReceiver(sink), 0);
+
+		assertTrue(sink.isCompleted());
+		assertArrayEquals(data, sink.getData());
+		assertEquals(data.length, sender.getAcknowledged());
+	}
+
+	/**
+	 * 空のファイルを送信できること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void transfersEmptyFile() throws Exception {
+		MemoryTransferSink sink = new MemoryTransferSink();
+
+		sendAll(new FileSender(ByteBuffer.allocate(0), NAME), new FileReceiver(sink), 0);
+
+		assertTrue(sink.isCompleted());
+		assertEquals(0, sink.getData().length);
+	}
+
+	/**
+	 * 切断された後に受信済みの位置から再開すること
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void resumesAfterDisconnect() throws Exception {
+		byte[] data = random(512 * 1024, 2);
+		MemoryTransferSink sink = new MemoryTransferSink();
+		FileReceiver receiver = new FileReceiver(sink);
+		FileSender sender = new FileSender(ByteBuffer.wrap(data), NAME);
+
+		sendUntilCut(sender, receiver, 200 * 1024);
+		long written = sendAll(sender, receiver, 0);
+
+		assertTrue(sink.isCompleted());
+		assertArrayEquals(data, sink.getData());
+		// 受信側はパイプのバッファを超えて遅れないため，2回目は少なくともその差の分を送信しない
+		assertTrue("written=" + written, written < data.length - (200 * 1024 - PIPE_SIZE - 8192));
+	}
+
+	/**
+	 * 途中まで受信した後に同じ名前とバイト数の別の内容のファイルを送信すると，先頭から受信し直すこと
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void restartsWhenFileIsSwapped() throws Exception {
+		byte[] a = random(256 * 1024, 3);
+		byte[] b = random(a.length, 4);
+		MemoryTransferSink sink = new MemoryTransferSink();
+		FileReceiver receiver = new FileReceiver(sink);
+
+		sendUntilCut(new FileSender(ByteBuffer.wrap(a), NAME), receiver, 128 * 1024);
+		long written = sendAll(new FileSender(ByteBuffer.wrap(b), NAME), receiver, 0);
+
+		assertTrue(sink.isCompleted());
+		assertArrayEquals(b, sink.getData());
+		assertTrue("written=" + written, written >= b.length);
+	}
+
+	/**
+	 * 遅い回線でもウィンドウ内の待ち時間でデータ長が最小まで縮まないこと
+	 * 
+	 * @since 0.0.1
+	 * @throws Exception テストに失敗した場合に例外を生成する
+	 */
+	@Test
+	public void keepsChunkSizeOnSlowLink() throws Exception {
+		byte[] data = random(1024 * 1024, 5);
+		MemoryTransferSink sink = new MemoryTransferSink();
+		FileSender sender = new FileSender(ByteBuffer.wrap(data), NAME);
+
+		// 送信側はウィンドウの分を待たずに書き込むため，512KB/秒では送信から受信確認まで
+		// 目標の200ミリ秒を大きく超えるが，1回分のデータの送信にかかる時間は目標に収まる
+		sendAll(sender, new FileReceiver(sink), 512 * 1024);
+
+		assertArrayEquals(data, sink.getData());
+		int chunkSize = sender.getChunkSize();
+		assertTrue("chunkSize=" + chunkSize, chunkSize >= 16 * 1024);
+	}
+}
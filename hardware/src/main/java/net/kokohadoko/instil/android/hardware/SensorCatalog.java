@@ -0,0 +1,334 @@
+package net.kokohadoko.instil.android.hardware;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+
+/**
+ * 端末のセンサーの機能と仕様の一覧
+ * 
+ * <p>
+ * PackageManagerの機能の問い合わせとSensorManagerのセンサー一覧の取得を最初の1回だけ行い，
+ * 以降はメモリ上の値を返す．インスタンスは不変で，プロセスにつき1つを使用する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class SensorCatalog {
+
+	/** 加速度センサーの機能 */
+	public static final int FEATURE_ACCELEROMETER = 1;
+	/** 圧力センサーの機能 */
+	public static final int FEATURE_BAROMETER = 1 << 1;
+	/** コンパスの機能 */
+	public static final int FEATURE_COMPASS = 1 << 2;
+	/** ジャイロスコープの機能 */
+	public static final int FEATURE_GYROSCOPE = 1 << 3;
+	/** 照度センサーの機能 */
+	public static final int FEATURE_LIGHT = 1 << 4;
+	/** 近接センサーの機能 */
+	public static final int FEATURE_PROXIMITY = 1 << 5;
+
+	/** インスタンス */
+	private static SensorCatalog instance;
+
+	/** SensorManager */
+	private final SensorManager manager;
+	/** サポートしている機能 */
+	private final int features;
+	/** センサーの一覧 */
+	private final List<Sensor> sensors;
+	/** センサー名の一覧 */
+	private final List<String> names;
+	/** センサーの仕様の一覧 */
+	private final List<SensorInfo> infos;
+	/** センサー種別ごとのセンサーの仕様の一覧 */
+	private final Map<Integer, List<SensorInfo>> infosByType;
+	/** センサー種別ごとのデフォルトのセンサー */
+	private final Map<Integer, Sensor> defaults;
+	/** ベンダー名の一覧 */
+	private final Set<String> vendors;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 */
+	private SensorCatalog(Context context) {
+		int features = 0;
+		if (SensorManagerWrapper.hasSystemFeatureAccelerometer(context)) {
+			features |= FEATURE_ACCELEROMETER;
+		}
+		if (SensorManagerWrapper.hasSystemFeatureBarometer(context)) {
+			features |= FEATURE_BAROMETER;
+		}
+		if (SensorManagerWrapper.hasSystemFeatureCompass(context)) {
+			features |= FEATURE_COMPASS;
+		}
+		if (SensorManagerWrapper.hasSystemFeatureGyroscope(context)) {
+			features |= FEATURE_GYROSCOPE;
+		}
+		if (SensorManagerWrapper.hasSystemFeatureLight(context)) {
+			features |= FEATURE_LIGHT;
+		}
+		if (SensorManagerWrapper.hasSystemFeatureProximity(context)) {
+			features |= FEATURE_PROXIMITY;
+		}
+		this.features = features;
+		this.manager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+
+		List<Sensor> sensors = manager != null ? manager.getSensorList(Sensor.TYPE_ALL) : null;
+		if (sensors == null) {
+			sensors = Collections.emptyList();
+		}
+
+		List<String> names = new ArrayList<String>(sensors.size());
+		List<SensorInfo> infos = new ArrayList<SensorInfo>(sensors.size());
+		Map<Integer, List<SensorInfo>> infosByType = new HashMap<Integer, List<SensorInfo>>();
+		Map<Integer, Sensor> defaults = new HashMap<Integer, Sensor>();
+		Set<String> vendors = new LinkedHashSet<String>();
+		for (Sensor sensor : sensors) {
+			SensorInfo info = new SensorInfo(sensor);
+			names.add(info.getName());
+			infos.add(info);
+			vendors.add(info.getVendor());
+
+			Integer type = info.getType();
+			List<SensorInfo> list = infosByType.get(type);
+			if (list == null) {
+				list = new ArrayList<SensorInfo>(2);
+				infosByType.put(type, list);
+				Sensor sensorDefault = manager.getDefaultSensor(type);
+				defaults.put(type, sensorDefault != null ? sensorDefault : sensor);
+			}
+			list.add(info);
+		}
+		for (Map.Entry<Integer, List<SensorInfo>> entry : infosByType.entrySet()) {
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+
+		this.sensors = Collections.unmodifiableList(new ArrayList<Sensor>(sensors));
+		this.names = Collections.unmodifiableList(names);
+		this.infos = Collections.unmodifiableList(infos);
+		this.infosByType = infosByType;
+		this.defaults = defaults;
+		this.vendors = Collections.unmodifiableSet(vendors);
+	}
+
+	/**
+	 * インスタンスを取得する
+	 * 
+	 * <p>
+	 * 最初の呼び出しで一覧を生成する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return SensorCatalog
+	 */
+	public static synchronized SensorCatalog getInstance(Context context) {
+		if (instance == null) {
+			instance = new SensorCatalog(context.getApplicationContext());
+		}
+
+		return instance;
+	}
+
+	/**
+	 * SensorManagerを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return SensorManager
+	 */
+	public SensorManager getSensorManager() {
+		return manager;
+	}
+
+	/**
+	 * 機能をサポートしているかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param feature {@link #FEATURE_ACCELEROMETER} などの値
+	 * @return サポートしている場合に true, そうでない場合に falseを返す
+	 */
+	public boolean hasFeature(int feature) {
+		return (features & feature) == feature;
+	}
+
+	/**
+	 * いずれかのセンサーの機能をサポートしているかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return サポートしている場合に true, そうでない場合に falseを返す
+	 */
+	public boolean hasAnyFeature() {
+		return features != 0;
+	}
+
+	/**
+	 * センサーの一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 変更できないセンサーの一覧
+	 */
+	public List<Sensor> getSensors() {
+		return sensors;
+	}
+
+	/**
+	 * センサーの一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param type センサー種別．{@link Sensor#TYPE_ALL} の場合は全てのセンサー
+	 * @return センサーの一覧
+	 */
+	public List<Sensor> getSensors(int type) {
+		if (type == Sensor.TYPE_ALL) {
+			return sensors;
+		}
+
+		List<SensorInfo> list = infosByType.get(type);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		List<Sensor> result = new ArrayList<Sensor>(list.size());
+		for (SensorInfo info : list) {
+			result.add(info.getSensor());
+		}
+		return result;
+	}
+
+	/**
+	 * センサー名の一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 変更できないセンサー名の一覧
+	 */
+	public List<String> getSensorNames() {
+		return names;
+	}
+
+	/**
+	 * センサー名の一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param type センサー種別．{@link Sensor#TYPE_ALL} の場合は全てのセンサー
+	 * @return センサー名の一覧
+	 */
+	public List<String> getSensorNames(int type) {
+		if (type == Sensor.TYPE_ALL) {
+			return names;
+		}
+
+		List<SensorInfo> list = infosByType.get(type);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		List<String> result = new ArrayList<String>(list.size());
+		for (SensorInfo info : list) {
+			result.add(info.getName());
+		}
+		return result;
+	}
+
+	/**
+	 * センサーの仕様の一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 変更できないセンサーの仕様の一覧
+	 */
+	public List<SensorInfo> getSensorInfos() {
+		return infos;
+	}
+
+	/**
+	 * センサーの仕様の一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param type センサー種別
+	 * @return 変更できないセンサーの仕様の一覧
+	 */
+	public List<SensorInfo> getSensorInfos(int type) {
+		if (type == Sensor.TYPE_ALL) {
+			return infos;
+		}
+
+		List<SensorInfo> list = infosByType.get(type);
+		return list != null ? list : Collections.<SensorInfo>emptyList();
+	}
+
+	/**
+	 * デフォルトのセンサーを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param type センサー種別
+	 * @return Sensor, 存在しない場合は nullを返す
+	 */
+	public Sensor getDefaultSensor(int type) {
+		return defaults.get(type);
+	}
+
+	/**
+	 * センサーが存在するかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param type センサー種別
+	 * @return 存在する場合に true, そうでない場合に falseを返す
+	 */
+	public boolean hasSensor(int type) {
+		return defaults.containsKey(type);
+	}
+
+	/**
+	 * ベンダー名の一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 変更できないベンダー名の一覧
+	 */
+	public Set<String> getVendors() {
+		return vendors;
+	}
+
+	/**
+	 * ベンダーのセンサーの仕様の一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param vendor ベンダー名
+	 * @return センサーの仕様の一覧
+	 */
+	public List<SensorInfo> getSensorInfosByVendor(String vendor) {
+		List<SensorInfo> result = new ArrayList<SensorInfo>();
+		for (SensorInfo info : infos) {
+			if (vendor == null ? info.getVendor() == null : vendor.equals(info.getVendor())) {
+				result.add(info);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * ハードウェアのバッチ処理をサポートしているセンサーの仕様の一覧を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return センサーの仕様の一覧
+	 */
+	public List<SensorInfo> getBatchingSensorInfos() {
+		List<SensorInfo> result = new ArrayList<SensorInfo>();
+		for (SensorInfo info : infos) {
+			if (info.isBatchingSupported()) {
+				result.add(info);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,230 @@
+package net.kokohadoko.instil.android.hardware;
+
+import android.annotation.TargetApi;
+import android.hardware.Sensor;
+import android.os.Build;
+
+/**
+ * センサーの仕様
+ * 
+ * <p>
+ * {@link Sensor} から取得した値を保持する不変のオブジェクト．
+ * APIレベルが低く取得できない値は0になる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class SensorInfo {
+
+	/** Sensor */
+	private final Sensor sensor;
+	/** センサー名 */
+	private final String name;
+	/** ベンダー名 */
+	private final String vendor;
+	/** センサー種別 */
+	private final int type;
+	/** バージョン */
+	private final int version;
+	/** 分解能 */
+	private final float resolution;
+	/** 最大値 */
+	private final float maximumRange;
+	/** 消費電流のmA */
+	private final float power;
+	/** 最小のサンプリング間隔のマイクロ秒 */
+	private final int minDelay;
+	/** FIFOに予約されたイベント数 */
+	private final int fifoReservedEventCount;
+	/** FIFOに格納できる最大のイベント数 */
+	private final int fifoMaxEventCount;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param sensor Sensor
+	 */
+	SensorInfo(Sensor sensor) {
+		this.sensor = sensor;
+		this.name = sensor.getName();
+		this.vendor = sensor.getVendor();
+		this.type = sensor.getType();
+		this.version = sensor.getVersion();
+		this.resolution = sensor.getResolution();
+		this.maximumRange = sensor.getMaximumRange();
+		this.power = sensor.getPower();
+		this.minDelay = Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD ? getMinDelay(sensor) : 0;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			this.fifoReservedEventCount = getFifoReservedEventCount(sensor);
+			this.fifoMaxEventCount = getFifoMaxEventCount(sensor);
+		} else {
+			this.fifoReservedEventCount = 0;
+			this.fifoMaxEventCount = 0;
+		}
+	}
+
+	/**
+	 * 最小のサンプリング間隔を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param sensor Sensor
+	 * @return マイクロ秒
+	 */
+	@TargetApi(Build.VERSION_CODES.GINGERBREAD)
+	private static int getMinDelay(Sensor sensor) {
+		return sensor.getMinDelay();
+	}
+
+	/**
+	 * FIFOに予約されたイベント数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param sensor Sensor
+	 * @return イベント数
+	 */
+	@TargetApi(Build.VERSION_CODES.KITKAT)
+	private static int getFifoReservedEventCount(Sensor sensor) {
+		return sensor.getFifoReservedEventCount();
+	}
+
+	/**
+	 * FIFOに格納できる最大のイベント数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param sensor Sensor
+	 * @return イベント数
+	 */
+	@TargetApi(Build.VERSION_CODES.KITKAT)
+	private static int getFifoMaxEventCount(Sensor sensor) {
+		return sensor.getFifoMaxEventCount();
+	}
+
+	/**
+	 * Sensorを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return Sensor
+	 */
+	public Sensor getSensor() {
+		return sensor;
+	}
+
+	/**
+	 * センサー名を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return センサー名
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * ベンダー名を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return ベンダー名
+	 */
+	public String getVendor() {
+		return vendor;
+	}
+
+	/**
+	 * センサー種別を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return センサー種別
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * バージョンを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return バージョン
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * 分解能を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 分解能
+	 */
+	public float getResolution() {
+		return resolution;
+	}
+
+	/**
+	 * 最大値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 最大値
+	 */
+	public float getMaximumRange() {
+		return maximumRange;
+	}
+
+	/**
+	 * 消費電流を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return mA
+	 */
+	public float getPower() {
+		return power;
+	}
+
+	/**
+	 * 最小のサンプリング間隔を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return マイクロ秒, 値が変化した場合にのみ通知するセンサーの場合は 0を返す
+	 */
+	public int getMinDelay() {
+		return minDelay;
+	}
+
+	/**
+	 * FIFOに予約されたイベント数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return イベント数
+	 */
+	public int getFifoReservedEventCount() {
+		return fifoReservedEventCount;
+	}
+
+	/**
+	 * FIFOに格納できる最大のイベント数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return イベント数, FIFOがない場合は 0を返す
+	 */
+	public int getFifoMaxEventCount() {
+		return fifoMaxEventCount;
+	}
+
+	/**
+	 * ハードウェアのバッチ処理をサポートしているかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return サポートしている場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isBatchingSupported() {
+		return fifoMaxEventCount > 0;
+	}
+
+	@Override
+	public String toString() {
+		return "SensorInfo[name=" + name + ", vendor=" + vendor + ", type=" + type
+				+ ", resolution=" + resolution + ", maximumRange=" + maximumRange
+				+ ", minDelay=" + minDelay + ", fifo=" + fifoReservedEventCount + "/" + fifoMaxEventCount + "]";
+	}
+}
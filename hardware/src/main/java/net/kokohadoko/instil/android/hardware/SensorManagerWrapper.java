@@ -5,12 +5,19 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
+import net.kokohadoko.instil.android.hardware.orientation.Axis;
+import net.kokohadoko.instil.android.hardware.orientation.CoordinateRemap;
+import net.kokohadoko.instil.android.hardware.orientation.Orientation;
+import net.kokohadoko.instil.android.hardware.orientation.OrientationComputer;
+import net.kokohadoko.instil.android.hardware.stream.SensorStream;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.hardware.Sensor;
+import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Build;
+import android.os.Handler;
 
 /**
  * SensorManagerラッパークラス
@@ -119,24 +126,42 @@ public class SensorManagerWrapper {
 	/**
 	 * SensorManagerを取得する
 	 * 
+	 * <p>
+	 * 機能の問い合わせは {@link SensorCatalog} の生成時に1回だけ行う．
+	 * </p>
+	 * 
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return SensorManager
 	 * @throws Exception 端末がSensorManagerをサポートしていない場合に例外が生成される
 	 */
 	public static SensorManager getSensorManager(Context context) throws Exception {
+		SensorCatalog catalog = getSensorCatalog(context);
+		if (!catalog.hasAnyFeature() || catalog.getSensorManager() == null) {
+			throw new Exception("端末がセンサーをサポートしていません．");
+		}
+
+		return catalog.getSensorManager();
+	}
+
+	/**
+	 * センサーの機能と仕様の一覧を取得する
+	 * 
+	 * <p>
+	 * 一覧は最初の呼び出しで生成し，以降は同じインスタンスを返す．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return SensorCatalog
+	 * @throws Exception contextがnullの場合に例外が生成される
+	 */
+	public static SensorCatalog getSensorCatalog(Context context) throws Exception {
+		if (context == null) {
+			throw new Exception("contextがnullです．");
+		}
 
-		if (hasSystemFeatureAccelerometer(context)
-		 || hasSystemFeatureBarometer(context)
-		 || hasSystemFeatureCompass(context)
-		 || hasSystemFeatureGyroscope(context)
-		 || hasSystemFeatureLight(context)
-		 || hasSystemFeatureProximity(context)) {
-			SensorManager manager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
-			return manager;
-		 } else {
-			 throw new Exception("端末がセンサーをサポートしていません．");
-		 }
+		return SensorCatalog.getInstance(context);
 	}
 
 	/**
@@ -148,8 +173,26 @@ public class SensorManagerWrapper {
 	 * @throws Exception 
 	 */
 	public static List<Sensor> getSensorList(Context context) throws Exception {
-		SensorManager manager = getSensorManager(context);
-		return getSensorList(manager);
+		return getSensorList(context, Sensor.TYPE_ALL);
+	}
+
+	/**
+	 * 実装されているセンサー一覧を取得する
+	 * 
+	 * <p>
+	 * {@link SensorCatalog} に保持している一覧の複製を返す．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param type SensorType
+	 * @return Sensor
+	 * @throws Exception 端末がSensorManagerをサポートしていない場合に例外が生成される
+	 */
+	public static List<Sensor> getSensorList(Context context, int type) throws Exception {
+		getSensorManager(context);
+		// 呼び出し側で変更できるように，共有している変更不可の一覧を複製して返す
+		return new ArrayList<Sensor>(getSensorCatalog(context).getSensors(type));
 	}
 
 	/**
@@ -190,8 +233,25 @@ public class SensorManagerWrapper {
 	 * @throws Exception managerがnullの場合に例外が生成される
 	 */
 	public static List<String> getSensorNameList(Context context) throws Exception {
-		SensorManager manager = getSensorManager(context);
-		return getSensorNameList(manager);
+		return getSensorNameList(context, Sensor.TYPE_ALL);
+	}
+
+	/**
+	 * 実装されているセンサー名一覧を取得する
+	 * 
+	 * <p>
+	 * {@link SensorCatalog} に保持している一覧の複製を返す．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param type SensorType
+	 * @return 実装されているセンサー名一覧
+	 * @throws Exception 端末がSensorManagerをサポートしていない場合に例外が生成される
+	 */
+	public static List<String> getSensorNameList(Context context, int type) throws Exception {
+		getSensorManager(context);
+		return new ArrayList<String>(getSensorCatalog(context).getSensorNames(type));
 	}
 
 	/**
@@ -224,6 +284,108 @@ public class SensorManagerWrapper {
 		return names;
 	}
 
+	/**
+	 * センサーがハードウェアのFIFOによるバッチ処理をサポートしているかを調べる
+	 * 
+	 * @since 0.0.1
+	 * @param sensor Sensor
+	 * @return サポートしている場合に true, そうでない場合に false を返す
+	 */
+	public static boolean isBatchingSupported(Sensor sensor) {
+		if (sensor == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+			return false;
+		}
+
+		return getFifoMaxEventCount(sensor) > 0;
+	}
+
+	/**
+	 * FIFOに格納できる最大のイベント数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param sensor Sensor
+	 * @return イベント数
+	 */
+	@TargetApi(Build.VERSION_CODES.KITKAT)
+	private static int getFifoMaxEventCount(Sensor sensor) {
+		return sensor.getFifoMaxEventCount();
+	}
+
+	/**
+	 * 報告の最大遅延時間を指定してリスナーを登録する
+	 * 
+	 * <p>
+	 * センサーがハードウェアのFIFOをサポートしている場合は，イベントをFIFOに溜めて最大遅延時間ごとにまとめて通知させる．
+	 * サポートしていない場合は最大遅延時間を指定せずに登録する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param manager SensorManager
+	 * @param listener リスナー
+	 * @param sensor Sensor
+	 * @param rate サンプリング間隔
+	 * @param maxReportLatencyUs 報告の最大遅延時間のマイクロ秒．0の場合はバッチ処理を行わない
+	 * @param handler イベントを受信するHandler
+	 * @return 登録できた場合に true, そうでない場合に false を返す
+	 * @throws Exception 引数がnullの場合に例外が生成される
+	 */
+	@TargetApi(Build.VERSION_CODES.KITKAT)
+	public static boolean registerListener(SensorManager manager, SensorEventListener listener, Sensor sensor,
+			int rate, int maxReportLatencyUs, Handler handler) throws Exception {
+		if (manager == null) {
+			throw new Exception("managerがnullです．");
+		}
+		if (listener == null) {
+			throw new Exception("listenerがnullです．");
+		}
+		if (sensor == null) {
+			throw new Exception("sensorがnullです．");
+		}
+
+		if (maxReportLatencyUs > 0 && isBatchingSupported(sensor)) {
+			return manager.registerListener(listener, sensor, rate, maxReportLatencyUs, handler);
+		}
+		return manager.registerListener(listener, sensor, rate, handler);
+	}
+
+	/**
+	 * FIFOに溜まっているイベントを直ちに通知させる
+	 * 
+	 * @since 0.0.1
+	 * @param manager SensorManager
+	 * @param listener リスナー
+	 * @return 要求できた場合に true, バッチ処理をサポートしていない場合などに false を返す
+	 * @throws Exception 引数がnullの場合に例外が生成される
+	 */
+	@TargetApi(Build.VERSION_CODES.KITKAT)
+	public static boolean flush(SensorManager manager, SensorEventListener listener) throws Exception {
+		if (manager == null) {
+			throw new Exception("managerがnullです．");
+		}
+		if (listener == null) {
+			throw new Exception("listenerがnullです．");
+		}
+
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+			return false;
+		}
+		return manager.flush(listener);
+	}
+
+	/**
+	 * センサーの値を専用のスレッドで受信するパイプラインを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @param capacity リングバッファの容量
+	 * @return SensorStream
+	 * @throws Exception 端末がSensorManagerをサポートしていない場合に例外が生成される
+	 */
+	public static SensorStream createSensorStream(Context context, int capacity) throws Exception {
+		SensorManager manager = getSensorManager(context);
+		return new SensorStream(manager, capacity);
+	}
+
 	/**
 	 * 地磁気・加速度センサーの方位角・傾斜角・回転角を取得する
 	 * 
@@ -232,23 +394,14 @@ public class SensorManagerWrapper {
 	 * @param y Y軸
 	 * @return 方位角・傾斜角・回転角
 	 * @throws Exception 方位角・傾斜角・回転角が取得できない場合に例外が生成される
+	 * @deprecated 加速度・地磁気の値を受け取らないため，常に0を返す．
+	 *             {@link #getOrientation(int, int, float[], float[], Orientation)} を使用すること
 	 */
+	@Deprecated
 	public static HashMap<String, Float> getAxisOfAccerometer(int x, int y) throws Exception {
-		String[] key = new String[] {
-				AZIMUTH_ANGLE,
-				INCLINED_ANGLE,
-				ROTATION_ANGLE
-		};
-		float[] value = getAttributes(x, y);
-		if (value.length == 3) {
-			HashMap<String, Float> map = new HashMap<String, Float>();
-			for (int i = 0; i < 3; i++) {
-				map.put(key[i], value[i]);
-			}
-			return map;
-		} else {
-			throw new Exception("方位角・傾斜角・回転角が取得できませんでした．");
-		}
+		Orientation orientation = new Orientation();
+		orientation.set(getAttributes(x, y));
+		return toMap(orientation);
 	}
 
 	/**
@@ -259,23 +412,61 @@ public class SensorManagerWrapper {
 	 * @param y Y軸
 	 * @return 方位角・傾斜角・回転角
 	 * @throws Exception 方位角・傾斜角・回転角が取得できない場合に例外が生成される
+	 * @deprecated ジャイロスコープの値を使用せず，常に0を返す．
+	 *             ジャイロスコープを使用する場合は {@link net.kokohadoko.instil.android.hardware.fusion.SensorFusion} を使用すること
 	 */
+	@Deprecated
 	public static HashMap<String, Float> getAxisOfGyroscope(int x, int y) throws Exception {
-		String[] key = new String[] {
-				AZIMUTH_ANGLE,
-				INCLINED_ANGLE,
-				ROTATION_ANGLE
-		};
-		float[] value = getAttributes(x, y);
-		if (value.length == 3) {
-			HashMap<String, Float> map = new HashMap<String, Float>();
-			for (int i = 0; i < 3; i++) {
-				map.put(key[i], value[i]);
-			}
-			return map;
-		} else {
+		Orientation orientation = new Orientation();
+		orientation.set(getAttributes(x, y));
+		return toMap(orientation);
+	}
+
+	/**
+	 * 加速度・地磁気の値から方位角・傾斜角・回転角を取得する
+	 * 
+	 * <p>
+	 * 呼び出しごとに計算用の領域を確保するため，センサーの値を受信するたびに計算する場合は
+	 * {@link OrientationComputer#compute(Orientation)} を使用すること．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param x X軸
+	 * @param y Y軸
+	 * @param gravity 加速度センサーの値
+	 * @param geomagnetic 地磁気センサーの値
+	 * @param out 方位角・傾斜角・回転角の出力先
+	 * @return 引数のout
+	 * @throws Exception 引数の値が不正な場合・方位角・傾斜角・回転角が取得できない場合に例外が生成される
+	 */
+	public static Orientation getOrientation(int x, int y, float[] gravity, float[] geomagnetic, Orientation out) throws Exception {
+		if (out == null) {
+			throw new Exception("outがnullです．");
+		}
+
+		OrientationComputer computer = new OrientationComputer(x, y);
+		computer.setAccelerometer(gravity);
+		computer.setMagnetometer(geomagnetic);
+		if (!computer.compute(out)) {
 			throw new Exception("方位角・傾斜角・回転角が取得できませんでした．");
 		}
+
+		return out;
+	}
+
+	/**
+	 * 方位角・傾斜角・回転角をマップに変換する
+	 * 
+	 * @since 0.0.1
+	 * @param orientation 方位角・傾斜角・回転角
+	 * @return {@link #AZIMUTH_ANGLE}・{@link #INCLINED_ANGLE}・{@link #ROTATION_ANGLE} をキーとするマップ
+	 */
+	public static HashMap<String, Float> toMap(Orientation orientation) {
+		HashMap<String, Float> map = new HashMap<String, Float>();
+		map.put(AZIMUTH_ANGLE, orientation.getAzimuth());
+		map.put(INCLINED_ANGLE, orientation.getPitch());
+		map.put(ROTATION_ANGLE, orientation.getRoll());
+		return map;
 	}
 
 	/**
@@ -286,38 +477,70 @@ public class SensorManagerWrapper {
 	 * @param y Y軸
 	 * @return 方位角・傾斜角・回転角
 	 * @throws Exception 引数の値が不正な場合に例外が生成される
+	 * @deprecated 加速度・地磁気の値を受け取らないため，常に0を返す．
+	 *             {@link #getAttributes(int, int, float[], float[])} または {@link OrientationComputer} を使用すること
 	 */
+	@Deprecated
 	public static float[] getAttributes(int x, int y) throws Exception {
+		// 軸の検証のみを行う
+		CoordinateRemap.of(x, y);
+		return new float[AXIS_NUM];
+	}
 
-		if (x != SensorManager.AXIS_X
-		 && x != SensorManager.AXIS_Y
-		 && x != SensorManager.AXIS_Z
-		 && x != SensorManager.AXIS_MINUS_X
-		 && x != SensorManager.AXIS_MINUS_Y
-		 && x != SensorManager.AXIS_MINUS_Z) {
-			throw new Exception("xが不正な値です．");
-		}
+	/**
+	 * 加速度・地磁気の値から方位角・傾斜角・回転角を取得する
+	 * 
+	 * <p>
+	 * 呼び出しごとに計算用の領域を確保するため，センサーの値を受信するたびに計算する場合は
+	 * {@link OrientationComputer} を使い回すこと．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param x X軸
+	 * @param y Y軸
+	 * @param gravity 加速度センサーの値
+	 * @param geomagnetic 地磁気センサーの値
+	 * @return 方位角・傾斜角・回転角
+	 * @throws Exception 引数の値が不正な場合・方位角・傾斜角・回転角が取得できない場合に例外が生成される
+	 */
+	public static float[] getAttributes(int x, int y, float[] gravity, float[] geomagnetic) throws Exception {
+		return getAttributes(CoordinateRemap.of(x, y), gravity, geomagnetic);
+	}
 
-		if (y != SensorManager.AXIS_X
-		 && y != SensorManager.AXIS_Y
-		 && y != SensorManager.AXIS_Z
-		 && y != SensorManager.AXIS_MINUS_X
-		 && y != SensorManager.AXIS_MINUS_Y
-		 && y != SensorManager.AXIS_MINUS_Z) {
-			throw new Exception("yが不正な値です．");
-		}
+	/**
+	 * 加速度・地磁気の値から方位角・傾斜角・回転角を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param x X軸
+	 * @param y Y軸
+	 * @param gravity 加速度センサーの値
+	 * @param geomagnetic 地磁気センサーの値
+	 * @return 方位角・傾斜角・回転角
+	 * @throws Exception 引数の値が不正な場合・方位角・傾斜角・回転角が取得できない場合に例外が生成される
+	 */
+	public static float[] getAttributes(Axis x, Axis y, float[] gravity, float[] geomagnetic) throws Exception {
+		return getAttributes(CoordinateRemap.of(x, y), gravity, geomagnetic);
+	}
 
-		float[] inR = new float[MATRIX_SIZE];
-		float[] outR = new float[MATRIX_SIZE];
-		float[] I = new float[MATRIX_SIZE];
-		float[] gravity = new float[AXIS_NUM];
-		float[] geomagnetic = new float[AXIS_NUM];
-		float[] attribute = new float[AXIS_NUM];
+	/**
+	 * 加速度・地磁気の値から方位角・傾斜角・回転角を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param remap 座標系の変換
+	 * @param gravity 加速度センサーの値
+	 * @param geomagnetic 地磁気センサーの値
+	 * @return 方位角・傾斜角・回転角
+	 * @throws Exception 引数の値が不正な場合・方位角・傾斜角・回転角が取得できない場合に例外が生成される
+	 */
+	public static float[] getAttributes(CoordinateRemap remap, float[] gravity, float[] geomagnetic) throws Exception {
+		OrientationComputer computer = new OrientationComputer(remap);
+		computer.setAccelerometer(gravity);
+		computer.setMagnetometer(geomagnetic);
 
-		// 回転行列の計算
-		SensorManager.getRotationMatrix(inR, I, gravity, geomagnetic);
-		SensorManager.remapCoordinateSystem(inR, x, y, outR);
-		SensorManager.getOrientation(outR, attribute);
+		float[] attribute = new float[AXIS_NUM];
+		if (!computer.compute(attribute)) {
+			throw new Exception("方位角・傾斜角・回転角が取得できませんでした．");
+		}
 
 		return attribute;
 	}
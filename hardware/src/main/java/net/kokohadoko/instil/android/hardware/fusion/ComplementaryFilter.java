@@ -0,0 +1,161 @@
+package net.kokohadoko.instil.android.hardware.fusion;
+
+/**
+ * 相補フィルタによる姿勢推定フィルタ
+ * 
+ * <p>
+ * ジャイロスコープの値で積分した姿勢を，加速度から求めた傾きと地磁気から求めた方位に向けて
+ * 1件ごとに一定の割合だけ回転させる．短い時間ではジャイロスコープ，長い時間では加速度・地磁気に従う．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class ComplementaryFilter extends FusionFilter {
+
+	/** デフォルトの傾きの補正の割合 */
+	public static final float DEFAULT_TILT_GAIN = 0.02f;
+	/** デフォルトの方位の補正の割合 */
+	public static final float DEFAULT_HEADING_GAIN = 0.01f;
+
+	/** 傾きの補正の割合 */
+	private float tiltGain;
+	/** 方位の補正の割合 */
+	private float headingGain;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	public ComplementaryFilter() {
+		this(DEFAULT_TILT_GAIN, DEFAULT_HEADING_GAIN);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param tiltGain 傾きの補正の割合
+	 * @param headingGain 方位の補正の割合
+	 */
+	public ComplementaryFilter(float tiltGain, float headingGain) {
+		setGains(tiltGain, headingGain);
+	}
+
+	/**
+	 * 補正の割合を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param tiltGain 1件あたりの傾きの補正の割合．0から1の値
+	 * @param headingGain 1件あたりの方位の補正の割合．0から1の値
+	 */
+	public void setGains(float tiltGain, float headingGain) {
+		if (tiltGain < 0.0f || tiltGain > 1.0f) {
+			throw new IllegalArgumentException("tiltGainが不正な値です．");
+		}
+		if (headingGain < 0.0f || headingGain > 1.0f) {
+			throw new IllegalArgumentException("headingGainが不正な値です．");
+		}
+
+		this.tiltGain = tiltGain;
+		this.headingGain = headingGain;
+	}
+
+	/**
+	 * 傾きの補正の割合を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 傾きの補正の割合
+	 */
+	public float getTiltGain() {
+		return tiltGain;
+	}
+
+	/**
+	 * 方位の補正の割合を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 方位の補正の割合
+	 */
+	public float getHeadingGain() {
+		return headingGain;
+	}
+
+	@Override
+	public void update(float gx, float gy, float gz, float ax, float ay, float az,
+			float mx, float my, float mz, float dt) {
+		updateImu(gx, gy, gz, ax, ay, az, dt);
+		if (mx == 0.0f && my == 0.0f && mz == 0.0f) {
+			return;
+		}
+
+		// 地磁気を地球の座標系に変換し，水平成分が北を向くようにZ軸回りに回転させる
+		float hx = 2.0f * (mx * (0.5f - q2 * q2 - q3 * q3) + my * (q1 * q2 - q0 * q3) + mz * (q1 * q3 + q0 * q2));
+		float hy = 2.0f * (mx * (q1 * q2 + q0 * q3) + my * (0.5f - q1 * q1 - q3 * q3) + mz * (q2 * q3 - q0 * q1));
+		if (hx == 0.0f && hy == 0.0f) {
+			return;
+		}
+
+		float half = -0.5f * headingGain * (float) Math.atan2(hy, hx);
+		float c = (float) Math.cos(half);
+		float s = (float) Math.sin(half);
+		rotateWorld(c, 0.0f, 0.0f, s);
+	}
+
+	@Override
+	public void updateImu(float gx, float gy, float gz, float ax, float ay, float az, float dt) {
+		float half = 0.5f * dt;
+		integrate(gx * half, gy * half, gz * half);
+		normalize();
+
+		float normA = ax * ax + ay * ay + az * az;
+		if (normA == 0.0f) {
+			return;
+		}
+
+		// 加速度を地球の座標系に変換し，真上を向くように回転させる
+		float inv = 1.0f / (float) Math.sqrt(normA);
+		ax *= inv;
+		ay *= inv;
+		az *= inv;
+		float ux = 2.0f * (ax * (0.5f - q2 * q2 - q3 * q3) + ay * (q1 * q2 - q0 * q3) + az * (q1 * q3 + q0 * q2));
+		float uy = 2.0f * (ax * (q1 * q2 + q0 * q3) + ay * (0.5f - q1 * q1 - q3 * q3) + az * (q2 * q3 - q0 * q1));
+		float uz = 2.0f * (ax * (q1 * q3 - q0 * q2) + ay * (q2 * q3 + q0 * q1) + az * (0.5f - q1 * q1 - q2 * q2));
+
+		// (ux, uy, uz) を (0, 0, 1) に向ける回転を補正の割合だけ適用する
+		float w = 1.0f + uz;
+		float x = uy;
+		float y = -ux;
+		float norm = (float) Math.sqrt(w * w + x * x + y * y);
+		if (norm == 0.0f) {
+			return;
+		}
+		w = (1.0f - tiltGain) + tiltGain * w / norm;
+		x = tiltGain * x / norm;
+		y = tiltGain * y / norm;
+		norm = (float) Math.sqrt(w * w + x * x + y * y);
+		rotateWorld(w / norm, x / norm, y / norm, 0.0f);
+	}
+
+	/**
+	 * 地球の座標系で回転させる
+	 * 
+	 * @since 0.0.1
+	 * @param w 回転を表すクォータニオンの実部
+	 * @param x 回転を表すクォータニオンのX成分
+	 * @param y 回転を表すクォータニオンのY成分
+	 * @param z 回転を表すクォータニオンのZ成分
+	 */
+	private void rotateWorld(float w, float x, float y, float z) {
+		float a = q0;
+		float b = q1;
+		float c = q2;
+		float d = q3;
+		q0 = w * a - x * b - y * c - z * d;
+		q1 = w * b + x * a + y * d - z * c;
+		q2 = w * c - x * d + y * a + z * b;
+		q3 = w * d + x * c - y * b + z * a;
+		normalize();
+	}
+}
@@ -0,0 +1,321 @@
+package net.kokohadoko.instil.android.hardware.fusion;
+
+import net.kokohadoko.instil.android.hardware.orientation.Orientation;
+
+/**
+ * ジャイロスコープ・加速度センサー・地磁気センサーの値から姿勢を推定するフィルタ
+ * 
+ * <p>
+ * 姿勢は端末の座標系から地球の座標系 (X軸が北，Z軸が上) への回転を表すクォータニオンで保持する．
+ * 1件あたりの更新は一定の計算量で，オブジェクトを生成しない．
+ * スレッドセーフではないため，1つのスレッドから使用すること．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public abstract class FusionFilter {
+
+	/** クォータニオンの実部 */
+	protected float q0 = 1.0f;
+	/** クォータニオンのX成分 */
+	protected float q1;
+	/** クォータニオンのY成分 */
+	protected float q2;
+	/** クォータニオンのZ成分 */
+	protected float q3;
+
+	/**
+	 * ジャイロスコープ・加速度センサー・地磁気センサーの値で姿勢を更新する
+	 * 
+	 * <p>
+	 * 地磁気センサーの値が全て0の場合は {@link #updateImu(float, float, float, float, float, float, float)} と同じ処理を行う．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param gx ジャイロスコープのX軸の値 (rad/s)
+	 * @param gy ジャイロスコープのY軸の値 (rad/s)
+	 * @param gz ジャイロスコープのZ軸の値 (rad/s)
+	 * @param ax 加速度センサーのX軸の値
+	 * @param ay 加速度センサーのY軸の値
+	 * @param az 加速度センサーのZ軸の値
+	 * @param mx 地磁気センサーのX軸の値
+	 * @param my 地磁気センサーのY軸の値
+	 * @param mz 地磁気センサーのZ軸の値
+	 * @param dt 前回の更新からの秒数
+	 */
+	public abstract void update(float gx, float gy, float gz, float ax, float ay, float az,
+			float mx, float my, float mz, float dt);
+
+	/**
+	 * ジャイロスコープ・加速度センサーの値で姿勢を更新する
+	 * 
+	 * <p>
+	 * 方位角は補正されないため，時間とともにずれる．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param gx ジャイロスコープのX軸の値 (rad/s)
+	 * @param gy ジャイロスコープのY軸の値 (rad/s)
+	 * @param gz ジャイロスコープのZ軸の値 (rad/s)
+	 * @param ax 加速度センサーのX軸の値
+	 * @param ay 加速度センサーのY軸の値
+	 * @param az 加速度センサーのZ軸の値
+	 * @param dt 前回の更新からの秒数
+	 */
+	public abstract void updateImu(float gx, float gy, float gz, float ax, float ay, float az, float dt);
+
+	/**
+	 * 姿勢を初期状態に戻す
+	 * 
+	 * @since 0.0.1
+	 */
+	public void reset() {
+		q0 = 1.0f;
+		q1 = 0.0f;
+		q2 = 0.0f;
+		q3 = 0.0f;
+	}
+
+	/**
+	 * 加速度センサー・地磁気センサーの値から姿勢を初期化する
+	 * 
+	 * <p>
+	 * 初期状態から収束するまでの時間を省くために，最初の値を受け取った時点で呼び出す．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param ax 加速度センサーのX軸の値
+	 * @param ay 加速度センサーのY軸の値
+	 * @param az 加速度センサーのZ軸の値
+	 * @param mx 地磁気センサーのX軸の値
+	 * @param my 地磁気センサーのY軸の値
+	 * @param mz 地磁気センサーのZ軸の値
+	 * @return 初期化した場合に true, 自由落下中などで計算できない場合に falseを返す
+	 */
+	public boolean initialize(float ax, float ay, float az, float mx, float my, float mz) {
+		float normA = (float) Math.sqrt(ax * ax + ay * ay + az * az);
+		if (normA == 0.0f) {
+			return false;
+		}
+		ax /= normA;
+		ay /= normA;
+		az /= normA;
+
+		// 西 = 上 × 磁場，北 = 西 × 上
+		float wx = ay * mz - az * my;
+		float wy = az * mx - ax * mz;
+		float wz = ax * my - ay * mx;
+		float normW = (float) Math.sqrt(wx * wx + wy * wy + wz * wz);
+		if (normW == 0.0f) {
+			return false;
+		}
+		wx /= normW;
+		wy /= normW;
+		wz /= normW;
+		float nx = wy * az - wz * ay;
+		float ny = wz * ax - wx * az;
+		float nz = wx * ay - wy * ax;
+
+		// 行が北・西・上の回転行列からクォータニオンを求める
+		float trace = nx + wy + az;
+		if (trace > 0.0f) {
+			float s = 0.5f / (float) Math.sqrt(trace + 1.0f);
+			q0 = 0.25f / s;
+			q1 = (ay - wz) * s;
+			q2 = (nz - ax) * s;
+			q3 = (wx - ny) * s;
+		} else if (nx > wy && nx > az) {
+			float s = 2.0f * (float) Math.sqrt(1.0f + nx - wy - az);
+			q0 = (ay - wz) / s;
+			q1 = 0.25f * s;
+			q2 = (ny + wx) / s;
+			q3 = (nz + ax) / s;
+		} else if (wy > az) {
+			float s = 2.0f * (float) Math.sqrt(1.0f + wy - nx - az);
+			q0 = (nz - ax) / s;
+			q1 = (ny + wx) / s;
+			q2 = 0.25f * s;
+			q3 = (wz + ay) / s;
+		} else {
+			float s = 2.0f * (float) Math.sqrt(1.0f + az - nx - wy);
+			q0 = (wx - ny) / s;
+			q1 = (nz + ax) / s;
+			q2 = (wz + ay) / s;
+			q3 = 0.25f * s;
+		}
+		normalize();
+		return true;
+	}
+
+	/**
+	 * クォータニオンを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param out w・x・y・zの順の出力先．長さが4以上であること
+	 */
+	public void getQuaternion(float[] out) {
+		if (out == null || out.length < 4) {
+			throw new IllegalArgumentException("outが不正な値です．");
+		}
+
+		out[0] = q0;
+		out[1] = q1;
+		out[2] = q2;
+		out[3] = q3;
+	}
+
+	/**
+	 * クォータニオンを設定する
+	 * 
+	 * @since 0.0.1
+	 * @param w 実部
+	 * @param x X成分
+	 * @param y Y成分
+	 * @param z Z成分
+	 */
+	public void setQuaternion(float w, float x, float y, float z) {
+		q0 = w;
+		q1 = x;
+		q2 = y;
+		q3 = z;
+		normalize();
+	}
+
+	/**
+	 * 方位角・傾斜角・回転角を取得する
+	 * 
+	 * <p>
+	 * 値は {@link android.hardware.SensorManager#getOrientation(float[], float[])} と同じ定義になる．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param out 方位角・傾斜角・回転角のラジアンの出力先．長さが3以上であること
+	 */
+	public void getOrientation(float[] out) {
+		if (out == null || out.length < 3) {
+			throw new IllegalArgumentException("outが不正な値です．");
+		}
+
+		out[0] = azimuth(q0, q1, q2, q3);
+		out[1] = pitch(q0, q1, q2, q3);
+		out[2] = roll(q0, q1, q2, q3);
+	}
+
+	/**
+	 * 方位角・傾斜角・回転角を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param out 方位角・傾斜角・回転角の出力先
+	 */
+	public void getOrientation(Orientation out) {
+		if (out == null) {
+			throw new IllegalArgumentException("outがnullです．");
+		}
+
+		out.set(azimuth(q0, q1, q2, q3), pitch(q0, q1, q2, q3), roll(q0, q1, q2, q3));
+	}
+
+	/**
+	 * クォータニオンから方位角・傾斜角・回転角を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param w 実部
+	 * @param x X成分
+	 * @param y Y成分
+	 * @param z Z成分
+	 * @param out 方位角・傾斜角・回転角の出力先
+	 */
+	public static void getOrientation(float w, float x, float y, float z, Orientation out) {
+		if (out == null) {
+			throw new IllegalArgumentException("outがnullです．");
+		}
+
+		out.set(azimuth(w, x, y, z), pitch(w, x, y, z), roll(w, x, y, z));
+	}
+
+	/**
+	 * 方位角を計算する
+	 * 
+	 * @since 0.0.1
+	 * @param w 実部
+	 * @param x X成分
+	 * @param y Y成分
+	 * @param z Z成分
+	 * @return 方位角
+	 */
+	private static float azimuth(float w, float x, float y, float z) {
+		// 東・北・上の座標系に変換した回転行列の要素から求める
+		float r01 = 2.0f * (x * y - w * z);
+		float r11 = 1.0f - 2.0f * (x * x + z * z);
+		return (float) Math.atan2(-r11, r01);
+	}
+
+	/**
+	 * 傾斜角を計算する
+	 * 
+	 * @since 0.0.1
+	 * @param w 実部
+	 * @param x X成分
+	 * @param y Y成分
+	 * @param z Z成分
+	 * @return 傾斜角
+	 */
+	private static float pitch(float w, float x, float y, float z) {
+		float r21 = 2.0f * (y * z + w * x);
+		return (float) Math.asin(Math.max(-1.0f, Math.min(1.0f, -r21)));
+	}
+
+	/**
+	 * 回転角を計算する
+	 * 
+	 * @since 0.0.1
+	 * @param w 実部
+	 * @param x X成分
+	 * @param y Y成分
+	 * @param z Z成分
+	 * @return 回転角
+	 */
+	private static float roll(float w, float x, float y, float z) {
+		float r20 = 2.0f * (x * z - w * y);
+		float r22 = 1.0f - 2.0f * (x * x + y * y);
+		return (float) Math.atan2(-r20, r22);
+	}
+
+	/**
+	 * ジャイロスコープの値でクォータニオンを積分する
+	 * 
+	 * @since 0.0.1
+	 * @param gx ジャイロスコープのX軸の値に dt/2 を掛けた値
+	 * @param gy ジャイロスコープのY軸の値に dt/2 を掛けた値
+	 * @param gz ジャイロスコープのZ軸の値に dt/2 を掛けた値
+	 */
+	protected void integrate(float gx, float gy, float gz) {
+		float qa = q0;
+		float qb = q1;
+		float qc = q2;
+		q0 += -qb * gx - qc * gy - q3 * gz;
+		q1 += qa * gx + qc * gz - q3 * gy;
+		q2 += qa * gy - qb * gz + q3 * gx;
+		q3 += qa * gz + qb * gy - qc * gx;
+	}
+
+	/**
+	 * クォータニオンを正規化する
+	 * 
+	 * @since 0.0.1
+	 */
+	protected void normalize() {
+		float norm = (float) Math.sqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+		if (norm == 0.0f) {
+			reset();
+			return;
+		}
+
+		float inv = 1.0f / norm;
+		q0 *= inv;
+		q1 *= inv;
+		q2 *= inv;
+		q3 *= inv;
+	}
+}
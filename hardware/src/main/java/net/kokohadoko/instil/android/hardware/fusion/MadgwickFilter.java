@@ -0,0 +1,185 @@
+package net.kokohadoko.instil.android.hardware.fusion;
+
+/**
+ * Madgwickの勾配降下法による姿勢推定フィルタ
+ * 
+ * <p>
+ * 加速度と地磁気から求めた誤差の勾配方向にクォータニオンを補正する．
+ * 補正の強さは {@link #setBeta(float)} で設定する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class MadgwickFilter extends FusionFilter {
+
+	/** デフォルトの補正の強さ */
+	public static final float DEFAULT_BETA = 0.1f;
+
+	/** 補正の強さ */
+	private float beta;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	public MadgwickFilter() {
+		this(DEFAULT_BETA);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param beta 補正の強さ
+	 */
+	public MadgwickFilter(float beta) {
+		setBeta(beta);
+	}
+
+	/**
+	 * 補正の強さを設定する
+	 * 
+	 * @since 0.0.1
+	 * @param beta 補正の強さ．大きいほど加速度・地磁気に早く追従し，ノイズの影響を受けやすくなる
+	 */
+	public void setBeta(float beta) {
+		if (beta < 0.0f) {
+			throw new IllegalArgumentException("betaが不正な値です．");
+		}
+
+		this.beta = beta;
+	}
+
+	/**
+	 * 補正の強さを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 補正の強さ
+	 */
+	public float getBeta() {
+		return beta;
+	}
+
+	@Override
+	public void update(float gx, float gy, float gz, float ax, float ay, float az,
+			float mx, float my, float mz, float dt) {
+		if (mx == 0.0f && my == 0.0f && mz == 0.0f) {
+			updateImu(gx, gy, gz, ax, ay, az, dt);
+			return;
+		}
+		float normA = ax * ax + ay * ay + az * az;
+		if (normA == 0.0f) {
+			integrate(0.5f * gx * dt, 0.5f * gy * dt, 0.5f * gz * dt);
+			normalize();
+			return;
+		}
+
+		float inv = invSqrt(normA);
+		ax *= inv;
+		ay *= inv;
+		az *= inv;
+		inv = invSqrt(mx * mx + my * my + mz * mz);
+		mx *= inv;
+		my *= inv;
+		mz *= inv;
+
+		// 地磁気を地球の座標系に変換し，水平成分と鉛直成分を基準とする
+		float hx = 2.0f * (mx * (0.5f - q2 * q2 - q3 * q3) + my * (q1 * q2 - q0 * q3) + mz * (q1 * q3 + q0 * q2));
+		float hy = 2.0f * (mx * (q1 * q2 + q0 * q3) + my * (0.5f - q1 * q1 - q3 * q3) + mz * (q2 * q3 - q0 * q1));
+		float bx = (float) Math.sqrt(hx * hx + hy * hy);
+		float bz = 2.0f * (mx * (q1 * q3 - q0 * q2) + my * (q2 * q3 + q0 * q1) + mz * (0.5f - q1 * q1 - q2 * q2));
+
+		// 目的関数
+		float fg0 = 2.0f * (q1 * q3 - q0 * q2) - ax;
+		float fg1 = 2.0f * (q0 * q1 + q2 * q3) - ay;
+		float fg2 = 2.0f * (0.5f - q1 * q1 - q2 * q2) - az;
+		float fb0 = 2.0f * bx * (0.5f - q2 * q2 - q3 * q3) + 2.0f * bz * (q1 * q3 - q0 * q2) - mx;
+		float fb1 = 2.0f * bx * (q1 * q2 - q0 * q3) + 2.0f * bz * (q0 * q1 + q2 * q3) - my;
+		float fb2 = 2.0f * bx * (q0 * q2 + q1 * q3) + 2.0f * bz * (0.5f - q1 * q1 - q2 * q2) - mz;
+
+		// ヤコビ行列の転置と目的関数の積
+		float s0 = -2.0f * q2 * fg0 + 2.0f * q1 * fg1
+				- 2.0f * bz * q2 * fb0 + (-2.0f * bx * q3 + 2.0f * bz * q1) * fb1 + 2.0f * bx * q2 * fb2;
+		float s1 = 2.0f * q3 * fg0 + 2.0f * q0 * fg1 - 4.0f * q1 * fg2
+				+ 2.0f * bz * q3 * fb0 + (2.0f * bx * q2 + 2.0f * bz * q0) * fb1 + (2.0f * bx * q3 - 4.0f * bz * q1) * fb2;
+		float s2 = -2.0f * q0 * fg0 + 2.0f * q3 * fg1 - 4.0f * q2 * fg2
+				+ (-4.0f * bx * q2 - 2.0f * bz * q0) * fb0 + (2.0f * bx * q1 + 2.0f * bz * q3) * fb1 + (2.0f * bx * q0 - 4.0f * bz * q2) * fb2;
+		float s3 = 2.0f * q1 * fg0 + 2.0f * q2 * fg1
+				+ (-4.0f * bx * q3 + 2.0f * bz * q1) * fb0 + (-2.0f * bx * q0 + 2.0f * bz * q2) * fb1 + 2.0f * bx * q1 * fb2;
+
+		step(gx, gy, gz, s0, s1, s2, s3, dt);
+	}
+
+	@Override
+	public void updateImu(float gx, float gy, float gz, float ax, float ay, float az, float dt) {
+		float normA = ax * ax + ay * ay + az * az;
+		if (normA == 0.0f) {
+			integrate(0.5f * gx * dt, 0.5f * gy * dt, 0.5f * gz * dt);
+			normalize();
+			return;
+		}
+
+		float inv = invSqrt(normA);
+		ax *= inv;
+		ay *= inv;
+		az *= inv;
+
+		float fg0 = 2.0f * (q1 * q3 - q0 * q2) - ax;
+		float fg1 = 2.0f * (q0 * q1 + q2 * q3) - ay;
+		float fg2 = 2.0f * (0.5f - q1 * q1 - q2 * q2) - az;
+
+		float s0 = -2.0f * q2 * fg0 + 2.0f * q1 * fg1;
+		float s1 = 2.0f * q3 * fg0 + 2.0f * q0 * fg1 - 4.0f * q1 * fg2;
+		float s2 = -2.0f * q0 * fg0 + 2.0f * q3 * fg1 - 4.0f * q2 * fg2;
+		float s3 = 2.0f * q1 * fg0 + 2.0f * q2 * fg1;
+
+		step(gx, gy, gz, s0, s1, s2, s3, dt);
+	}
+
+	/**
+	 * ジャイロスコープの値と勾配からクォータニオンを更新する
+	 * 
+	 * @since 0.0.1
+	 * @param gx ジャイロスコープのX軸の値
+	 * @param gy ジャイロスコープのY軸の値
+	 * @param gz ジャイロスコープのZ軸の値
+	 * @param s0 勾配の実部
+	 * @param s1 勾配のX成分
+	 * @param s2 勾配のY成分
+	 * @param s3 勾配のZ成分
+	 * @param dt 前回の更新からの秒数
+	 */
+	private void step(float gx, float gy, float gz, float s0, float s1, float s2, float s3, float dt) {
+		float normS = s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3;
+		if (normS > 0.0f) {
+			float inv = invSqrt(normS);
+			s0 *= inv;
+			s1 *= inv;
+			s2 *= inv;
+			s3 *= inv;
+		}
+
+		float qa = q0;
+		float qb = q1;
+		float qc = q2;
+		float qd = q3;
+		q0 += (0.5f * (-qb * gx - qc * gy - qd * gz) - beta * s0) * dt;
+		q1 += (0.5f * (qa * gx + qc * gz - qd * gy) - beta * s1) * dt;
+		q2 += (0.5f * (qa * gy - qb * gz + qd * gx) - beta * s2) * dt;
+		q3 += (0.5f * (qa * gz + qb * gy - qc * gx) - beta * s3) * dt;
+		normalize();
+	}
+
+	/**
+	 * 平方根の逆数を計算する
+	 * 
+	 * @since 0.0.1
+	 * @param value 値
+	 * @return 平方根の逆数
+	 */
+	private static float invSqrt(float value) {
+		return 1.0f / (float) Math.sqrt(value);
+	}
+}
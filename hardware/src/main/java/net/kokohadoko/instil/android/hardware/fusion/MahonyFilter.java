@@ -0,0 +1,191 @@
+package net.kokohadoko.instil.android.hardware.fusion;
+
+/**
+ * Mahonyの比例積分制御による姿勢推定フィルタ
+ * 
+ * <p>
+ * 推定した重力・地磁気の向きと測定値の外積を誤差とし，比例・積分の補正をジャイロスコープの値に加える．
+ * 積分の補正はジャイロスコープのバイアスを打ち消す．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class MahonyFilter extends FusionFilter {
+
+	/** デフォルトの比例ゲイン */
+	public static final float DEFAULT_KP = 1.0f;
+	/** デフォルトの積分ゲイン */
+	public static final float DEFAULT_KI = 0.0f;
+
+	/** 比例ゲイン */
+	private float kp;
+	/** 積分ゲイン */
+	private float ki;
+	/** 誤差の積分値のX成分 */
+	private float integralX;
+	/** 誤差の積分値のY成分 */
+	private float integralY;
+	/** 誤差の積分値のZ成分 */
+	private float integralZ;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	public MahonyFilter() {
+		this(DEFAULT_KP, DEFAULT_KI);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param kp 比例ゲイン
+	 * @param ki 積分ゲイン
+	 */
+	public MahonyFilter(float kp, float ki) {
+		setGains(kp, ki);
+	}
+
+	/**
+	 * ゲインを設定する
+	 * 
+	 * @since 0.0.1
+	 * @param kp 比例ゲイン
+	 * @param ki 積分ゲイン．0の場合は積分の補正を行わない
+	 */
+	public void setGains(float kp, float ki) {
+		if (kp < 0.0f) {
+			throw new IllegalArgumentException("kpが不正な値です．");
+		}
+		if (ki < 0.0f) {
+			throw new IllegalArgumentException("kiが不正な値です．");
+		}
+
+		this.kp = kp;
+		this.ki = ki;
+	}
+
+	/**
+	 * 比例ゲインを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 比例ゲイン
+	 */
+	public float getKp() {
+		return kp;
+	}
+
+	/**
+	 * 積分ゲインを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 積分ゲイン
+	 */
+	public float getKi() {
+		return ki;
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		integralX = 0.0f;
+		integralY = 0.0f;
+		integralZ = 0.0f;
+	}
+
+	@Override
+	public void update(float gx, float gy, float gz, float ax, float ay, float az,
+			float mx, float my, float mz, float dt) {
+		if (mx == 0.0f && my == 0.0f && mz == 0.0f) {
+			updateImu(gx, gy, gz, ax, ay, az, dt);
+			return;
+		}
+		float normA = ax * ax + ay * ay + az * az;
+		if (normA == 0.0f) {
+			step(gx, gy, gz, 0.0f, 0.0f, 0.0f, dt);
+			return;
+		}
+
+		float inv = 1.0f / (float) Math.sqrt(normA);
+		ax *= inv;
+		ay *= inv;
+		az *= inv;
+		inv = 1.0f / (float) Math.sqrt(mx * mx + my * my + mz * mz);
+		mx *= inv;
+		my *= inv;
+		mz *= inv;
+
+		float hx = 2.0f * (mx * (0.5f - q2 * q2 - q3 * q3) + my * (q1 * q2 - q0 * q3) + mz * (q1 * q3 + q0 * q2));
+		float hy = 2.0f * (mx * (q1 * q2 + q0 * q3) + my * (0.5f - q1 * q1 - q3 * q3) + mz * (q2 * q3 - q0 * q1));
+		float bx = (float) Math.sqrt(hx * hx + hy * hy);
+		float bz = 2.0f * (mx * (q1 * q3 - q0 * q2) + my * (q2 * q3 + q0 * q1) + mz * (0.5f - q1 * q1 - q2 * q2));
+
+		// 推定した重力と地磁気の向き
+		float vx = 2.0f * (q1 * q3 - q0 * q2);
+		float vy = 2.0f * (q0 * q1 + q2 * q3);
+		float vz = 1.0f - 2.0f * (q1 * q1 + q2 * q2);
+		float wx = 2.0f * (bx * (0.5f - q2 * q2 - q3 * q3) + bz * (q1 * q3 - q0 * q2));
+		float wy = 2.0f * (bx * (q1 * q2 - q0 * q3) + bz * (q0 * q1 + q2 * q3));
+		float wz = 2.0f * (bx * (q0 * q2 + q1 * q3) + bz * (0.5f - q1 * q1 - q2 * q2));
+
+		float ex = (ay * vz - az * vy) + (my * wz - mz * wy);
+		float ey = (az * vx - ax * vz) + (mz * wx - mx * wz);
+		float ez = (ax * vy - ay * vx) + (mx * wy - my * wx);
+
+		step(gx, gy, gz, ex, ey, ez, dt);
+	}
+
+	@Override
+	public void updateImu(float gx, float gy, float gz, float ax, float ay, float az, float dt) {
+		float normA = ax * ax + ay * ay + az * az;
+		if (normA == 0.0f) {
+			step(gx, gy, gz, 0.0f, 0.0f, 0.0f, dt);
+			return;
+		}
+
+		float inv = 1.0f / (float) Math.sqrt(normA);
+		ax *= inv;
+		ay *= inv;
+		az *= inv;
+
+		float vx = 2.0f * (q1 * q3 - q0 * q2);
+		float vy = 2.0f * (q0 * q1 + q2 * q3);
+		float vz = 1.0f - 2.0f * (q1 * q1 + q2 * q2);
+
+		step(gx, gy, gz, ay * vz - az * vy, az * vx - ax * vz, ax * vy - ay * vx, dt);
+	}
+
+	/**
+	 * 誤差をジャイロスコープの値に加えてクォータニオンを更新する
+	 * 
+	 * @since 0.0.1
+	 * @param gx ジャイロスコープのX軸の値
+	 * @param gy ジャイロスコープのY軸の値
+	 * @param gz ジャイロスコープのZ軸の値
+	 * @param ex 誤差のX成分
+	 * @param ey 誤差のY成分
+	 * @param ez 誤差のZ成分
+	 * @param dt 前回の更新からの秒数
+	 */
+	private void step(float gx, float gy, float gz, float ex, float ey, float ez, float dt) {
+		if (ki > 0.0f) {
+			integralX += ki * ex * dt;
+			integralY += ki * ey * dt;
+			integralZ += ki * ez * dt;
+			gx += integralX;
+			gy += integralY;
+			gz += integralZ;
+		}
+
+		gx += kp * ex;
+		gy += kp * ey;
+		gz += kp * ez;
+
+		float half = 0.5f * dt;
+		integrate(gx * half, gy * half, gz * half);
+		normalize();
+	}
+}
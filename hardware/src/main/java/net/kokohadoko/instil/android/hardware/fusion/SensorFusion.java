@@ -0,0 +1,236 @@
+package net.kokohadoko.instil.android.hardware.fusion;
+
+import net.kokohadoko.instil.android.hardware.orientation.Orientation;
+import net.kokohadoko.instil.android.hardware.stream.SensorBatchConsumer;
+import net.kokohadoko.instil.android.hardware.stream.SensorStream;
+import android.hardware.Sensor;
+
+/**
+ * {@link SensorStream} から受け取ったセンサーの値を {@link FusionFilter} に渡して姿勢を推定する
+ * 
+ * <p>
+ * ジャイロスコープの値を受け取るたびに，直前の加速度センサー・地磁気センサーの値とともにフィルタを更新する．
+ * 推定した姿勢はバッチごとに公開するため，任意のスレッドから取得できる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class SensorFusion implements SensorBatchConsumer {
+
+	/** デフォルトの積分を行う最大の秒数 */
+	public static final float DEFAULT_MAX_INTERVAL = 0.1f;
+
+	/** フィルタ */
+	private final FusionFilter filter;
+	/** 加速度センサーの値 */
+	private final float[] accelerometer = new float[3];
+	/** 地磁気センサーの値 */
+	private final float[] magnetometer = new float[3];
+	/** 公開するクォータニオン */
+	private final float[] published = new float[] { 1.0f, 0.0f, 0.0f, 0.0f };
+	/** 公開用のロック */
+	private final Object lock = new Object();
+
+	/** 積分を行う最大の秒数 */
+	private volatile float maxInterval = DEFAULT_MAX_INTERVAL;
+	/** 加速度センサーの値を受け取ったかどうか */
+	private boolean hasAccelerometer;
+	/** 地磁気センサーの値を受け取ったかどうか */
+	private boolean hasMagnetometer;
+	/** 姿勢を初期化したかどうか */
+	private boolean initialized;
+	/** 前回のジャイロスコープの値のタイムスタンプ */
+	private long lastGyroscope;
+	/** フィルタを更新した回数 */
+	private volatile long updateCount;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param filter フィルタ
+	 */
+	public SensorFusion(FusionFilter filter) {
+		if (filter == null) {
+			throw new IllegalArgumentException("filterがnullです．");
+		}
+
+		this.filter = filter;
+	}
+
+	/**
+	 * 必要なセンサーをストリームに追加し，このインスタンスを読み込み処理に設定する
+	 * 
+	 * @since 0.0.1
+	 * @param stream SensorStream
+	 * @param rate サンプリング間隔
+	 * @param batchSize 1回に読み込む最大の件数
+	 * @param intervalMillis リングバッファが空の場合に待機するミリ秒
+	 * @return ジャイロスコープと加速度センサーを追加できた場合に true, そうでない場合に falseを返す
+	 */
+	public boolean attach(SensorStream stream, int rate, int batchSize, long intervalMillis) {
+		if (stream == null) {
+			throw new IllegalArgumentException("streamがnullです．");
+		}
+		if (stream.getBuffer().getStride() < 3) {
+			throw new IllegalArgumentException("streamが不正な値です．");
+		}
+
+		boolean gyroscope = stream.addSensor(Sensor.TYPE_GYROSCOPE, rate);
+		boolean accelerometer = stream.addSensor(Sensor.TYPE_ACCELEROMETER, rate);
+		stream.addSensor(Sensor.TYPE_MAGNETIC_FIELD, rate);
+		stream.setConsumer(this, batchSize, intervalMillis);
+		return gyroscope && accelerometer;
+	}
+
+	/**
+	 * 積分を行う最大の秒数を設定する
+	 * 
+	 * <p>
+	 * ジャイロスコープの値の間隔がこれを超えた場合は，その区間の積分を行わない．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param maxInterval 秒数
+	 */
+	public void setMaxInterval(float maxInterval) {
+		if (maxInterval <= 0.0f) {
+			throw new IllegalArgumentException("maxIntervalが不正な値です．");
+		}
+
+		this.maxInterval = maxInterval;
+	}
+
+	@Override
+	public void onBatch(long[] timestamps, int[] types, float[] values, int stride, int count) {
+		for (int i = 0; i < count; i++) {
+			onSample(types[i], timestamps[i], values, i * stride);
+		}
+
+		synchronized (lock) {
+			filter.getQuaternion(published);
+		}
+	}
+
+	/**
+	 * センサーの値を1件処理する
+	 * 
+	 * @since 0.0.1
+	 * @param type センサー種別
+	 * @param timestamp ナノ秒のタイムスタンプ
+	 * @param values 値
+	 * @param offset 値の位置
+	 */
+	public void onSample(int type, long timestamp, float[] values, int offset) {
+		switch (type) {
+		case Sensor.TYPE_ACCELEROMETER:
+			accelerometer[0] = values[offset];
+			accelerometer[1] = values[offset + 1];
+			accelerometer[2] = values[offset + 2];
+			hasAccelerometer = true;
+			initializeIfReady();
+			break;
+		case Sensor.TYPE_MAGNETIC_FIELD:
+			magnetometer[0] = values[offset];
+			magnetometer[1] = values[offset + 1];
+			magnetometer[2] = values[offset + 2];
+			hasMagnetometer = true;
+			initializeIfReady();
+			break;
+		case Sensor.TYPE_GYROSCOPE:
+			long last = lastGyroscope;
+			lastGyroscope = timestamp;
+			if (last == 0 || !hasAccelerometer) {
+				break;
+			}
+			float dt = (timestamp - last) * 1.0e-9f;
+			if (dt <= 0.0f || dt > maxInterval) {
+				break;
+			}
+			if (hasMagnetometer) {
+				filter.update(values[offset], values[offset + 1], values[offset + 2],
+						accelerometer[0], accelerometer[1], accelerometer[2],
+						magnetometer[0], magnetometer[1], magnetometer[2], dt);
+			} else {
+				filter.updateImu(values[offset], values[offset + 1], values[offset + 2],
+						accelerometer[0], accelerometer[1], accelerometer[2], dt);
+			}
+			updateCount++;
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * 加速度センサーと地磁気センサーの値が揃った時点で姿勢を初期化する
+	 * 
+	 * @since 0.0.1
+	 */
+	private void initializeIfReady() {
+		if (initialized || !hasAccelerometer || !hasMagnetometer) {
+			return;
+		}
+
+		initialized = filter.initialize(accelerometer[0], accelerometer[1], accelerometer[2],
+				magnetometer[0], magnetometer[1], magnetometer[2]);
+	}
+
+	/**
+	 * 最後に公開したクォータニオンを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param out w・x・y・zの順の出力先．長さが4以上であること
+	 */
+	public void getQuaternion(float[] out) {
+		if (out == null || out.length < 4) {
+			throw new IllegalArgumentException("outが不正な値です．");
+		}
+
+		synchronized (lock) {
+			System.arraycopy(published, 0, out, 0, 4);
+		}
+	}
+
+	/**
+	 * 最後に公開した姿勢の方位角・傾斜角・回転角を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param out 方位角・傾斜角・回転角の出力先
+	 */
+	public void getOrientation(Orientation out) {
+		float w;
+		float x;
+		float y;
+		float z;
+		synchronized (lock) {
+			w = published[0];
+			x = published[1];
+			y = published[2];
+			z = published[3];
+		}
+
+		FusionFilter.getOrientation(w, x, y, z, out);
+	}
+
+	/**
+	 * フィルタを更新した回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 回数
+	 */
+	public long getUpdateCount() {
+		return updateCount;
+	}
+
+	/**
+	 * フィルタを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return フィルタ
+	 */
+	public FusionFilter getFilter() {
+		return filter;
+	}
+}
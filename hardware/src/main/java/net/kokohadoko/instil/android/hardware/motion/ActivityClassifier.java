@@ -0,0 +1,216 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一定の時間ごとの加速度のばらつきと歩数から行動を分類する
+ * 
+ * <p>
+ * 窓はイベントのタイムスタンプで区切るため，サンプリング周波数によらず同じ長さの時間で分類する．
+ * 加速度の大きさの平均と分散は窓ごとに逐次計算するため，窓の値を保持しない．
+ * 同じ分類が指定した数の窓で続いた場合に行動を切り替える．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class ActivityClassifier {
+
+	/** 不明 */
+	public static final int ACTIVITY_UNKNOWN = 0;
+	/** 静止 */
+	public static final int ACTIVITY_STILL = 1;
+	/** 歩行 */
+	public static final int ACTIVITY_WALKING = 2;
+	/** 歩行以外の動作 */
+	public static final int ACTIVITY_MOVING = 3;
+
+	/** デフォルトの窓のミリ秒 */
+	public static final long DEFAULT_WINDOW_DURATION = 2560;
+	/** デフォルトの静止とみなす標準偏差 (m/s^2) */
+	public static final float DEFAULT_STILL_THRESHOLD = 0.25f;
+	/** デフォルトの歩行とみなす窓あたりの歩数 */
+	public static final int DEFAULT_WALKING_STEPS = 3;
+	/** デフォルトの切り替えに必要な連続した窓の数 */
+	public static final int DEFAULT_CONFIRM_WINDOWS = 2;
+
+	/** 窓のナノ秒 */
+	private final long windowDuration;
+	/** 静止とみなす標準偏差 */
+	private final float stillThreshold;
+	/** 歩行とみなす窓あたりの歩数 */
+	private final int walkingSteps;
+	/** 切り替えに必要な連続した窓の数 */
+	private final int confirmWindows;
+
+	/** 窓の開始のタイムスタンプ */
+	private long windowStart;
+	/** 窓の件数 */
+	private int count;
+	/** 窓の平均 */
+	private double mean;
+	/** 窓の平均からの偏差の2乗の和 */
+	private double m2;
+	/** 窓の歩数 */
+	private int windowSteps;
+	/** 前回の窓の分類 */
+	private int candidate = ACTIVITY_UNKNOWN;
+	/** 同じ分類が続いた窓の数 */
+	private int streak;
+	/** 現在の行動 */
+	private int activity = ACTIVITY_UNKNOWN;
+	/** 最後の窓の標準偏差 */
+	private float lastDeviation;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	public ActivityClassifier() {
+		this(DEFAULT_WINDOW_DURATION, DEFAULT_STILL_THRESHOLD, DEFAULT_WALKING_STEPS, DEFAULT_CONFIRM_WINDOWS);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param windowDuration 窓のミリ秒
+	 * @param stillThreshold 静止とみなす標準偏差 (m/s^2)
+	 * @param walkingSteps 歩行とみなす窓あたりの歩数
+	 * @param confirmWindows 切り替えに必要な連続した窓の数
+	 */
+	public ActivityClassifier(long windowDuration, float stillThreshold, int walkingSteps, int confirmWindows) {
+		if (windowDuration <= 0) {
+			throw new IllegalArgumentException("windowDurationが不正な値です．");
+		}
+		if (!(stillThreshold > 0.0f)) {
+			throw new IllegalArgumentException("stillThresholdが不正な値です．");
+		}
+		if (walkingSteps <= 0) {
+			throw new IllegalArgumentException("walkingStepsが不正な値です．");
+		}
+		if (confirmWindows <= 0) {
+			throw new IllegalArgumentException("confirmWindowsが不正な値です．");
+		}
+
+		this.windowDuration = TimeUnit.MILLISECONDS.toNanos(windowDuration);
+		this.stillThreshold = stillThreshold;
+		this.walkingSteps = walkingSteps;
+		this.confirmWindows = confirmWindows;
+	}
+
+	/**
+	 * 値を追加する
+	 * 
+	 * <p>
+	 * 窓の開始から窓の時間が経過した値を受け取った時点で，それより前の値で窓を分類する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param timestamp ナノ秒のタイムスタンプ
+	 * @param magnitude 加速度の大きさ
+	 * @param step この値で1歩を検出した場合に true
+	 * @return 行動が切り替わった場合に true, そうでない場合に falseを返す
+	 */
+	public boolean add(long timestamp, float magnitude, boolean step) {
+		boolean changed = false;
+		if (count > 0 && timestamp - windowStart >= windowDuration) {
+			changed = classify();
+		}
+		if (count == 0) {
+			windowStart = timestamp;
+		}
+
+		// Welfordの方法で平均と分散を逐次計算する
+		count++;
+		double delta = magnitude - mean;
+		mean += delta / count;
+		m2 += delta * (magnitude - mean);
+		if (step) {
+			windowSteps++;
+		}
+
+		return changed;
+	}
+
+	/**
+	 * 窓を分類して次の窓を開始する
+	 * 
+	 * @since 0.0.1
+	 * @return 行動が切り替わった場合に true, そうでない場合に falseを返す
+	 */
+	private boolean classify() {
+		if (count < 2) {
+			// 分散を求められないため，分類せずに次の窓を開始する
+			count = 0;
+			mean = 0.0;
+			m2 = 0.0;
+			windowSteps = 0;
+			return false;
+		}
+
+		lastDeviation = (float) Math.sqrt(m2 / (count - 1));
+		int classified;
+		if (windowSteps >= walkingSteps) {
+			classified = ACTIVITY_WALKING;
+		} else if (lastDeviation < stillThreshold) {
+			classified = ACTIVITY_STILL;
+		} else {
+			classified = ACTIVITY_MOVING;
+		}
+		count = 0;
+		mean = 0.0;
+		m2 = 0.0;
+		windowSteps = 0;
+
+		if (classified == candidate) {
+			streak++;
+		} else {
+			candidate = classified;
+			streak = 1;
+		}
+		if (streak >= confirmWindows && activity != candidate) {
+			activity = candidate;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 状態を初期化する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void reset() {
+		windowStart = 0;
+		count = 0;
+		mean = 0.0;
+		m2 = 0.0;
+		windowSteps = 0;
+		candidate = ACTIVITY_UNKNOWN;
+		streak = 0;
+		activity = ACTIVITY_UNKNOWN;
+		lastDeviation = 0.0f;
+	}
+
+	/**
+	 * 現在の行動を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link #ACTIVITY_STILL} などの値
+	 */
+	public int getActivity() {
+		return activity;
+	}
+
+	/**
+	 * 最後の窓の加速度の大きさの標準偏差を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 標準偏差 (m/s^2)
+	 */
+	public float getLastDeviation() {
+		return lastDeviation;
+	}
+}
@@ -0,0 +1,195 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+/**
+ * 2次のIIRフィルタ
+ * 
+ * <p>
+ * 係数はRBJのオーディオEQクックブックの式で求める．状態は2つの値のみで，1件あたりの計算量は一定．
+ * サンプリング周波数が変わった場合は，状態を保ったまま係数を求め直すことができる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class BiquadFilter {
+
+	/** バターワース特性のQ値 */
+	public static final float BUTTERWORTH_Q = 0.70710678f;
+
+	/** 係数 b0 */
+	private float b0;
+	/** 係数 b1 */
+	private float b1;
+	/** 係数 b2 */
+	private float b2;
+	/** 係数 a1 */
+	private float a1;
+	/** 係数 a2 */
+	private float a2;
+	/** 状態1 */
+	private float z1;
+	/** 状態2 */
+	private float z2;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param b0 係数 b0
+	 * @param b1 係数 b1
+	 * @param b2 係数 b2
+	 * @param a0 係数 a0
+	 * @param a1 係数 a1
+	 * @param a2 係数 a2
+	 */
+	public BiquadFilter(double b0, double b1, double b2, double a0, double a1, double a2) {
+		if (a0 == 0.0) {
+			throw new IllegalArgumentException("a0が不正な値です．");
+		}
+
+		setCoefficients(b0, b1, b2, a0, a1, a2);
+	}
+
+	/**
+	 * ローパスフィルタを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param sampleRate サンプリング周波数 (Hz)
+	 * @param cutoff 遮断周波数 (Hz)
+	 * @param q Q値
+	 * @return BiquadFilter
+	 */
+	public static BiquadFilter lowPass(float sampleRate, float cutoff, float q) {
+		BiquadFilter filter = new BiquadFilter(1.0, 0.0, 0.0, 1.0, 0.0, 0.0);
+		filter.setLowPass(sampleRate, cutoff, q);
+		return filter;
+	}
+
+	/**
+	 * ハイパスフィルタを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param sampleRate サンプリング周波数 (Hz)
+	 * @param cutoff 遮断周波数 (Hz)
+	 * @param q Q値
+	 * @return BiquadFilter
+	 */
+	public static BiquadFilter highPass(float sampleRate, float cutoff, float q) {
+		BiquadFilter filter = new BiquadFilter(1.0, 0.0, 0.0, 1.0, 0.0, 0.0);
+		filter.setHighPass(sampleRate, cutoff, q);
+		return filter;
+	}
+
+	/**
+	 * ローパスフィルタの係数に変更する．状態は初期化しない
+	 * 
+	 * @since 0.0.1
+	 * @param sampleRate サンプリング周波数 (Hz)
+	 * @param cutoff 遮断周波数 (Hz)
+	 * @param q Q値
+	 */
+	public void setLowPass(float sampleRate, float cutoff, float q) {
+		checkArguments(sampleRate, cutoff, q);
+
+		double w0 = 2.0 * Math.PI * cutoff / sampleRate;
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2.0 * q);
+		setCoefficients((1.0 - cos) / 2.0, 1.0 - cos, (1.0 - cos) / 2.0,
+				1.0 + alpha, -2.0 * cos, 1.0 - alpha);
+	}
+
+	/**
+	 * ハイパスフィルタの係数に変更する．状態は初期化しない
+	 * 
+	 * @since 0.0.1
+	 * @param sampleRate サンプリング周波数 (Hz)
+	 * @param cutoff 遮断周波数 (Hz)
+	 * @param q Q値
+	 */
+	public void setHighPass(float sampleRate, float cutoff, float q) {
+		checkArguments(sampleRate, cutoff, q);
+
+		double w0 = 2.0 * Math.PI * cutoff / sampleRate;
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2.0 * q);
+		setCoefficients((1.0 + cos) / 2.0, -(1.0 + cos), (1.0 + cos) / 2.0,
+				1.0 + alpha, -2.0 * cos, 1.0 - alpha);
+	}
+
+	/**
+	 * a0で正規化した係数を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param b0 係数 b0
+	 * @param b1 係数 b1
+	 * @param b2 係数 b2
+	 * @param a0 係数 a0
+	 * @param a1 係数 a1
+	 * @param a2 係数 a2
+	 */
+	private void setCoefficients(double b0, double b1, double b2, double a0, double a1, double a2) {
+		this.b0 = (float) (b0 / a0);
+		this.b1 = (float) (b1 / a0);
+		this.b2 = (float) (b2 / a0);
+		this.a1 = (float) (a1 / a0);
+		this.a2 = (float) (a2 / a0);
+	}
+
+	/**
+	 * 引数を検証する
+	 * 
+	 * @since 0.0.1
+	 * @param sampleRate サンプリング周波数
+	 * @param cutoff 遮断周波数
+	 * @param q Q値
+	 */
+	private static void checkArguments(float sampleRate, float cutoff, float q) {
+		if (!(sampleRate > 0.0f)) {
+			throw new IllegalArgumentException("sampleRateが不正な値です．");
+		}
+		if (!(cutoff > 0.0f) || cutoff >= sampleRate / 2.0f) {
+			throw new IllegalArgumentException("cutoffが不正な値です．");
+		}
+		if (!(q > 0.0f)) {
+			throw new IllegalArgumentException("qが不正な値です．");
+		}
+	}
+
+	/**
+	 * 値をフィルタに通す
+	 * 
+	 * @since 0.0.1
+	 * @param x 入力
+	 * @return 出力
+	 */
+	public float process(float x) {
+		float y = b0 * x + z1;
+		z1 = b1 * x - a1 * y + z2;
+		z2 = b2 * x - a2 * y;
+		return y;
+	}
+
+	/**
+	 * 一定の入力が続いた状態に初期化する
+	 * 
+	 * @since 0.0.1
+	 * @param x 入力
+	 */
+	public void reset(float x) {
+		// 定常状態では y = x × 直流ゲイン
+		float gain = (b0 + b1 + b2) / (1.0f + a1 + a2);
+		float y = x * gain;
+		z2 = b2 * x - a2 * y;
+		z1 = b1 * x - a1 * y + z2;
+	}
+
+	/**
+	 * 状態を初期化する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void reset() {
+		z1 = 0.0f;
+		z2 = 0.0f;
+	}
+}
@@ -0,0 +1,215 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+import net.kokohadoko.instil.android.hardware.stream.SensorBatchConsumer;
+import net.kokohadoko.instil.android.hardware.stream.SensorStream;
+
+/**
+ * センサーの値のスライディングウィンドウから特徴量を求める
+ * 
+ * <p>
+ * {@link SensorStream} の読み込み処理に設定し，指定したセンサーの1つの軸または大きさを {@link WindowedFeatures} に追加する．
+ * 一定の件数ごとにウィンドウの値を変換してパワースペクトルを求め，{@link FeatureListener} に通知する．
+ * 変換の計算量はウィンドウの長さをNとして1件あたり償却して O(N log N / 間隔) になる．
+ * 全ての作業領域は生成時に確保する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class FeatureExtractor implements SensorBatchConsumer {
+
+	/** 3軸の大きさを使用する */
+	public static final int CHANNEL_MAGNITUDE = -1;
+
+	/** センサー種別 */
+	private final int sensorType;
+	/** 使用する軸 */
+	private final int channel;
+	/** サンプリング周波数 */
+	private final float sampleRate;
+	/** 通知する間隔の件数 */
+	private final int hop;
+	/** ウィンドウの特徴量 */
+	private final WindowedFeatures features;
+	/** 高速フーリエ変換 */
+	private final Fft fft;
+	/** ウィンドウの値の作業領域 */
+	private final float[] samples;
+	/** パワースペクトル */
+	private final float[] spectrum;
+
+	/** リスナー */
+	private volatile FeatureListener listener;
+	/** 次に通知するまでの件数 */
+	private int untilNext;
+	/** パワースペクトルを求めたかどうか */
+	private boolean hasSpectrum;
+	/** 最大のパワーの周波数 */
+	private float dominantFrequency;
+	/** パワーの合計 */
+	private float spectralEnergy;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param sensorType センサー種別
+	 * @param channel 使用する軸の添字, 3軸の大きさを使用する場合は {@link #CHANNEL_MAGNITUDE}
+	 * @param windowSize ウィンドウの件数．2のべき乗
+	 * @param hop 通知する間隔の件数
+	 * @param sampleRate サンプリング周波数 (Hz)
+	 */
+	public FeatureExtractor(int sensorType, int channel, int windowSize, int hop, float sampleRate) {
+		if (channel < CHANNEL_MAGNITUDE) {
+			throw new IllegalArgumentException("channelが不正な値です．");
+		}
+		if (hop <= 0) {
+			throw new IllegalArgumentException("hopが不正な値です．");
+		}
+		if (!(sampleRate > 0.0f)) {
+			throw new IllegalArgumentException("sampleRateが不正な値です．");
+		}
+
+		this.fft = new Fft(windowSize);
+		this.sensorType = sensorType;
+		this.channel = channel;
+		this.sampleRate = sampleRate;
+		this.hop = hop;
+		this.features = new WindowedFeatures(windowSize);
+		this.samples = new float[windowSize];
+		this.spectrum = new float[windowSize / 2 + 1];
+		this.untilNext = windowSize;
+	}
+
+	/**
+	 * リスナーを設定する
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー, 解除する場合は null
+	 */
+	public void setListener(FeatureListener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void onBatch(long[] timestamps, int[] types, float[] values, int stride, int count) {
+		if (channel != CHANNEL_MAGNITUDE && channel >= stride) {
+			throw new IllegalStateException("channelが1件あたりの値の数を超えています．");
+		}
+
+		for (int i = 0; i < count; i++) {
+			if (types[i] != sensorType) {
+				continue;
+			}
+
+			int base = i * stride;
+			float value;
+			if (channel == CHANNEL_MAGNITUDE) {
+				float sum = 0.0f;
+				for (int j = 0; j < stride; j++) {
+					float v = values[base + j];
+					sum += v * v;
+				}
+				value = (float) Math.sqrt(sum);
+			} else {
+				value = values[base + channel];
+			}
+			add(timestamps[i], value);
+		}
+	}
+
+	/**
+	 * 値を1件追加する
+	 * 
+	 * @since 0.0.1
+	 * @param timestamp ナノ秒のタイムスタンプ
+	 * @param value 値
+	 */
+	public void add(long timestamp, float value) {
+		features.add(value);
+		if (--untilNext > 0) {
+			return;
+		}
+		untilNext = hop;
+
+		features.copyTo(samples);
+		fft.powerSpectrum(samples, spectrum);
+		hasSpectrum = true;
+
+		// 直流成分を除いて最大のパワーの周波数を求める
+		int peak = 1;
+		float energy = 0.0f;
+		for (int i = 1; i < spectrum.length; i++) {
+			energy += spectrum[i];
+			if (spectrum[i] > spectrum[peak]) {
+				peak = i;
+			}
+		}
+		dominantFrequency = peak * sampleRate / fft.getSize();
+		spectralEnergy = energy;
+
+		FeatureListener listener = this.listener;
+		if (listener != null) {
+			listener.onFeatures(timestamp, this);
+		}
+	}
+
+	/**
+	 * ウィンドウの特徴量を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return ウィンドウの特徴量
+	 */
+	public WindowedFeatures getFeatures() {
+		return features;
+	}
+
+	/**
+	 * パワースペクトルを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param out 出力先．ウィンドウの件数/2+1以上の長さであること
+	 * @return 求めていた場合に true, まだ求めていない場合に falseを返す
+	 */
+	public boolean getSpectrum(float[] out) {
+		if (out == null || out.length < spectrum.length) {
+			throw new IllegalArgumentException("outが不正な値です．");
+		}
+		if (!hasSpectrum) {
+			return false;
+		}
+
+		System.arraycopy(spectrum, 0, out, 0, spectrum.length);
+		return true;
+	}
+
+	/**
+	 * 最大のパワーの周波数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 周波数 (Hz)
+	 */
+	public float getDominantFrequency() {
+		return dominantFrequency;
+	}
+
+	/**
+	 * 直流成分を除いたパワーの合計を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return パワーの合計
+	 */
+	public float getSpectralEnergy() {
+		return spectralEnergy;
+	}
+
+	/**
+	 * スペクトルの周波数の分解能を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 周波数 (Hz)
+	 */
+	public float getFrequencyResolution() {
+		return sampleRate / fft.getSize();
+	}
+}
@@ -0,0 +1,24 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+/**
+ * {@link FeatureExtractor} が特徴量を更新した場合に呼び出されるリスナー
+ * 
+ * <p>
+ * {@link net.kokohadoko.instil.android.hardware.stream.SensorStream} の読み込みスレッドから呼び出される．
+ * 引数の値は次の更新で上書きされるため，呼び出し中に必要な値を取得すること．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface FeatureListener {
+
+	/**
+	 * 特徴量を更新した場合の処理
+	 * 
+	 * @since 0.0.1
+	 * @param timestamp 最新の値のナノ秒のタイムスタンプ
+	 * @param extractor 特徴量
+	 */
+	void onFeatures(long timestamp, FeatureExtractor extractor);
+}
@@ -0,0 +1,157 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+/**
+ * 2のべき乗の長さの高速フーリエ変換
+ * 
+ * <p>
+ * 回転因子・ビット反転の並び・窓関数・作業領域を生成時に確保するため，変換でオブジェクトを生成しない．
+ * スレッドセーフではないため，1つのスレッドから使用すること．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class Fft {
+
+	/** 長さ */
+	private final int size;
+	/** 回転因子の余弦 */
+	private final float[] cos;
+	/** 回転因子の正弦 */
+	private final float[] sin;
+	/** ビット反転した添字 */
+	private final int[] reversed;
+	/** ハン窓 */
+	private final float[] window;
+	/** 実部の作業領域 */
+	private final float[] real;
+	/** 虚部の作業領域 */
+	private final float[] imaginary;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param size 長さ．2以上の2のべき乗
+	 */
+	public Fft(int size) {
+		if (size < 2 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("sizeが不正な値です．");
+		}
+
+		this.size = size;
+		this.cos = new float[size / 2];
+		this.sin = new float[size / 2];
+		for (int i = 0; i < size / 2; i++) {
+			double angle = 2.0 * Math.PI * i / size;
+			cos[i] = (float) Math.cos(angle);
+			sin[i] = (float) Math.sin(angle);
+		}
+
+		this.reversed = new int[size];
+		int bits = Integer.numberOfTrailingZeros(size);
+		for (int i = 0; i < size; i++) {
+			reversed[i] = Integer.reverse(i) >>> (32 - bits);
+		}
+
+		this.window = new float[size];
+		for (int i = 0; i < size; i++) {
+			window[i] = (float) (0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / (size - 1)));
+		}
+
+		this.real = new float[size];
+		this.imaginary = new float[size];
+	}
+
+	/**
+	 * 長さを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 長さ
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * 配列の値をそのまま変換する
+	 * 
+	 * @since 0.0.1
+	 * @param re 実部．変換結果の実部で上書きする
+	 * @param im 虚部．変換結果の虚部で上書きする
+	 */
+	public void transform(float[] re, float[] im) {
+		if (re == null || re.length < size) {
+			throw new IllegalArgumentException("reが不正な値です．");
+		}
+		if (im == null || im.length < size) {
+			throw new IllegalArgumentException("imが不正な値です．");
+		}
+
+		for (int i = 0; i < size; i++) {
+			int j = reversed[i];
+			if (i < j) {
+				float t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+
+		for (int length = 2; length <= size; length <<= 1) {
+			int half = length >> 1;
+			int step = size / length;
+			for (int start = 0; start < size; start += length) {
+				for (int k = 0, w = 0; k < half; k++, w += step) {
+					int even = start + k;
+					int odd = even + half;
+					float tr = re[odd] * cos[w] + im[odd] * sin[w];
+					float ti = im[odd] * cos[w] - re[odd] * sin[w];
+					re[odd] = re[even] - tr;
+					im[odd] = im[even] - ti;
+					re[even] += tr;
+					im[even] += ti;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 実数の値のパワースペクトルを求める
+	 * 
+	 * <p>
+	 * 平均を引き，ハン窓を掛けてから変換する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param input 値．長さ以上の要素数であること
+	 * @param out パワースペクトルの出力先．長さ/2+1以上の要素数であること
+	 */
+	public void powerSpectrum(float[] input, float[] out) {
+		if (input == null || input.length < size) {
+			throw new IllegalArgumentException("inputが不正な値です．");
+		}
+		if (out == null || out.length < size / 2 + 1) {
+			throw new IllegalArgumentException("outが不正な値です．");
+		}
+
+		float mean = 0.0f;
+		for (int i = 0; i < size; i++) {
+			mean += input[i];
+		}
+		mean /= size;
+
+		for (int i = 0; i < size; i++) {
+			real[i] = (input[i] - mean) * window[i];
+			imaginary[i] = 0.0f;
+		}
+		transform(real, imaginary);
+
+		float scale = 1.0f / size;
+		for (int i = 0; i <= size / 2; i++) {
+			out[i] = (real[i] * real[i] + imaginary[i] * imaginary[i]) * scale;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+import net.kokohadoko.instil.android.hardware.stream.SensorBatchConsumer;
+import net.kokohadoko.instil.android.hardware.stream.SensorStream;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+
+/**
+ * 加速度センサーの値から歩数と行動を検出する歩数計
+ * 
+ * <p>
+ * {@link SensorStream} の読み込み処理に設定し，ハードウェアの歩数計がない端末で使用する．
+ * 加速度センサー以外の値は無視する．使用するメモリと1件あたりの計算量は一定．
+ * 歩数の検出と行動の分類はイベントのタイムスタンプを基準に行うため，実際のサンプリング周波数によらない．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class Pedometer implements SensorBatchConsumer {
+
+	/** 歩数の検出 */
+	private final StepDetector detector;
+	/** 行動の分類 */
+	private final ActivityClassifier classifier;
+	/** リスナー */
+	private volatile PedometerListener listener;
+	/** 歩数 */
+	private volatile long stepCount;
+	/** 現在の行動 */
+	private volatile int activity = ActivityClassifier.ACTIVITY_UNKNOWN;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	public Pedometer() {
+		this(new StepDetector(), new ActivityClassifier());
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param detector 歩数の検出
+	 * @param classifier 行動の分類
+	 */
+	public Pedometer(StepDetector detector, ActivityClassifier classifier) {
+		if (detector == null) {
+			throw new IllegalArgumentException("detectorがnullです．");
+		}
+		if (classifier == null) {
+			throw new IllegalArgumentException("classifierがnullです．");
+		}
+
+		this.detector = detector;
+		this.classifier = classifier;
+	}
+
+	/**
+	 * 加速度センサーをストリームに追加し，このインスタンスを読み込み処理に設定する
+	 * 
+	 * <p>
+	 * {@link StepDetector} のサンプリング周波数は指定した値に合わせる．開始前に呼び出すこと．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param stream SensorStream
+	 * @param rate {@link SensorManager#SENSOR_DELAY_GAME} などの値またはマイクロ秒のサンプリング間隔
+	 * @param batchSize 1回に読み込む最大の件数
+	 * @param intervalMillis リングバッファが空の場合に待機するミリ秒
+	 * @return 加速度センサーを追加できた場合に true, そうでない場合に falseを返す
+	 */
+	public boolean attach(SensorStream stream, int rate, int batchSize, long intervalMillis) {
+		if (stream == null) {
+			throw new IllegalArgumentException("streamがnullです．");
+		}
+		if (stream.getBuffer().getStride() < 3) {
+			throw new IllegalArgumentException("streamが不正な値です．");
+		}
+
+		float sampleRate = sampleRate(rate);
+		if (sampleRate >= StepDetector.MIN_SAMPLE_RATE) {
+			detector.setSampleRate(sampleRate);
+		}
+
+		boolean added = stream.addSensor(Sensor.TYPE_ACCELEROMETER, rate);
+		stream.setConsumer(this, batchSize, intervalMillis);
+		return added;
+	}
+
+	/**
+	 * サンプリング間隔の指定からサンプリング周波数を求める
+	 * 
+	 * @since 0.0.1
+	 * @param rate {@link SensorManager#SENSOR_DELAY_GAME} などの値またはマイクロ秒のサンプリング間隔
+	 * @return サンプリング周波数 (Hz), 求められない場合は 0
+	 */
+	private static float sampleRate(int rate) {
+		// SENSOR_DELAY_* の値はSensorManagerが割り当てるマイクロ秒に読み替える
+		int interval;
+		switch (rate) {
+		case SensorManager.SENSOR_DELAY_FASTEST:
+			return 0.0f;
+		case SensorManager.SENSOR_DELAY_GAME:
+			interval = 20000;
+			break;
+		case SensorManager.SENSOR_DELAY_UI:
+			interval = 66667;
+			break;
+		case SensorManager.SENSOR_DELAY_NORMAL:
+			interval = 200000;
+			break;
+		default:
+			interval = rate;
+			break;
+		}
+
+		return interval > 0 ? 1000000.0f / interval : 0.0f;
+	}
+
+	/**
+	 * リスナーを設定する
+	 * 
+	 * @since 0.0.1
+	 * @param listener リスナー, 解除する場合は null
+	 */
+	public void setListener(PedometerListener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void onBatch(long[] timestamps, int[] types, float[] values, int stride, int count) {
+		for (int i = 0; i < count; i++) {
+			if (types[i] == Sensor.TYPE_ACCELEROMETER) {
+				int base = i * stride;
+				process(timestamps[i], values[base], values[base + 1], values[base + 2]);
+			}
+		}
+	}
+
+	/**
+	 * 加速度センサーの値を1件処理する
+	 * 
+	 * @since 0.0.1
+	 * @param timestamp ナノ秒のタイムスタンプ
+	 * @param x X軸の値
+	 * @param y Y軸の値
+	 * @param z Z軸の値
+	 */
+	public void process(long timestamp, float x, float y, float z) {
+		boolean step = detector.process(timestamp, x, y, z);
+		boolean changed = classifier.add(timestamp, (float) Math.sqrt(x * x + y * y + z * z), step);
+
+		PedometerListener listener = this.listener;
+		if (step) {
+			stepCount = detector.getStepCount();
+			if (listener != null) {
+				listener.onStep(detector.getLastStepTimestamp(), stepCount);
+			}
+		}
+		if (changed) {
+			activity = classifier.getActivity();
+			if (listener != null) {
+				listener.onActivityChanged(timestamp, activity);
+			}
+		}
+	}
+
+	/**
+	 * 歩数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 歩数
+	 */
+	public long getStepCount() {
+		return stepCount;
+	}
+
+	/**
+	 * 現在の行動を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link ActivityClassifier#ACTIVITY_STILL} などの値
+	 */
+	public int getActivity() {
+		return activity;
+	}
+}
@@ -0,0 +1,32 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+/**
+ * {@link Pedometer} の検出結果を受け取るリスナー
+ * 
+ * <p>
+ * 各メソッドは {@link net.kokohadoko.instil.android.hardware.stream.SensorStream} の読み込みスレッドから呼び出される．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface PedometerListener {
+
+	/**
+	 * 1歩を検出した場合の処理
+	 * 
+	 * @since 0.0.1
+	 * @param timestamp ナノ秒のタイムスタンプ
+	 * @param steps 累計の歩数
+	 */
+	void onStep(long timestamp, long steps);
+
+	/**
+	 * 行動が切り替わった場合の処理
+	 * 
+	 * @since 0.0.1
+	 * @param timestamp ナノ秒のタイムスタンプ
+	 * @param activity {@link ActivityClassifier#ACTIVITY_STILL} などの値
+	 */
+	void onActivityChanged(long timestamp, int activity);
+}
@@ -0,0 +1,328 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 加速度の大きさから歩数を検出する
+ * 
+ * <p>
+ * 加速度の大きさをバンドパスフィルタに通して歩行の周波数帯を取り出し，
+ * 直前の谷からの高さが閾値を超える山を1歩とする．閾値は最近の山の高さに追従させる．
+ * センサーの実際のサンプリング周波数は要求した値と異なることがあるため，
+ * イベントのタイムスタンプの間隔から求めた周波数が離れた場合はフィルタの係数を求め直す．
+ * 状態は固定の数の値のみで，1件あたりの計算量は一定．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class StepDetector {
+
+	/** デフォルトのサンプリング周波数 (Hz) */
+	public static final float DEFAULT_SAMPLE_RATE = 50.0f;
+	/** 最小のサンプリング周波数 (Hz) */
+	public static final float MIN_SAMPLE_RATE = 4.0f;
+	/** 通過させる最小の周波数 (Hz) */
+	public static final float LOW_CUTOFF = 0.7f;
+	/** 通過させる最大の周波数 (Hz) */
+	public static final float HIGH_CUTOFF = 3.5f;
+	/** デフォルトの最小の閾値 (m/s^2) */
+	public static final float DEFAULT_MIN_THRESHOLD = 0.6f;
+	/** デフォルトの山の高さの平均に対する閾値の割合 */
+	public static final float DEFAULT_SENSITIVITY = 0.5f;
+	/** デフォルトの歩数の最小間隔のミリ秒 */
+	public static final long DEFAULT_MIN_INTERVAL = 250;
+
+	/** 山の高さの平均の追従率 */
+	private static final float PEAK_ALPHA = 0.2f;
+	/** 閾値を下回った山の高さの平均の追従率 */
+	private static final float REJECT_ALPHA = 0.05f;
+	/** サンプリング周波数に対するローパスフィルタの遮断周波数の上限の割合 */
+	private static final float MAX_CUTOFF_RATIO = 0.4f;
+	/** サンプリング間隔の平均の追従率 */
+	private static final double INTERVAL_ALPHA = 1.0 / 16.0;
+	/** サンプリング周波数を求めるのに必要な間隔の数 */
+	private static final int MIN_INTERVALS = 16;
+	/** 係数を求め直すサンプリング周波数の差の割合 */
+	private static final float RETUNE_TOLERANCE = 0.1f;
+	/** サンプリング間隔とみなす最大のナノ秒．これより長い間隔はセンサーの停止とみなす */
+	private static final long MAX_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+	/** ハイパスフィルタ */
+	private final BiquadFilter highPass;
+	/** ローパスフィルタ */
+	private final BiquadFilter lowPass;
+	/** 最小の閾値 */
+	private final float minThreshold;
+	/** 山の高さの平均に対する閾値の割合 */
+	private final float sensitivity;
+	/** 歩数の最小間隔のナノ秒 */
+	private final long minInterval;
+
+	/** フィルタの係数を求めたサンプリング周波数 */
+	private float sampleRate;
+	/** サンプリング間隔の平均のナノ秒 */
+	private double intervalAverage;
+	/** 平均に含めたサンプリング間隔の数 */
+	private int intervalCount;
+
+	/** 初期化したかどうか */
+	private boolean initialized;
+	/** 1つ前の値 */
+	private float previous;
+	/** 2つ前の値 */
+	private float beforePrevious;
+	/** 1つ前のタイムスタンプ */
+	private long previousTimestamp;
+	/** 直前の山からの最小値 */
+	private float valley;
+	/** 山の高さの平均 */
+	private float peakAverage;
+	/** 最後に検出した歩数のタイムスタンプ */
+	private long lastStep;
+	/** 最後に検出した歩数の山の高さ */
+	private float lastAmplitude;
+	/** 歩数 */
+	private long steps;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	public StepDetector() {
+		this(DEFAULT_SAMPLE_RATE, DEFAULT_MIN_THRESHOLD, DEFAULT_SENSITIVITY, DEFAULT_MIN_INTERVAL);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param sampleRate サンプリング周波数 (Hz)．タイムスタンプから求めるまでの初期値として使用する
+	 * @param minThreshold 最小の閾値 (m/s^2)
+	 * @param sensitivity 山の高さの平均に対する閾値の割合
+	 * @param minInterval 歩数の最小間隔のミリ秒
+	 */
+	public StepDetector(float sampleRate, float minThreshold, float sensitivity, long minInterval) {
+		if (!(sampleRate >= MIN_SAMPLE_RATE)) {
+			throw new IllegalArgumentException("sampleRateが不正な値です．");
+		}
+		if (!(minThreshold > 0.0f)) {
+			throw new IllegalArgumentException("minThresholdが不正な値です．");
+		}
+		if (!(sensitivity >= 0.0f && sensitivity <= 1.0f)) {
+			throw new IllegalArgumentException("sensitivityが不正な値です．");
+		}
+		if (minInterval < 0) {
+			throw new IllegalArgumentException("minIntervalが不正な値です．");
+		}
+
+		this.highPass = BiquadFilter.highPass(sampleRate, LOW_CUTOFF, BiquadFilter.BUTTERWORTH_Q);
+		this.lowPass = BiquadFilter.lowPass(sampleRate, lowPassCutoff(sampleRate), BiquadFilter.BUTTERWORTH_Q);
+		this.sampleRate = sampleRate;
+		this.minThreshold = minThreshold;
+		this.sensitivity = sensitivity;
+		this.minInterval = TimeUnit.MILLISECONDS.toNanos(minInterval);
+		reset();
+	}
+
+	/**
+	 * サンプリング周波数を設定し，フィルタの係数を求め直す
+	 * 
+	 * <p>
+	 * 処理を開始した後はタイムスタンプから求めた周波数に合わせて変更される．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param sampleRate サンプリング周波数 (Hz)
+	 */
+	public void setSampleRate(float sampleRate) {
+		if (!(sampleRate >= MIN_SAMPLE_RATE)) {
+			throw new IllegalArgumentException("sampleRateが不正な値です．");
+		}
+
+		design(sampleRate);
+	}
+
+	/**
+	 * フィルタの係数を求めたサンプリング周波数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return サンプリング周波数 (Hz)
+	 */
+	public float getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * サンプリング周波数に合わせてフィルタの係数を求める．フィルタの状態は保つ
+	 * 
+	 * @since 0.0.1
+	 * @param sampleRate サンプリング周波数 (Hz)
+	 */
+	private void design(float sampleRate) {
+		highPass.setHighPass(sampleRate, LOW_CUTOFF, BiquadFilter.BUTTERWORTH_Q);
+		lowPass.setLowPass(sampleRate, lowPassCutoff(sampleRate), BiquadFilter.BUTTERWORTH_Q);
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * ローパスフィルタの遮断周波数を求める
+	 * 
+	 * @since 0.0.1
+	 * @param sampleRate サンプリング周波数 (Hz)
+	 * @return 遮断周波数 (Hz)
+	 */
+	private static float lowPassCutoff(float sampleRate) {
+		// 低いサンプリング周波数ではナイキスト周波数を超えないように通過帯域を狭める
+		return Math.min(HIGH_CUTOFF, MAX_CUTOFF_RATIO * sampleRate);
+	}
+
+	/**
+	 * タイムスタンプの間隔からサンプリング周波数を求め，係数を求めた周波数から離れている場合は求め直す
+	 * 
+	 * @since 0.0.1
+	 * @param interval 直前の値からのナノ秒
+	 */
+	private void updateSampleRate(long interval) {
+		if (interval <= 0 || interval > MAX_INTERVAL) {
+			return;
+		}
+
+		if (intervalCount == 0) {
+			intervalAverage = interval;
+		} else {
+			intervalAverage += INTERVAL_ALPHA * (interval - intervalAverage);
+		}
+		if (intervalCount < MIN_INTERVALS) {
+			intervalCount++;
+			return;
+		}
+
+		float measured = (float) (TimeUnit.SECONDS.toNanos(1) / intervalAverage);
+		if (measured >= MIN_SAMPLE_RATE && Math.abs(measured - sampleRate) > RETUNE_TOLERANCE * sampleRate) {
+			design(measured);
+			// 係数を変えた直後の過渡応答を山と誤検出しないように，フィルタを定常状態からやり直す
+			restart();
+		}
+	}
+
+	/**
+	 * 次の値からフィルタと山の検出をやり直す．歩数と閾値は保つ
+	 * 
+	 * @since 0.0.1
+	 */
+	private void restart() {
+		initialized = false;
+		previous = 0.0f;
+		beforePrevious = 0.0f;
+		valley = 0.0f;
+	}
+
+	/**
+	 * 状態を初期化する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void reset() {
+		restart();
+		highPass.reset();
+		lowPass.reset();
+		peakAverage = 2.0f * minThreshold;
+		lastStep = Long.MIN_VALUE / 2;
+		lastAmplitude = 0.0f;
+		steps = 0;
+		intervalAverage = 0.0;
+		intervalCount = 0;
+	}
+
+	/**
+	 * 加速度センサーの値を処理する
+	 * 
+	 * @since 0.0.1
+	 * @param timestamp ナノ秒のタイムスタンプ
+	 * @param x X軸の値
+	 * @param y Y軸の値
+	 * @param z Z軸の値
+	 * @return 1歩を検出した場合に true, そうでない場合に falseを返す
+	 */
+	public boolean process(long timestamp, float x, float y, float z) {
+		float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+		if (initialized) {
+			updateSampleRate(timestamp - previousTimestamp);
+		}
+		if (!initialized) {
+			// 重力による立ち上がりを山と誤検出しないように定常状態から始める
+			highPass.reset(magnitude);
+			lowPass.reset(highPass.process(magnitude));
+			initialized = true;
+		}
+		float value = lowPass.process(highPass.process(magnitude));
+
+		boolean step = false;
+		if (previous > beforePrevious && previous >= value) {
+			// 1つ前の値が山
+			float amplitude = previous - valley;
+			float threshold = Math.max(minThreshold, sensitivity * peakAverage);
+			if (amplitude > threshold && previousTimestamp - lastStep >= minInterval) {
+				step = true;
+				steps++;
+				lastStep = previousTimestamp;
+				lastAmplitude = amplitude;
+				peakAverage += PEAK_ALPHA * (amplitude - peakAverage);
+			} else if (amplitude > minThreshold) {
+				// 歩き方が弱くなった場合に閾値を下げる
+				peakAverage += REJECT_ALPHA * (amplitude - peakAverage);
+			}
+			valley = previous;
+		}
+		if (value < valley) {
+			valley = value;
+		}
+
+		beforePrevious = previous;
+		previous = value;
+		previousTimestamp = timestamp;
+		return step;
+	}
+
+	/**
+	 * 歩数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 歩数
+	 */
+	public long getStepCount() {
+		return steps;
+	}
+
+	/**
+	 * 最後に検出した歩数のタイムスタンプを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return ナノ秒のタイムスタンプ, 検出していない場合は負の値を返す
+	 */
+	public long getLastStepTimestamp() {
+		return lastStep;
+	}
+
+	/**
+	 * 最後に検出した歩数の山の高さを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 山の高さ (m/s^2)
+	 */
+	public float getLastAmplitude() {
+		return lastAmplitude;
+	}
+
+	/**
+	 * 現在の閾値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 閾値 (m/s^2)
+	 */
+	public float getThreshold() {
+		return Math.max(minThreshold, sensitivity * peakAverage);
+	}
+}
@@ -0,0 +1,303 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+/**
+ * 直近の一定件数の値の特徴量を逐次計算する
+ * 
+ * <p>
+ * 値を事前に確保した配列に循環して保持し，追加と削除の差分で和・2乗和・0交差の回数を更新するため，
+ * 平均・分散・エネルギー・0交差率は1件あたり一定の計算量で求まる．
+ * 最小値・最大値は単調な両端キューで保持し，1件あたり償却して一定の計算量で求まる．
+ * スレッドセーフではないため，1つのスレッドから使用すること．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class WindowedFeatures {
+
+	/** 窓の件数 */
+	private final int size;
+	/** 値 */
+	private final float[] values;
+	/** 最小値の候補の位置 */
+	private final long[] minQueue;
+	/** 最大値の候補の位置 */
+	private final long[] maxQueue;
+
+	/** 追加した件数 */
+	private long added;
+	/** 和 */
+	private double sum;
+	/** 2乗和 */
+	private double sumOfSquares;
+	/** 窓の中で符号が変わった回数 */
+	private int crossings;
+	/** 最小値の候補の先頭 */
+	private int minHead;
+	/** 最小値の候補の件数 */
+	private int minCount;
+	/** 最大値の候補の先頭 */
+	private int maxHead;
+	/** 最大値の候補の件数 */
+	private int maxCount;
+	/** 窓を再計算するまでの件数 */
+	private int untilRecompute;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param size 窓の件数
+	 */
+	public WindowedFeatures(int size) {
+		if (size <= 1) {
+			throw new IllegalArgumentException("sizeが不正な値です．");
+		}
+
+		this.size = size;
+		this.values = new float[size];
+		this.minQueue = new long[size];
+		this.maxQueue = new long[size];
+		this.untilRecompute = size;
+	}
+
+	/**
+	 * 値を追加する
+	 * 
+	 * <p>
+	 * 窓が一杯の場合は最も古い値を取り除く．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param value 値
+	 */
+	public void add(float value) {
+		int index = (int) (added % size);
+		if (added >= size) {
+			float removed = values[index];
+			sum -= removed;
+			sumOfSquares -= (double) removed * removed;
+			// 最も古い値とその次の値の間の交差を取り除く
+			if (isCrossing(removed, values[(index + 1) % size])) {
+				crossings--;
+			}
+		}
+		if (added > 0 && isCrossing(values[(int) ((added - 1) % size)], value)) {
+			crossings++;
+		}
+
+		values[index] = value;
+		sum += value;
+		sumOfSquares += (double) value * value;
+
+		// 範囲外になった候補を先頭から取り除く
+		long oldest = added - size + 1;
+		if (minCount > 0 && minQueue[minHead] < oldest) {
+			minHead = (minHead + 1) % size;
+			minCount--;
+		}
+		if (maxCount > 0 && maxQueue[maxHead] < oldest) {
+			maxHead = (maxHead + 1) % size;
+			maxCount--;
+		}
+		// 新しい値より大きい(小さい)候補は最小値(最大値)にならないため末尾から取り除く
+		while (minCount > 0 && values[(int) (minQueue[(minHead + minCount - 1) % size] % size)] >= value) {
+			minCount--;
+		}
+		minQueue[(minHead + minCount) % size] = added;
+		minCount++;
+		while (maxCount > 0 && values[(int) (maxQueue[(maxHead + maxCount - 1) % size] % size)] <= value) {
+			maxCount--;
+		}
+		maxQueue[(maxHead + maxCount) % size] = added;
+		maxCount++;
+
+		added++;
+
+		// 差分の更新による誤差の蓄積を防ぐために窓ごとに和を計算し直す
+		if (--untilRecompute == 0) {
+			recompute();
+		}
+	}
+
+	/**
+	 * 2つの値の間で符号が変わったかどうか
+	 * 
+	 * @since 0.0.1
+	 * @param a 前の値
+	 * @param b 後の値
+	 * @return 変わった場合に true, そうでない場合に falseを返す
+	 */
+	private static boolean isCrossing(float a, float b) {
+		return (a < 0.0f && b >= 0.0f) || (a >= 0.0f && b < 0.0f);
+	}
+
+	/**
+	 * 和と2乗和を計算し直す
+	 * 
+	 * @since 0.0.1
+	 */
+	private void recompute() {
+		int count = getCount();
+		double s = 0.0;
+		double s2 = 0.0;
+		for (int i = 0; i < count; i++) {
+			float value = values[i];
+			s += value;
+			s2 += (double) value * value;
+		}
+		sum = s;
+		sumOfSquares = s2;
+		untilRecompute = size;
+	}
+
+	/**
+	 * 状態を初期化する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void reset() {
+		added = 0;
+		sum = 0.0;
+		sumOfSquares = 0.0;
+		crossings = 0;
+		minHead = 0;
+		minCount = 0;
+		maxHead = 0;
+		maxCount = 0;
+		untilRecompute = size;
+	}
+
+	/**
+	 * 窓の件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 窓の件数
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * 窓に含まれる件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public int getCount() {
+		return (int) Math.min(added, size);
+	}
+
+	/**
+	 * 窓が一杯かどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 一杯の場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isFull() {
+		return added >= size;
+	}
+
+	/**
+	 * 平均を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 平均, 値がない場合は 0を返す
+	 */
+	public float getMean() {
+		int count = getCount();
+		return count > 0 ? (float) (sum / count) : 0.0f;
+	}
+
+	/**
+	 * 分散を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 母分散, 値がない場合は 0を返す
+	 */
+	public float getVariance() {
+		int count = getCount();
+		if (count == 0) {
+			return 0.0f;
+		}
+
+		double mean = sum / count;
+		return (float) Math.max(0.0, sumOfSquares / count - mean * mean);
+	}
+
+	/**
+	 * 標準偏差を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 標準偏差
+	 */
+	public float getStandardDeviation() {
+		return (float) Math.sqrt(getVariance());
+	}
+
+	/**
+	 * 最小値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 最小値, 値がない場合は 0を返す
+	 */
+	public float getMin() {
+		return minCount > 0 ? values[(int) (minQueue[minHead] % size)] : 0.0f;
+	}
+
+	/**
+	 * 最大値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 最大値, 値がない場合は 0を返す
+	 */
+	public float getMax() {
+		return maxCount > 0 ? values[(int) (maxQueue[maxHead] % size)] : 0.0f;
+	}
+
+	/**
+	 * エネルギーを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 1件あたりの2乗和, 値がない場合は 0を返す
+	 */
+	public float getEnergy() {
+		int count = getCount();
+		return count > 0 ? (float) (sumOfSquares / count) : 0.0f;
+	}
+
+	/**
+	 * 0交差率を取得する
+	 * 
+	 * <p>
+	 * 平均を引いた値で求める場合は，平均を引いた値を追加すること．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @return 隣接する値の組のうち符号が変わった割合
+	 */
+	public float getZeroCrossingRate() {
+		int count = getCount();
+		return count > 1 ? (float) crossings / (count - 1) : 0.0f;
+	}
+
+	/**
+	 * 窓の値を古い順に配列に複製する
+	 * 
+	 * @since 0.0.1
+	 * @param out 出力先．窓に含まれる件数以上の長さであること
+	 * @return 複製した件数
+	 */
+	public int copyTo(float[] out) {
+		int count = getCount();
+		if (out == null || out.length < count) {
+			throw new IllegalArgumentException("outが不正な値です．");
+		}
+
+		int start = (int) ((added - count) % size);
+		int first = Math.min(count, size - start);
+		System.arraycopy(values, start, out, 0, first);
+		System.arraycopy(values, 0, out, first, count - first);
+		return count;
+	}
+}
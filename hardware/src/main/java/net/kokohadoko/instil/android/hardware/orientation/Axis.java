@@ -0,0 +1,98 @@
+package net.kokohadoko.instil.android.hardware.orientation;
+
+import android.hardware.SensorManager;
+
+/**
+ * 座標系を変換する際の軸
+ * 
+ * <p>
+ * {@link SensorManager#AXIS_X} などの値に対応する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public enum Axis {
+
+	/** X軸 */
+	X(SensorManager.AXIS_X),
+	/** Y軸 */
+	Y(SensorManager.AXIS_Y),
+	/** Z軸 */
+	Z(SensorManager.AXIS_Z),
+	/** X軸の逆向き */
+	MINUS_X(SensorManager.AXIS_MINUS_X),
+	/** Y軸の逆向き */
+	MINUS_Y(SensorManager.AXIS_MINUS_Y),
+	/** Z軸の逆向き */
+	MINUS_Z(SensorManager.AXIS_MINUS_Z);
+
+	/** SensorManagerの値 */
+	private final int value;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param value SensorManagerの値
+	 */
+	private Axis(int value) {
+		this.value = value;
+	}
+
+	/**
+	 * SensorManagerの値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link SensorManager#AXIS_X} などの値
+	 */
+	public int getValue() {
+		return value;
+	}
+
+	/**
+	 * 軸の添字を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return X軸の場合に 0, Y軸の場合に 1, Z軸の場合に 2を返す
+	 */
+	public int getIndex() {
+		return (value & 0x3) - 1;
+	}
+
+	/**
+	 * 逆向きかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 逆向きの場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isNegative() {
+		return value >= 0x80;
+	}
+
+	/**
+	 * SensorManagerの値から軸を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param value {@link SensorManager#AXIS_X} などの値
+	 * @return 軸, 対応する軸がない場合は nullを返す
+	 */
+	public static Axis fromValue(int value) {
+		switch (value) {
+		case SensorManager.AXIS_X:
+			return X;
+		case SensorManager.AXIS_Y:
+			return Y;
+		case SensorManager.AXIS_Z:
+			return Z;
+		case SensorManager.AXIS_MINUS_X:
+			return MINUS_X;
+		case SensorManager.AXIS_MINUS_Y:
+			return MINUS_Y;
+		case SensorManager.AXIS_MINUS_Z:
+			return MINUS_Z;
+		default:
+			return null;
+		}
+	}
+}
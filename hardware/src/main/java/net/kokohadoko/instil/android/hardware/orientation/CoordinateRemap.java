@@ -0,0 +1,237 @@
+package net.kokohadoko.instil.android.hardware.orientation;
+
+/**
+ * 回転行列の座標系の変換
+ * 
+ * <p>
+ * {@link android.hardware.SensorManager#remapCoordinateSystem(float[], int, int, float[])} と同じ変換を，
+ * 列の並べ替えと符号の反転として事前に求めた表で行う．有効な軸の組み合わせ24通りの表はクラスの初期化時に生成し，
+ * 変換は数回の配列の代入で済む．インスタンスは不変で，スレッド間で共有できる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public final class CoordinateRemap {
+
+	/** 変換しない */
+	public static final CoordinateRemap IDENTITY;
+
+	/** 軸の組み合わせごとの変換．無効な組み合わせは null */
+	private static final CoordinateRemap[] TABLE;
+
+	static {
+		Axis[] axes = Axis.values();
+		TABLE = new CoordinateRemap[axes.length * axes.length];
+		for (Axis x : axes) {
+			for (Axis y : axes) {
+				if (x.getIndex() != y.getIndex()) {
+					TABLE[x.ordinal() * axes.length + y.ordinal()] = new CoordinateRemap(x, y);
+				}
+			}
+		}
+		IDENTITY = TABLE[Axis.X.ordinal() * axes.length + Axis.Y.ordinal()];
+	}
+
+	/** 端末のX軸に対応させる軸 */
+	private final Axis x;
+	/** 端末のY軸に対応させる軸 */
+	private final Axis y;
+	/** 変換後の0列目の変換前の列 */
+	private final int source0;
+	/** 変換後の1列目の変換前の列 */
+	private final int source1;
+	/** 変換後の2列目の変換前の列 */
+	private final int source2;
+	/** 変換後の0列目の符号 */
+	private final float sign0;
+	/** 変換後の1列目の符号 */
+	private final float sign1;
+	/** 変換後の2列目の符号 */
+	private final float sign2;
+	/** 変換しないかどうか */
+	private final boolean identity;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param x 端末のX軸に対応させる軸
+	 * @param y 端末のY軸に対応させる軸
+	 */
+	private CoordinateRemap(Axis x, Axis y) {
+		this.x = x;
+		this.y = y;
+
+		// SensorManager.remapCoordinateSystem と同じ規則で列の並びと符号を求める
+		int z = x.getValue() ^ y.getValue();
+		int xi = x.getIndex();
+		int yi = y.getIndex();
+		int zi = (z & 0x3) - 1;
+		if (((xi ^ (zi + 1) % 3) | (yi ^ (zi + 2) % 3)) != 0) {
+			z ^= 0x80;
+		}
+
+		int[] source = new int[3];
+		float[] sign = new float[3];
+		source[xi] = 0;
+		sign[xi] = x.isNegative() ? -1.0f : 1.0f;
+		source[yi] = 1;
+		sign[yi] = y.isNegative() ? -1.0f : 1.0f;
+		source[zi] = 2;
+		sign[zi] = z >= 0x80 ? -1.0f : 1.0f;
+
+		this.source0 = source[0];
+		this.source1 = source[1];
+		this.source2 = source[2];
+		this.sign0 = sign[0];
+		this.sign1 = sign[1];
+		this.sign2 = sign[2];
+		this.identity = x == Axis.X && y == Axis.Y;
+	}
+
+	/**
+	 * 軸の組み合わせの変換を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param x 端末のX軸に対応させる軸
+	 * @param y 端末のY軸に対応させる軸
+	 * @return CoordinateRemap
+	 */
+	public static CoordinateRemap of(Axis x, Axis y) {
+		if (x == null) {
+			throw new IllegalArgumentException("xがnullです．");
+		}
+		if (y == null) {
+			throw new IllegalArgumentException("yがnullです．");
+		}
+
+		CoordinateRemap remap = TABLE[x.ordinal() * Axis.values().length + y.ordinal()];
+		if (remap == null) {
+			// 同じ軸または逆向きの同じ軸の組み合わせ
+			throw new IllegalArgumentException("yが不正な値です．");
+		}
+		return remap;
+	}
+
+	/**
+	 * 軸の組み合わせの変換を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param x 端末のX軸に対応させる軸．{@link android.hardware.SensorManager#AXIS_X} などの値
+	 * @param y 端末のY軸に対応させる軸．{@link android.hardware.SensorManager#AXIS_X} などの値
+	 * @return CoordinateRemap
+	 */
+	public static CoordinateRemap of(int x, int y) {
+		Axis axisX = Axis.fromValue(x);
+		if (axisX == null) {
+			throw new IllegalArgumentException("xが不正な値です．");
+		}
+		Axis axisY = Axis.fromValue(y);
+		if (axisY == null) {
+			throw new IllegalArgumentException("yが不正な値です．");
+		}
+
+		return of(axisX, axisY);
+	}
+
+	/**
+	 * 画面の回転に合わせる変換を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param rotation {@code Display#getRotation()} の値
+	 * @return CoordinateRemap
+	 */
+	public static CoordinateRemap forDisplayRotation(int rotation) {
+		switch (rotation) {
+		case 0:
+			// Surface.ROTATION_0
+			return IDENTITY;
+		case 1:
+			// Surface.ROTATION_90
+			return of(Axis.Y, Axis.MINUS_X);
+		case 2:
+			// Surface.ROTATION_180
+			return of(Axis.MINUS_X, Axis.MINUS_Y);
+		case 3:
+			// Surface.ROTATION_270
+			return of(Axis.MINUS_Y, Axis.X);
+		default:
+			throw new IllegalArgumentException("rotationが不正な値です．");
+		}
+	}
+
+	/**
+	 * 回転行列の座標系を変換する
+	 * 
+	 * <p>
+	 * 入力と出力に同じ配列を指定できる．4×4の行列の場合，回転以外の要素は単位行列の値にする．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param in 3×3または4×4の回転行列
+	 * @param out 出力先．inと同じ長さであること
+	 */
+	public void apply(float[] in, float[] out) {
+		if (in == null || (in.length != 9 && in.length != 16)) {
+			throw new IllegalArgumentException("inが不正な値です．");
+		}
+		if (out == null || out.length != in.length) {
+			throw new IllegalArgumentException("outが不正な値です．");
+		}
+
+		int rowLength = in.length == 16 ? 4 : 3;
+		for (int row = 0; row < 3 * rowLength; row += rowLength) {
+			float v0 = in[row];
+			float v1 = in[row + 1];
+			float v2 = in[row + 2];
+			out[row] = sign0 * (source0 == 0 ? v0 : source0 == 1 ? v1 : v2);
+			out[row + 1] = sign1 * (source1 == 0 ? v0 : source1 == 1 ? v1 : v2);
+			out[row + 2] = sign2 * (source2 == 0 ? v0 : source2 == 1 ? v1 : v2);
+		}
+		if (rowLength == 4) {
+			out[3] = 0.0f;
+			out[7] = 0.0f;
+			out[11] = 0.0f;
+			out[12] = 0.0f;
+			out[13] = 0.0f;
+			out[14] = 0.0f;
+			out[15] = 1.0f;
+		}
+	}
+
+	/**
+	 * 端末のX軸に対応させる軸を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 軸
+	 */
+	public Axis getX() {
+		return x;
+	}
+
+	/**
+	 * 端末のY軸に対応させる軸を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 軸
+	 */
+	public Axis getY() {
+		return y;
+	}
+
+	/**
+	 * 変換しないかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 変換しない場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isIdentity() {
+		return identity;
+	}
+
+	@Override
+	public String toString() {
+		return "CoordinateRemap[x=" + x + ", y=" + y + "]";
+	}
+}
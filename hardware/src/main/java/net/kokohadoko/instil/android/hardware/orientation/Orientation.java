@@ -0,0 +1,109 @@
+package net.kokohadoko.instil.android.hardware.orientation;
+
+/**
+ * 方位角・傾斜角・回転角を保持する
+ * 
+ * <p>
+ * 値を上書きして使い回すことを前提としており，センサーの値を受信するたびに生成する必要はない．
+ * 角度の単位はラジアン．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class Orientation {
+
+	/** 方位角 */
+	private float azimuth;
+	/** 傾斜角 */
+	private float pitch;
+	/** 回転角 */
+	private float roll;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	public Orientation() {
+	}
+
+	/**
+	 * 値を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param azimuth 方位角
+	 * @param pitch 傾斜角
+	 * @param roll 回転角
+	 */
+	public void set(float azimuth, float pitch, float roll) {
+		this.azimuth = azimuth;
+		this.pitch = pitch;
+		this.roll = roll;
+	}
+
+	/**
+	 * 値を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param values 方位角・傾斜角・回転角の順の配列．長さが3以上であること
+	 */
+	public void set(float[] values) {
+		if (values == null || values.length < 3) {
+			throw new IllegalArgumentException("valuesが不正な値です．");
+		}
+
+		set(values[0], values[1], values[2]);
+	}
+
+	/**
+	 * 値を配列に書き込む
+	 * 
+	 * @since 0.0.1
+	 * @param out 方位角・傾斜角・回転角の順の出力先．長さが3以上であること
+	 */
+	public void copyTo(float[] out) {
+		if (out == null || out.length < 3) {
+			throw new IllegalArgumentException("outが不正な値です．");
+		}
+
+		out[0] = azimuth;
+		out[1] = pitch;
+		out[2] = roll;
+	}
+
+	/**
+	 * 方位角を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 方位角
+	 */
+	public float getAzimuth() {
+		return azimuth;
+	}
+
+	/**
+	 * 傾斜角を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 傾斜角
+	 */
+	public float getPitch() {
+		return pitch;
+	}
+
+	/**
+	 * 回転角を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 回転角
+	 */
+	public float getRoll() {
+		return roll;
+	}
+
+	@Override
+	public String toString() {
+		return "Orientation[azimuth=" + azimuth + ", pitch=" + pitch + ", roll=" + roll + "]";
+	}
+}
@@ -0,0 +1,287 @@
+package net.kokohadoko.instil.android.hardware.orientation;
+
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+
+/**
+ * 加速度センサーと地磁気センサーの値から方位角・傾斜角・回転角を計算する
+ * 
+ * <p>
+ * 回転行列などの作業領域をインスタンスで保持し，結果は呼び出し元の配列に書き込むため，
+ * センサーの値を受信するたびに呼び出してもオブジェクトを生成しない．
+ * 計算は {@link SensorManager#getRotationMatrix(float[], float[], float[], float[])}・
+ * {@link SensorManager#remapCoordinateSystem(float[], int, int, float[])}・
+ * {@link SensorManager#getOrientation(float[], float[])} と同じ結果になる．
+ * 座標系の変換は {@link CoordinateRemap} の表で行う．
+ * スレッドセーフではないため，1つのスレッドから使用すること．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class OrientationComputer {
+
+	/** 回転行列の要素数 */
+	public static final int MATRIX_SIZE = 9;
+	/** 軸の数 */
+	public static final int AXIS_NUM = 3;
+
+	/** 自由落下とみなす加速度の2乗 */
+	private static final float FREE_FALL_GRAVITY_SQUARED = 0.01f * SensorManager.GRAVITY_EARTH * SensorManager.GRAVITY_EARTH;
+	/** 地磁気と重力の外積の最小の大きさ */
+	private static final float MIN_HORIZONTAL_NORM = 0.1f;
+
+	/** 加速度センサーの値 */
+	private final float[] gravity = new float[AXIS_NUM];
+	/** 地磁気センサーの値 */
+	private final float[] geomagnetic = new float[AXIS_NUM];
+	/** 回転行列 */
+	private final float[] rotation = new float[MATRIX_SIZE];
+	/** 座標系を変換した回転行列 */
+	private final float[] remapped = new float[MATRIX_SIZE];
+
+	/** 計算結果の作業領域 */
+	private final float[] angles = new float[AXIS_NUM];
+
+	/** 座標系の変換 */
+	private final CoordinateRemap remap;
+
+	/** 加速度センサーの値を受け取ったかどうか */
+	private boolean hasGravity;
+	/** 地磁気センサーの値を受け取ったかどうか */
+	private boolean hasGeomagnetic;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * <p>
+	 * 端末の座標系のまま計算する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 */
+	public OrientationComputer() {
+		this(CoordinateRemap.IDENTITY);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param x 端末のX軸に対応させる軸．{@link SensorManager#AXIS_X} などの値
+	 * @param y 端末のY軸に対応させる軸．{@link SensorManager#AXIS_X} などの値
+	 */
+	public OrientationComputer(int x, int y) {
+		this(CoordinateRemap.of(x, y));
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param x 端末のX軸に対応させる軸
+	 * @param y 端末のY軸に対応させる軸
+	 */
+	public OrientationComputer(Axis x, Axis y) {
+		this(CoordinateRemap.of(x, y));
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param remap 座標系の変換
+	 */
+	public OrientationComputer(CoordinateRemap remap) {
+		if (remap == null) {
+			throw new IllegalArgumentException("remapがnullです．");
+		}
+
+		this.remap = remap;
+	}
+
+	/**
+	 * 加速度センサーの値を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param values 加速度センサーの値
+	 */
+	public void setAccelerometer(float[] values) {
+		if (values == null || values.length < AXIS_NUM) {
+			throw new IllegalArgumentException("valuesが不正な値です．");
+		}
+
+		gravity[0] = values[0];
+		gravity[1] = values[1];
+		gravity[2] = values[2];
+		hasGravity = true;
+	}
+
+	/**
+	 * 地磁気センサーの値を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param values 地磁気センサーの値
+	 */
+	public void setMagnetometer(float[] values) {
+		if (values == null || values.length < AXIS_NUM) {
+			throw new IllegalArgumentException("valuesが不正な値です．");
+		}
+
+		geomagnetic[0] = values[0];
+		geomagnetic[1] = values[1];
+		geomagnetic[2] = values[2];
+		hasGeomagnetic = true;
+	}
+
+	/**
+	 * センサー種別に応じて値を設定する
+	 * 
+	 * @since 0.0.1
+	 * @param type センサー種別
+	 * @param values センサーの値
+	 * @return 値を設定した場合に true, 対象外のセンサーの場合に falseを返す
+	 */
+	public boolean setSensorValues(int type, float[] values) {
+		if (type == Sensor.TYPE_ACCELEROMETER) {
+			setAccelerometer(values);
+			return true;
+		} else if (type == Sensor.TYPE_MAGNETIC_FIELD) {
+			setMagnetometer(values);
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * 両方のセンサーの値を受け取ったかどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 受け取った場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isReady() {
+		return hasGravity && hasGeomagnetic;
+	}
+
+	/**
+	 * 受け取った値を破棄する
+	 * 
+	 * @since 0.0.1
+	 */
+	public void reset() {
+		hasGravity = false;
+		hasGeomagnetic = false;
+	}
+
+	/**
+	 * 方位角・傾斜角・回転角を計算する
+	 * 
+	 * @since 0.0.1
+	 * @param out 方位角・傾斜角・回転角のラジアンの出力先．長さが3以上であること
+	 * @return 計算できた場合に true, 値が揃っていない・自由落下中などで計算できない場合に falseを返す
+	 */
+	public boolean compute(float[] out) {
+		if (out == null || out.length < AXIS_NUM) {
+			throw new IllegalArgumentException("outが不正な値です．");
+		}
+		if (!isReady() || !computeRotation()) {
+			return false;
+		}
+
+		float[] r = rotation;
+		if (!remap.isIdentity()) {
+			remap.apply(rotation, remapped);
+			r = remapped;
+		}
+
+		out[0] = (float) Math.atan2(r[1], r[4]);
+		out[1] = (float) Math.asin(-r[7]);
+		out[2] = (float) Math.atan2(-r[6], r[8]);
+		return true;
+	}
+
+	/**
+	 * 方位角・傾斜角・回転角を計算する
+	 * 
+	 * @since 0.0.1
+	 * @param out 方位角・傾斜角・回転角の出力先
+	 * @return 計算できた場合に true, 値が揃っていない・自由落下中などで計算できない場合に falseを返す
+	 */
+	public boolean compute(Orientation out) {
+		if (out == null) {
+			throw new IllegalArgumentException("outがnullです．");
+		}
+		if (!compute(angles)) {
+			return false;
+		}
+
+		out.set(angles[0], angles[1], angles[2]);
+		return true;
+	}
+
+	/**
+	 * 最後に計算した回転行列を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param out 3×3の回転行列の出力先．長さが9以上であること
+	 */
+	public void getRotationMatrix(float[] out) {
+		if (out == null || out.length < MATRIX_SIZE) {
+			throw new IllegalArgumentException("outが不正な値です．");
+		}
+
+		System.arraycopy(remap.isIdentity() ? rotation : remapped, 0, out, 0, MATRIX_SIZE);
+	}
+
+	/**
+	 * 加速度センサーと地磁気センサーの値から回転行列を計算する
+	 * 
+	 * @since 0.0.1
+	 * @return 計算できた場合に true, そうでない場合に falseを返す
+	 */
+	private boolean computeRotation() {
+		float ax = gravity[0];
+		float ay = gravity[1];
+		float az = gravity[2];
+		float normSquaredA = ax * ax + ay * ay + az * az;
+		if (normSquaredA < FREE_FALL_GRAVITY_SQUARED) {
+			return false;
+		}
+
+		float ex = geomagnetic[0];
+		float ey = geomagnetic[1];
+		float ez = geomagnetic[2];
+		float hx = ey * az - ez * ay;
+		float hy = ez * ax - ex * az;
+		float hz = ex * ay - ey * ax;
+		float normH = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+		if (normH < MIN_HORIZONTAL_NORM) {
+			// 端末が磁北を向いて垂直に近い，または地磁気の値が小さすぎる
+			return false;
+		}
+
+		float invH = 1.0f / normH;
+		hx *= invH;
+		hy *= invH;
+		hz *= invH;
+		float invA = 1.0f / (float) Math.sqrt(normSquaredA);
+		ax *= invA;
+		ay *= invA;
+		az *= invA;
+		float mx = ay * hz - az * hy;
+		float my = az * hx - ax * hz;
+		float mz = ax * hy - ay * hx;
+
+		rotation[0] = hx;
+		rotation[1] = hy;
+		rotation[2] = hz;
+		rotation[3] = mx;
+		rotation[4] = my;
+		rotation[5] = mz;
+		rotation[6] = ax;
+		rotation[7] = ay;
+		rotation[8] = az;
+		return true;
+	}
+}
@@ -0,0 +1,102 @@
+package net.kokohadoko.instil.android.hardware.record;
+
+import java.util.Locale;
+
+/**
+ * {@link SensorRecorder} が書き込むファイルの形式
+ * 
+ * <p>
+ * ファイルは32バイトのヘッダーと固定長のレコードで構成する．数値はリトルエンディアンで格納する．
+ * </p>
+ * 
+ * <pre>
+ * ヘッダー
+ *   0  int   マジックナンバー
+ *   4  int   バージョン
+ *   8  int   レコードのバイト数
+ *  12  int   ファイルの連番
+ *  16  long  作成した時刻 (System.currentTimeMillis)
+ *  24  long  レコード数
+ * レコード
+ *   0  long  タイムスタンプ (SensorEvent.timestamp)
+ *   8  float 値 × 3
+ *  20  int   センサー種別
+ * </pre>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public final class SensorRecordFormat {
+
+	/** マジックナンバー */
+	public static final int MAGIC = 0x49535231;
+	/** バージョン */
+	public static final int VERSION = 1;
+	/** ヘッダーのバイト数 */
+	public static final int HEADER_SIZE = 32;
+	/** 1件あたりの値の数 */
+	public static final int VALUE_COUNT = 3;
+	/** レコードのバイト数 */
+	public static final int RECORD_SIZE = 8 + 4 * VALUE_COUNT + 4;
+	/** ファイルの拡張子 */
+	public static final String EXTENSION = ".bin";
+
+	/** ファイルの連番の位置 */
+	static final int SEQUENCE_OFFSET = 12;
+	/** 作成した時刻の位置 */
+	static final int CREATED_OFFSET = 16;
+	/** レコード数の位置 */
+	static final int COUNT_OFFSET = 24;
+
+	/**
+	 * デフォルトコンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	private SensorRecordFormat() {
+	}
+
+	/**
+	 * ファイル名を生成する
+	 * 
+	 * @since 0.0.1
+	 * @param prefix ファイル名の接頭辞
+	 * @param sequence ファイルの連番
+	 * @return ファイル名
+	 */
+	public static String fileName(String prefix, int sequence) {
+		// 端末のロケールによってはアラビア数字以外で出力されるため，ロケールを固定する
+		return String.format(Locale.US, "%s_%05d%s", prefix, sequence, EXTENSION);
+	}
+
+	/**
+	 * ファイル名から連番を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param prefix ファイル名の接頭辞
+	 * @param name ファイル名
+	 * @return 連番, 接頭辞の記録ファイルでない場合は -1
+	 */
+	public static int parseSequence(String prefix, String name) {
+		int start = prefix.length() + 1;
+		int end = name.length() - EXTENSION.length();
+		if (end <= start || !name.startsWith(prefix + "_") || !name.endsWith(EXTENSION)) {
+			return -1;
+		}
+
+		// 接頭辞が別の記録の接頭辞の先頭と一致する場合を除くため，数字のみを連番とみなす
+		long sequence = 0;
+		for (int i = start; i < end; i++) {
+			char c = name.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			sequence = sequence * 10 + (c - '0');
+			if (sequence > Integer.MAX_VALUE) {
+				return -1;
+			}
+		}
+
+		return (int) sequence;
+	}
+}
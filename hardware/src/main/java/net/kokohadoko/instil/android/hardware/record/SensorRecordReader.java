@@ -0,0 +1,210 @@
+package net.kokohadoko.instil.android.hardware.record;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * {@link SensorRecorder} が書き込んだファイルを読み込む
+ * 
+ * <p>
+ * ファイルを読み込み専用でメモリマップし，レコードを呼び出し元の配列に順に読み込む．
+ * 読み込みでオブジェクトを生成しない．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class SensorRecordReader {
+
+	/** ファイル */
+	private final RandomAccessFile file;
+	/** ファイルのマップ */
+	private final MappedByteBuffer buffer;
+	/** ファイルの連番 */
+	private final int sequence;
+	/** 作成した時刻 */
+	private final long createdAt;
+	/** レコード数 */
+	private final long recordCount;
+	/** 読み込んだレコード数 */
+	private long position;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param source 読み込むファイル
+	 * @throws IOException ファイルを開けない場合・形式が正しくない場合に例外を生成する
+	 */
+	public SensorRecordReader(File source) throws IOException {
+		if (source == null) {
+			throw new IllegalArgumentException("sourceがnullです．");
+		}
+
+		file = new RandomAccessFile(source, "r");
+		try {
+			long length = file.length();
+			if (length < SensorRecordFormat.HEADER_SIZE) {
+				throw new IOException("ヘッダーがありません．" + source);
+			}
+
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt(0) != SensorRecordFormat.MAGIC) {
+				throw new IOException("形式が正しくありません．" + source);
+			}
+			if (buffer.getInt(4) != SensorRecordFormat.VERSION || buffer.getInt(8) != SensorRecordFormat.RECORD_SIZE) {
+				throw new IOException("バージョンが対応していません．" + source);
+			}
+
+			sequence = buffer.getInt(SensorRecordFormat.SEQUENCE_OFFSET);
+			createdAt = buffer.getLong(SensorRecordFormat.CREATED_OFFSET);
+			// 書き込み中に終了した場合は，ヘッダーのレコード数とファイルの長さの小さい方を有効とする
+			long available = (length - SensorRecordFormat.HEADER_SIZE) / SensorRecordFormat.RECORD_SIZE;
+			recordCount = Math.max(0, Math.min(buffer.getLong(SensorRecordFormat.COUNT_OFFSET), available));
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * ディレクトリ内の記録ファイルを連番順に取得する
+	 * 
+	 * @since 0.0.1
+	 * @param directory ディレクトリ
+	 * @param prefix ファイル名の接頭辞
+	 * @return 記録ファイルの一覧
+	 */
+	public static File[] listFiles(File directory, final String prefix) {
+		if (directory == null) {
+			throw new IllegalArgumentException("directoryがnullです．");
+		}
+		if (prefix == null) {
+			throw new IllegalArgumentException("prefixがnullです．");
+		}
+
+		File[] files = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(prefix + "_") && name.endsWith(SensorRecordFormat.EXTENSION);
+			}
+		});
+		if (files == null) {
+			return new File[0];
+		}
+
+		// 連番は0埋めしているため名前順が連番順になる
+		Arrays.sort(files);
+		return files;
+	}
+
+	/**
+	 * レコードを読み込む
+	 * 
+	 * @since 0.0.1
+	 * @param timestamps タイムスタンプの出力先．max件以上の長さであること
+	 * @param sensorTypes センサー種別の出力先．max件以上の長さであること, 不要な場合は null
+	 * @param values 値の出力先．max×3以上の長さであること
+	 * @param max 最大の件数
+	 * @return 読み込んだ件数, 終端に達している場合は 0を返す
+	 */
+	public int read(long[] timestamps, int[] sensorTypes, float[] values, int max) {
+		if (timestamps == null || timestamps.length < max) {
+			throw new IllegalArgumentException("timestampsが不正な値です．");
+		}
+		if (sensorTypes != null && sensorTypes.length < max) {
+			throw new IllegalArgumentException("sensorTypesが不正な値です．");
+		}
+		if (values == null || values.length < max * SensorRecordFormat.VALUE_COUNT) {
+			throw new IllegalArgumentException("valuesが不正な値です．");
+		}
+
+		int count = (int) Math.min(max, recordCount - position);
+		int offset = SensorRecordFormat.HEADER_SIZE + (int) position * SensorRecordFormat.RECORD_SIZE;
+		for (int i = 0; i < count; i++) {
+			timestamps[i] = buffer.getLong(offset);
+			int base = i * SensorRecordFormat.VALUE_COUNT;
+			values[base] = buffer.getFloat(offset + 8);
+			values[base + 1] = buffer.getFloat(offset + 12);
+			values[base + 2] = buffer.getFloat(offset + 16);
+			if (sensorTypes != null) {
+				sensorTypes[i] = buffer.getInt(offset + 20);
+			}
+			offset += SensorRecordFormat.RECORD_SIZE;
+		}
+
+		position += count;
+		return count;
+	}
+
+	/**
+	 * 読み込む位置を変更する
+	 * 
+	 * @since 0.0.1
+	 * @param position レコードの位置
+	 */
+	public void seek(long position) {
+		if (position < 0 || position > recordCount) {
+			throw new IllegalArgumentException("positionが不正な値です．");
+		}
+
+		this.position = position;
+	}
+
+	/**
+	 * 読み込んでいないレコード数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return レコード数
+	 */
+	public long remaining() {
+		return recordCount - position;
+	}
+
+	/**
+	 * レコード数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return レコード数
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * ファイルの連番を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 連番
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * 作成した時刻を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return {@link System#currentTimeMillis()} の時刻
+	 */
+	public long getCreatedAt() {
+		return createdAt;
+	}
+
+	/**
+	 * ファイルを閉じる
+	 * 
+	 * @since 0.0.1
+	 * @throws IOException ファイルを閉じられない場合に例外を生成する
+	 */
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,281 @@
+package net.kokohadoko.instil.android.hardware.record;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import net.kokohadoko.instil.android.hardware.stream.SensorBatchConsumer;
+import net.kokohadoko.instil.android.hardware.stream.SensorStream;
+import android.util.Log;
+
+/**
+ * センサーの値を固定長のバイナリ形式でファイルに記録する
+ * 
+ * <p>
+ * {@link SensorStream#setConsumer(SensorBatchConsumer, int, long)} に設定して使用し，
+ * ストリームの読み込みスレッドでメモリマップしたファイルに書き込む．
+ * ファイルが一杯になるか一定時間が経過すると次の連番のファイルに切り替える．
+ * 同じ接頭辞のファイルが既にある場合は，最後の連番の次から記録する．
+ * 形式は {@link SensorRecordFormat} を参照．
+ * {@link #close()} はストリームを終了してから呼び出すこと．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class SensorRecorder implements SensorBatchConsumer {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = SensorRecorder.class.getSimpleName();
+
+	/** デフォルトの1ファイルあたりのレコード数 */
+	public static final int DEFAULT_RECORDS_PER_FILE = 1 << 16;
+	/** デフォルトのファイルを切り替えるミリ秒 */
+	public static final long DEFAULT_ROLLOVER_INTERVAL = 10 * 60 * 1000;
+
+	/** 保存先のディレクトリ */
+	private final File directory;
+	/** ファイル名の接頭辞 */
+	private final String prefix;
+	/** 1ファイルあたりのレコード数 */
+	private final int recordsPerFile;
+	/** ファイルを切り替えるナノ秒 */
+	private final long rolloverInterval;
+
+	/** 書き込み中のファイル */
+	private RandomAccessFile file;
+	/** 書き込み中のファイルのマップ */
+	private MappedByteBuffer buffer;
+	/** 書き込み中のファイルの連番 */
+	private int sequence;
+	/** 書き込み中のファイルのレコード数 */
+	private int count;
+	/** 書き込み中のファイルを開いた時刻 */
+	private long openedAt;
+	/** 書き込んだレコード数 */
+	private volatile long writtenCount;
+	/** 発生したエラー */
+	private volatile IOException failure;
+	/** 終了したかどうか */
+	private boolean closed;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param directory 保存先のディレクトリ
+	 * @param prefix ファイル名の接頭辞
+	 */
+	public SensorRecorder(File directory, String prefix) {
+		this(directory, prefix, DEFAULT_RECORDS_PER_FILE, DEFAULT_ROLLOVER_INTERVAL);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param directory 保存先のディレクトリ
+	 * @param prefix ファイル名の接頭辞
+	 * @param recordsPerFile 1ファイルあたりのレコード数
+	 * @param rolloverInterval ファイルを切り替えるミリ秒．0の場合は時間では切り替えない
+	 */
+	public SensorRecorder(File directory, String prefix, int recordsPerFile, long rolloverInterval) {
+		if (directory == null) {
+			throw new IllegalArgumentException("directoryがnullです．");
+		}
+		if (prefix == null || prefix.length() == 0) {
+			throw new IllegalArgumentException("prefixが不正な値です．");
+		}
+		if (recordsPerFile <= 0 || recordsPerFile > (Integer.MAX_VALUE - SensorRecordFormat.HEADER_SIZE) / SensorRecordFormat.RECORD_SIZE) {
+			throw new IllegalArgumentException("recordsPerFileが不正な値です．");
+		}
+		if (rolloverInterval < 0) {
+			throw new IllegalArgumentException("rolloverIntervalが不正な値です．");
+		}
+
+		this.directory = directory;
+		this.prefix = prefix;
+		this.recordsPerFile = recordsPerFile;
+		this.rolloverInterval = TimeUnit.MILLISECONDS.toNanos(rolloverInterval);
+	}
+
+	@Override
+	public synchronized void onBatch(long[] timestamps, int[] types, float[] values, int stride, int count) {
+		if (closed || failure != null) {
+			return;
+		}
+
+		try {
+			if (buffer == null || (rolloverInterval > 0 && System.nanoTime() - openedAt >= rolloverInterval)) {
+				rollover();
+			}
+			for (int i = 0; i < count; i++) {
+				if (this.count >= recordsPerFile) {
+					rollover();
+				}
+
+				int base = i * stride;
+				buffer.putLong(timestamps[i]);
+				buffer.putFloat(values[base]);
+				buffer.putFloat(stride > 1 ? values[base + 1] : 0f);
+				buffer.putFloat(stride > 2 ? values[base + 2] : 0f);
+				buffer.putInt(types != null ? types[i] : 0);
+				this.count++;
+			}
+
+			// 読み込み側が有効な範囲を判別できるようにバッチごとに件数を更新する
+			buffer.putLong(SensorRecordFormat.COUNT_OFFSET, this.count);
+			writtenCount += count;
+		} catch (IOException e) {
+			Log.e(LOG_TAG, "書き込みに失敗しました．", e);
+			failure = e;
+			closeFile();
+		}
+	}
+
+	/**
+	 * 次の連番のファイルに切り替える
+	 * 
+	 * @since 0.0.1
+	 * @throws IOException ファイルを開けない場合に例外を生成する
+	 */
+	private void rollover() throws IOException {
+		if (buffer != null) {
+			sequence++;
+		} else {
+			// 以前の記録を上書きしないように，既存のファイルの次の連番から始める
+			sequence = nextSequence();
+		}
+		closeFile();
+
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("ディレクトリを作成できません．" + directory);
+		}
+
+		File target = new File(directory, SensorRecordFormat.fileName(prefix, sequence));
+		long size = SensorRecordFormat.HEADER_SIZE + (long) recordsPerFile * SensorRecordFormat.RECORD_SIZE;
+		file = new RandomAccessFile(target, "rw");
+		file.setLength(0);
+		buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(SensorRecordFormat.MAGIC);
+		buffer.putInt(SensorRecordFormat.VERSION);
+		buffer.putInt(SensorRecordFormat.RECORD_SIZE);
+		buffer.putInt(sequence);
+		buffer.putLong(System.currentTimeMillis());
+		buffer.putLong(0);
+		count = 0;
+		openedAt = System.nanoTime();
+	}
+
+	/**
+	 * 保存先のディレクトリにある同じ接頭辞のファイルの次の連番を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 連番
+	 * @throws IOException 連番が上限に達している場合に例外を生成する
+	 */
+	private int nextSequence() throws IOException {
+		int last = -1;
+		for (File existing : SensorRecordReader.listFiles(directory, prefix)) {
+			last = Math.max(last, SensorRecordFormat.parseSequence(prefix, existing.getName()));
+		}
+		if (last == Integer.MAX_VALUE) {
+			throw new IOException("連番が上限に達しています．" + prefix);
+		}
+
+		return last + 1;
+	}
+
+	/**
+	 * 書き込み中のファイルを書き込まれた長さに切り詰めて閉じる
+	 * 
+	 * @since 0.0.1
+	 */
+	private void closeFile() {
+		if (file == null) {
+			return;
+		}
+
+		try {
+			if (buffer != null) {
+				buffer.putLong(SensorRecordFormat.COUNT_OFFSET, count);
+				buffer.force();
+			}
+			file.getChannel().truncate(SensorRecordFormat.HEADER_SIZE + (long) count * SensorRecordFormat.RECORD_SIZE);
+		} catch (IOException e) {
+			Log.w(LOG_TAG, "ファイルを切り詰められません．", e);
+		} finally {
+			try {
+				file.close();
+			} catch (IOException e) {
+				Log.w(LOG_TAG, "ファイルを閉じられません．", e);
+			}
+			file = null;
+			buffer = null;
+		}
+	}
+
+	/**
+	 * 書き込み中のファイルをディスクに書き出す
+	 * 
+	 * @since 0.0.1
+	 */
+	public synchronized void sync() {
+		if (buffer != null) {
+			buffer.force();
+		}
+	}
+
+	/**
+	 * 記録を終了する
+	 * 
+	 * @since 0.0.1
+	 * @throws IOException 書き込み中にエラーが発生していた場合に例外を生成する
+	 */
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		closeFile();
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * 書き込んだレコード数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return レコード数
+	 */
+	public long getWrittenCount() {
+		return writtenCount;
+	}
+
+	/**
+	 * 書き込み中のファイルの連番を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 連番
+	 */
+	public synchronized int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * 発生したエラーを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return エラー, 発生していない場合は null
+	 */
+	public IOException getFailure() {
+		return failure;
+	}
+}
@@ -0,0 +1,26 @@
+package net.kokohadoko.instil.android.hardware.stream;
+
+/**
+ * {@link SensorStream} から読み込んだセンサーの値をまとめて受け取るインターフェース
+ * 
+ * <p>
+ * 引数の配列は呼び出しごとに再利用されるため，呼び出し後も参照する場合は複製すること．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public interface SensorBatchConsumer {
+
+	/**
+	 * センサーの値を受け取る
+	 * 
+	 * @since 0.0.1
+	 * @param timestamps タイムスタンプ
+	 * @param types センサー種別
+	 * @param values 値．i件目の値は i×stride から stride 個
+	 * @param stride 1件あたりの値の数
+	 * @param count 件数
+	 */
+	void onBatch(long[] timestamps, int[] types, float[] values, int stride, int count);
+}
@@ -0,0 +1,224 @@
+package net.kokohadoko.instil.android.hardware.stream;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * センサーの値とタイムスタンプを格納する1対1のリングバッファ
+ * 
+ * <p>
+ * 書き込みを行うスレッドと読み込みを行うスレッドがそれぞれ1つの場合に，ロックを使用せずに受け渡す．
+ * 値・タイムスタンプ・センサー種別は事前に確保した配列に格納するため，書き込みと読み込みで
+ * オブジェクトを生成しない．バッファが一杯の場合は書き込みを破棄し，破棄した件数を数える．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class SensorRingBuffer {
+
+	/** デフォルトの1件あたりの値の数 */
+	public static final int DEFAULT_STRIDE = 3;
+
+	/** 容量 */
+	private final int capacity;
+	/** 添字のマスク */
+	private final int mask;
+	/** 1件あたりの値の数 */
+	private final int stride;
+	/** タイムスタンプ */
+	private final long[] timestamps;
+	/** センサー種別 */
+	private final int[] types;
+	/** 値 */
+	private final float[] values;
+
+	/** 次に書き込む位置．書き込み側のみが更新する */
+	private final AtomicLong head = new AtomicLong();
+	/** 次に読み込む位置．読み込み側のみが更新する */
+	private final AtomicLong tail = new AtomicLong();
+	/** 書き込み側が最後に参照した読み込み位置 */
+	private long cachedTail;
+	/** 読み込み側が最後に参照した書き込み位置 */
+	private long cachedHead;
+	/** 破棄した件数．書き込み側のみが更新する */
+	private volatile long dropped;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param capacity 容量．2のべき乗に切り上げる
+	 */
+	public SensorRingBuffer(int capacity) {
+		this(capacity, DEFAULT_STRIDE);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param capacity 容量．2のべき乗に切り上げる
+	 * @param stride 1件あたりの値の数
+	 */
+	public SensorRingBuffer(int capacity, int stride) {
+		if (capacity <= 0 || capacity > 1 << 24) {
+			throw new IllegalArgumentException("capacityが不正な値です．");
+		}
+		if (stride <= 0) {
+			throw new IllegalArgumentException("strideが不正な値です．");
+		}
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.capacity = size;
+		this.mask = size - 1;
+		this.stride = stride;
+		this.timestamps = new long[size];
+		this.types = new int[size];
+		this.values = new float[size * stride];
+	}
+
+	/**
+	 * 値を書き込む．書き込み側のスレッドから呼び出すこと
+	 * 
+	 * <p>
+	 * 値の数が1件あたりの値の数より少ない場合は残りを0で埋め，多い場合は切り捨てる．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param type センサー種別
+	 * @param timestamp タイムスタンプ
+	 * @param src 値
+	 * @param count 値の数
+	 * @return 書き込んだ場合に true, バッファが一杯の場合に falseを返す
+	 */
+	public boolean offer(int type, long timestamp, float[] src, int count) {
+		long h = head.get();
+		if (h - cachedTail >= capacity) {
+			cachedTail = tail.get();
+			if (h - cachedTail >= capacity) {
+				dropped++;
+				return false;
+			}
+		}
+
+		int index = (int) h & mask;
+		timestamps[index] = timestamp;
+		types[index] = type;
+		int base = index * stride;
+		int n = Math.min(count, stride);
+		System.arraycopy(src, 0, values, base, n);
+		for (int i = n; i < stride; i++) {
+			values[base + i] = 0f;
+		}
+
+		// 値を書き込んでから位置を公開する
+		head.lazySet(h + 1);
+		return true;
+	}
+
+	/**
+	 * 値を読み込み，読み込んだ分を解放する．読み込み側のスレッドから呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @param outTimestamps タイムスタンプの出力先．max件以上の長さであること
+	 * @param outTypes センサー種別の出力先．max件以上の長さであること, 不要な場合は null
+	 * @param outValues 値の出力先．max×1件あたりの値の数以上の長さであること
+	 * @param max 最大の件数
+	 * @return 読み込んだ件数
+	 */
+	public int drain(long[] outTimestamps, int[] outTypes, float[] outValues, int max) {
+		long t = tail.get();
+		long available = cachedHead - t;
+		if (available < max) {
+			cachedHead = head.get();
+			available = cachedHead - t;
+		}
+
+		int count = (int) Math.min(available, max);
+		if (count <= 0) {
+			return 0;
+		}
+
+		int index = (int) t & mask;
+		int first = Math.min(count, capacity - index);
+		copyOut(index, 0, first, outTimestamps, outTypes, outValues);
+		if (first < count) {
+			copyOut(0, first, count - first, outTimestamps, outTypes, outValues);
+		}
+
+		tail.lazySet(t + count);
+		return count;
+	}
+
+	/**
+	 * 連続した領域を出力先に複製する
+	 * 
+	 * @since 0.0.1
+	 * @param from 複製元の添字
+	 * @param to 複製先の添字
+	 * @param count 件数
+	 * @param outTimestamps タイムスタンプの出力先
+	 * @param outTypes センサー種別の出力先
+	 * @param outValues 値の出力先
+	 */
+	private void copyOut(int from, int to, int count, long[] outTimestamps, int[] outTypes, float[] outValues) {
+		System.arraycopy(timestamps, from, outTimestamps, to, count);
+		if (outTypes != null) {
+			System.arraycopy(types, from, outTypes, to, count);
+		}
+		System.arraycopy(values, from * stride, outValues, to * stride, count * stride);
+	}
+
+	/**
+	 * 読み込まれていない件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public int size() {
+		return (int) (head.get() - tail.get());
+	}
+
+	/**
+	 * 容量を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 容量
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * 1件あたりの値の数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 値の数
+	 */
+	public int getStride() {
+		return stride;
+	}
+
+	/**
+	 * 書き込んだ件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public long getWrittenCount() {
+		return head.get();
+	}
+
+	/**
+	 * バッファが一杯のため破棄した件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public long getDroppedCount() {
+		return dropped;
+	}
+}
@@ -0,0 +1,508 @@
+package net.kokohadoko.instil.android.hardware.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import net.kokohadoko.instil.android.hardware.SensorManagerWrapper;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * センサーの値を専用のスレッドで受信し，{@link SensorRingBuffer} に格納するパイプライン
+ * 
+ * <p>
+ * 登録した全てのセンサーのイベントを1つのHandlerThreadで受信し，値をリングバッファに複製するだけで
+ * コールバックから戻る．{@link #setConsumer(SensorBatchConsumer, int, long)} で設定した処理は
+ * 別のスレッドでリングバッファからまとめて読み込んで呼び出すため，重い処理を行ってもイベントの受信を妨げない．
+ * 受信から処理までの間にオブジェクトを生成しない．
+ * </p>
+ * 
+ * <p>
+ * 報告の最大遅延時間を指定して追加したセンサーは，ハードウェアのFIFOがある場合はFIFOに溜めてまとめて通知させる．
+ * FIFOがない場合は通常通り受信し，読み込み処理を最大遅延時間または1回に読み込む件数が溜まるまで遅らせる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class SensorStream {
+
+	/** ログ出力用文字列 */
+	private static final String LOG_TAG = SensorStream.class.getSimpleName();
+
+	/** デフォルトの1回に読み込む最大の件数 */
+	public static final int DEFAULT_BATCH_SIZE = 64;
+	/** デフォルトの読み込む間隔のミリ秒 */
+	public static final long DEFAULT_DRAIN_INTERVAL = 20;
+
+	/** SensorManager */
+	private final SensorManager manager;
+	/** リングバッファ */
+	private final SensorRingBuffer buffer;
+	/** 連続した通知とみなす受信間隔のナノ秒 */
+	private static final long DELIVERY_GAP = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/** 登録するセンサー */
+	private final List<Registration> registrations = new ArrayList<Registration>();
+
+	/** イベントを受信するスレッド */
+	private HandlerThread sensorThread;
+	/** 読み込みを行うスレッド */
+	private volatile Thread consumerThread;
+	/** 読み込んだ値を渡す処理 */
+	private SensorBatchConsumer consumer;
+	/** 1回に読み込む最大の件数 */
+	private volatile int batchSize = DEFAULT_BATCH_SIZE;
+	/** 読み込む間隔のナノ秒 */
+	private long drainInterval = TimeUnit.MILLISECONDS.toNanos(DEFAULT_DRAIN_INTERVAL);
+	/** 実行中かどうか */
+	private volatile boolean running;
+	/** ソフトウェアで遅らせる最大遅延時間のナノ秒．0の場合は遅らせない */
+	private long softwareLatency;
+	/** フラッシュが要求されたかどうか */
+	private volatile boolean flushRequested;
+	/** 開始した時刻 */
+	private volatile long startTime;
+
+	/** 受信した件数．受信スレッドのみが更新する */
+	private volatile long receivedCount;
+	/** 通知の回数．受信スレッドのみが更新する */
+	private volatile long deliveryCount;
+	/** 1回の通知の最大件数．受信スレッドのみが更新する */
+	private volatile int maxDeliverySize;
+	/** 現在の通知の件数 */
+	private int deliverySize;
+	/** 前回受信した時刻 */
+	private long lastDelivery;
+	/** 読み込み処理に渡した回数．読み込みスレッドのみが更新する */
+	private volatile long batchCount;
+	/** 読み込み処理に渡した件数．読み込みスレッドのみが更新する */
+	private volatile long batchedCount;
+	/** 読み込み処理に1回で渡した最大件数．読み込みスレッドのみが更新する */
+	private volatile int maxBatchSize;
+	/** 要求したフラッシュの回数 */
+	private volatile long flushCount;
+
+	/** イベントの受信処理 */
+	private final SensorEventListener listener = new SensorEventListener() {
+		@Override
+		public void onSensorChanged(SensorEvent event) {
+			long now = System.nanoTime();
+			if (now - lastDelivery > DELIVERY_GAP) {
+				deliveryCount++;
+				deliverySize = 0;
+			}
+			lastDelivery = now;
+			if (++deliverySize > maxDeliverySize) {
+				maxDeliverySize = deliverySize;
+			}
+
+			receivedCount++;
+			buffer.offer(event.sensor.getType(), event.timestamp, event.values, event.values.length);
+
+			// 1回に読み込む件数が溜まった時点で読み込みスレッドを起こす
+			Thread thread = consumerThread;
+			if (thread != null && buffer.size() == batchSize) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		@Override
+		public void onAccuracyChanged(Sensor sensor, int accuracy) {
+		}
+	};
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param manager SensorManager
+	 * @param capacity リングバッファの容量
+	 */
+	public SensorStream(SensorManager manager, int capacity) {
+		this(manager, new SensorRingBuffer(capacity));
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param manager SensorManager
+	 * @param buffer 値を格納するリングバッファ
+	 */
+	public SensorStream(SensorManager manager, SensorRingBuffer buffer) {
+		if (manager == null) {
+			throw new IllegalArgumentException("managerがnullです．");
+		}
+		if (buffer == null) {
+			throw new IllegalArgumentException("bufferがnullです．");
+		}
+
+		this.manager = manager;
+		this.buffer = buffer;
+	}
+
+	/**
+	 * 受信するセンサーを追加する．開始前に呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @param type {@link Sensor#TYPE_ACCELEROMETER} などのセンサー種別
+	 * @param rate {@link SensorManager#SENSOR_DELAY_GAME} などの値またはマイクロ秒のサンプリング間隔
+	 * @return 追加した場合に true, センサーが存在しない場合に falseを返す
+	 */
+	public boolean addSensor(int type, int rate) {
+		return addSensor(type, rate, 0);
+	}
+
+	/**
+	 * 報告の最大遅延時間を指定して受信するセンサーを追加する．開始前に呼び出すこと
+	 * 
+	 * <p>
+	 * リングバッファの容量は最大遅延時間の間に受信する件数より大きくすること．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param type {@link Sensor#TYPE_ACCELEROMETER} などのセンサー種別
+	 * @param rate {@link SensorManager#SENSOR_DELAY_GAME} などの値またはマイクロ秒のサンプリング間隔
+	 * @param maxReportLatencyUs 報告の最大遅延時間のマイクロ秒．0の場合はバッチ処理を行わない
+	 * @return 追加した場合に true, センサーが存在しない場合に falseを返す
+	 */
+	public synchronized boolean addSensor(int type, int rate, int maxReportLatencyUs) {
+		if (running) {
+			throw new IllegalStateException("実行中です．");
+		}
+		if (maxReportLatencyUs < 0) {
+			throw new IllegalArgumentException("maxReportLatencyUsが不正な値です．");
+		}
+
+		Sensor sensor = manager.getDefaultSensor(type);
+		if (sensor == null) {
+			return false;
+		}
+
+		registrations.add(new Registration(sensor, rate, maxReportLatencyUs));
+		return true;
+	}
+
+	/**
+	 * リングバッファから読み込んだ値を渡す処理を設定する．開始前に呼び出すこと
+	 * 
+	 * @since 0.0.1
+	 * @param consumer 値を渡す処理, 自分で {@link SensorRingBuffer#drain(long[], int[], float[], int)} を呼び出す場合は null
+	 * @param batchSize 1回に読み込む最大の件数
+	 * @param intervalMillis リングバッファが空の場合に待機するミリ秒
+	 */
+	public synchronized void setConsumer(SensorBatchConsumer consumer, int batchSize, long intervalMillis) {
+		if (running) {
+			throw new IllegalStateException("実行中です．");
+		}
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSizeが不正な値です．");
+		}
+		if (intervalMillis <= 0) {
+			throw new IllegalArgumentException("intervalMillisが不正な値です．");
+		}
+
+		this.consumer = consumer;
+		this.batchSize = batchSize;
+		this.drainInterval = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+	}
+
+	/**
+	 * 受信を開始する
+	 * 
+	 * @since 0.0.1
+	 * @return 全てのセンサーを登録できた場合に true, そうでない場合に falseを返す
+	 */
+	public synchronized boolean start() {
+		if (running) {
+			return true;
+		}
+		running = true;
+		startTime = System.nanoTime();
+
+		softwareLatency = 0;
+		for (Registration registration : registrations) {
+			registration.hardwareBatched = registration.maxReportLatency > 0
+					&& SensorManagerWrapper.isBatchingSupported(registration.sensor);
+			if (registration.maxReportLatency > 0 && !registration.hardwareBatched) {
+				long latency = TimeUnit.MICROSECONDS.toNanos(registration.maxReportLatency);
+				if (softwareLatency == 0 || latency < softwareLatency) {
+					softwareLatency = latency;
+				}
+			}
+		}
+
+		if (consumer != null) {
+			consumerThread = new Thread(new Drainer(consumer, batchSize, drainInterval, softwareLatency), LOG_TAG + "-consumer");
+			consumerThread.setDaemon(true);
+			consumerThread.start();
+		}
+
+		sensorThread = new HandlerThread(LOG_TAG, Process.THREAD_PRIORITY_URGENT_DISPLAY);
+		sensorThread.start();
+		Handler handler = new Handler(sensorThread.getLooper());
+
+		boolean registered = true;
+		for (Registration registration : registrations) {
+			try {
+				if (!SensorManagerWrapper.registerListener(manager, listener, registration.sensor,
+						registration.rate, registration.maxReportLatency, handler)) {
+					Log.w(LOG_TAG, "センサーを登録できません．" + registration.sensor.getName());
+					registered = false;
+				}
+			} catch (Exception e) {
+				Log.w(LOG_TAG, "センサーを登録できません．" + registration.sensor.getName(), e);
+				registered = false;
+			}
+		}
+
+		return registered;
+	}
+
+	/**
+	 * 受信を終了する
+	 * 
+	 * <p>
+	 * リングバッファに残っている値は読み込みを終了する前に全て渡す．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 */
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+
+		manager.unregisterListener(listener);
+		sensorThread.quit();
+		sensorThread = null;
+		running = false;
+
+		if (consumerThread != null) {
+			LockSupport.unpark(consumerThread);
+			try {
+				consumerThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			consumerThread = null;
+		}
+	}
+
+	/**
+	 * 溜まっている値を直ちに読み込み処理に渡す
+	 * 
+	 * <p>
+	 * ハードウェアのバッチ処理で登録したセンサーはFIFOのイベントを通知させ，
+	 * ソフトウェアのバッチ処理で遅らせている値は最大遅延時間を待たずに読み込む．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @return 要求できた場合に true, 実行中でない場合に falseを返す
+	 */
+	public synchronized boolean flush() {
+		if (!running) {
+			return false;
+		}
+
+		for (Registration registration : registrations) {
+			if (registration.hardwareBatched) {
+				try {
+					SensorManagerWrapper.flush(manager, listener);
+				} catch (Exception e) {
+					Log.w(LOG_TAG, "フラッシュを要求できません．", e);
+				}
+				break;
+			}
+		}
+
+		flushCount++;
+		flushRequested = true;
+		Thread thread = consumerThread;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+		return true;
+	}
+
+	/**
+	 * 受信状況を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 受信状況
+	 */
+	public synchronized SensorStreamStats getStats() {
+		int hardware = 0;
+		int software = 0;
+		for (Registration registration : registrations) {
+			if (registration.hardwareBatched) {
+				hardware++;
+			} else if (registration.maxReportLatency > 0) {
+				software++;
+			}
+		}
+
+		long elapsed = startTime != 0 ? System.nanoTime() - startTime : 0;
+		return new SensorStreamStats(elapsed, receivedCount, buffer.getDroppedCount(),
+				deliveryCount, maxDeliverySize, batchCount, batchedCount, maxBatchSize,
+				flushCount, hardware, software);
+	}
+
+	/**
+	 * 実行中かどうか
+	 * 
+	 * @since 0.0.1
+	 * @return 実行中の場合に true, そうでない場合に falseを返す
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * リングバッファを取得する
+	 * 
+	 * @since 0.0.1
+	 * @return SensorRingBuffer
+	 */
+	public SensorRingBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * 受信した件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public long getReceivedCount() {
+		return receivedCount;
+	}
+
+	/**
+	 * リングバッファが一杯のため破棄した件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public long getDroppedCount() {
+		return buffer.getDroppedCount();
+	}
+
+	/**
+	 * 登録するセンサー
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private static class Registration {
+
+		/** Sensor */
+		final Sensor sensor;
+		/** サンプリング間隔 */
+		final int rate;
+		/** 報告の最大遅延時間のマイクロ秒 */
+		final int maxReportLatency;
+		/** ハードウェアのバッチ処理で登録したかどうか */
+		boolean hardwareBatched;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param sensor Sensor
+		 * @param rate サンプリング間隔
+		 * @param maxReportLatency 報告の最大遅延時間のマイクロ秒
+		 */
+		Registration(Sensor sensor, int rate, int maxReportLatency) {
+			this.sensor = sensor;
+			this.rate = rate;
+			this.maxReportLatency = maxReportLatency;
+		}
+	}
+
+	/**
+	 * リングバッファから読み込んで処理に渡すスレッドの処理
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private class Drainer implements Runnable {
+
+		/** 値を渡す処理 */
+		private final SensorBatchConsumer consumer;
+		/** 1回に読み込む最大の件数 */
+		private final int batchSize;
+		/** 待機するナノ秒 */
+		private final long interval;
+		/** ソフトウェアで遅らせる最大遅延時間のナノ秒 */
+		private final long latency;
+		/** タイムスタンプの読み込み先 */
+		private final long[] timestamps;
+		/** センサー種別の読み込み先 */
+		private final int[] types;
+		/** 値の読み込み先 */
+		private final float[] values;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param consumer 値を渡す処理
+		 * @param batchSize 1回に読み込む最大の件数
+		 * @param interval 待機するナノ秒
+		 * @param latency ソフトウェアで遅らせる最大遅延時間のナノ秒
+		 */
+		Drainer(SensorBatchConsumer consumer, int batchSize, long interval, long latency) {
+			this.consumer = consumer;
+			this.batchSize = batchSize;
+			this.interval = interval;
+			this.latency = latency;
+			this.timestamps = new long[batchSize];
+			this.types = new int[batchSize];
+			this.values = new float[batchSize * buffer.getStride()];
+		}
+
+		@Override
+		public void run() {
+			int stride = buffer.getStride();
+			long lastDrain = System.nanoTime();
+			while (true) {
+				boolean active = running;
+				if (latency > 0 && active && !flushRequested) {
+					// 最大遅延時間が経過するか1回に読み込む件数が溜まるまで待つ
+					long wait = latency - (System.nanoTime() - lastDrain);
+					if (wait > 0 && buffer.size() < batchSize) {
+						LockSupport.parkNanos(wait);
+						continue;
+					}
+				}
+				flushRequested = false;
+
+				int count;
+				while ((count = buffer.drain(timestamps, types, values, batchSize)) > 0) {
+					batchCount++;
+					batchedCount += count;
+					if (count > maxBatchSize) {
+						maxBatchSize = count;
+					}
+					consumer.onBatch(timestamps, types, values, stride, count);
+				}
+				lastDrain = System.nanoTime();
+
+				if (!active) {
+					return;
+				}
+				LockSupport.parkNanos(latency > 0 ? latency : interval);
+			}
+		}
+	}
+}
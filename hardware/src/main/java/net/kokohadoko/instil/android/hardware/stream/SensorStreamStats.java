@@ -0,0 +1,224 @@
+package net.kokohadoko.instil.android.hardware.stream;
+
+/**
+ * {@link SensorStream} の受信状況
+ * 
+ * <p>
+ * {@link SensorStream#getStats()} を呼び出した時点の値を保持する．
+ * 通知の回数はイベントの受信間隔から推定した値であり，ハードウェアのバッチ処理によって
+ * CPUが起こされる回数の目安として使用する．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class SensorStreamStats {
+
+	/** 開始からの経過ナノ秒 */
+	private final long elapsedNanos;
+	/** 受信した件数 */
+	private final long receivedCount;
+	/** 破棄した件数 */
+	private final long droppedCount;
+	/** 通知の回数 */
+	private final long deliveryCount;
+	/** 1回の通知の最大件数 */
+	private final int maxDeliverySize;
+	/** 読み込み処理に渡した回数 */
+	private final long batchCount;
+	/** 読み込み処理に渡した件数 */
+	private final long batchedCount;
+	/** 読み込み処理に1回で渡した最大件数 */
+	private final int maxBatchSize;
+	/** 要求したフラッシュの回数 */
+	private final long flushCount;
+	/** ハードウェアのバッチ処理で登録したセンサー数 */
+	private final int hardwareBatchedSensors;
+	/** ソフトウェアのバッチ処理で登録したセンサー数 */
+	private final int softwareBatchedSensors;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param elapsedNanos 開始からの経過ナノ秒
+	 * @param receivedCount 受信した件数
+	 * @param droppedCount 破棄した件数
+	 * @param deliveryCount 通知の回数
+	 * @param maxDeliverySize 1回の通知の最大件数
+	 * @param batchCount 読み込み処理に渡した回数
+	 * @param batchedCount 読み込み処理に渡した件数
+	 * @param maxBatchSize 読み込み処理に1回で渡した最大件数
+	 * @param flushCount 要求したフラッシュの回数
+	 * @param hardwareBatchedSensors ハードウェアのバッチ処理で登録したセンサー数
+	 * @param softwareBatchedSensors ソフトウェアのバッチ処理で登録したセンサー数
+	 */
+	SensorStreamStats(long elapsedNanos, long receivedCount, long droppedCount,
+			long deliveryCount, int maxDeliverySize, long batchCount, long batchedCount, int maxBatchSize,
+			long flushCount, int hardwareBatchedSensors, int softwareBatchedSensors) {
+		this.elapsedNanos = elapsedNanos;
+		this.receivedCount = receivedCount;
+		this.droppedCount = droppedCount;
+		this.deliveryCount = deliveryCount;
+		this.maxDeliverySize = maxDeliverySize;
+		this.batchCount = batchCount;
+		this.batchedCount = batchedCount;
+		this.maxBatchSize = maxBatchSize;
+		this.flushCount = flushCount;
+		this.hardwareBatchedSensors = hardwareBatchedSensors;
+		this.softwareBatchedSensors = softwareBatchedSensors;
+	}
+
+	/**
+	 * 開始からの経過ナノ秒を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return ナノ秒
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * 受信した件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public long getReceivedCount() {
+		return receivedCount;
+	}
+
+	/**
+	 * リングバッファが一杯のため破棄した件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * 1秒あたりの受信件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public double getDeliveredRate() {
+		return elapsedNanos > 0 ? receivedCount * 1.0e9 / elapsedNanos : 0.0;
+	}
+
+	/**
+	 * 通知の回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 回数
+	 */
+	public long getDeliveryCount() {
+		return deliveryCount;
+	}
+
+	/**
+	 * 1秒あたりの通知の回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 回数
+	 */
+	public double getDeliveryRate() {
+		return elapsedNanos > 0 ? deliveryCount * 1.0e9 / elapsedNanos : 0.0;
+	}
+
+	/**
+	 * 1回の通知の平均件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public double getAverageDeliverySize() {
+		return deliveryCount > 0 ? (double) receivedCount / deliveryCount : 0.0;
+	}
+
+	/**
+	 * 1回の通知の最大件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public int getMaxDeliverySize() {
+		return maxDeliverySize;
+	}
+
+	/**
+	 * 読み込み処理に渡した回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 回数
+	 */
+	public long getBatchCount() {
+		return batchCount;
+	}
+
+	/**
+	 * 読み込み処理に1回で渡した平均件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public double getAverageBatchSize() {
+		return batchCount > 0 ? (double) batchedCount / batchCount : 0.0;
+	}
+
+	/**
+	 * 読み込み処理に1回で渡した最大件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * 要求したフラッシュの回数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 回数
+	 */
+	public long getFlushCount() {
+		return flushCount;
+	}
+
+	/**
+	 * ハードウェアのバッチ処理で登録したセンサー数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return センサー数
+	 */
+	public int getHardwareBatchedSensors() {
+		return hardwareBatchedSensors;
+	}
+
+	/**
+	 * ソフトウェアのバッチ処理で登録したセンサー数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return センサー数
+	 */
+	public int getSoftwareBatchedSensors() {
+		return softwareBatchedSensors;
+	}
+
+	@Override
+	public String toString() {
+		return "SensorStreamStats[received=" + receivedCount
+				+ ", dropped=" + droppedCount
+				+ ", rate=" + getDeliveredRate()
+				+ ", deliveries=" + deliveryCount
+				+ ", avgDelivery=" + getAverageDeliverySize()
+				+ ", batches=" + batchCount
+				+ ", avgBatch=" + getAverageBatchSize()
+				+ ", hardware=" + hardwareBatchedSensors
+				+ ", software=" + softwareBatchedSensors + "]";
+	}
+}
@@ -0,0 +1,271 @@
+package net.kokohadoko.instil.android.hardware.fusion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import net.kokohadoko.instil.android.hardware.orientation.Orientation;
+import net.kokohadoko.instil.android.hardware.orientation.OrientationComputer;
+
+import org.junit.Test;
+
+/**
+ * {@link FusionFilter} と {@link ComplementaryFilter}・{@link MadgwickFilter}・{@link MahonyFilter} のテスト
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class FusionFilterTest {
+
+	/** 角度を比較する許容誤差 (rad) */
+	private static final float EXACT = 1.0e-3f;
+	/** 収束後の推定の許容誤差 (rad) */
+	private static final float TOLERANCE = (float) Math.toRadians(3.0);
+	/** 初期化した状態から収束を待つ秒数 */
+	private static final float SETTLE = 20.0f;
+	/** 初期状態から収束を待つ秒数 */
+	private static final float SETTLE_FROM_RESET = 60.0f;
+	/** ジャイロスコープのバイアス (rad/s) */
+	private static final float BIAS = 0.01f;
+
+	/** テストする方位角 (度) */
+	private static final float[] AZIMUTHS = { -170.0f, -90.0f, -30.0f, 0.0f, 45.0f, 90.0f, 135.0f, 179.0f };
+	/** テストする傾斜角 (度) */
+	private static final float[] PITCHES = { -60.0f, -20.0f, 0.0f, 30.0f, 70.0f };
+	/** テストする回転角 (度) */
+	private static final float[] ROLLS = { -150.0f, -45.0f, 0.0f, 10.0f, 80.0f };
+
+	/**
+	 * テストするフィルタを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param integral {@link MahonyFilter} でジャイロスコープのバイアスを積分項で打ち消す場合に true
+	 * @return フィルタ
+	 */
+	private static FusionFilter[] filters(boolean integral) {
+		MahonyFilter mahony = integral ? new MahonyFilter(MahonyFilter.DEFAULT_KP, 0.1f) : new MahonyFilter();
+		return new FusionFilter[] { new ComplementaryFilter(), new MadgwickFilter(), mahony };
+	}
+
+	/**
+	 * 角度の差を -π から π の範囲で求める
+	 * 
+	 * @since 0.0.1
+	 * @param actual 実際の角度 (rad)
+	 * @param expected 正解の角度 (rad)
+	 * @return 差の絶対値 (rad)
+	 */
+	private static float difference(float actual, float expected) {
+		double diff = Math.IEEEremainder(actual - expected, 2.0 * Math.PI);
+		return (float) Math.abs(diff);
+	}
+
+	/**
+	 * 方位角・傾斜角・回転角が一致することを検証する
+	 * 
+	 * @since 0.0.1
+	 * @param message メッセージ
+	 * @param expected 正解の方位角・傾斜角・回転角 (rad)
+	 * @param actual 実際の方位角・傾斜角・回転角 (rad)
+	 * @param tolerance 許容誤差 (rad)
+	 */
+	private static void assertAngles(String message, float[] expected, float[] actual, float tolerance) {
+		String detail = message + ": 正解 " + degrees(expected) + ", 実際 " + degrees(actual);
+		for (int axis = 0; axis < 3; axis++) {
+			assertTrue(detail, difference(actual[axis], expected[axis]) <= tolerance);
+		}
+	}
+
+	/**
+	 * 角度を度の文字列に変換する
+	 * 
+	 * @since 0.0.1
+	 * @param angles 方位角・傾斜角・回転角 (rad)
+	 * @return 文字列
+	 */
+	private static String degrees(float[] angles) {
+		return "(" + Math.round(Math.toDegrees(angles[0])) + ", " + Math.round(Math.toDegrees(angles[1])) + ", "
+				+ Math.round(Math.toDegrees(angles[2])) + ")";
+	}
+
+	/**
+	 * {@link FusionFilter#getOrientation(float[])} が {@link OrientationComputer} と同じ定義の角度を返すこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void matchesOrientationComputerConvention() {
+		double[] q = new double[4];
+		float[] sensors = new float[6];
+		float[] expected = new float[3];
+		float[] computed = new float[3];
+		float[] actual = new float[3];
+		OrientationComputer computer = new OrientationComputer();
+		FusionFilter filter = new ComplementaryFilter();
+
+		for (float azimuth : AZIMUTHS) {
+			for (float pitch : PITCHES) {
+				for (float roll : ROLLS) {
+					String label = azimuth + ", " + pitch + ", " + roll;
+					expected[0] = (float) Math.toRadians(azimuth);
+					expected[1] = (float) Math.toRadians(pitch);
+					expected[2] = (float) Math.toRadians(roll);
+					OrientationTrace.quaternion(expected[0], expected[1], expected[2], q);
+					OrientationTrace.sensors(q, sensors);
+
+					// 正解の組み立て方が OrientationComputer の定義と一致する
+					computer.setAccelerometer(new float[] { sensors[0], sensors[1], sensors[2] });
+					computer.setMagnetometer(new float[] { sensors[3], sensors[4], sensors[5] });
+					assertTrue(label, computer.compute(computed));
+					assertAngles("OrientationComputer " + label, expected, computed, EXACT);
+
+					// クォータニオンから求めた角度が同じになる
+					filter.setQuaternion((float) q[0], (float) q[1], (float) q[2], (float) q[3]);
+					filter.getOrientation(actual);
+					assertAngles("getOrientation " + label, computed, actual, EXACT);
+
+					// 加速度センサー・地磁気センサーの値からの初期化も同じ姿勢になる
+					filter.reset();
+					assertTrue(label, filter.initialize(sensors[0], sensors[1], sensors[2],
+							sensors[3], sensors[4], sensors[5]));
+					filter.getOrientation(actual);
+					assertAngles("initialize " + label, computed, actual, EXACT);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 配列と {@link Orientation} に同じ角度を書き込むこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void writesSameAnglesToOrientation() {
+		double[] q = new double[4];
+		OrientationTrace.quaternion(Math.toRadians(120.0), Math.toRadians(-25.0), Math.toRadians(60.0), q);
+		FusionFilter filter = new MahonyFilter();
+		filter.setQuaternion((float) q[0], (float) q[1], (float) q[2], (float) q[3]);
+
+		float[] angles = new float[3];
+		filter.getOrientation(angles);
+		Orientation orientation = new Orientation();
+		filter.getOrientation(orientation);
+		assertEquals(angles[0], orientation.getAzimuth(), 0.0f);
+		assertEquals(angles[1], orientation.getPitch(), 0.0f);
+		assertEquals(angles[2], orientation.getRoll(), 0.0f);
+
+		FusionFilter.getOrientation((float) q[0], (float) q[1], (float) q[2], (float) q[3], orientation);
+		assertEquals(angles[0], orientation.getAzimuth(), EXACT);
+		assertEquals(angles[1], orientation.getPitch(), EXACT);
+		assertEquals(angles[2], orientation.getRoll(), EXACT);
+	}
+
+	/**
+	 * 合成データを処理し，収束後の推定値と正解の差の最大値を求める
+	 * 
+	 * @since 0.0.1
+	 * @param filter フィルタ
+	 * @param trace 合成データ
+	 * @param initialize 最初の値で姿勢を初期化する場合に true
+	 * @param settle 比較を始めるまでの秒数
+	 * @param worst 正解の角度と推定値の差が最も大きい時点の正解・推定値の出力先
+	 * @return 差の最大値 (rad)
+	 */
+	private static float replay(FusionFilter filter, OrientationTrace trace, boolean initialize, float settle,
+			float[][] worst) {
+		filter.reset();
+		if (initialize) {
+			filter.initialize(trace.accelerometer(0, 0), trace.accelerometer(0, 1), trace.accelerometer(0, 2),
+					trace.magnetometer(0, 0), trace.magnetometer(0, 1), trace.magnetometer(0, 2));
+		}
+
+		float[] actual = new float[3];
+		float elapsed = 0.0f;
+		float max = 0.0f;
+		for (int i = 1; i < trace.size(); i++) {
+			trace.feed(filter, i);
+			elapsed += trace.interval(i);
+			if (elapsed < settle) {
+				continue;
+			}
+
+			filter.getOrientation(actual);
+			for (int axis = 0; axis < 3; axis++) {
+				float diff = difference(actual[axis], trace.truth(i, axis));
+				if (diff > max) {
+					max = diff;
+					for (int j = 0; j < 3; j++) {
+						worst[0][j] = trace.truth(i, j);
+						worst[1][j] = actual[j];
+					}
+				}
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * 姿勢を変える合成データを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param sampleRate サンプリング周波数 (Hz)
+	 * @param seed 乱数の種
+	 * @return 合成データ
+	 */
+	private static OrientationTrace maneuver(float sampleRate, long seed) {
+		return new OrientationTrace(sampleRate, 0.1f, seed, BIAS, 30.0f, 10.0f, -20.0f)
+				.hold(SETTLE + 5.0f)
+				.turn(4.0f, 90.0f, 0.0f, 0.0f)
+				.hold(5.0f)
+				.turn(3.0f, 0.0f, 40.0f, 0.0f)
+				.hold(5.0f)
+				.turn(3.0f, 0.0f, 0.0f, -60.0f)
+				.hold(5.0f)
+				.turn(6.0f, -200.0f, -70.0f, 90.0f)
+				.hold(10.0f);
+	}
+
+	/**
+	 * 最初の値で初期化した各フィルタが正解の姿勢に追従すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void tracksManeuverFromInitializedState() {
+		for (float sampleRate : new float[] { 50.0f, 100.0f, 200.0f }) {
+			OrientationTrace trace = maneuver(sampleRate, 11);
+			for (FusionFilter filter : filters(true)) {
+				float[][] worst = new float[2][3];
+				float error = replay(filter, trace, true, SETTLE, worst);
+				assertTrue(filter.getClass().getSimpleName() + ", " + sampleRate + "Hz: 誤差 "
+						+ Math.toDegrees(error) + "度, 正解 " + degrees(worst[0]) + ", 推定 " + degrees(worst[1]),
+						error <= TOLERANCE);
+			}
+		}
+	}
+
+	/**
+	 * 初期状態から各フィルタが静止した姿勢に収束すること
+	 * 
+	 * <p>
+	 * 補正の向きを誤ると収束しないため，方位角・傾斜角・回転角がいずれも0から離れた姿勢で検証する．
+	 * 積分項が初期の大きな誤差で振動しないように，ジャイロスコープのバイアスは加えない．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void convergesFromResetState() {
+		float[][] orientations = { { 120.0f, 35.0f, -50.0f }, { -100.0f, -40.0f, 150.0f }, { 200.0f, 5.0f, 20.0f } };
+		for (float[] orientation : orientations) {
+			OrientationTrace trace = new OrientationTrace(100.0f, 0.1f, 23, 0.0f,
+					orientation[0], orientation[1], orientation[2]).hold(SETTLE_FROM_RESET + 20.0f);
+			for (FusionFilter filter : filters(false)) {
+				float[][] worst = new float[2][3];
+				float error = replay(filter, trace, false, SETTLE_FROM_RESET, worst);
+				assertTrue(filter.getClass().getSimpleName() + ": 誤差 " + Math.toDegrees(error) + "度, 正解 "
+						+ degrees(worst[0]) + ", 推定 " + degrees(worst[1]), error <= TOLERANCE);
+			}
+		}
+	}
+}
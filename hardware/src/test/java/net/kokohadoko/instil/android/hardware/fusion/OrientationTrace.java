@@ -0,0 +1,345 @@
+package net.kokohadoko.instil.android.hardware.fusion;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 各時点の方位角・傾斜角・回転角が分かっているジャイロスコープ・加速度センサー・地磁気センサーの合成データ
+ * 
+ * <p>
+ * 正解の姿勢は {@link android.hardware.SensorManager#getOrientation(float[], float[])} と同じ定義の角度から
+ * 回転を組み立てて求め，フィルタの計算とは独立させる．
+ * ジャイロスコープの値は隣り合う正解の姿勢の差の回転から求め，一定のバイアスとノイズを加える．
+ * 加速度センサー・地磁気センサーの値は重力と地磁気を端末の座標系に変換し，ノイズを加える．
+ * 乱数の種を固定しているため，同じ手順で生成したデータは毎回同じになる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+final class OrientationTrace {
+
+	/** 重力加速度 (m/s^2) */
+	static final float GRAVITY = 9.80665f;
+	/** 地磁気の大きさ (μT) */
+	static final float FIELD = 48.0f;
+	/** 地磁気の伏角 (rad) */
+	static final float DIP = (float) Math.toRadians(50.0);
+
+	/** 加速度センサーのノイズの標準偏差 (m/s^2) */
+	private static final float ACCELEROMETER_NOISE = 0.05f;
+	/** ジャイロスコープのノイズの標準偏差 (rad/s) */
+	private static final float GYROSCOPE_NOISE = 0.005f;
+	/** 地磁気センサーのノイズの標準偏差 (μT) */
+	private static final float MAGNETOMETER_NOISE = 0.5f;
+
+	/** サンプリング周波数 (Hz) */
+	private final float sampleRate;
+	/** サンプリング間隔に対する揺らぎの割合 */
+	private final float jitter;
+	/** 乱数 */
+	private final Random random;
+	/** ジャイロスコープのX・Y・Z軸のバイアス (rad/s) */
+	private final float[] bias;
+
+	/** 前回の更新からの秒数 */
+	private float[] intervals = new float[1024];
+	/** ジャイロスコープの値 */
+	private float[] gyroscope = new float[1024 * 3];
+	/** 加速度センサーの値 */
+	private float[] accelerometer = new float[1024 * 3];
+	/** 地磁気センサーの値 */
+	private float[] magnetometer = new float[1024 * 3];
+	/** 正解の方位角・傾斜角・回転角 */
+	private float[] truth = new float[1024 * 3];
+	/** 件数 */
+	private int size;
+
+	/** 現在の方位角・傾斜角・回転角 */
+	private final double[] angles = new double[3];
+	/** 現在の姿勢のクォータニオン */
+	private final double[] current = new double[4];
+	/** 次の姿勢のクォータニオン */
+	private final double[] target = new double[4];
+	/** 重力と地磁気の作業領域 */
+	private final float[] sensors = new float[6];
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param sampleRate サンプリング周波数 (Hz)
+	 * @param jitter サンプリング間隔に対する揺らぎの割合
+	 * @param seed 乱数の種
+	 * @param bias ジャイロスコープのバイアスの大きさ (rad/s)
+	 * @param azimuth 最初の方位角 (度)
+	 * @param pitch 最初の傾斜角 (度)
+	 * @param roll 最初の回転角 (度)
+	 */
+	OrientationTrace(float sampleRate, float jitter, long seed, float bias, float azimuth, float pitch, float roll) {
+		this.sampleRate = sampleRate;
+		this.jitter = jitter;
+		this.random = new Random(seed);
+		// 軸ごとに符号と大きさを変える
+		this.bias = new float[] { bias, -bias, 0.5f * bias };
+		quaternion(Math.toRadians(azimuth), Math.toRadians(pitch), Math.toRadians(roll), current);
+		append(0.0f, Math.toRadians(azimuth), Math.toRadians(pitch), Math.toRadians(roll));
+	}
+
+	/**
+	 * 姿勢を保つ区間を追加する
+	 * 
+	 * @since 0.0.1
+	 * @param seconds 秒数
+	 * @return このインスタンス
+	 */
+	OrientationTrace hold(float seconds) {
+		return turn(seconds, 0.0f, 0.0f, 0.0f);
+	}
+
+	/**
+	 * 姿勢を変える区間を追加する
+	 * 
+	 * <p>
+	 * 角度は区間の始めと終わりで角速度が0になるように滑らかに変える．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param seconds 秒数
+	 * @param azimuth 方位角の変化量 (度)
+	 * @param pitch 傾斜角の変化量 (度)
+	 * @param roll 回転角の変化量 (度)
+	 * @return このインスタンス
+	 */
+	OrientationTrace turn(float seconds, float azimuth, float pitch, float roll) {
+		double a = angles[0];
+		double p = angles[1];
+		double r = angles[2];
+		double da = Math.toRadians(azimuth);
+		double dp = Math.toRadians(pitch);
+		double dr = Math.toRadians(roll);
+
+		double elapsed = 0.0;
+		while (true) {
+			double interval = (1.0 + jitter * (2.0 * random.nextDouble() - 1.0)) / sampleRate;
+			elapsed += interval;
+			if (elapsed > seconds) {
+				break;
+			}
+			double t = elapsed / seconds;
+			double s = t * t * (3.0 - 2.0 * t);
+			append((float) interval, a + da * s, p + dp * s, r + dr * s);
+		}
+		return this;
+	}
+
+	/**
+	 * 値を1件追加する
+	 * 
+	 * @since 0.0.1
+	 * @param interval 前回の値からの秒数．最初の値では0
+	 * @param azimuth 方位角 (rad)
+	 * @param pitch 傾斜角 (rad)
+	 * @param roll 回転角 (rad)
+	 */
+	private void append(float interval, double azimuth, double pitch, double roll) {
+		if (size == intervals.length) {
+			intervals = Arrays.copyOf(intervals, size * 2);
+			gyroscope = Arrays.copyOf(gyroscope, size * 2 * 3);
+			accelerometer = Arrays.copyOf(accelerometer, size * 2 * 3);
+			magnetometer = Arrays.copyOf(magnetometer, size * 2 * 3);
+			truth = Arrays.copyOf(truth, size * 2 * 3);
+		}
+
+		angles[0] = azimuth;
+		angles[1] = pitch;
+		angles[2] = roll;
+		quaternion(azimuth, pitch, roll, target);
+
+		// 端末の座標系での角速度は前回の姿勢から今回の姿勢への回転 (current^-1 * target) から求める
+		double w = current[0] * target[0] + current[1] * target[1] + current[2] * target[2] + current[3] * target[3];
+		double x = current[0] * target[1] - current[1] * target[0] - current[2] * target[3] + current[3] * target[2];
+		double y = current[0] * target[2] + current[1] * target[3] - current[2] * target[0] - current[3] * target[1];
+		double z = current[0] * target[3] - current[1] * target[2] + current[2] * target[1] - current[3] * target[0];
+		if (w < 0.0) {
+			w = -w;
+			x = -x;
+			y = -y;
+			z = -z;
+		}
+		double norm = Math.sqrt(x * x + y * y + z * z);
+		double rate = norm == 0.0 || interval == 0.0f ? 0.0 : 2.0 * Math.atan2(norm, w) / (norm * interval);
+		System.arraycopy(target, 0, current, 0, 4);
+
+		int offset = size * 3;
+		intervals[size] = interval;
+		gyroscope[offset] = (float) (x * rate) + bias[0] + noise(GYROSCOPE_NOISE);
+		gyroscope[offset + 1] = (float) (y * rate) + bias[1] + noise(GYROSCOPE_NOISE);
+		gyroscope[offset + 2] = (float) (z * rate) + bias[2] + noise(GYROSCOPE_NOISE);
+		sensors(current, sensors);
+		for (int axis = 0; axis < 3; axis++) {
+			accelerometer[offset + axis] = sensors[axis] + noise(ACCELEROMETER_NOISE);
+			magnetometer[offset + axis] = sensors[3 + axis] + noise(MAGNETOMETER_NOISE);
+		}
+		truth[offset] = (float) azimuth;
+		truth[offset + 1] = (float) pitch;
+		truth[offset + 2] = (float) roll;
+		size++;
+	}
+
+	/**
+	 * ノイズを生成する
+	 * 
+	 * @since 0.0.1
+	 * @param deviation 標準偏差
+	 * @return ノイズ
+	 */
+	private float noise(float deviation) {
+		return (float) (random.nextGaussian() * deviation);
+	}
+
+	/**
+	 * 方位角・傾斜角・回転角から端末の座標系から地球の座標系 (X軸が北，Z軸が上) への回転を求める
+	 * 
+	 * <p>
+	 * 東・北・上の座標系での回転行列 Rz(-azimuth)・Rx(-pitch)・Ry(roll) を，
+	 * Z軸回りに -90度回転させて北・西・上の座標系に合わせる．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param azimuth 方位角 (rad)
+	 * @param pitch 傾斜角 (rad)
+	 * @param roll 回転角 (rad)
+	 * @param out w・x・y・zの順のクォータニオンの出力先
+	 */
+	static void quaternion(double azimuth, double pitch, double roll, double[] out) {
+		double halfYaw = 0.5 * (-0.5 * Math.PI - azimuth);
+		double halfPitch = -0.5 * pitch;
+		double halfRoll = 0.5 * roll;
+		double cz = Math.cos(halfYaw);
+		double sz = Math.sin(halfYaw);
+		double cx = Math.cos(halfPitch);
+		double sx = Math.sin(halfPitch);
+		double cy = Math.cos(halfRoll);
+		double sy = Math.sin(halfRoll);
+
+		// qz * qx
+		double w = cz * cx;
+		double x = cz * sx;
+		double y = sz * sx;
+		double z = sz * cx;
+		// (qz * qx) * qy
+		out[0] = w * cy - y * sy;
+		out[1] = x * cy - z * sy;
+		out[2] = w * sy + y * cy;
+		out[3] = z * cy + x * sy;
+	}
+
+	/**
+	 * 姿勢から静止した端末の加速度センサー・地磁気センサーの値を求める
+	 * 
+	 * @since 0.0.1
+	 * @param q w・x・y・zの順のクォータニオン
+	 * @param out 加速度センサー・地磁気センサーのX・Y・Z軸の値の出力先
+	 */
+	static void sensors(double[] q, float[] out) {
+		double bx = FIELD * Math.cos(DIP);
+		double bz = -FIELD * Math.sin(DIP);
+		// 回転行列の転置で地球の座標系から端末の座標系に変換する
+		double r00 = 1.0 - 2.0 * (q[2] * q[2] + q[3] * q[3]);
+		double r01 = 2.0 * (q[1] * q[2] - q[0] * q[3]);
+		double r02 = 2.0 * (q[1] * q[3] + q[0] * q[2]);
+		double r20 = 2.0 * (q[1] * q[3] - q[0] * q[2]);
+		double r21 = 2.0 * (q[2] * q[3] + q[0] * q[1]);
+		double r22 = 1.0 - 2.0 * (q[1] * q[1] + q[2] * q[2]);
+		out[0] = (float) (GRAVITY * r20);
+		out[1] = (float) (GRAVITY * r21);
+		out[2] = (float) (GRAVITY * r22);
+		out[3] = (float) (bx * r00 + bz * r20);
+		out[4] = (float) (bx * r01 + bz * r21);
+		out[5] = (float) (bx * r02 + bz * r22);
+	}
+
+	/**
+	 * 件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * 前回の値からの秒数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 位置
+	 * @return 秒数．最初の値では0
+	 */
+	float interval(int index) {
+		return intervals[index];
+	}
+
+	/**
+	 * ジャイロスコープの値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 位置
+	 * @param axis 軸
+	 * @return 値 (rad/s)
+	 */
+	float gyroscope(int index, int axis) {
+		return gyroscope[index * 3 + axis];
+	}
+
+	/**
+	 * 加速度センサーの値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 位置
+	 * @param axis 軸
+	 * @return 値 (m/s^2)
+	 */
+	float accelerometer(int index, int axis) {
+		return accelerometer[index * 3 + axis];
+	}
+
+	/**
+	 * 地磁気センサーの値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 位置
+	 * @param axis 軸
+	 * @return 値 (μT)
+	 */
+	float magnetometer(int index, int axis) {
+		return magnetometer[index * 3 + axis];
+	}
+
+	/**
+	 * 正解の方位角・傾斜角・回転角を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 位置
+	 * @param axis 0が方位角，1が傾斜角，2が回転角
+	 * @return 角度 (rad)
+	 */
+	float truth(int index, int axis) {
+		return truth[index * 3 + axis];
+	}
+
+	/**
+	 * 値を1件フィルタで処理する
+	 * 
+	 * @since 0.0.1
+	 * @param filter フィルタ
+	 * @param index 位置
+	 */
+	void feed(FusionFilter filter, int index) {
+		int offset = index * 3;
+		filter.update(gyroscope[offset], gyroscope[offset + 1], gyroscope[offset + 2],
+				accelerometer[offset], accelerometer[offset + 1], accelerometer[offset + 2],
+				magnetometer[offset], magnetometer[offset + 1], magnetometer[offset + 2], intervals[index]);
+	}
+}
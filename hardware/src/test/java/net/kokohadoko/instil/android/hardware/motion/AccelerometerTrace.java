@@ -0,0 +1,252 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 区間ごとに行動と歩数が分かっている加速度センサーの合成データ
+ * 
+ * <p>
+ * タイムスタンプは指定した周波数の間隔に揺らぎを加えて生成する．
+ * 歩行の区間は鉛直方向の加速度を歩調の周波数の正弦波と高調波で表し，1周期を1歩とする．
+ * 乱数の種を固定しているため，同じ手順で生成したデータは毎回同じになる．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+final class AccelerometerTrace {
+
+	/** 重力加速度 (m/s^2) */
+	private static final float GRAVITY = 9.80665f;
+	/** センサーのノイズの標準偏差 (m/s^2) */
+	private static final float NOISE = 0.05f;
+
+	/**
+	 * 行動と歩数が分かっている区間
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	static final class Segment {
+
+		/** 行動 */
+		final int activity;
+		/** 開始のタイムスタンプ */
+		final long start;
+		/** 終了のタイムスタンプ */
+		final long end;
+		/** 歩数 */
+		final int steps;
+
+		/**
+		 * コンストラクタ
+		 * 
+		 * @since 0.0.1
+		 * @param activity 行動
+		 * @param start 開始のタイムスタンプ
+		 * @param end 終了のタイムスタンプ
+		 * @param steps 歩数
+		 */
+		Segment(int activity, long start, long end, int steps) {
+			this.activity = activity;
+			this.start = start;
+			this.end = end;
+			this.steps = steps;
+		}
+	}
+
+	/** サンプリング周波数 (Hz) */
+	private final float sampleRate;
+	/** サンプリング間隔に対する揺らぎの割合 */
+	private final float jitter;
+	/** 乱数 */
+	private final Random random;
+	/** 区間 */
+	private final List<Segment> segments = new ArrayList<Segment>();
+
+	/** タイムスタンプ */
+	private long[] timestamps = new long[1024];
+	/** 値 */
+	private float[] values = new float[1024 * 3];
+	/** 件数 */
+	private int size;
+	/** 次のタイムスタンプ */
+	private double next;
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param sampleRate サンプリング周波数 (Hz)
+	 * @param jitter サンプリング間隔に対する揺らぎの割合
+	 * @param seed 乱数の種
+	 */
+	AccelerometerTrace(float sampleRate, float jitter, long seed) {
+		this.sampleRate = sampleRate;
+		this.jitter = jitter;
+		this.random = new Random(seed);
+		this.next = 1.0e9;
+	}
+
+	/**
+	 * 静止した区間を追加する
+	 * 
+	 * @since 0.0.1
+	 * @param seconds 秒数
+	 * @return このインスタンス
+	 */
+	AccelerometerTrace still(float seconds) {
+		long start = (long) next;
+		double end = next + seconds * 1.0e9;
+		while (next < end) {
+			append(0.0f, 0.0f);
+		}
+		segments.add(new Segment(ActivityClassifier.ACTIVITY_STILL, start, (long) next, 0));
+		return this;
+	}
+
+	/**
+	 * 歩行の区間を追加する
+	 * 
+	 * @since 0.0.1
+	 * @param steps 歩数
+	 * @param cadence 1秒あたりの歩数
+	 * @param amplitude 鉛直方向の加速度の振幅 (m/s^2)
+	 * @return このインスタンス
+	 */
+	AccelerometerTrace walk(int steps, float cadence, float amplitude) {
+		long start = (long) next;
+		double end = next + steps / (double) cadence * 1.0e9;
+		while (next < end) {
+			double t = (next - start) / 1.0e9;
+			double phase = 2.0 * Math.PI * cadence * t;
+			// 着地の衝撃を2倍の周波数の成分で表し，左右の揺れは2歩で1周期とする
+			float vertical = (float) (amplitude * (Math.sin(phase) + 0.3 * Math.sin(2.0 * phase + 0.5)));
+			float lateral = (float) (0.4 * amplitude * Math.sin(phase / 2.0));
+			append(vertical, lateral);
+		}
+		segments.add(new Segment(ActivityClassifier.ACTIVITY_WALKING, start, (long) next, steps));
+		return this;
+	}
+
+	/**
+	 * 値を1件追加する
+	 * 
+	 * @since 0.0.1
+	 * @param vertical 鉛直方向の加速度 (m/s^2)
+	 * @param lateral 左右方向の加速度 (m/s^2)
+	 */
+	private void append(float vertical, float lateral) {
+		if (size == timestamps.length) {
+			timestamps = Arrays.copyOf(timestamps, size * 2);
+			values = Arrays.copyOf(values, size * 2 * 3);
+		}
+
+		// 端末は傾けて持っているものとし，重力をY軸とZ軸に分ける
+		float up = GRAVITY + vertical;
+		timestamps[size] = (long) next;
+		values[size * 3] = lateral + noise();
+		values[size * 3 + 1] = 0.6f * up + noise();
+		values[size * 3 + 2] = 0.8f * up + noise();
+		size++;
+
+		double interval = 1.0e9 / sampleRate;
+		next += interval * (1.0 + jitter * (2.0 * random.nextDouble() - 1.0));
+	}
+
+	/**
+	 * ノイズを生成する
+	 * 
+	 * @since 0.0.1
+	 * @return ノイズ (m/s^2)
+	 */
+	private float noise() {
+		return (float) (random.nextGaussian() * NOISE);
+	}
+
+	/**
+	 * 件数を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 件数
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * タイムスタンプを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 位置
+	 * @return ナノ秒のタイムスタンプ
+	 */
+	long timestamp(int index) {
+		return timestamps[index];
+	}
+
+	/**
+	 * 値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 位置
+	 * @param axis 軸
+	 * @return 値 (m/s^2)
+	 */
+	float value(int index, int axis) {
+		return values[index * 3 + axis];
+	}
+
+	/**
+	 * 加速度の大きさを取得する
+	 * 
+	 * @since 0.0.1
+	 * @param index 位置
+	 * @return 加速度の大きさ (m/s^2)
+	 */
+	float magnitude(int index) {
+		float x = value(index, 0);
+		float y = value(index, 1);
+		float z = value(index, 2);
+		return (float) Math.sqrt(x * x + y * y + z * z);
+	}
+
+	/**
+	 * 区間を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 区間
+	 */
+	List<Segment> segments() {
+		return segments;
+	}
+
+	/**
+	 * 全ての区間の歩数の合計を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 歩数
+	 */
+	int totalSteps() {
+		int steps = 0;
+		for (Segment segment : segments) {
+			steps += segment.steps;
+		}
+		return steps;
+	}
+
+	/**
+	 * 全ての値を歩数計で処理する
+	 * 
+	 * @since 0.0.1
+	 * @param pedometer 歩数計
+	 */
+	void feed(Pedometer pedometer) {
+		for (int i = 0; i < size; i++) {
+			pedometer.process(timestamps[i], value(i, 0), value(i, 1), value(i, 2));
+		}
+	}
+}
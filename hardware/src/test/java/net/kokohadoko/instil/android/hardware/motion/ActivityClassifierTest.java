@@ -0,0 +1,104 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * {@link ActivityClassifier} のテスト
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class ActivityClassifierTest {
+
+	/**
+	 * 行動が切り替わったタイムスタンプを求める
+	 * 
+	 * @since 0.0.1
+	 * @param trace 合成データ
+	 * @param activity 切り替わる行動
+	 * @return ナノ秒のタイムスタンプ, 切り替わらなかった場合は -1
+	 */
+	private static long firstChange(AccelerometerTrace trace, int activity) {
+		ActivityClassifier classifier = new ActivityClassifier();
+		for (int i = 0; i < trace.size(); i++) {
+			if (classifier.add(trace.timestamp(i), trace.magnitude(i), false)
+					&& classifier.getActivity() == activity) {
+				return trace.timestamp(i);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * サンプリング周波数によらず同じ時間で静止と分類すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void windowIsMeasuredInTime() {
+		AccelerometerTrace slow = new AccelerometerTrace(15.0f, 0.1f, 1).still(20.0f);
+		AccelerometerTrace fast = new AccelerometerTrace(200.0f, 0.1f, 1).still(20.0f);
+
+		long slowChange = firstChange(slow, ActivityClassifier.ACTIVITY_STILL) - slow.timestamp(0);
+		long fastChange = firstChange(fast, ActivityClassifier.ACTIVITY_STILL) - fast.timestamp(0);
+
+		// 切り替えに必要な窓の数だけ経過した後の最初の値で切り替わる
+		long expected = TimeUnit.MILLISECONDS.toNanos(
+				ActivityClassifier.DEFAULT_WINDOW_DURATION * ActivityClassifier.DEFAULT_CONFIRM_WINDOWS);
+		long slowInterval = TimeUnit.MILLISECONDS.toNanos(1000) / 15 * 2;
+		assertTrue(slowChange >= expected && slowChange < expected + slowInterval);
+		assertTrue(fastChange >= expected && fastChange < expected + slowInterval);
+	}
+
+	/**
+	 * 窓あたりの歩数から歩行と分類すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void classifiesStepsAsWalking() {
+		ActivityClassifier classifier = new ActivityClassifier();
+		long interval = TimeUnit.MILLISECONDS.toNanos(10);
+		long stepInterval = TimeUnit.MILLISECONDS.toNanos(500);
+		long timestamp = 0;
+		for (int i = 0; i < 1000; i++) {
+			// 加速度の大きさは一定でも歩数があれば歩行とする
+			classifier.add(timestamp, 9.8f, timestamp % stepInterval == 0);
+			timestamp += interval;
+		}
+
+		assertEquals(ActivityClassifier.ACTIVITY_WALKING, classifier.getActivity());
+	}
+
+	/**
+	 * 値の間隔が窓より長い場合は分類しないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void skipsWindowWithSingleValue() {
+		ActivityClassifier classifier = new ActivityClassifier();
+		long gap = TimeUnit.MILLISECONDS.toNanos(ActivityClassifier.DEFAULT_WINDOW_DURATION * 2);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(!classifier.add(i * gap, 9.8f, false));
+		}
+
+		assertEquals(ActivityClassifier.ACTIVITY_UNKNOWN, classifier.getActivity());
+	}
+
+	/**
+	 * 不正な窓の時間を指定できないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyWindow() {
+		new ActivityClassifier(0, ActivityClassifier.DEFAULT_STILL_THRESHOLD,
+				ActivityClassifier.DEFAULT_WALKING_STEPS, ActivityClassifier.DEFAULT_CONFIRM_WINDOWS);
+	}
+}
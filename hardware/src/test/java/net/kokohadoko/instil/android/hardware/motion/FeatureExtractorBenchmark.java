@@ -0,0 +1,191 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * {@link WindowedFeatures}, {@link FeatureExtractor}, {@link Fft} のベンチマーク
+ * 
+ * <p>
+ * 1件あたりの特徴量の更新と，FFTを含めた償却した1件あたりの処理時間を窓の件数ごとに測る．
+ * {@link #main(String[])} はGCのプロファイラを付けて実行するため，
+ * gc.alloc.rate.norm で値の追加がオブジェクトを生成しないことを確認できる．
+ * </p>
+ * 
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:(テストのクラスパス) \
+ *     net.kokohadoko.instil.android.hardware.motion.FeatureExtractorBenchmark
+ * </pre>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureExtractorBenchmark {
+
+	/** 1回の読み込みの件数 */
+	private static final int BATCH_SIZE = 64;
+	/** 1件あたりの値の数 */
+	private static final int STRIDE = 3;
+	/** 加速度センサーの種別 */
+	private static final int TYPE_ACCELEROMETER = 1;
+
+	/** 窓の件数 */
+	@Param({ "128", "256", "512" })
+	public int windowSize;
+
+	/** 入力する値 */
+	private float[] input;
+	/** 次に入力する値の位置 */
+	private int position;
+	/** 窓の特徴量 */
+	private WindowedFeatures features;
+	/** 窓の半分ごとにFFTを行う特徴量 */
+	private FeatureExtractor extractor;
+	/** FFT */
+	private Fft fft;
+	/** パワースペクトルの出力先 */
+	private float[] spectrum;
+	/** 1回の読み込みのタイムスタンプ */
+	private long[] timestamps;
+	/** 1回の読み込みのセンサー種別 */
+	private int[] types;
+	/** 1回の読み込みの値 */
+	private float[] values;
+
+	/**
+	 * 入力する値を準備する
+	 * 
+	 * @since 0.0.1
+	 */
+	@Setup
+	public void setUp() {
+		// 歩行程度の周期の成分にノイズを加えた値を循環して入力する
+		Random random = new Random(1);
+		input = new float[4096];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = (float) (9.8 + 2.0 * Math.sin(2.0 * Math.PI * 1.8 * i / 50.0) + 0.1 * random.nextGaussian());
+		}
+
+		features = new WindowedFeatures(windowSize);
+		extractor = new FeatureExtractor(TYPE_ACCELEROMETER, FeatureExtractor.CHANNEL_MAGNITUDE,
+				windowSize, windowSize / 2, 50.0f);
+		fft = new Fft(windowSize);
+		spectrum = new float[windowSize / 2 + 1];
+
+		timestamps = new long[BATCH_SIZE];
+		types = new int[BATCH_SIZE];
+		values = new float[BATCH_SIZE * STRIDE];
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			timestamps[i] = i * 20000000L;
+			types[i] = TYPE_ACCELEROMETER;
+			values[i * STRIDE] = 0.3f * input[i];
+			values[i * STRIDE + 1] = 0.6f * input[i];
+			values[i * STRIDE + 2] = 0.74f * input[i];
+		}
+
+		// 窓を一杯にしてから測る
+		for (int i = 0; i < windowSize; i++) {
+			features.add(next());
+			extractor.add(i, next());
+		}
+	}
+
+	/**
+	 * 次に入力する値を取得する
+	 * 
+	 * @since 0.0.1
+	 * @return 値
+	 */
+	private float next() {
+		float value = input[position];
+		position = (position + 1) & (input.length - 1);
+		return value;
+	}
+
+	/**
+	 * 1件追加して窓の特徴量を更新する
+	 * 
+	 * @since 0.0.1
+	 * @return 分散と範囲の和
+	 */
+	@Benchmark
+	public float windowedFeaturesAdd() {
+		features.add(next());
+		return features.getVariance() + features.getMax() - features.getMin();
+	}
+
+	/**
+	 * 1件追加し，窓の半分ごとにパワースペクトルを求める
+	 * 
+	 * @since 0.0.1
+	 * @return 最大のパワーの周波数
+	 */
+	@Benchmark
+	public float featureExtractorAdd() {
+		extractor.add(position, next());
+		return extractor.getDominantFrequency();
+	}
+
+	/**
+	 * 3軸の値の読み込みを1回処理する
+	 * 
+	 * @since 0.0.1
+	 * @return 最大のパワーの周波数
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public float featureExtractorBatch() {
+		extractor.onBatch(timestamps, types, values, STRIDE, BATCH_SIZE);
+		return extractor.getDominantFrequency();
+	}
+
+	/**
+	 * 窓の値のパワースペクトルを求める
+	 * 
+	 * @since 0.0.1
+	 * @return 直流成分を除いた最初の周波数のパワー
+	 */
+	@Benchmark
+	public float powerSpectrum() {
+		fft.powerSpectrum(input, spectrum);
+		return spectrum[1];
+	}
+
+	/**
+	 * ベンチマークを実行する
+	 * 
+	 * @since 0.0.1
+	 * @param args 使用しない
+	 * @throws RunnerException 実行できない場合に例外を生成する
+	 */
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(FeatureExtractorBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
@@ -0,0 +1,106 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * {@link Pedometer} のテスト
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class PedometerTest {
+
+	/** テストするサンプリング周波数 (Hz) */
+	private static final float[] SAMPLE_RATES = { 15.0f, 25.0f, 50.0f, 100.0f, 200.0f };
+
+	/**
+	 * 通知を記録するリスナー
+	 * 
+	 * @author inuko
+	 * @since 0.0.1
+	 */
+	private static class RecordingListener implements PedometerListener {
+
+		/** 歩数を通知したタイムスタンプ */
+		final List<Long> steps = new ArrayList<Long>();
+		/** 行動が切り替わったタイムスタンプ */
+		final List<Long> changedAt = new ArrayList<Long>();
+		/** 切り替わった行動 */
+		final List<Integer> activities = new ArrayList<Integer>();
+
+		@Override
+		public void onStep(long timestamp, long steps) {
+			this.steps.add(timestamp);
+		}
+
+		@Override
+		public void onActivityChanged(long timestamp, int activity) {
+			changedAt.add(timestamp);
+			activities.add(activity);
+		}
+
+		/**
+		 * 指定したタイムスタンプの時点の行動を取得する
+		 * 
+		 * @since 0.0.1
+		 * @param timestamp ナノ秒のタイムスタンプ
+		 * @return 行動
+		 */
+		int activityAt(long timestamp) {
+			int activity = ActivityClassifier.ACTIVITY_UNKNOWN;
+			for (int i = 0; i < changedAt.size() && changedAt.get(i) <= timestamp; i++) {
+				activity = activities.get(i);
+			}
+			return activity;
+		}
+	}
+
+	/**
+	 * 区間ごとの歩数と行動が正解と一致すること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void matchesLabeledSegments() {
+		// 行動の切り替えは窓の数だけ遅れるため，区間の開始から余裕を持たせて判定する
+		long settle = TimeUnit.MILLISECONDS.toNanos(
+				ActivityClassifier.DEFAULT_WINDOW_DURATION * (ActivityClassifier.DEFAULT_CONFIRM_WINDOWS + 1));
+
+		for (float sampleRate : SAMPLE_RATES) {
+			AccelerometerTrace trace = new AccelerometerTrace(sampleRate, 0.1f, 11)
+					.still(15.0f)
+					.walk(90, 1.5f, 1.5f)
+					.still(15.0f)
+					.walk(120, 2.0f, 2.5f)
+					.still(15.0f);
+			Pedometer pedometer = new Pedometer();
+			RecordingListener listener = new RecordingListener();
+			pedometer.setListener(listener);
+			trace.feed(pedometer);
+
+			for (AccelerometerTrace.Segment segment : trace.segments()) {
+				String label = sampleRate + "Hz, " + (segment.start / 1000000) + "ms";
+				int steps = 0;
+				for (long step : listener.steps) {
+					if (step >= segment.start && step < segment.end) {
+						steps++;
+					}
+				}
+				assertTrue(label + ": " + steps + "歩 (正解 " + segment.steps + "歩)",
+						Math.abs(steps - segment.steps) <= Math.max(2, segment.steps / 50));
+				assertEquals(label, segment.activity, listener.activityAt(segment.end - 1));
+				assertEquals(label, segment.activity, listener.activityAt(segment.start + settle));
+			}
+			assertEquals(sampleRate + "Hz", trace.totalSteps(), pedometer.getStepCount(), 4);
+			assertEquals(sampleRate + "Hz", ActivityClassifier.ACTIVITY_STILL, pedometer.getActivity());
+			assertTrue(sampleRate + "Hz", !listener.activities.contains(ActivityClassifier.ACTIVITY_MOVING));
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package net.kokohadoko.instil.android.hardware.motion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * {@link StepDetector} のテスト
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class StepDetectorTest {
+
+	/** テストするサンプリング周波数 (Hz) */
+	private static final float[] SAMPLE_RATES = { 10.0f, 15.0f, 25.0f, 50.0f, 100.0f, 200.0f };
+	/** テストする1秒あたりの歩数 */
+	private static final float[] CADENCES = { 1.4f, 1.8f, 2.4f };
+
+	/**
+	 * 全ての値を処理する
+	 * 
+	 * @since 0.0.1
+	 * @param detector StepDetector
+	 * @param trace 合成データ
+	 */
+	private static void feed(StepDetector detector, AccelerometerTrace trace) {
+		for (int i = 0; i < trace.size(); i++) {
+			detector.process(trace.timestamp(i), trace.value(i, 0), trace.value(i, 1), trace.value(i, 2));
+		}
+	}
+
+	/**
+	 * 生成時と異なるサンプリング周波数でも歩数を数えられること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void countsLabeledStepsAtEachSampleRate() {
+		for (float sampleRate : SAMPLE_RATES) {
+			for (float cadence : CADENCES) {
+				AccelerometerTrace trace = new AccelerometerTrace(sampleRate, 0.1f, 42)
+						.still(10.0f)
+						.walk(Math.round(60.0f * cadence), cadence, 1.0f)
+						.still(10.0f);
+				StepDetector detector = new StepDetector();
+				feed(detector, trace);
+
+				int expected = trace.totalSteps();
+				int tolerance = Math.max(2, expected / 50);
+				long actual = detector.getStepCount();
+				assertTrue(sampleRate + "Hz, " + cadence + "歩/秒: " + actual + "歩 (正解 " + expected + "歩)",
+						Math.abs(actual - expected) <= tolerance);
+			}
+		}
+	}
+
+	/**
+	 * 静止した区間では歩数を数えないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void ignoresStillTrace() {
+		for (float sampleRate : SAMPLE_RATES) {
+			AccelerometerTrace trace = new AccelerometerTrace(sampleRate, 0.1f, 7).still(60.0f);
+			StepDetector detector = new StepDetector();
+			feed(detector, trace);
+
+			assertEquals(sampleRate + "Hz", 0, detector.getStepCount());
+		}
+	}
+
+	/**
+	 * タイムスタンプの間隔からサンプリング周波数を求めること
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void followsSampleRateOfTimestamps() {
+		for (float sampleRate : SAMPLE_RATES) {
+			AccelerometerTrace trace = new AccelerometerTrace(sampleRate, 0.2f, 3).still(5.0f);
+			StepDetector detector = new StepDetector();
+			feed(detector, trace);
+
+			assertEquals(sampleRate + "Hz", sampleRate, detector.getSampleRate(), 0.1f * sampleRate);
+		}
+	}
+
+	/**
+	 * 指定したサンプリング周波数でフィルタを求め直すこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test
+	public void setSampleRate() {
+		StepDetector detector = new StepDetector();
+		detector.setSampleRate(15.0f);
+
+		assertEquals(15.0f, detector.getSampleRate(), 0.0f);
+	}
+
+	/**
+	 * 最小より低いサンプリング周波数を指定できないこと
+	 * 
+	 * @since 0.0.1
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsSampleRateBelowMinimum() {
+		new StepDetector().setSampleRate(StepDetector.MIN_SAMPLE_RATE / 2.0f);
+	}
+}
@@ -1,5 +1,9 @@
 package net.kokohadoko.instil.android.nfc;
 
+import java.io.UnsupportedEncodingException;
+
+import net.kokohadoko.instil.android.nfc.exception.NfcUnsupportedException;
+import net.kokohadoko.instil.android.nfc.exception.NfcWrapperException;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.pm.PackageManager;
@@ -23,6 +27,13 @@ public class NfcAdapterWrapper {
 	/**  */
 	public static final String UTF16 = "UTF-16";
 
+	/** 結果が真であることを表す */
+	public static final int RESULT_TRUE = 1;
+	/** 結果が偽であることを表す */
+	public static final int RESULT_FALSE = 0;
+	/** 端末がNFCをサポートしていないことを表す */
+	public static final int RESULT_UNSUPPORTED = -1;
+
 	/**
 	 * デフォルトコンストラクタ
 	 * 
@@ -49,18 +60,18 @@ public class NfcAdapterWrapper {
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return NfcAdapter
-	 * @throws Exception 端末がNFCをサポートしていない場合に例外を生成する
+	 * @throws NfcWrapperException 端末がNFCをサポートしていない場合に例外を生成する
 	 */
-	public static NfcAdapter getNfcAdapter(Context context) throws Exception {
+	public static NfcAdapter getNfcAdapter(Context context) throws NfcWrapperException {
 		if (hasSystemFeatureNfc(context)) {
 			NfcAdapter adapter = NfcAdapter.getDefaultAdapter(context);
 			if (adapter != null) {
 				return adapter;
 			} else {
-				throw new Exception("");
+				throw NfcUnsupportedException.INSTANCE;
 			}
 		} else {
-			throw new Exception("");
+			throw NfcUnsupportedException.INSTANCE;
 		}
 	}
 
@@ -70,9 +81,9 @@ public class NfcAdapterWrapper {
 	 * @since 0.0.1
 	 * @param context コンテキスト
 	 * @return 有効な場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がNFCをサポートしていない場合に例外を生成する
+	 * @throws NfcWrapperException 端末がNFCをサポートしていない場合に例外を生成する
 	 */
-	public static boolean isEnabled(Context context) throws Exception {
+	public static boolean isEnabled(Context context) throws NfcWrapperException {
 		NfcAdapter adapter = getNfcAdapter(context);
 		return isEnabled(adapter);
 	}
@@ -83,16 +94,47 @@ public class NfcAdapterWrapper {
 	 * @since 0.0.1
 	 * @param adapter NfcAdapter
 	 * @return 有効な場合に true, そうでない場合に falseを返す
-	 * @throws Exception 端末がNFCをサポートしていない場合に例外を生成する
+	 * @throws NfcWrapperException 端末がNFCをサポートしていない場合に例外を生成する
 	 */
-	public static boolean isEnabled(NfcAdapter adapter) throws Exception {
+	public static boolean isEnabled(NfcAdapter adapter) throws NfcWrapperException {
 		if (adapter == null) {
-			throw new Exception("");
+			throw NfcUnsupportedException.INSTANCE;
 		}
 
 		return adapter.isEnabled();
 	}
 
+	/**
+	 * 例外を生成せずにNfcAdapterを取得する
+	 * 
+	 * <p>
+	 * PackageManagerへの問い合わせを行わないため，繰り返し呼び出す箇所で使用する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param context コンテキスト
+	 * @return NfcAdapter, 端末がNFCをサポートしていない場合は nullを返す
+	 */
+	public static NfcAdapter peekNfcAdapter(Context context) {
+		return NfcAdapter.getDefaultAdapter(context);
+	}
+
+	/**
+	 * 例外を生成せずにNFCが有効かどうかを調べる
+	 * 
+	 * @since 0.0.1
+	 * @param adapter NfcAdapter
+	 * @return 有効な場合に {@link #RESULT_TRUE}, 無効な場合に {@link #RESULT_FALSE},
+	 *         adapterが nullの場合に {@link #RESULT_UNSUPPORTED}を返す
+	 */
+	public static int tryIsEnabled(NfcAdapter adapter) {
+		if (adapter == null) {
+			return RESULT_UNSUPPORTED;
+		}
+
+		return adapter.isEnabled() ? RESULT_TRUE : RESULT_FALSE;
+	}
+
 	/**
 	 * RTD TextフォーマットのNdefレコードを生成する
 	 * 
@@ -101,30 +143,34 @@ public class NfcAdapterWrapper {
 	 * @param lang 
 	 * @param text 
 	 * @return 
-	 * @throws Exception 
+	 * @throws NfcWrapperException langまたはtextが nullの場合または文字コードの変換に失敗した場合に例外を生成する
 	 */
-	public static NdefRecord createTextRecord(boolean isUtf8, String lang, String text) throws Exception {
+	public static NdefRecord createTextRecord(boolean isUtf8, String lang, String text) throws NfcWrapperException {
 		
 		if (lang == null) {
-			throw new Exception("langがnullです．");
+			throw new NfcWrapperException("langがnullです．");
 		}
 		
 		if (text == null) {
-			throw new Exception("textがnullです．");
+			throw new NfcWrapperException("textがnullです．");
 		}
 
 		byte[] langCode;
 		byte[] textData;
 		byte[] status;
 
-		if (isUtf8) {
-			langCode = lang.getBytes(UTF8);
-			textData = text.getBytes(UTF8);
-			status = new byte[]{(byte)((isUtf8 ? 0:(1<<7)) + langCode.length & 0x03)}; 
-		} else {
-			langCode = lang.getBytes(UTF16);
-			textData = text.getBytes(UTF16);
-			status = new byte[]{(byte)((isUtf8 ? 0:(1<<7)) + langCode.length & 0x03)}; 
+		try {
+			if (isUtf8) {
+				langCode = lang.getBytes(UTF8);
+				textData = text.getBytes(UTF8);
+				status = new byte[]{(byte)((isUtf8 ? 0:(1<<7)) + langCode.length & 0x03)}; 
+			} else {
+				langCode = lang.getBytes(UTF16);
+				textData = text.getBytes(UTF16);
+				status = new byte[]{(byte)((isUtf8 ? 0:(1<<7)) + langCode.length & 0x03)}; 
+			}
+		} catch (UnsupportedEncodingException e) {
+			throw new NfcWrapperException("文字コードの変換に失敗しました．", e);
 		}
 
 		byte[] payload = new byte[status.length + langCode.length + textData.length];
@@ -0,0 +1,42 @@
+package net.kokohadoko.instil.android.nfc.exception;
+
+/**
+ * 端末がNFCをサポートしていない場合の例外クラス
+ * 
+ * <p>
+ * 想定される状態のため，スタックトレースを持たない {@link #INSTANCE} を使い回す．
+ * </p>
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class NfcUnsupportedException extends NfcWrapperException {
+
+	/**  */
+	private static final long serialVersionUID = 1L;
+
+	/** スタックトレースを持たないインスタンス */
+	public static final NfcUnsupportedException INSTANCE =
+			new NfcUnsupportedException("端末がNFCをサポートしていません．", false);
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param detailMessage メッセージ
+	 */
+	public NfcUnsupportedException(String detailMessage) {
+		super(detailMessage);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param detailMessage メッセージ
+	 * @param writableStackTrace スタックトレースを保持する場合に true
+	 */
+	private NfcUnsupportedException(String detailMessage, boolean writableStackTrace) {
+		super(detailMessage, writableStackTrace);
+	}
+}
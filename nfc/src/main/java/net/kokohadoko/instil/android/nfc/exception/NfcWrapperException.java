@@ -0,0 +1,73 @@
+package net.kokohadoko.instil.android.nfc.exception;
+
+/**
+ * NfcAdapterWrapperにおける独自例外クラス
+ * 
+ * @author inuko
+ * @since 0.0.1
+ */
+public class NfcWrapperException extends Exception {
+
+	/**  */
+	private static final long serialVersionUID = 1L;
+
+	/** 空のスタックトレース */
+	private static final StackTraceElement[] EMPTY_STACK_TRACE = new StackTraceElement[0];
+
+	/**
+	 * デフォルトコンストラクタ
+	 * 
+	 * @since 0.0.1
+	 */
+	public NfcWrapperException() {
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param detailMessage メッセージ
+	 */
+	public NfcWrapperException(String detailMessage) {
+		super(detailMessage);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param throwable 例外オブジェクト
+	 */
+	public NfcWrapperException(Throwable throwable) {
+		super(throwable);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * @since 0.0.1
+	 * @param detailMessage メッセージ
+	 * @param throwable 例外オブジェクト
+	 */
+	public NfcWrapperException(String detailMessage, Throwable throwable) {
+		super(detailMessage, throwable);
+	}
+
+	/**
+	 * コンストラクタ
+	 * 
+	 * <p>
+	 * 事前に生成して使い回す例外は，生成した箇所のスタックトレースが誤解を招くため破棄する．
+	 * </p>
+	 * 
+	 * @since 0.0.1
+	 * @param detailMessage メッセージ
+	 * @param writableStackTrace スタックトレースを保持する場合に true
+	 */
+	protected NfcWrapperException(String detailMessage, boolean writableStackTrace) {
+		super(detailMessage);
+		if (!writableStackTrace) {
+			setStackTrace(EMPTY_STACK_TRACE);
+		}
+	}
+}